@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate;
+
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+import edu.kit.datamanager.datacite.validate.impl.HandleNetValidator;
+import edu.kit.datamanager.datacite.validate.impl.URLValidator;
+import edu.kit.datamanager.datacite.validate.stub.HandleStubServer;
+import org.datacite.schema.kernel_4.RelatedIdentifierType;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures both overloads of GenericValidator.isValid against a local handle.net stub.
+ * The stub and the resolver properties are set up before GenericValidator is initialized, so no request leaves the machine.
+ * With cached=false, the result caches are cleared before every call, so every call includes the HTTP round trip.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GenericValidatorBenchmark {
+
+    @Param({"0", "20"})
+    public int latencyMillis;
+
+    @Param({"true", "false"})
+    public boolean cached;
+
+    private HandleStubServer stub;
+    private GenericValidator validator;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stub = new HandleStubServer(Duration.ofMillis(latencyMillis)).register("10.1038", "nphys1170");
+        System.setProperty("validator.handle.resolver", stub.resolver());
+        System.setProperty("validator.handle.prefixResolver", stub.prefixResolver());
+        validator = GenericValidator.soleInstance();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stub.close();
+    }
+
+    @Benchmark
+    public boolean byType() throws ValidationError, ValidationWarning {
+        clearCaches();
+        return validator.isValid("10.1038/nphys1170", RelatedIdentifierType.HANDLE);
+    }
+
+    @Benchmark
+    public boolean byTypeName() throws ValidationError, ValidationWarning {
+        clearCaches();
+        return validator.isValid("10.1038/nphys1170", "DOI");
+    }
+
+    @Benchmark
+    public boolean unknownTypeName() {
+        try {
+            return validator.isValid("10.1038/nphys1170", "UNKNOWN");
+        } catch (ValidationError | ValidationWarning e) {
+            return false;
+        }
+    }
+
+    private void clearCaches() {
+        if (cached) return;
+        URLValidator.getStatusCache().clear();
+        HandleNetValidator.getPrefixCache().clear();
+    }
+}
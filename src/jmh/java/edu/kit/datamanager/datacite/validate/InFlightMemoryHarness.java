@@ -0,0 +1,116 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This harness measures the memory of requests which wait for a permit of the in-flight limit.
+ * It is no JMH benchmark, because it measures retained memory instead of time. Run it with the classpath of the jmh source set:
+ * <pre>java -cp ... edu.kit.datamanager.datacite.validate.InFlightMemoryHarness [requests]</pre>
+ * <ul>
+ *     <li>blocking: every waiting request holds a platform thread which waits in Semaphore.tryAcquire, like a servlet thread did before.</li>
+ *     <li>queued: every waiting request is an entry in the queue of an InFlightLimit and holds no thread.</li>
+ * </ul>
+ * For both, the heap after a full GC and the resident set size of the process (Linux only) are compared before and after the requests wait.
+ *
+ * @author maximilianiKIT
+ */
+public class InFlightMemoryHarness {
+
+    private static final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        // the first round warms up class loading and the JIT; only the second round is reported
+        queued(requests / 10);
+        blocking(requests / 10);
+        report("queued", requests, queued(requests));
+        report("blocking", requests, blocking(requests));
+    }
+
+    private static long[] queued(int requests) {
+        InFlightLimit limit = new InFlightLimit(1, Integer.MAX_VALUE, Duration.ofSeconds(30));
+        CompletableFuture<Boolean> running = new CompletableFuture<>();
+        limit.submit(() -> running);
+        long[] before = measure();
+        List<CompletableFuture<Boolean>> waiting = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) waiting.add(limit.submit(() -> CompletableFuture.completedFuture(true)));
+        long[] after = measure();
+        running.complete(true);
+        CompletableFuture.allOf(waiting.toArray(new CompletableFuture[0])).join();
+        return new long[]{after[0] - before[0], after[1] - before[1]};
+    }
+
+    private static long[] blocking(int requests) throws InterruptedException {
+        Semaphore permits = new Semaphore(0);
+        CountDownLatch waiting = new CountDownLatch(requests);
+        long[] before = measure();
+        List<Thread> threads = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            Thread thread = new Thread(() -> {
+                waiting.countDown();
+                try {
+                    if (permits.tryAcquire(30, TimeUnit.SECONDS)) permits.release();
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        waiting.await();
+        long[] after = measure();
+        permits.release(requests);
+        for (Thread thread : threads) thread.join();
+        return new long[]{after[0] - before[0], after[1] - before[1]};
+    }
+
+    /**
+     * @return the used heap after a full GC and the resident set size of the process in bytes (-1 if unknown).
+     */
+    private static long[] measure() {
+        for (int i = 0; i < 3; i++) System.gc();
+        return new long[]{memory.getHeapMemoryUsage().getUsed(), residentSetSize()};
+    }
+
+    private static long residentSetSize() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) return Long.parseLong(line.replaceAll("\\D", "")) * 1024;
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // not Linux
+        }
+        return -1;
+    }
+
+    private static void report(String name, int requests, long[] delta) {
+        System.out.printf("%-8s %6d waiting requests: heap %7d bytes/request, RSS %s%n", name, requests, delta[0] / requests,
+                delta[1] < 0 ? "unknown" : delta[1] / requests + " bytes/request");
+    }
+}
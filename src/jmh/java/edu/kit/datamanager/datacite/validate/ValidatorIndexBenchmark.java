@@ -0,0 +1,64 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate;
+
+import edu.kit.datamanager.datacite.validate.impl.URLValidator;
+import org.datacite.schema.kernel_4.RelatedIdentifierType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark compares the type resolution of the ValidatorIndex with the former loop over all validators,
+ * which called toString() on every type. A validator is registered for every type to simulate many plugins.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidatorIndexBenchmark {
+
+    @Param({"DOI", "URL", "doi", "UNKNOWN"})
+    public String type;
+
+    private final Map<RelatedIdentifierType, ValidatorInterface> validators = new HashMap<>();
+    private ValidatorIndex index;
+
+    @Setup
+    public void setUp() {
+        ValidatorInterface validator = new URLValidator();
+        for (RelatedIdentifierType identifierType : RelatedIdentifierType.values()) validators.put(identifierType, validator);
+        index = ValidatorIndex.of(validators);
+    }
+
+    @Benchmark
+    public ValidatorInterface index() {
+        RelatedIdentifierType resolved = index.resolve(type);
+        return resolved == null ? null : index.get(resolved);
+    }
+
+    @Benchmark
+    public ValidatorInterface legacyLoop() {
+        ValidatorInterface result = null;
+        for (var entry : validators.entrySet()) {
+            if (entry.getKey().toString().equals(type)) result = entry.getValue();
+        }
+        return result;
+    }
+}
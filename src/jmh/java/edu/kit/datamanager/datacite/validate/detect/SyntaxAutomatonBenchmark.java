@@ -0,0 +1,75 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.detect;
+
+import edu.kit.datamanager.datacite.validate.ValidatorInterface;
+import edu.kit.datamanager.datacite.validate.impl.HandleNetValidator;
+import edu.kit.datamanager.datacite.validate.impl.URLValidator;
+import org.datacite.schema.kernel_4.RelatedIdentifierType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * This benchmark compares the type detection by the combined SyntaxAutomaton with matching the signatures
+ * of the built-in validators one after another with java.util.regex.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SyntaxAutomatonBenchmark {
+
+    @Param({"10.1038/nphys1170", "https://hdl.handle.net/21.T11148/0c5636e00d4dc1a9a7ad", "https://www.kit.edu/kit/index.php", "not an identifier"})
+    public String input;
+
+    private final List<RelatedIdentifierType> types = new ArrayList<>();
+    private final List<Pattern> patterns = new ArrayList<>();
+    private SyntaxAutomaton<RelatedIdentifierType> automaton;
+
+    @Setup
+    public void setUp() {
+        ValidatorInterface handleValidator = new HandleNetValidator();
+        ValidatorInterface urlValidator = new URLValidator();
+        SyntaxAutomaton.Builder<RelatedIdentifierType> builder = SyntaxAutomaton.builder();
+        for (RelatedIdentifierType type : new RelatedIdentifierType[]{RelatedIdentifierType.DOI, RelatedIdentifierType.HANDLE, RelatedIdentifierType.URL}) {
+            String signature = (type == RelatedIdentifierType.URL ? urlValidator : handleValidator).syntaxSignature(type);
+            builder.add(type, signature);
+            types.add(type);
+            patterns.add(Pattern.compile(signature));
+        }
+        automaton = builder.build();
+    }
+
+    @Benchmark
+    public List<RelatedIdentifierType> automaton() {
+        return automaton.classify(input);
+    }
+
+    @Benchmark
+    public List<RelatedIdentifierType> regexPerType() {
+        List<RelatedIdentifierType> result = new ArrayList<>(2);
+        for (int i = 0; i < patterns.size(); i++) {
+            if (patterns.get(i).matcher(input).matches()) result.add(types.get(i));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.handle;
+
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import edu.kit.datamanager.datacite.validate.http.HttpTransport;
+import edu.kit.datamanager.datacite.validate.impl.HandleNetValidator;
+import edu.kit.datamanager.datacite.validate.impl.URLValidator;
+import edu.kit.datamanager.datacite.validate.stub.HandleStubServer;
+import edu.kit.datamanager.datacite.validate.stub.NativeHandleStubServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark resolves a batch of distinct handles at the same time, either with the native Handle protocol against a local
+ * NativeHandleStubServer or over HTTP against a local HandleStubServer. The caches are cleared before every batch,
+ * so every handle is requested from the server.
+ * The benchmark resolve measures the HandleResolver alone.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HandleResolverBenchmark {
+
+    @Param({"native", "http"})
+    public String protocol;
+
+    @Param({"1000"})
+    public int batch;
+
+    @Param({"0", "5"})
+    public int latencyMillis;
+
+    private NativeHandleStubServer nativeStub;
+    private HandleStubServer httpStub;
+    private HandleResolver resolver;
+    private HandleNetValidator validator;
+    private String[] handles;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        handles = new String[batch];
+        for (int i = 0; i < batch; i++) handles[i] = "10.1038/record" + i;
+        String[] suffixes = new String[batch];
+        for (int i = 0; i < batch; i++) suffixes[i] = "record" + i;
+        if (protocol.equals("native")) {
+            nativeStub = new NativeHandleStubServer(Duration.ofMillis(latencyMillis)).register("10.1038", suffixes);
+            resolver = new HandleResolver(nativeStub.address(), 2, Duration.ofMillis(500), 2, Duration.ofSeconds(10));
+            validator = new HandleNetValidator(HttpTransport.shared(), null, null, resolver);
+        } else {
+            httpStub = new HandleStubServer(Duration.ofMillis(latencyMillis)).register("10.1038", suffixes);
+            validator = new HandleNetValidator(HttpTransport.shared(), httpStub.resolver(), httpStub.prefixResolver());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (resolver != null) resolver.close();
+        if (nativeStub != null) nativeStub.close();
+        if (httpStub != null) httpStub.close();
+    }
+
+    @Benchmark
+    public int validate() {
+        URLValidator.getStatusCache().clear();
+        HandleNetValidator.getPrefixCache().clear();
+        @SuppressWarnings("unchecked")
+        CompletableFuture<ValidationResult>[] results = new CompletableFuture[batch];
+        for (int i = 0; i < batch; i++) results[i] = validator.validate(handles[i]);
+        int valid = 0;
+        for (CompletableFuture<ValidationResult> result : results) {
+            if (result.join().isValid()) valid++;
+        }
+        return valid;
+    }
+
+    @Benchmark
+    public int resolve() {
+        if (resolver == null) return 0;
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Integer>[] codes = new CompletableFuture[batch];
+        for (int i = 0; i < batch; i++) codes[i] = resolver.resolve(handles[i]);
+        int found = 0;
+        for (CompletableFuture<Integer> code : codes) {
+            if (code.join() == HandleMessage.RC_SUCCESS) found++;
+        }
+        return found;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.impl;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This benchmark compares the cost per call of the single-pass HandleIdentifier scanner with the regular expressions
+ * which were compiled on every call by the HandleNetValidator before.
+ * Run it with "./gradlew jmh" and add "-prof gc" to the JMH arguments to see the allocation rate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HandleIdentifierBenchmark {
+
+    @Param({"hdl://10.1038/nphys1170", "https://hdl.handle.net/api/handles/10.1038/nphys1170", "10.1038/nphys1170", "http://google.com/®¡“¢∂‚/®¡“¢∂‚"})
+    public String input;
+
+    private final HandleIdentifier identifier = new HandleIdentifier();
+
+    @Benchmark
+    public void scanner(Blackhole blackhole) {
+        if (identifier.parse(input)) {
+            blackhole.consume(identifier.prefixStart());
+            blackhole.consume(identifier.suffixEnd());
+        } else blackhole.consume(false);
+    }
+
+    @Benchmark
+    public void scannerWithStrings(Blackhole blackhole) {
+        if (identifier.parse(input)) {
+            blackhole.consume(identifier.serverAddress());
+            blackhole.consume(identifier.prefix());
+            blackhole.consume(identifier.suffix());
+        } else blackhole.consume(false);
+    }
+
+    /**
+     * The parsing part of the former HandleNetValidator.isValid, isValidHTTPURL and isValidHandle.
+     */
+    @Benchmark
+    public void legacyRegex(Blackhole blackhole) {
+        Matcher matcher = Pattern.compile("^(hdl://|http://|https://|doi:)(.+)", Pattern.MULTILINE).matcher(input);
+        if (matcher.find()) {
+            if (matcher.group(1).equals("https://") || matcher.group(1).equals("http://")) {
+                Matcher url = Pattern.compile("(http|https)://(.+)/([A-Za-z0-9.]+)/([A-Za-z0-9.]+)", Pattern.MULTILINE).matcher(matcher.group(0));
+                if (url.find()) {
+                    blackhole.consume(url.group(1) + "://" + url.group(2));
+                    blackhole.consume(url.group(3));
+                    blackhole.consume(url.group(4));
+                } else blackhole.consume(false);
+            } else legacyHandle(matcher.group(2), blackhole);
+        } else legacyHandle(input, blackhole);
+    }
+
+    private static void legacyHandle(String handle, Blackhole blackhole) {
+        Matcher matcher = Pattern.compile("([A-Za-z0-9.]+)/([A-Za-z0-9.]+)", Pattern.MULTILINE).matcher(handle);
+        if (matcher.find()) {
+            blackhole.consume(matcher.group(1));
+            blackhole.consume(matcher.group(2));
+        } else blackhole.consume(false);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.impl;
+
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+import edu.kit.datamanager.datacite.validate.http.HttpTransport;
+import edu.kit.datamanager.datacite.validate.stub.HandleStubServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures HandleNetValidator.isValid for every input form against a local handle.net stub.
+ * The input "test" is rejected by the parser, so it measures the parsing path alone.
+ * The benchmark validate measures the same validations with ValidationResult instead of exceptions.
+ * "{resolver}" is replaced with the address of the stub.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HandleNetValidatorBenchmark {
+
+    @Param({"hdl://10.1038/nphys1170", "doi:10.1038/nphys1170", "10.1038/nphys1170", "{resolver}/10.1038/nphys1170", "10.1038/unknown", "test"})
+    public String input;
+
+    @Param({"true", "false"})
+    public boolean cached;
+
+    @Param({"0"})
+    public int latencyMillis;
+
+    private HandleStubServer stub;
+    private HandleNetValidator validator;
+    private String resolvedInput;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stub = new HandleStubServer(Duration.ofMillis(latencyMillis)).register("10.1038", "nphys1170");
+        validator = new HandleNetValidator(HttpTransport.shared(), stub.resolver(), stub.prefixResolver());
+        resolvedInput = input.replace("{resolver}", stub.resolver());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stub.close();
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        if (!cached) {
+            URLValidator.getStatusCache().clear();
+            HandleNetValidator.getPrefixCache().clear();
+        }
+        try {
+            return validator.isValid(resolvedInput);
+        } catch (ValidationError | ValidationWarning e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    public ValidationResult validate() {
+        if (!cached) {
+            URLValidator.getStatusCache().clear();
+            HandleNetValidator.getPrefixCache().clear();
+        }
+        return validator.validate(resolvedInput).join();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.impl;
+
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+import edu.kit.datamanager.datacite.validate.stub.HandleStubServer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures URLValidator.isValid against a local HTTP stub with a configurable latency.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class URLValidatorBenchmark {
+
+    @Param({"0", "20"})
+    public int latencyMillis;
+
+    @Param({"true", "false"})
+    public boolean cached;
+
+    private HandleStubServer stub;
+    private final URLValidator validator = new URLValidator();
+    private String validURL;
+    private String missingURL;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stub = new HandleStubServer(Duration.ofMillis(latencyMillis)).register("10.1038", "nphys1170");
+        validURL = stub.resolver() + "/10.1038/nphys1170";
+        missingURL = stub.resolver() + "/10.1038/unknown";
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stub.close();
+    }
+
+    @Benchmark
+    public boolean valid() throws ValidationError, ValidationWarning {
+        if (!cached) URLValidator.getStatusCache().clear();
+        return validator.isValid(validURL);
+    }
+
+    @Benchmark
+    public boolean missing() {
+        if (!cached) URLValidator.getStatusCache().clear();
+        try {
+            return validator.isValid(missingURL);
+        } catch (ValidationError | ValidationWarning e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    public boolean malformed() {
+        try {
+            return validator.isValid("not a url");
+        } catch (ValidationError | ValidationWarning e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.plugin;
+
+import edu.kit.datamanager.datacite.validate.ValidatorInterface;
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+import org.datacite.schema.kernel_4.RelatedIdentifierType;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures how long PluginLoader.loadPlugins needs to scan the plugin directory and instantiate the plugins.
+ * It has to be started from the project directory, because the plugins are read from ./plugins by default.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PluginLoaderBenchmark {
+
+    @Param({"plugins"})
+    public String pluginDirectory;
+
+    @Benchmark
+    public Map<RelatedIdentifierType, ValidatorInterface> loadPlugins() throws IOException, ValidationWarning {
+        return PluginLoader.loadPlugins(new File(pluginDirectory));
+    }
+}
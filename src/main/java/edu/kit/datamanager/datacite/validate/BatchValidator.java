@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate;
+
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * This class validates many identifiers concurrently with the asynchronous API.
+ * At most parallelism validations are in flight at the same time.
+ * Duplicate requests are validated only once and share the same future.
+ *
+ * @param <R> type of the result of a validation (e.g. ValidationResult)
+ * @author maximilianiKIT
+ */
+public class BatchValidator<R> {
+
+    private final Function<ValidationRequest, CompletableFuture<R>> validator;
+    private final int parallelism;
+
+    /**
+     * Creates a batch validator which produces a ValidationResult for every request, so invalid inputs don't create exceptions.
+     * Every request is validated up to its level (RESOLVE if it has none).
+     *
+     * @param validator   used for the validations
+     * @param parallelism maximum number of concurrent validations
+     * @return a new batch validator
+     */
+    public static BatchValidator<ValidationResult> of(GenericValidator validator, int parallelism) {
+        return new BatchValidator<>(parallelism, request -> validator.validate(request.getInput(), request.getType(),
+                request.getLevel() == null ? ValidationLevel.RESOLVE : request.getLevel()));
+    }
+
+    /**
+     * Creates a batch validator which passes the whole request, including its level, to the validator.
+     *
+     * @param validator   function which starts the validation of a request
+     * @param parallelism maximum number of concurrent validations
+     * @param <R>         type of the result of a validation
+     * @return a new batch validator
+     */
+    public static <R> BatchValidator<R> of(Function<ValidationRequest, CompletableFuture<R>> validator, int parallelism) {
+        return new BatchValidator<>(parallelism, validator);
+    }
+
+    /**
+     * @param validator   function which starts the validation of (input, type)
+     * @param parallelism maximum number of concurrent validations
+     */
+    public BatchValidator(BiFunction<String, String, CompletableFuture<R>> validator, int parallelism) {
+        this(parallelism, request -> validator.apply(request.getInput(), request.getType()));
+    }
+
+    private BatchValidator(int parallelism, Function<ValidationRequest, CompletableFuture<R>> validator) {
+        this.validator = validator;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Starts the validation of all requests without blocking the calling thread.
+     * At most parallelism validations are started at once; the others are queued and started when earlier validations complete.
+     *
+     * @param requests to validate
+     * @return the futures of the validations in the order of the requests. Duplicate requests share the same future.
+     * A request which is null or has no type or input fails with a ValidationError without being validated.
+     */
+    public List<CompletableFuture<R>> submit(List<ValidationRequest> requests) {
+        InFlightLimit limit = new InFlightLimit(parallelism, Integer.MAX_VALUE, null);
+        Map<ValidationRequest, CompletableFuture<R>> started = new HashMap<>();
+        List<CompletableFuture<R>> result = new ArrayList<>(requests.size());
+        for (ValidationRequest request : requests) {
+            CompletableFuture<R> future = started.get(request);
+            if (future == null) {
+                future = start(request, limit);
+                started.put(request, future);
+            }
+            result.add(future);
+        }
+        return result;
+    }
+
+    private CompletableFuture<R> start(ValidationRequest request, InFlightLimit limit) {
+        if (request == null || request.getType() == null || request.getInput() == null)
+            return CompletableFuture.failedFuture(new ValidationError("Missing type or input"));
+        return limit.submit(() -> validator.apply(request));
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * This class defines how requests and outbound validator I/O are executed.
+ * The mode is read from the system property validator.execution.mode:
+ * <ul>
+ *     <li>BLOCKING (default): every request occupies a servlet thread until its validation is finished.</li>
+ *     <li>ASYNC: the controllers return futures and release the servlet thread; outbound requests are non-blocking.</li>
+ *     <li>VIRTUAL: like ASYNC, but blocking work (plugins, HTTP client callbacks) runs on virtual threads.
+ *     Virtual threads need Java 21 or later; on older runtimes ASYNC is used instead.</li>
+ * </ul>
+ * In the ASYNC and VIRTUAL mode, the number of validations in flight is limited (validator.execution.maxInFlight, default 1024)
+ * instead of the size of a thread pool. Further validations wait in a queue without occupying a thread
+ * (at most validator.execution.maxQueued, default 1024). A validation which finds the queue full fails immediately with a ValidationWarning,
+ * and so does a validation which doesn't get a permit within validator.execution.acquireTimeout (default 30 s).
+ *
+ * @author maximilianiKIT
+ */
+public final class Execution {
+
+    static Logger LOG = LoggerFactory.getLogger(Execution.class);
+
+    /**
+     * The supported execution modes.
+     */
+    public enum Mode {
+        BLOCKING,
+        ASYNC,
+        VIRTUAL
+    }
+
+    private static final ExecutorService virtualExecutor;
+    private static final Mode mode;
+    private static final InFlightLimit inFlight = new InFlightLimit(ValidatorSettings.getInt("validator.execution.maxInFlight", 1024),
+            ValidatorSettings.getInt("validator.execution.maxQueued", 1024),
+            ValidatorSettings.getDuration("validator.execution.acquireTimeout", Duration.ofSeconds(30)));
+
+    static {
+        Mode configured = parse(ValidatorSettings.getString("validator.execution.mode", Mode.BLOCKING.name()));
+        ExecutorService executor = null;
+        if (configured == Mode.VIRTUAL) {
+            executor = createVirtualExecutor();
+            if (executor == null) {
+                LOG.warn("Virtual threads are not supported by this Java runtime. Using execution mode ASYNC.");
+                configured = Mode.ASYNC;
+            }
+        }
+        virtualExecutor = executor;
+        mode = configured;
+        LOG.info("Execution mode: {}", mode);
+    }
+
+    private Execution() {
+        // only static methods
+    }
+
+    /**
+     * @return the configured execution mode.
+     */
+    public static Mode mode() {
+        return mode;
+    }
+
+    /**
+     * @return true if requests should be handled without blocking the servlet thread.
+     */
+    public static boolean isNonBlocking() {
+        return mode != Mode.BLOCKING;
+    }
+
+    /**
+     * @return an executor which starts a virtual thread per task or null if the mode is not VIRTUAL.
+     */
+    public static ExecutorService virtualExecutor() {
+        return virtualExecutor;
+    }
+
+    /**
+     * Starts a validation if the in-flight limit allows it, otherwise queues it without blocking the calling thread.
+     * The permit is released when the validation completes.
+     *
+     * @param validation which starts the validation
+     * @return the future of the validation or a future which fails with a ValidationWarning if the queue is full or no permit was available in time.
+     */
+    public static <T> CompletableFuture<T> limit(Supplier<CompletableFuture<T>> validation) {
+        return inFlight.submit(validation);
+    }
+
+    /**
+     * @return the number of validations which can be started before the in-flight limit is reached.
+     */
+    public static int availablePermits() {
+        return inFlight.availablePermits();
+    }
+
+    /**
+     * @return the number of validations which wait for a permit.
+     */
+    public static int queued() {
+        return inFlight.queued();
+    }
+
+    static Mode parse(String name) {
+        try {
+            return Mode.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Unknown execution mode {}. Using BLOCKING.", name);
+            return Mode.BLOCKING;
+        }
+    }
+
+    /**
+     * Creates Executors.newVirtualThreadPerTaskExecutor() by reflection, so the code still compiles and runs on Java 17.
+     */
+    private static ExecutorService createVirtualExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -17,38 +17,78 @@ package edu.kit.datamanager.datacite.validate;
 
 import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
 import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+import edu.kit.datamanager.datacite.validate.cache.SingleFlight;
+import edu.kit.datamanager.datacite.validate.cli.BulkCommand;
 import edu.kit.datamanager.datacite.validate.impl.HandleNetValidator;
 import edu.kit.datamanager.datacite.validate.impl.URLValidator;
-import edu.kit.datamanager.datacite.validate.plugin.PluginLoader;
+import edu.kit.datamanager.datacite.validate.metrics.ValidationMetrics;
+import edu.kit.datamanager.datacite.validate.plugin.PluginInfo;
+import edu.kit.datamanager.datacite.validate.plugin.PluginRegistry;
+import edu.kit.datamanager.datacite.validate.store.ResultStore;
 import org.datacite.schema.kernel_4.RelatedIdentifierType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 public class GenericValidator {
 
     static Logger LOG = LoggerFactory.getLogger(ValidatorInterface.class);
     private static final GenericValidator soleInstance = new GenericValidator();
 
-    private static final Map<RelatedIdentifierType, ValidatorInterface> validators;
+    /**
+     * The type name which lets the validator detect the type of an input by the syntax signatures of the validators.
+     */
+    public static final String AUTO = "auto";
+
+    /**
+     * The validators by type. It is replaced as a whole whenever the validators change.
+     */
+    private static volatile ValidatorIndex validators;
+
+    /**
+     * Concurrent validations of the same type and input share one validation.
+     */
+    private static final SingleFlight<FlightKey, ValidationResult> flights = new SingleFlight<>("validation");
+
+    /**
+     * Persistent results of complete validations or null. It is installed by the application if a database is configured.
+     */
+    private static volatile ResultStore resultStore;
+
+    private static final ValidationResult NO_VALIDATOR = ValidationResult.warning(ValidationResult.Stage.TYPE, "No matching validator found. Please check your input and plugins.");
+    private static final ValidationResult INVALID_TYPE = ValidationResult.error(ValidationResult.Stage.TYPE, "Invalid Type!");
+    private static final ValidationResult UNKNOWN_TYPE = ValidationResult.error(ValidationResult.Stage.TYPE, "Unknown type of input");
+
+    /**
+     * The validators which are part of the application. They take precedence over plugins of the same type.
+     */
+    private static final Map<RelatedIdentifierType, ValidatorInterface> builtInValidators = new HashMap<>();
+
+    /**
+     * Loads the plugins of the directory validator.plugins.directory (./plugins by default) in the background.
+     * Unless validator.plugins.watch is false, the directory is watched and changed plugins are used without a restart.
+     * Until the plugins are loaded, validations of types without a built-in validator wait for them.
+     */
+    private static final PluginRegistry plugins = new PluginRegistry(new File(ValidatorSettings.getString("validator.plugins.directory", "./plugins")),
+            ValidatorSettings.getDuration("validator.plugins.quietPeriod", Duration.ofSeconds(1)), GenericValidator::installPlugins);
 
     static {
-        Map<RelatedIdentifierType, ValidatorInterface> validators1;
-        try {
-            validators1 = PluginLoader.loadPlugins(new File("./plugins"));
-        } catch (Exception e) {
-            LOG.info("No plugins loaded.", e);
-            validators1 = new HashMap<>();
-        }
-        validators1.put(RelatedIdentifierType.HANDLE, new HandleNetValidator());
-        validators1.put(RelatedIdentifierType.DOI, new HandleNetValidator());
-        validators1.put(RelatedIdentifierType.URL, new URLValidator());
-        validators = validators1;
+        builtInValidators.put(RelatedIdentifierType.HANDLE, new HandleNetValidator());
+        builtInValidators.put(RelatedIdentifierType.DOI, new HandleNetValidator());
+        builtInValidators.put(RelatedIdentifierType.URL, new URLValidator());
+        validators = ValidatorIndex.of(builtInValidators);
+        plugins.start(ValidatorSettings.getBoolean("validator.plugins.watch", true));
+        ValidationMetrics.bindSingleFlight(flights);
     }
 
     private GenericValidator() {
@@ -59,27 +99,327 @@ public class GenericValidator {
         return soleInstance;
     }
 
+    /**
+     * Replaces all validators at once. Validations which are in progress keep using the former validators.
+     *
+     * @param newValidators the validators by type
+     */
+    static void replaceValidators(Map<RelatedIdentifierType, ValidatorInterface> newValidators) {
+        // otherwise the plugins would replace the validators as soon as they are loaded
+        plugins.ready().join();
+        validators = ValidatorIndex.of(newValidators);
+    }
+
+    /**
+     * Replaces the store of the results. Complete (RESOLVE) validations are answered from the store as long as their results are fresh,
+     * and their results are written to it.
+     *
+     * @param store the new store or null to validate every input again
+     */
+    public static void setResultStore(ResultStore store) {
+        resultStore = store;
+    }
+
+    /**
+     * @return the store of the results or null if no store is used.
+     */
+    public static ResultStore getResultStore() {
+        return resultStore;
+    }
+
+    /**
+     * Replaces the plugin validators. The built-in validators are kept.
+     *
+     * @param newPlugins the plugin validators by type
+     */
+    private static void installPlugins(Map<RelatedIdentifierType, ValidatorInterface> newPlugins) {
+        Map<RelatedIdentifierType, ValidatorInterface> newValidators = new HashMap<>(newPlugins);
+        newValidators.putAll(builtInValidators);
+        validators = ValidatorIndex.of(newValidators);
+    }
+
     public boolean isValid(String input, RelatedIdentifierType type) throws ValidationWarning, ValidationError {
-        if (validators.containsKey(type)) {
-            if (validators.get(type).isValid(input, type)) LOG.info("Valid input and valid input type!");
-            return true;
-        } else {
+        boolean valid = ValidationFutures.awaitResult(validate(input, type)).toBoolean();
+        LOG.info("Valid input and valid input type!");
+        return valid;
+    }
+
+    public boolean isValid(String input, String type) throws ValidationWarning, ValidationError {
+        return ValidationFutures.awaitResult(validate(input, type)).toBoolean();
+    }
+
+    /**
+     * This method validates an input without blocking the calling thread.
+     *
+     * @param input to validate
+     * @param type  of the input
+     * @return a future which completes with true or exceptionally with a ValidationError or ValidationWarning.
+     */
+    public CompletableFuture<Boolean> validateAsync(String input, RelatedIdentifierType type) {
+        return ValidationResult.toFuture(validate(input, type));
+    }
+
+    /**
+     * This method validates an input without blocking the calling thread.
+     *
+     * @param input to validate
+     * @param type  of the input as string (e.g. "DOI")
+     * @return a future which completes with true or exceptionally with a ValidationError or ValidationWarning.
+     */
+    public CompletableFuture<Boolean> validateAsync(String input, String type) {
+        return ValidationResult.toFuture(validate(input, type));
+    }
+
+    /**
+     * This method validates an input without blocking the calling thread and without creating exceptions for invalid inputs.
+     * If the same validation is already in progress, its result is used instead.
+     * The duration is recorded in the metric validator.validation.
+     *
+     * @param input to validate
+     * @param type  of the input
+     * @return a future which completes with the result of the validation.
+     */
+    public CompletableFuture<ValidationResult> validate(String input, RelatedIdentifierType type) {
+        return validate(input, type, ValidationLevel.RESOLVE);
+    }
+
+    /**
+     * This method validates an input up to a level without blocking the calling thread and without creating exceptions for invalid inputs.
+     * A SYNTAX validation never touches the network. The level which has been achieved is reported by the result.
+     * A RESOLVE validation is answered from the result store if it contains a fresh result of the input.
+     *
+     * @param input to validate
+     * @param type  of the input
+     * @param level up to which the input is validated
+     * @return a future which completes with the result of the validation.
+     */
+    public CompletableFuture<ValidationResult> validate(String input, RelatedIdentifierType type, ValidationLevel level) {
+        ValidatorInterface validator = validators.get(type);
+        if (validator == null && plugins.isWarming()) return plugins.ready().thenCompose(ready -> validate(input, type, level));
+        if (validator == null) {
             LOG.warn("No matching validator found. Please check your input and plugins.");
-            throw new ValidationWarning("No matching validator found. Please check your input and plugins.");
+            return CompletableFuture.completedFuture(NO_VALIDATOR);
         }
+        Runnable release = PluginRegistry.acquire(validator);
+        // the plugins have been reloaded since the validator was chosen
+        if (release == null) return validate(input, type, level);
+        String typeName = type.toString();
+        return pinned(release, () -> lookUpOr(typeName, input, level, () -> flights.execute(new FlightKey(type, input, level), () -> {
+            long start = System.nanoTime();
+            return remember(typeName, input, level, ValidationMetrics.validation(typeName, PluginRegistry.unwrap(validator).getClass(), level).record(start, validate(validator, input, type, level)));
+        })));
     }
 
-    public boolean isValid(String input, String type) throws ValidationWarning, ValidationError {
-        for (var entry : validators.entrySet()) {
-            if (entry.getKey().toString().equals(type)) {
-                if (entry.getValue().isValid(input)) return true;
+    /**
+     * This method validates an input without blocking the calling thread and without creating exceptions for invalid inputs.
+     *
+     * @param input to validate
+     * @param type  of the input as string (e.g. "DOI") or "auto" to detect the type
+     * @return a future which completes with the result of the validation.
+     */
+    public CompletableFuture<ValidationResult> validate(String input, String type) {
+        return validate(input, type, ValidationLevel.RESOLVE);
+    }
+
+    /**
+     * This method validates an input up to a level without blocking the calling thread and without creating exceptions for invalid inputs.
+     *
+     * @param input to validate
+     * @param type  of the input as string (e.g. "DOI") or "auto" to detect the type
+     * @param level up to which the input is validated
+     * @return a future which completes with the result of the validation.
+     */
+    public CompletableFuture<ValidationResult> validate(String input, String type, ValidationLevel level) {
+        if (isAuto(type)) return detection(input, level).thenApply(detection -> detection.result);
+        ValidatorIndex index = validators;
+        RelatedIdentifierType resolved = index.resolve(type);
+        if (resolved == null && plugins.isWarming()) return plugins.ready().thenCompose(ready -> validate(input, type, level));
+        if (resolved == null) return CompletableFuture.completedFuture(INVALID_TYPE);
+        return validate(index, resolved, input, level, true);
+    }
+
+    /**
+     * This method validates an input completely without asking the result store, e.g. to find out whether a stored result is still correct.
+     * The new result replaces the stored one.
+     *
+     * @param input to validate
+     * @param type  of the input as string (e.g. "DOI")
+     * @return a future which completes with the result of the validation.
+     */
+    public CompletableFuture<ValidationResult> revalidate(String input, String type) {
+        ValidatorIndex index = validators;
+        RelatedIdentifierType resolved = index.resolve(type);
+        if (resolved == null && plugins.isWarming()) return plugins.ready().thenCompose(ready -> revalidate(input, type));
+        if (resolved == null) return CompletableFuture.completedFuture(INVALID_TYPE);
+        return validate(index, resolved, input, ValidationLevel.RESOLVE, false);
+    }
+
+    /**
+     * Validates an input with the validator of a type, which validates it as its own supported type.
+     * If lookUp is false, the result store is not asked.
+     */
+    private static CompletableFuture<ValidationResult> validate(ValidatorIndex index, RelatedIdentifierType resolved, String input, ValidationLevel level, boolean lookUp) {
+        ValidatorInterface validator = index.get(resolved);
+        if (validator == null) return CompletableFuture.completedFuture(NO_VALIDATOR);
+        Runnable release = PluginRegistry.acquire(validator);
+        // the plugins have been reloaded since the index was read
+        if (release == null) return validate(validators, resolved, input, level, lookUp);
+        String typeName = resolved.toString();
+        Supplier<CompletableFuture<ValidationResult>> validation = () -> flights.execute(new FlightKey(typeName, input, level), () -> {
+            long start = System.nanoTime();
+            return remember(typeName, input, level, ValidationMetrics.validation(typeName, PluginRegistry.unwrap(validator).getClass(), level).record(start, validate(validator, input, null, level)));
+        });
+        return pinned(release, lookUp ? () -> lookUpOr(typeName, input, level, validation) : validation);
+    }
+
+    /**
+     * Runs a validation with a validator which has been pinned by PluginRegistry.acquire and releases it when the validation is finished.
+     * A plugin call which outlasts the validation (e.g. after a timeout) keeps its plugins open by itself.
+     */
+    private static CompletableFuture<ValidationResult> pinned(Runnable release, Supplier<CompletableFuture<ValidationResult>> validation) {
+        CompletableFuture<ValidationResult> result;
+        try {
+            result = validation.get();
+        } catch (RuntimeException | Error e) {
+            release.run();
+            throw e;
+        }
+        result.whenComplete((value, exception) -> release.run());
+        return result;
+    }
+
+    /**
+     * Answers a complete validation with the fresh result from the result store or else starts the validation.
+     * Only the memory of the store is read on the calling thread; the validation is started after the database has been read.
+     */
+    private static CompletableFuture<ValidationResult> lookUpOr(String typeName, String input, ValidationLevel level, Supplier<CompletableFuture<ValidationResult>> validation) {
+        ResultStore store = resultStore;
+        if (store == null || level != ValidationLevel.RESOLVE) return validation.get();
+        return store.lookUp(typeName, input).thenCompose(stored -> stored != null ? CompletableFuture.completedFuture(stored) : validation.get());
+    }
+
+    /**
+     * Writes the result of a complete validation to the result store when it is available.
+     */
+    private static CompletableFuture<ValidationResult> remember(String typeName, String input, ValidationLevel level, CompletableFuture<ValidationResult> validation) {
+        ResultStore store = resultStore;
+        if (store == null || level != ValidationLevel.RESOLVE) return validation;
+        validation.thenAccept(result -> store.put(typeName, input, result));
+        return validation;
+    }
+
+    /**
+     * Starts a validation. A validator which throws instead of returning a future produces a warning.
+     * If type is null, the type of the validator is used.
+     */
+    private static CompletableFuture<ValidationResult> validate(ValidatorInterface validator, String input, RelatedIdentifierType type, ValidationLevel level) {
+        try {
+            return validator.validate(input, type == null ? validator.supportedType() : type, level);
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(ValidationResult.of(e));
+        }
+    }
+
+    /**
+     * @param type name of a type
+     * @return true if the type name is "auto" (case-insensitive).
+     */
+    public static boolean isAuto(String type) {
+        return AUTO.equalsIgnoreCase(type);
+    }
+
+    /**
+     * This method detects the possible types of an input by the syntax signatures of the validators.
+     * Nothing is sent over the network.
+     *
+     * @param input to classify
+     * @return an unmodifiable list of the possible types in the order of the enum. The list is empty if no signature matches.
+     */
+    public List<RelatedIdentifierType> detect(String input) {
+        return validators.detect(input);
+    }
+
+    /**
+     * This method detects the possible types of an input and validates it with the validators of these types only.
+     * All candidates are validated concurrently. The result is the first candidate in the order of the enum which is valid,
+     * so a DOI is reported as DOI even though it is a valid handle, too.
+     * If no candidate is valid, the future fails with the first ValidationWarning (the input might be valid) or else with the first ValidationError.
+     *
+     * @param input to validate
+     * @return a future which completes with the detected type or exceptionally with a ValidationError or ValidationWarning.
+     */
+    public CompletableFuture<RelatedIdentifierType> detectAndValidate(String input) {
+        return detection(input, ValidationLevel.RESOLVE).thenApply(detection -> {
+            if (!detection.result.isValid()) throw ValidationFutures.wrap(detection.result.toException());
+            return detection.type;
+        });
+    }
+
+    /**
+     * This method detects the possible types of an input and validates it up to a level with the validators of these types only.
+     * The candidates are chosen like in detectAndValidate.
+     *
+     * @param input to validate
+     * @param level up to which the candidates are validated
+     * @return a future which completes with the detected type and the result of the validation of the input as this type.
+     */
+    public CompletableFuture<Detection> detectAndValidate(String input, ValidationLevel level) {
+        return detection(input, level);
+    }
+
+    private static CompletableFuture<Detection> detection(String input, ValidationLevel level) {
+        ValidatorIndex index = validators;
+        List<RelatedIdentifierType> candidates = index.detect(input);
+        if (candidates.isEmpty() && plugins.isWarming()) return plugins.ready().thenCompose(ready -> detection(input, level));
+        if (candidates.isEmpty()) return CompletableFuture.completedFuture(new Detection(null, UNKNOWN_TYPE));
+        List<CompletableFuture<ValidationResult>> validations = new ArrayList<>(candidates.size());
+        for (RelatedIdentifierType candidate : candidates) validations.add(validate(index, candidate, input, level, true));
+        CompletableFuture<Detection> result = new CompletableFuture<>();
+        for (CompletableFuture<ValidationResult> validation : validations)
+            validation.whenComplete((valid, exception) -> completeDetection(result, candidates, validations));
+        return result;
+    }
+
+    /**
+     * Completes the detection as soon as a candidate is valid and all candidates in front of it are invalid.
+     */
+    private static void completeDetection(CompletableFuture<Detection> detection, List<RelatedIdentifierType> candidates, List<CompletableFuture<ValidationResult>> validations) {
+        ValidationResult warning = null;
+        ValidationResult error = null;
+        for (int i = 0; i < validations.size(); i++) {
+            CompletableFuture<ValidationResult> validation = validations.get(i);
+            if (!validation.isDone()) return;
+            ValidationResult result = validation.handle((valid, exception) -> exception == null ? valid : ValidationResult.of(exception)).join();
+            if (result.isValid()) {
+                detection.complete(new Detection(candidates.get(i), result));
+                return;
             }
+            if (result.getStatus() == ValidationResult.Status.ERROR) {
+                if (error == null) error = result;
+            } else if (warning == null) warning = result;
         }
-        throw new ValidationError("Invalid Type!");
+        detection.complete(new Detection(null, warning != null ? warning : error));
+    }
+
+    /**
+     * @return an unmodifiable view of the validators by type.
+     */
+    public Map<RelatedIdentifierType, ValidatorInterface> getValidators() {
+        return validators.asMap();
+    }
+
+    /**
+     * @return true until the plugins have been loaded for the first time. Until then, only the built-in validators are available.
+     */
+    public boolean isWarmingUp() {
+        return plugins.isWarming();
     }
 
-    public Map getValidators() {
-        return validators;
+    /**
+     * @return an unmodifiable list of the loaded plugins with the time it took to load them.
+     */
+    public List<PluginInfo> getPluginInfos() {
+        return plugins.getPluginInfos();
     }
 
     public List<String> getListOfAvailableValidators() {
@@ -91,9 +431,74 @@ public class GenericValidator {
         return result;
     }
 
+    /**
+     * Prints the supported types. With the arguments "bulk --input ... --output ...", all records of a file are validated (see BulkCommand).
+     *
+     * @param args of the command line
+     */
     public static void main(String[] args) {
-        for (var entry : validators.entrySet()) {
+        plugins.ready().join();
+        if (args.length > 0 && BulkCommand.NAME.equals(args[0])) {
+            System.exit(BulkCommand.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        for (var entry : validators.asMap().entrySet()) {
             System.out.println(entry.getValue().supportedType().toString());
         }
     }
+
+    /**
+     * The result of a validation with type detection and the detected type (null if the input is not valid).
+     */
+    public static final class Detection {
+        private final RelatedIdentifierType type;
+        private final ValidationResult result;
+
+        Detection(RelatedIdentifierType type, ValidationResult result) {
+            this.type = type;
+            this.result = result;
+        }
+
+        /**
+         * @return the first type in the order of the enum for which the input is valid or null if it is valid for none.
+         */
+        public RelatedIdentifierType getType() {
+            return type;
+        }
+
+        /**
+         * @return the result of the validation as the detected type, or the first warning or error if the input is valid for no type.
+         */
+        public ValidationResult getResult() {
+            return result;
+        }
+    }
+
+    /**
+     * Key of a validation in flight. The type is either a RelatedIdentifierType or the canonical name of a type,
+     * because both overloads of validate call the validators differently.
+     */
+    private static final class FlightKey {
+        private final Object type;
+        private final String input;
+        private final ValidationLevel level;
+
+        FlightKey(Object type, String input, ValidationLevel level) {
+            this.type = type;
+            this.input = input;
+            this.level = level;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof FlightKey)) return false;
+            FlightKey that = (FlightKey) o;
+            return type.equals(that.type) && Objects.equals(input, that.input) && level == that.level;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * type.hashCode() + Objects.hashCode(input)) + level.hashCode();
+        }
+    }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate;
+
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * This class limits the number of asynchronous operations in flight without blocking the calling thread.
+ * An operation which gets no permit is queued and started as soon as an earlier operation completes, in the order of submission.
+ * At most maxQueued operations wait in the queue; further operations fail immediately with a ValidationWarning,
+ * and so does a queued operation which has not been started within the queue timeout.
+ *
+ * @author maximilianiKIT
+ */
+final class InFlightLimit {
+
+    static final String REJECTED = "Too many validations in progress. Please try again later.";
+
+    private final int permits;
+    private final int maxQueued;
+    private final Duration queueTimeout;
+    private final ArrayDeque<Queued<?>> queue = new ArrayDeque<>();
+    private final AtomicInteger draining = new AtomicInteger();
+    private int running;
+
+    /**
+     * @param permits      maximum number of operations in flight
+     * @param maxQueued    maximum number of operations waiting for a permit
+     * @param queueTimeout maximum time an operation waits for a permit or null to wait without limit
+     */
+    InFlightLimit(int permits, int maxQueued, Duration queueTimeout) {
+        this.permits = Math.max(1, permits);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.queueTimeout = queueTimeout;
+    }
+
+    /**
+     * Starts an operation if a permit is available, otherwise queues it. The permit is released when the future of the operation completes.
+     *
+     * @param operation which starts the operation
+     * @return the future of the operation or a future which fails with a ValidationWarning if the queue is full or the operation waited too long.
+     */
+    <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> operation) {
+        Queued<T> queued;
+        synchronized (this) {
+            if (running < permits && queue.isEmpty()) {
+                running++;
+                queued = null;
+            } else if (queue.size() >= maxQueued) {
+                return CompletableFuture.failedFuture(new ValidationWarning(REJECTED));
+            } else {
+                queued = new Queued<>(operation);
+                queue.add(queued);
+            }
+        }
+        if (queued == null) return run(operation);
+        if (queueTimeout != null)
+            CompletableFuture.delayedExecutor(queueTimeout.toNanos(), TimeUnit.NANOSECONDS).execute(() -> expire(queued));
+        // a permit may have been released between the check and the enqueueing
+        drain();
+        return queued.result;
+    }
+
+    /**
+     * @return the number of operations which can be started before the limit is reached.
+     */
+    synchronized int availablePermits() {
+        return permits - running;
+    }
+
+    /**
+     * @return the number of operations which wait for a permit.
+     */
+    synchronized int queued() {
+        return queue.size();
+    }
+
+    private <T> CompletableFuture<T> run(Supplier<CompletableFuture<T>> operation) {
+        CompletableFuture<T> future;
+        try {
+            future = operation.get();
+        } catch (RuntimeException e) {
+            release();
+            return CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((result, exception) -> release());
+        return future;
+    }
+
+    private void release() {
+        synchronized (this) {
+            running--;
+        }
+        drain();
+    }
+
+    private void expire(Queued<?> queued) {
+        boolean removed;
+        synchronized (this) {
+            removed = queue.remove(queued);
+        }
+        if (removed) queued.result.completeExceptionally(new ValidationWarning(REJECTED));
+    }
+
+    /**
+     * Starts queued operations while permits are available. Only one thread drains at a time, and an operation which completes
+     * while it is started only marks that another round is needed, so long queues of immediately completing operations don't nest calls.
+     */
+    private void drain() {
+        if (draining.getAndIncrement() != 0) return;
+        do {
+            while (true) {
+                Queued<?> next;
+                synchronized (this) {
+                    if (running >= permits || queue.isEmpty()) break;
+                    next = queue.poll();
+                    if (next.result.isDone()) continue;
+                    running++;
+                }
+                next.start();
+            }
+        } while (draining.decrementAndGet() != 0);
+    }
+
+    private final class Queued<T> {
+        private final Supplier<CompletableFuture<T>> operation;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private Queued(Supplier<CompletableFuture<T>> operation) {
+            this.operation = operation;
+        }
+
+        private void start() {
+            run(operation).whenComplete((value, exception) -> {
+                if (exception == null) result.complete(value);
+                else result.completeExceptionally(exception);
+            });
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate;
+
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * This class contains helper methods for the asynchronous validation API.
+ * A validation future completes with true or exceptionally with a ValidationError or ValidationWarning.
+ *
+ * @author maximilianiKIT
+ */
+public final class ValidationFutures {
+
+    /**
+     * Runs blocking validations of plugins which don't implement validateAsync.
+     * The number of threads is limited by the system property validator.async.blockingThreads.
+     */
+    private static final ThreadPoolExecutor blockingExecutor = createBlockingExecutor(Math.max(1, ValidatorSettings.getInt("validator.async.blockingThreads", 64)));
+
+    /**
+     * Collects the blocking validations which are submitted while start runs a call on the current thread.
+     */
+    private static final ThreadLocal<List<CompletableFuture<Void>>> startedCalls = new ThreadLocal<>();
+
+    private ValidationFutures() {
+        // only static methods
+    }
+
+    /**
+     * A validation which may throw the checked validation exceptions.
+     */
+    @FunctionalInterface
+    public interface ValidationCall {
+        boolean call() throws ValidationError, ValidationWarning;
+    }
+
+    /**
+     * Runs a blocking validation on the executor for blocking validations.
+     * In the execution mode VIRTUAL, every blocking validation gets its own virtual thread.
+     * If the future is cancelled, the thread which runs the validation is interrupted.
+     *
+     * @param call the blocking validation
+     * @return a future which completes with the result of the call.
+     */
+    public static CompletableFuture<Boolean> supplyBlocking(ValidationCall call) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        BlockingCall blockingCall = new BlockingCall(future, call);
+        List<CompletableFuture<Void>> started = startedCalls.get();
+        if (started != null) started.add(blockingCall.returned);
+        try {
+            blockingExecutor().execute(blockingCall);
+            future.whenComplete((result, exception) -> {
+                if (future.isCancelled()) blockingCall.interrupt();
+            });
+        } catch (RuntimeException e) {
+            blockingCall.returned.complete(null);
+            future.completeExceptionally(new ValidationWarning("Validation rejected", e));
+        }
+        return future;
+    }
+
+    /**
+     * Starts an asynchronous call and tells when it has really returned. A blocking validation which ignores the interrupt keeps its thread
+     * after its future has been cancelled, so the future of the call may complete long before the validation returns.
+     *
+     * @param call starts the asynchronous call on the current thread
+     * @return the future of the call and a future which completes when the future of the call is done
+     * and all blocking validations which were submitted by supplyBlocking while the call was started have returned.
+     */
+    public static <T> Started<T> start(Supplier<CompletableFuture<T>> call) {
+        List<CompletableFuture<Void>> outer = startedCalls.get();
+        List<CompletableFuture<Void>> started = new ArrayList<>();
+        startedCalls.set(started);
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } finally {
+            if (outer == null) {
+                startedCalls.remove();
+            } else {
+                // a call started inside another call returns before the outer call does
+                outer.addAll(started);
+                startedCalls.set(outer);
+            }
+        }
+        started.add(future.handle((result, exception) -> null));
+        return new Started<>(future, CompletableFuture.allOf(started.toArray(new CompletableFuture[0])));
+    }
+
+    /**
+     * Runs a validation on the calling thread.
+     *
+     * @param call the validation
+     * @return a completed future
+     */
+    public static CompletableFuture<Boolean> supplyNow(ValidationCall call) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        complete(future, call);
+        return future;
+    }
+
+    /**
+     * @param exception the reason of the failure
+     * @return a future which is completed exceptionally.
+     */
+    public static CompletableFuture<Boolean> failed(Throwable exception) {
+        return CompletableFuture.failedFuture(exception);
+    }
+
+    /**
+     * Waits for a validation future and throws its validation exceptions like the blocking API.
+     *
+     * @param future to wait for
+     * @return the result of the future
+     * @throws ValidationError   if the future completed with a ValidationError.
+     * @throws ValidationWarning if the future completed with a ValidationWarning or any other exception.
+     */
+    public static boolean await(CompletableFuture<Boolean> future) throws ValidationError, ValidationWarning {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new ValidationWarning("Validation interrupted", e);
+        } catch (ExecutionException e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Waits for the future of a result. Unlike await, this method never throws.
+     *
+     * @param future to wait for
+     * @return the result of the future. If the future failed or the thread was interrupted, the failure is converted into a result.
+     */
+    public static ValidationResult awaitResult(CompletableFuture<ValidationResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return ValidationResult.warning(ValidationResult.Stage.EXECUTION, "Validation interrupted", e);
+        } catch (ExecutionException e) {
+            return ValidationResult.of(e);
+        }
+    }
+
+    /**
+     * Converts the future of the asynchronous API into a future of a result.
+     * Cancelling the returned future cancels the original future, too.
+     *
+     * @param future which completes with true or exceptionally with a ValidationError or ValidationWarning
+     * @return a future which completes with the corresponding result.
+     */
+    public static CompletableFuture<ValidationResult> toResult(CompletableFuture<Boolean> future) {
+        CompletableFuture<ValidationResult> result = future.handle(ValidationResult::of);
+        result.whenComplete((value, exception) -> {
+            if (result.isCancelled()) future.cancel(true);
+        });
+        return result;
+    }
+
+    /**
+     * Removes the CompletionException and ExecutionException wrappers of an exception.
+     *
+     * @param exception which might be a wrapper
+     * @return the original exception
+     */
+    public static Throwable unwrap(Throwable exception) {
+        Throwable result = exception;
+        while ((result instanceof CompletionException || result instanceof ExecutionException) && result.getCause() != null)
+            result = result.getCause();
+        return result;
+    }
+
+    /**
+     * Wraps a validation exception, so that it can be thrown inside of a CompletableFuture stage.
+     *
+     * @param exception to wrap
+     * @return the wrapped exception
+     */
+    public static CompletionException wrap(Throwable exception) {
+        if (exception instanceof CompletionException) return (CompletionException) exception;
+        return new CompletionException(exception);
+    }
+
+    private static ValidationWarning rethrow(Throwable exception) throws ValidationError {
+        Throwable cause = unwrap(exception);
+        if (cause instanceof ValidationError) throw (ValidationError) cause;
+        if (cause instanceof ValidationWarning) return (ValidationWarning) cause;
+        return new ValidationWarning(String.valueOf(cause.getMessage()), cause);
+    }
+
+    private static void complete(CompletableFuture<Boolean> future, ValidationCall call) {
+        try {
+            future.complete(call.call());
+        } catch (ValidationError | ValidationWarning | RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * A call started by start: its future and a future which completes when the call has really returned.
+     */
+    public static final class Started<T> {
+        private final CompletableFuture<T> future;
+        private final CompletableFuture<Void> returned;
+
+        private Started(CompletableFuture<T> future, CompletableFuture<Void> returned) {
+            this.future = future;
+            this.returned = returned;
+        }
+
+        public CompletableFuture<T> future() {
+            return future;
+        }
+
+        public CompletableFuture<Void> returned() {
+            return returned;
+        }
+    }
+
+    /**
+     * A validation on the executor for blocking validations, which can be interrupted while it runs.
+     */
+    private static final class BlockingCall implements Runnable {
+        private final CompletableFuture<Boolean> future;
+        private final ValidationCall call;
+        /**
+         * Completes when the validation has returned or won't be run anymore, which may be after future was cancelled.
+         */
+        private final CompletableFuture<Void> returned = new CompletableFuture<>();
+        private Thread thread;
+
+        BlockingCall(CompletableFuture<Boolean> future, ValidationCall call) {
+            this.future = future;
+            this.call = call;
+        }
+
+        @Override
+        public void run() {
+            try {
+                synchronized (this) {
+                    if (future.isDone()) return;
+                    thread = Thread.currentThread();
+                }
+                try {
+                    complete(future, call);
+                } finally {
+                    synchronized (this) {
+                        thread = null;
+                    }
+                    // an interrupt which arrived after the call must not affect the next task of this thread
+                    Thread.interrupted();
+                }
+            } finally {
+                returned.complete(null);
+            }
+        }
+
+        synchronized void interrupt() {
+            if (thread != null) thread.interrupt();
+        }
+    }
+
+    /**
+     * @return the executor which runs blocking validations.
+     */
+    public static Executor blockingExecutor() {
+        Executor virtual = Execution.virtualExecutor();
+        return virtual != null ? virtual : blockingExecutor;
+    }
+
+    private static ThreadPoolExecutor createBlockingExecutor(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "blocking-validation-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
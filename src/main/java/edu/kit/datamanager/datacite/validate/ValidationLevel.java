@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate;
+
+import java.util.Locale;
+
+/**
+ * This enum selects how deep an input is validated. Each level includes the checks of the levels before it.
+ * A validator never checks more than the requested level, so a SYNTAX validation never touches the network.
+ * Validators which don't distinguish a level validate up to the level below it; the level which has actually been achieved is reported by ValidationResult.getLevel().
+ *
+ * @author maximilianiKIT
+ */
+public enum ValidationLevel {
+    /**
+     * Offline check of the syntax of the input.
+     */
+    SYNTAX,
+    /**
+     * Additionally checks that the prefix (e.g. of a handle or DOI) is registered. Types without a prefix are only checked for their syntax.
+     */
+    PREFIX,
+    /**
+     * Additionally resolves the input on a remote server. This is the default.
+     */
+    RESOLVE;
+
+    /**
+     * @param name of a level (case-insensitive) or null
+     * @return the level, RESOLVE if the name is null or blank, or null if there is no level with this name.
+     */
+    public static ValidationLevel of(String name) {
+        if (name == null || name.isBlank()) return RESOLVE;
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param level to compare with
+     * @return true if this level includes the checks of the given level.
+     */
+    public boolean includes(ValidationLevel level) {
+        return compareTo(level) >= 0;
+    }
+}
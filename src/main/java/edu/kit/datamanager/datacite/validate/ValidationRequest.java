@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * This class describes one identifier which should be validated: its type (e.g. "DOI"), the input and optionally the validation level.
+ */
+public class ValidationRequest implements Serializable {
+
+    private String type;
+    private String input;
+    private ValidationLevel level;
+
+    public ValidationRequest() {
+    }
+
+    public ValidationRequest(String type, String input) {
+        this.type = type;
+        this.input = input;
+    }
+
+    public ValidationRequest(String type, String input, ValidationLevel level) {
+        this.type = type;
+        this.input = input;
+        this.level = level;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getInput() {
+        return input;
+    }
+
+    public void setInput(String input) {
+        this.input = input;
+    }
+
+    /**
+     * @return the level up to which the input is validated or null for the default (RESOLVE).
+     */
+    public ValidationLevel getLevel() {
+        return level;
+    }
+
+    public void setLevel(ValidationLevel level) {
+        this.level = level;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ValidationRequest)) return false;
+        ValidationRequest that = (ValidationRequest) o;
+        return Objects.equals(type, that.type) && Objects.equals(input, that.input) && level == that.level;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, input, level);
+    }
+
+    @Override
+    public String toString() {
+        return "ValidationRequest{" +
+                "type='" + type + '\'' +
+                ", input='" + input + '\'' +
+                ", level=" + level +
+                '}';
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate;
+
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This class is the result of a validation. It is an alternative to the ValidationError and ValidationWarning of isValid:
+ * validators can report an invalid input without creating an exception, which is much cheaper if most inputs of a bulk import are rejected.
+ * <p>
+ * A result has a status, a message for the user, the stage of the validation which produced it and optionally the cause (e.g. an IOException).
+ * Results are immutable, so results without a cause can be created once and shared.
+ * If a caller of the legacy API needs an exception, toException creates one without a stack trace.
+ *
+ * @author maximilianiKIT
+ */
+public final class ValidationResult {
+
+    /**
+     * The status of a result. It corresponds to returning true, throwing a ValidationWarning and throwing a ValidationError.
+     */
+    public enum Status {
+        VALID,
+        WARNING,
+        ERROR
+    }
+
+    /**
+     * The stage of a validation which produced a result.
+     */
+    public enum Stage {
+        /**
+         * Selection of the validator (e.g. unknown type).
+         */
+        TYPE,
+        /**
+         * Offline check of the syntax of the input.
+         */
+        SYNTAX,
+        /**
+         * Check of the handle prefix.
+         */
+        PREFIX,
+        /**
+         * Resolution of the input on a remote server.
+         */
+        RESOLVE,
+        /**
+         * Scheduling of the validation (e.g. rejected or interrupted).
+         */
+        EXECUTION
+    }
+
+    private static final ValidationResult VALID = new ValidationResult(Status.VALID, "Valid Input!", null, null);
+    private static final ValidationResult VALID_SYNTAX = new ValidationResult(Status.VALID, "Valid syntax. The input has not been resolved.", Stage.SYNTAX, null);
+    private static final ValidationResult VALID_PREFIX = new ValidationResult(Status.VALID, "Valid prefix. The input has not been resolved.", Stage.PREFIX, null);
+
+    private final Status status;
+    private final String message;
+    private final Stage stage;
+    private final Throwable cause;
+
+    private ValidationResult(Status status, String message, Stage stage, Throwable cause) {
+        this.status = status;
+        this.message = message;
+        this.stage = stage;
+        this.cause = cause;
+    }
+
+    /**
+     * @return the shared result of a valid input.
+     */
+    public static ValidationResult valid() {
+        return VALID;
+    }
+
+    /**
+     * @param level which has been achieved
+     * @return the shared result of an input which is valid up to the given level.
+     */
+    public static ValidationResult valid(ValidationLevel level) {
+        if (level == ValidationLevel.SYNTAX) return VALID_SYNTAX;
+        if (level == ValidationLevel.PREFIX) return VALID_PREFIX;
+        return VALID;
+    }
+
+    /**
+     * @param stage   which was the last stage of the validation (e.g. SYNTAX if the input could not be resolved)
+     * @param message for the user
+     * @return a valid result which tells the user that the validation was incomplete.
+     */
+    public static ValidationResult valid(Stage stage, String message) {
+        return new ValidationResult(Status.VALID, message, stage, null);
+    }
+
+    /**
+     * @param stage   which detected the error
+     * @param message for the user
+     * @return a result which corresponds to a ValidationError: the input is invalid and definitively unusable.
+     */
+    public static ValidationResult error(Stage stage, String message) {
+        return new ValidationResult(Status.ERROR, message, stage, null);
+    }
+
+    /**
+     * @param stage   which detected the error
+     * @param message for the user
+     * @param cause   of the error
+     * @return a result which corresponds to a ValidationError: the input is invalid and definitively unusable.
+     */
+    public static ValidationResult error(Stage stage, String message, Throwable cause) {
+        return new ValidationResult(Status.ERROR, message, stage, cause);
+    }
+
+    /**
+     * @param stage   which could not finish the validation
+     * @param message for the user
+     * @return a result which corresponds to a ValidationWarning: there is a chance that the input is valid.
+     */
+    public static ValidationResult warning(Stage stage, String message) {
+        return new ValidationResult(Status.WARNING, message, stage, null);
+    }
+
+    /**
+     * @param stage   which could not finish the validation
+     * @param message for the user
+     * @param cause   of the warning (e.g. an IOException)
+     * @return a result which corresponds to a ValidationWarning: there is a chance that the input is valid.
+     */
+    public static ValidationResult warning(Stage stage, String message, Throwable cause) {
+        return new ValidationResult(Status.WARNING, message, stage, cause);
+    }
+
+    /**
+     * Converts the outcome of the legacy API into a result. The stage of the result is unknown (null).
+     *
+     * @param valid     the return value of isValid or the value of a validateAsync future
+     * @param exception the exception of isValid or validateAsync or null
+     * @return VALID if valid is true, an ERROR for false or a ValidationError and a WARNING for every other exception.
+     */
+    public static ValidationResult of(Boolean valid, Throwable exception) {
+        if (exception == null) return Boolean.TRUE.equals(valid) ? VALID : error(null, "Invalid input");
+        return of(exception);
+    }
+
+    /**
+     * @param exception of the legacy API
+     * @return an ERROR for a ValidationError and a WARNING for every other exception.
+     */
+    public static ValidationResult of(Throwable exception) {
+        Throwable cause = ValidationFutures.unwrap(exception);
+        if (cause instanceof ValidationError) return error(null, cause.getMessage(), cause.getCause());
+        if (cause instanceof ValidationWarning) return warning(null, cause.getMessage(), cause.getCause());
+        return warning(null, String.valueOf(cause.getMessage()), cause);
+    }
+
+    /**
+     * Converts a future of a result into a future of the legacy API.
+     *
+     * @param result future of the result
+     * @return a future which completes with true or exceptionally with a ValidationError or ValidationWarning.
+     */
+    public static CompletableFuture<Boolean> toFuture(CompletableFuture<ValidationResult> result) {
+        return result.thenApply(ValidationResult::toBooleanUnchecked);
+    }
+
+    private static Boolean toBooleanUnchecked(ValidationResult result) {
+        if (result.isValid()) return Boolean.TRUE;
+        throw ValidationFutures.wrap(result.toException());
+    }
+
+    /**
+     * @return true if the status is VALID.
+     */
+    public boolean isValid() {
+        return status == Status.VALID;
+    }
+
+    /**
+     * Converts this result into the outcome of the legacy isValid method.
+     *
+     * @return true if the input is valid
+     * @throws ValidationError   if the status is ERROR.
+     * @throws ValidationWarning if the status is WARNING.
+     */
+    public boolean toBoolean() throws ValidationError, ValidationWarning {
+        if (status == Status.ERROR) throw (ValidationError) toException();
+        if (status == Status.WARNING) throw (ValidationWarning) toException();
+        return true;
+    }
+
+    /**
+     * @return a new ValidationError or ValidationWarning without stack trace, or null if the input is valid.
+     */
+    public Exception toException() {
+        if (status == Status.ERROR) return new ValidationError(message, cause, false);
+        if (status == Status.WARNING) return new ValidationWarning(message, cause, false);
+        return null;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return the stage which produced this result or null if it is unknown (e.g. a result of a plugin which only implements isValid).
+     */
+    public Stage getStage() {
+        return stage;
+    }
+
+    /**
+     * The level of a valid result is derived from its stage: a valid result of the stage SYNTAX or PREFIX has only been checked up to that level,
+     * a valid result without a stage (e.g. of the legacy API) has been validated completely.
+     *
+     * @return the level which has been achieved or null if the input is not valid.
+     */
+    public ValidationLevel getLevel() {
+        if (status != Status.VALID) return null;
+        if (stage == Stage.SYNTAX) return ValidationLevel.SYNTAX;
+        if (stage == Stage.PREFIX) return ValidationLevel.PREFIX;
+        return ValidationLevel.RESOLVE;
+    }
+
+    /**
+     * @return the cause of an error or warning or null.
+     */
+    public Throwable getCause() {
+        return cause;
+    }
+
+    @Override
+    public String toString() {
+        return "ValidationResult{" +
+                "status=" + status +
+                ", message='" + message + '\'' +
+                ", stage=" + stage +
+                ", cause=" + cause +
+                '}';
+    }
+}
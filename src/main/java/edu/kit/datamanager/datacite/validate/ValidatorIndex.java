@@ -0,0 +1,164 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate;
+
+import edu.kit.datamanager.datacite.validate.detect.SyntaxAutomaton;
+import org.datacite.schema.kernel_4.RelatedIdentifierType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * This class is an immutable index of the validators which is used to dispatch a validation to its validator.
+ * It is built once whenever the validators change and then replaced as a whole, so readers never see a partially built index.
+ * <p>
+ * Type names are resolved with a single lookup in a table which contains the name and the DataCite value of every type
+ * (e.g. "AR_XIV" and "arXiv"). Only names which don't match exactly are looked up case-insensitively.
+ * None of the lookups allocates anything.
+ * <p>
+ * The syntax signatures of all validators are compiled into one SyntaxAutomaton, which detects the possible types of an input in a single pass.
+ * Each signature is also compiled into a Pattern once, which checks the syntax of an input of a known type (see signaturePattern).
+ *
+ * @author maximilianiKIT
+ */
+public final class ValidatorIndex {
+
+    static Logger LOG = LoggerFactory.getLogger(ValidatorIndex.class);
+
+    private final Map<RelatedIdentifierType, ValidatorInterface> validators;
+    private final Map<String, RelatedIdentifierType> names;
+    private final TreeMap<String, RelatedIdentifierType> namesIgnoreCase;
+    private final SyntaxAutomaton<RelatedIdentifierType> signatures;
+
+    /**
+     * The compiled syntax signatures by their regular expression. Validators return constant signatures, so the cache stays small;
+     * beyond MAX_PATTERNS signatures are compiled without caching.
+     */
+    private static final ConcurrentHashMap<String, Pattern> PATTERNS = new ConcurrentHashMap<>();
+    private static final int MAX_PATTERNS = 256;
+
+    private ValidatorIndex(Map<RelatedIdentifierType, ValidatorInterface> validators) {
+        EnumMap<RelatedIdentifierType, ValidatorInterface> byType = new EnumMap<>(RelatedIdentifierType.class);
+        byType.putAll(validators);
+        Map<String, RelatedIdentifierType> byName = new HashMap<>();
+        TreeMap<String, RelatedIdentifierType> byNameIgnoreCase = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (RelatedIdentifierType type : byType.keySet()) {
+            for (String name : new String[]{type.toString(), type.name(), type.value()}) {
+                byName.putIfAbsent(name, type);
+                byNameIgnoreCase.putIfAbsent(name, type);
+            }
+        }
+        this.validators = Collections.unmodifiableMap(byType);
+        this.names = byName;
+        this.namesIgnoreCase = byNameIgnoreCase;
+        this.signatures = compileSignatures(byType);
+    }
+
+    /**
+     * Compiles the syntax signatures of all validators. A signature which can't be compiled is skipped,
+     * so a faulty plugin only loses the detection of its own type.
+     */
+    private static SyntaxAutomaton<RelatedIdentifierType> compileSignatures(Map<RelatedIdentifierType, ValidatorInterface> validators) {
+        SyntaxAutomaton.Builder<RelatedIdentifierType> builder = SyntaxAutomaton.builder();
+        for (Map.Entry<RelatedIdentifierType, ValidatorInterface> entry : validators.entrySet()) {
+            try {
+                String signature = entry.getValue().syntaxSignature(entry.getKey());
+                if (signature == null) continue;
+                builder.add(entry.getKey(), signature);
+                signaturePattern(signature);
+            } catch (RuntimeException e) {
+                LOG.warn("Ignoring the syntax signature of {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+        try {
+            return builder.build();
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Type detection disabled: {}", e.getMessage());
+            return SyntaxAutomaton.<RelatedIdentifierType>builder().build();
+        }
+    }
+
+    /**
+     * @param signature a syntax signature (see ValidatorInterface.syntaxSignature)
+     * @return the compiled signature, which is compiled only once.
+     * @throws java.util.regex.PatternSyntaxException if the signature is no regular expression.
+     */
+    static Pattern signaturePattern(String signature) {
+        Pattern pattern = PATTERNS.get(signature);
+        if (pattern != null) return pattern;
+        pattern = Pattern.compile(signature);
+        if (PATTERNS.size() < MAX_PATTERNS) PATTERNS.putIfAbsent(signature, pattern);
+        return pattern;
+    }
+
+    /**
+     * @param validators the validators by type
+     * @return a new index which contains a copy of the validators
+     */
+    public static ValidatorIndex of(Map<RelatedIdentifierType, ValidatorInterface> validators) {
+        return new ValidatorIndex(validators);
+    }
+
+    /**
+     * @param type of the input
+     * @return the validator of the type or null if there is none.
+     */
+    public ValidatorInterface get(RelatedIdentifierType type) {
+        return type == null ? null : validators.get(type);
+    }
+
+    /**
+     * @param name of the type (e.g. "DOI", "doi" or "arXiv")
+     * @return the type with this name or null if no validator supports a type with this name.
+     */
+    public RelatedIdentifierType resolve(String name) {
+        if (name == null) return null;
+        RelatedIdentifierType type = names.get(name);
+        return type != null ? type : namesIgnoreCase.get(name);
+    }
+
+    /**
+     * Detects the types of an input by the syntax signatures of the validators.
+     *
+     * @param input to classify
+     * @return an unmodifiable list of the types whose signature matches the input in the order of the enum.
+     * Types whose validator has no signature are never returned.
+     */
+    public List<RelatedIdentifierType> detect(String input) {
+        return signatures.classify(input);
+    }
+
+    /**
+     * @return the types which can be detected in the order of the enum.
+     */
+    public List<RelatedIdentifierType> getDetectableTypes() {
+        return signatures.getLabels();
+    }
+
+    /**
+     * @return an unmodifiable view of the validators by type in the order of the enum.
+     */
+    public Map<RelatedIdentifierType, ValidatorInterface> asMap() {
+        return validators;
+    }
+}
@@ -21,6 +21,8 @@ import org.datacite.schema.kernel_4.RelatedIdentifierType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * This interface provides a method which is necessary to validate things.
  */
@@ -60,4 +62,92 @@ public interface ValidatorInterface {
      */
     boolean isValid(String input, RelatedIdentifierType type) throws ValidationError, ValidationWarning;
 
+    /**
+     * This method is a shortcut for validateAsync.
+     * It doesn't require the type parameter and sets the type of the implementation instead.
+     *
+     * @param input to validate
+     * @return a future which completes with true or exceptionally with a ValidationError or ValidationWarning.
+     */
+    default CompletableFuture<Boolean> validateAsync(String input) {
+        return validateAsync(input, supportedType());
+    }
+
+    /**
+     * This method validates an input without blocking the calling thread.
+     * The future completes with true if the input is valid or exceptionally with the ValidationError or ValidationWarning isValid would throw.
+     * The default implementation runs isValid on a bounded executor for blocking validations, so existing plugins don't have to implement it.
+     * Implementations with non-blocking I/O should override it.
+     *
+     * @param input to validate
+     * @param type  of the input
+     * @return a future which completes with true or exceptionally with a ValidationError or ValidationWarning.
+     */
+    default CompletableFuture<Boolean> validateAsync(String input, RelatedIdentifierType type) {
+        return ValidationFutures.supplyBlocking(() -> isValid(input, type));
+    }
+
+    /**
+     * This method is a shortcut for validate.
+     * It doesn't require the type parameter and sets the type of the implementation instead.
+     *
+     * @param input to validate
+     * @return a future which completes with the result of the validation. It never completes exceptionally.
+     */
+    default CompletableFuture<ValidationResult> validate(String input) {
+        return validate(input, supportedType());
+    }
+
+    /**
+     * This method validates an input without blocking the calling thread and without exceptions.
+     * An invalid input is reported as a ValidationResult with the status ERROR or WARNING instead of a ValidationError or ValidationWarning,
+     * which saves the cost of the exception if many inputs are invalid.
+     * The default implementation adapts validateAsync, so existing plugins don't have to implement it.
+     * Implementations which override it should implement isValid and validateAsync on top of it.
+     *
+     * @param input to validate
+     * @param type  of the input
+     * @return a future which completes with the result of the validation.
+     */
+    default CompletableFuture<ValidationResult> validate(String input, RelatedIdentifierType type) {
+        return ValidationFutures.toResult(validateAsync(input, type));
+    }
+
+    /**
+     * This method validates an input up to a level without blocking the calling thread and without exceptions.
+     * The default implementation validates RESOLVE completely with validate. For the lower levels it only checks the syntax signature of the type
+     * (see syntaxSignature), so existing plugins never touch the network for these levels. The compiled signature is cached.
+     * For a plugin without a signature, the lower levels are reported as a warning that the level is not supported.
+     * Implementations which can check more cheaply should override it. The level which has been achieved is reported by the result.
+     *
+     * @param input to validate
+     * @param type  of the input
+     * @param level up to which the input is validated
+     * @return a future which completes with the result of the validation.
+     */
+    default CompletableFuture<ValidationResult> validate(String input, RelatedIdentifierType type, ValidationLevel level) {
+        if (level == ValidationLevel.RESOLVE) return validate(input, type);
+        String signature = syntaxSignature(type);
+        if (signature == null)
+            return CompletableFuture.completedFuture(ValidationResult.warning(level == ValidationLevel.PREFIX ? ValidationResult.Stage.PREFIX : ValidationResult.Stage.SYNTAX,
+                    "The validator of " + type + " doesn't support the level " + level));
+        if (input == null || !ValidatorIndex.signaturePattern(signature).matcher(input).matches())
+            return CompletableFuture.completedFuture(ValidationResult.error(ValidationResult.Stage.SYNTAX, "Invalid syntax"));
+        return CompletableFuture.completedFuture(ValidationResult.valid(ValidationLevel.SYNTAX));
+    }
+
+    /**
+     * This method returns the syntax signature of a type, which is used to detect the type of an input.
+     * The signatures of all validators are compiled into one automaton (see SyntaxAutomaton), so the signature has to be
+     * a regular expression which only uses literals, character classes, groups, alternatives and quantifiers.
+     * It must match the complete input. A signature should be cheap and rather broad: inputs which match are validated
+     * by this validator, inputs which don't match are never tried if the type is detected automatically.
+     * The default implementation returns null, so the type of the validator is never detected.
+     *
+     * @param type of the input
+     * @return the signature of inputs of the type or null if the validator doesn't provide one.
+     */
+    default String syntaxSignature(RelatedIdentifierType type) {
+        return null;
+    }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class reads the settings of the validators from the system properties (e.g. -Dvalidator.cache.url.maxSize=1000).
+ * The validators are not managed by Spring, so the settings have to be available before the first validator is created.
+ * Invalid values are logged and replaced by the default value.
+ *
+ * @author maximilianiKIT
+ */
+public final class ValidatorSettings {
+
+    static Logger LOG = LoggerFactory.getLogger(ValidatorSettings.class);
+
+    /**
+     * A number of seconds or a number with a unit, e.g. 30, 500ms, 2s or 10m.
+     */
+    private static final Pattern SIMPLE_DURATION = Pattern.compile("(\\d+)\\s*(ms|s|m|h|d)?");
+
+    private ValidatorSettings() {
+        // only static methods
+    }
+
+    /**
+     * @param key          of the system property
+     * @param defaultValue which is used if the property is not set
+     * @return the value of the property.
+     */
+    public static String getString(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.isBlank()) return defaultValue;
+        return value.trim();
+    }
+
+    /**
+     * @param key          of the system property
+     * @param defaultValue which is used if the property is not set or invalid
+     * @return the value of the property as int.
+     */
+    public static int getInt(String key, int defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.isBlank()) return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid value for {}: {}. Using default {}.", key, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @param key          of the system property
+     * @param defaultValue which is used if the property is not set or invalid
+     * @return the value of the property as double.
+     */
+    public static double getDouble(String key, double defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.isBlank()) return defaultValue;
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid value for {}: {}. Using default {}.", key, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @param key          of the system property
+     * @param defaultValue which is used if the property is not set
+     * @return the value of the property as boolean.
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.isBlank()) return defaultValue;
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    /**
+     * @param key          of the system property
+     * @param defaultValue which is used if the property is not set or invalid
+     * @return the value of the property as Duration. Either an ISO-8601 duration (e.g. PT10M), a number of seconds
+     * or a number with one of the units ms, s, m, h or d (e.g. 500ms or 2s).
+     */
+    public static Duration getDuration(String key, Duration defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.isBlank()) return defaultValue;
+        try {
+            Matcher simple = SIMPLE_DURATION.matcher(value.trim().toLowerCase(Locale.ROOT));
+            if (simple.matches()) return Duration.of(Long.parseLong(simple.group(1)), unit(simple.group(2)));
+            return Duration.parse(value.trim());
+        } catch (NumberFormatException | DateTimeParseException | ArithmeticException e) {
+            LOG.warn("Invalid value for {}: {}. Using default {}.", key, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private static ChronoUnit unit(String unit) {
+        if (unit == null) return ChronoUnit.SECONDS;
+        switch (unit) {
+            case "ms":
+                return ChronoUnit.MILLIS;
+            case "m":
+                return ChronoUnit.MINUTES;
+            case "h":
+                return ChronoUnit.HOURS;
+            case "d":
+                return ChronoUnit.DAYS;
+            default:
+                return ChronoUnit.SECONDS;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.cache;
+
+import edu.kit.datamanager.datacite.validate.ValidatorSettings;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * This class is a bounded, concurrent cache for the results of remote checks (e.g. HTTP status codes of URLs).
+ * Positive and negative results have separate time-to-live values, so a valid handle can be remembered longer than an invalid one.
+ * If the cache is full, entries are evicted in the order in which their keys were inserted (FIFO). Overwriting an entry keeps its position,
+ * while a key which was evicted or expired is inserted anew. Expired entries are removed when they are read.
+ *
+ * @param <K> type of the key (e.g. URL or handle prefix)
+ * @param <V> type of the cached result
+ * @author maximilianiKIT
+ */
+public class ResultCache<K, V> {
+
+    private final String name;
+    private final int maxSize;
+    private final long positiveTtlNanos;
+    private final long negativeTtlNanos;
+    private final LongSupplier clock;
+
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Queue<Slot<K>> insertionOrder = new ConcurrentLinkedQueue<>();
+    /**
+     * The number of slots in insertionOrder, which includes the slots of entries which have expired or been evicted.
+     */
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param name        of the cache. Used for the statistics.
+     * @param maxSize     maximum number of entries. A value less than 1 disables the cache.
+     * @param positiveTtl time-to-live of positive results
+     * @param negativeTtl time-to-live of negative results
+     */
+    public ResultCache(String name, int maxSize, Duration positiveTtl, Duration negativeTtl) {
+        this(name, maxSize, positiveTtl, negativeTtl, System::nanoTime);
+    }
+
+    ResultCache(String name, int maxSize, Duration positiveTtl, Duration negativeTtl, LongSupplier clock) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.positiveTtlNanos = positiveTtl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.clock = clock;
+    }
+
+    /**
+     * Creates a cache which reads its settings from the system properties
+     * validator.cache.[name].maxSize, validator.cache.[name].positiveTtl and validator.cache.[name].negativeTtl.
+     *
+     * @param name               of the cache
+     * @param defaultMaxSize     used if the property is not set
+     * @param defaultPositiveTtl used if the property is not set
+     * @param defaultNegativeTtl used if the property is not set
+     * @return a new cache
+     */
+    public static <K, V> ResultCache<K, V> fromSystemProperties(String name, int defaultMaxSize, Duration defaultPositiveTtl, Duration defaultNegativeTtl) {
+        String base = "validator.cache." + name + ".";
+        return new ResultCache<>(name,
+                ValidatorSettings.getInt(base + "maxSize", defaultMaxSize),
+                ValidatorSettings.getDuration(base + "positiveTtl", defaultPositiveTtl),
+                ValidatorSettings.getDuration(base + "negativeTtl", defaultNegativeTtl));
+    }
+
+    /**
+     * @param key to look up
+     * @return the cached value or null if there is no entry or the entry is expired.
+     */
+    public V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.expiresAt - clock.getAsLong() <= 0) {
+            // only this entry is removed, not a newer one which has been stored in the meantime
+            entries.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Stores a result. The time-to-live depends on whether the result is positive or negative.
+     *
+     * @param key      of the result
+     * @param value    the result
+     * @param positive true for positive results (e.g. a resolvable handle)
+     */
+    public void put(K key, V value, boolean positive) {
+        put(key, value, positive, Duration.ZERO);
+    }
+
+    /**
+     * Stores a result which has been checked some time ago (e.g. a result loaded from a persistent store).
+     * Its time-to-live is shortened by its age, so it expires at the same time as if it had been cached when it was checked.
+     *
+     * @param key      of the result
+     * @param value    the result
+     * @param positive true for positive results (e.g. a resolvable handle)
+     * @param age      time since the result has been checked
+     */
+    public void put(K key, V value, boolean positive, Duration age) {
+        if (maxSize < 1 || key == null || value == null) return;
+        long ttl = (positive ? positiveTtlNanos : negativeTtlNanos) - age.toNanos();
+        if (ttl <= 0) return;
+        long expiresAt = clock.getAsLong() + ttl;
+        Slot<K> inserted = new Slot<>(key);
+        Entry<V> entry = entries.compute(key, (k, previous) -> new Entry<>(value, expiresAt, previous == null ? inserted : previous.slot));
+        if (entry.slot == inserted) {
+            insertionOrder.add(inserted);
+            queued.incrementAndGet();
+        }
+        // the slots of removed entries are dropped on the way, so the queue stays at most twice as long as the cache
+        while (entries.size() > maxSize || queued.get() > 2 * maxSize) {
+            Slot<K> eldest = insertionOrder.poll();
+            if (eldest == null) break;
+            queued.decrementAndGet();
+            if (entries.size() > maxSize) {
+                if (evict(eldest)) evictions.increment();
+            } else if (isCurrent(eldest)) {
+                insertionOrder.add(eldest);
+                queued.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Removes the entry of a slot, unless its key has been removed and inserted again in the meantime.
+     *
+     * @return true if an entry has been removed.
+     */
+    private boolean evict(Slot<K> slot) {
+        Entry<V> current;
+        while ((current = entries.get(slot.key)) != null && current.slot == slot) {
+            if (entries.remove(slot.key, current)) return true;
+        }
+        return false;
+    }
+
+    private boolean isCurrent(Slot<K> slot) {
+        Entry<V> current = entries.get(slot.key);
+        return current != null && current.slot == slot;
+    }
+
+    /**
+     * Removes all entries. The statistics are not reset.
+     */
+    public void clear() {
+        entries.clear();
+        insertionOrder.clear();
+        queued.set(0);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the statistics of this cache (size, hits, misses and evictions).
+     */
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        result.put("size", (long) size());
+        result.put("hits", getHits());
+        result.put("misses", getMisses());
+        result.put("evictions", getEvictions());
+        return result;
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAt;
+        /**
+         * The position of the key in the insertion order. An overwritten entry passes it on to the new entry.
+         */
+        final Slot<?> slot;
+
+        Entry(V value, long expiresAt, Slot<?> slot) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.slot = slot;
+        }
+    }
+
+    private static final class Slot<K> {
+        final K key;
+
+        Slot(K key) {
+            this.key = key;
+        }
+    }
+}
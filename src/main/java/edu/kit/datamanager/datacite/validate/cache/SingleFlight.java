@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.cache;
+
+import edu.kit.datamanager.datacite.validate.ValidationFutures;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * This class coalesces concurrent identical operations (e.g. the validation of a popular DOI).
+ * The first caller of a key starts the operation; every caller which arrives while it is in flight gets the same result or exception.
+ * As soon as the operation is completed, the key is released, so later callers start a new operation (caching is done by the ResultCache).
+ * <p>
+ * Every caller gets its own dependent future. Cancelling it doesn't cancel the shared operation.
+ *
+ * @param <K> type of the key (e.g. type and input of a validation)
+ * @param <V> type of the result
+ * @author maximilianiKIT
+ */
+public class SingleFlight<K, V> {
+
+    private final String name;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * @param name of the operation. Used for the statistics.
+     */
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Starts the operation for a key or joins the one which is already in flight.
+     *
+     * @param key       of the operation. Must implement equals and hashCode.
+     * @param operation which is started if no operation for the key is in flight. Exceptions thrown by it complete the future exceptionally.
+     * @return a future which completes with the result of the shared operation.
+     */
+    public CompletableFuture<V> execute(K key, Supplier<CompletableFuture<V>> operation) {
+        CompletableFuture<V> existing = inFlight.get(key);
+        if (existing != null) return join(existing);
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) return join(existing);
+
+        started.increment();
+        CompletableFuture<V> result;
+        try {
+            result = operation.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((value, exception) -> {
+            // release the key first, so callers which see the completed flight don't join it any more
+            inFlight.remove(key, flight);
+            if (exception != null) flight.completeExceptionally(ValidationFutures.unwrap(exception));
+            else flight.complete(value);
+        });
+        return flight.copy();
+    }
+
+    private CompletableFuture<V> join(CompletableFuture<V> flight) {
+        coalesced.increment();
+        return flight.copy();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the number of operations which are in flight at the moment.
+     */
+    public int size() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return the number of operations which were started.
+     */
+    public long getStarted() {
+        return started.sum();
+    }
+
+    /**
+     * @return the number of callers which joined an operation in flight instead of starting a new one.
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+}
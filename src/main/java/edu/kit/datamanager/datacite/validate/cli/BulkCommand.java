@@ -0,0 +1,84 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.cli;
+
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * This class runs the bulk validation from the command line, e.g.
+ * <pre>
+ * java -cp validator.jar edu.kit.datamanager.datacite.validate.GenericValidator bulk --input ids.csv --output results.ndjson --level prefix
+ * </pre>
+ * The summary is printed to the standard output, the progress is logged.
+ *
+ * @author maximilianiKIT
+ */
+public final class BulkCommand {
+
+    /**
+     * The first argument of the command line which selects the bulk validation.
+     */
+    public static final String NAME = "bulk";
+
+    /**
+     * Exit code of a validation which has finished. Invalid records don't change the exit code.
+     */
+    public static final int OK = 0;
+
+    /**
+     * Exit code if a file can't be read or written.
+     */
+    public static final int FAILED = 1;
+
+    /**
+     * Exit code of invalid arguments.
+     */
+    public static final int USAGE = 2;
+
+    private BulkCommand() {
+    }
+
+    /**
+     * @param args of the command line without the command "bulk"
+     * @return the exit code
+     */
+    public static int run(String... args) {
+        return run(System.out, System.err, args);
+    }
+
+    static int run(PrintStream out, PrintStream err, String... args) {
+        BulkOptions options;
+        try {
+            options = BulkOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(BulkOptions.USAGE);
+            return USAGE;
+        }
+        try {
+            BulkValidation.Summary summary = BulkValidation.of(options).run();
+            out.println(summary);
+            return OK;
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            return USAGE;
+        } catch (IOException e) {
+            err.println("Bulk validation failed: " + e);
+            return FAILED;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.cli;
+
+import edu.kit.datamanager.datacite.validate.GenericValidator;
+import edu.kit.datamanager.datacite.validate.ValidationLevel;
+import edu.kit.datamanager.datacite.validate.ValidatorSettings;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * This class holds the options of the bulk validation, which are parsed from the command line.
+ * The default parallelism is read from the system property validator.bulk.parallelism (default 64).
+ *
+ * @author maximilianiKIT
+ */
+public final class BulkOptions {
+
+    /**
+     * The usage of the command line.
+     */
+    public static final String USAGE = "Usage: bulk --input <file> --output <file> [--format csv|ndjson] [--output-format csv|ndjson]\n" +
+            "            [--type <default type, e.g. DOI or auto>] [--level syntax|prefix|resolve] [--parallelism <n>]\n" +
+            "            [--offset <byte offset> | --resume] [--progress <seconds, 0 disables>]";
+
+    private Path input;
+    private Path output;
+    private RecordFormat inputFormat;
+    private RecordFormat outputFormat;
+    private String type = "auto";
+    private ValidationLevel level = ValidationLevel.RESOLVE;
+    private int parallelism = ValidatorSettings.getInt("validator.bulk.parallelism", 64);
+    private long offset;
+    private boolean resume;
+    private Duration progressInterval = Duration.ofSeconds(10);
+
+    /**
+     * @param input  file with one record per line
+     * @param output file to which the results are written
+     */
+    public BulkOptions(Path input, Path output) {
+        this.input = input;
+        this.output = output;
+    }
+
+    private BulkOptions() {
+    }
+
+    /**
+     * Parses the arguments of the command line. The formats default to the extension of the files (.csv is CSV, else NDJSON).
+     *
+     * @param args of the command line without the command "bulk"
+     * @return the options
+     * @throws IllegalArgumentException if an argument is unknown, missing or invalid.
+     */
+    public static BulkOptions parse(String... args) {
+        BulkOptions options = new BulkOptions();
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            if ("--resume".equals(name)) {
+                options.resume = true;
+                continue;
+            }
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value of " + name);
+            String value = args[++i];
+            switch (name) {
+                case "--input":
+                    options.input = Path.of(value);
+                    break;
+                case "--output":
+                    options.output = Path.of(value);
+                    break;
+                case "--format":
+                    options.inputFormat = format(value);
+                    break;
+                case "--output-format":
+                    options.outputFormat = format(value);
+                    break;
+                case "--type":
+                    options.type = value;
+                    break;
+                case "--level":
+                    options.level = ValidationLevel.of(value);
+                    if (options.level == null) throw new IllegalArgumentException("Unknown level " + value);
+                    break;
+                case "--parallelism":
+                    options.parallelism = (int) Math.min(Integer.MAX_VALUE, number(name, value));
+                    if (options.parallelism < 1) throw new IllegalArgumentException("--parallelism must be at least 1");
+                    break;
+                case "--offset":
+                    options.offset = number(name, value);
+                    break;
+                case "--progress":
+                    options.progressInterval = Duration.ofSeconds(number(name, value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + name);
+            }
+        }
+        if (options.input == null) throw new IllegalArgumentException("Missing --input");
+        if (options.output == null) throw new IllegalArgumentException("Missing --output");
+        if (options.resume && options.offset > 0) throw new IllegalArgumentException("--offset and --resume can't be combined");
+        return options;
+    }
+
+    private static RecordFormat format(String value) {
+        for (RecordFormat format : RecordFormat.values()) {
+            if (format.name().equalsIgnoreCase(value)) return format;
+        }
+        throw new IllegalArgumentException("Unknown format " + value);
+    }
+
+    private static long number(String name, String value) {
+        try {
+            long number = Long.parseLong(value.trim());
+            if (number < 0) throw new IllegalArgumentException(name + " must not be negative");
+            return number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value of " + name + ": " + value);
+        }
+    }
+
+    public Path getInput() {
+        return input;
+    }
+
+    public Path getOutput() {
+        return output;
+    }
+
+    /**
+     * @return the format of the input file, by default derived from its extension.
+     */
+    public RecordFormat getInputFormat() {
+        return inputFormat != null ? inputFormat : RecordFormat.of(input);
+    }
+
+    public BulkOptions setInputFormat(RecordFormat inputFormat) {
+        this.inputFormat = inputFormat;
+        return this;
+    }
+
+    /**
+     * @return the format of the output file, by default derived from its extension.
+     */
+    public RecordFormat getOutputFormat() {
+        return outputFormat != null ? outputFormat : RecordFormat.of(output);
+    }
+
+    public BulkOptions setOutputFormat(RecordFormat outputFormat) {
+        this.outputFormat = outputFormat;
+        return this;
+    }
+
+    /**
+     * @return the type of records without a type. The default is "auto", which detects the type (see {@link GenericValidator#isAuto(String)}).
+     */
+    public String getType() {
+        return type;
+    }
+
+    public BulkOptions setType(String type) {
+        this.type = type;
+        return this;
+    }
+
+    /**
+     * @return the level of records without a level (default RESOLVE).
+     */
+    public ValidationLevel getLevel() {
+        return level;
+    }
+
+    public BulkOptions setLevel(ValidationLevel level) {
+        this.level = level;
+        return this;
+    }
+
+    /**
+     * @return the maximum number of validations in flight.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public BulkOptions setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        return this;
+    }
+
+    /**
+     * @return the byte offset of the input file at which the validation starts. It must be the start of a line.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public BulkOptions setOffset(long offset) {
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * @return true if the validation continues after the last record of the output file.
+     */
+    public boolean isResume() {
+        return resume;
+    }
+
+    public BulkOptions setResume(boolean resume) {
+        this.resume = resume;
+        return this;
+    }
+
+    /**
+     * @return how often the progress is reported. Zero disables the reports.
+     */
+    public Duration getProgressInterval() {
+        return progressInterval;
+    }
+
+    public BulkOptions setProgressInterval(Duration progressInterval) {
+        this.progressInterval = progressInterval;
+        return this;
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.cli;
+
+import edu.kit.datamanager.datacite.validate.GenericValidator;
+import edu.kit.datamanager.datacite.validate.ValidationRequest;
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * This class validates all records of a large file and streams the results to an output file.
+ * The input is read in blocks, so the size of the file doesn't matter. At most parallelism validations are in flight at the same time.
+ * The results are written in the order of the input, each with the byte offset after its record,
+ * so an interrupted validation can be resumed after the last record of the output file.
+ * Malformed records are reported as errors and don't stop the validation.
+ *
+ * @author maximilianiKIT
+ */
+public final class BulkValidation {
+
+    static Logger LOG = LoggerFactory.getLogger(BulkValidation.class);
+
+    private static final int OUTPUT_BUFFER = 1 << 16;
+    private static final int MAX_RECORD = 1 << 16;
+
+    private final BulkOptions options;
+    private final Function<ValidationRequest, CompletableFuture<ValidationResult>> validator;
+
+    private volatile long position;
+    private volatile long written;
+
+    /**
+     * Creates a bulk validation which uses the validators of the GenericValidator.
+     *
+     * @param options of the validation
+     * @return a new bulk validation
+     */
+    public static BulkValidation of(BulkOptions options) {
+        GenericValidator validator = GenericValidator.soleInstance();
+        return new BulkValidation(options, request -> validator.validate(request.getInput(), request.getType(), request.getLevel()));
+    }
+
+    /**
+     * @param options   of the validation
+     * @param validator function which starts the validation of a request. The level of the request is never null.
+     */
+    public BulkValidation(BulkOptions options, Function<ValidationRequest, CompletableFuture<ValidationResult>> validator) {
+        this.options = options;
+        this.validator = validator;
+    }
+
+    /**
+     * Validates the records of the input file from the offset (or after the last record of the output file, if resuming) to the end of the file.
+     * This method blocks until all results have been written.
+     *
+     * @return the counts and throughput of the validation.
+     * @throws IOException if a file can't be read or written.
+     */
+    public Summary run() throws IOException {
+        Path output = options.getOutput();
+        RecordFormat inputFormat = options.getInputFormat();
+        RecordFormat outputFormat = options.getOutputFormat();
+        long offset = options.isResume() ? resumeOffset(output, outputFormat) : options.getOffset();
+        boolean append = options.isResume() ? Files.exists(output) && Files.size(output) > 0 : offset > 0;
+        Summary summary = new Summary(offset);
+        position = offset;
+        written = 0;
+        try (LineReader reader = new LineReader(options.getInput(), offset);
+             Writer writer = open(output, append)) {
+            if (!append && outputFormat.header() != null) writer.write(outputFormat.header() + '\n');
+            long size = reader.size();
+            if (offset > 0) LOG.info("Resuming the validation of {} at offset {} of {} bytes.", options.getInput(), offset, size);
+            ScheduledExecutorService progress = startProgress(summary, size);
+            try {
+                ArrayDeque<Pending> window = new ArrayDeque<>(options.getParallelism());
+                boolean first = offset == 0;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    long end = reader.position();
+                    if (first) {
+                        first = false;
+                        if (inputFormat.isHeader(line)) {
+                            position = end;
+                            continue;
+                        }
+                    }
+                    if (line.isBlank()) {
+                        if (window.isEmpty()) position = end;
+                        continue;
+                    }
+                    window.add(start(inputFormat, line, end));
+                    while (!window.isEmpty() && window.peek().result.isDone()) write(writer, outputFormat, window.poll(), summary);
+                    if (window.size() >= options.getParallelism()) write(writer, outputFormat, window.poll(), summary);
+                }
+                while (!window.isEmpty()) write(writer, outputFormat, window.poll(), summary);
+                position = reader.position();
+            } finally {
+                if (progress != null) progress.shutdownNow();
+            }
+        }
+        summary.finish(position);
+        return summary;
+    }
+
+    private Pending start(RecordFormat format, String line, long end) {
+        ValidationRequest request;
+        try {
+            request = format.parse(line, options.getType(), options.getLevel());
+        } catch (IllegalArgumentException e) {
+            return new Pending(end, new ValidationRequest(null, line), CompletableFuture.completedFuture(
+                    ValidationResult.error(null, "Malformed record: " + e.getMessage())), true);
+        }
+        CompletableFuture<ValidationResult> result;
+        try {
+            result = validator.apply(request);
+        } catch (RuntimeException e) {
+            result = CompletableFuture.completedFuture(ValidationResult.of(e));
+        }
+        return new Pending(end, request, result, false);
+    }
+
+    private void write(Writer writer, RecordFormat format, Pending pending, Summary summary) throws IOException {
+        ValidationResult result = pending.result.handle((value, exception) -> exception == null ? value : ValidationResult.of(exception)).join();
+        writer.write(format.format(pending.offset, pending.request, result));
+        writer.write('\n');
+        summary.count(result.getStatus(), pending.malformed);
+        position = pending.offset;
+        written++;
+    }
+
+    private static Writer open(Path output, boolean append) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING), StandardCharsets.UTF_8), OUTPUT_BUFFER);
+    }
+
+    private ScheduledExecutorService startProgress(Summary summary, long size) {
+        Duration interval = options.getProgressInterval();
+        if (interval == null || interval.isZero() || interval.isNegative()) return null;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "bulk-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(() -> {
+            long current = position;
+            double seconds = Math.max(1e-9, (System.nanoTime() - summary.start) / 1e9);
+            LOG.info("Validated {} records up to offset {} of {} bytes ({}%), {} records/s", written, current, size,
+                    String.format(Locale.ROOT, "%.1f", size == 0 ? 100.0 : 100.0 * current / size),
+                    String.format(Locale.ROOT, "%.0f", written / seconds));
+        }, interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+        return executor;
+    }
+
+    /**
+     * Finds the offset after the last complete record of an output file. An incomplete last record (e.g. of a killed process) is removed from the file.
+     *
+     * @param output file of an earlier validation
+     * @param format of the output file
+     * @return the offset in the input file at which the validation continues, 0 if the output file doesn't exist or has no records.
+     * @throws IOException if the output file can't be read or its last record is too long.
+     */
+    static long resumeOffset(Path output, RecordFormat format) throws IOException {
+        if (!Files.exists(output)) return 0;
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            int length = (int) Math.min(size, MAX_RECORD);
+            ByteBuffer tail = ByteBuffer.allocate(length);
+            while (tail.hasRemaining()) {
+                if (channel.read(tail, size - length + tail.position()) < 0) break;
+            }
+            byte[] bytes = tail.array();
+            int end = length - 1;
+            while (end >= 0 && bytes[end] != '\n') end--;
+            if (end < 0) {
+                if (length < size) throw new IOException("The last record of " + output + " is longer than " + MAX_RECORD + " bytes");
+                channel.truncate(0);
+                return 0;
+            }
+            if (end + 1 < length) {
+                LOG.info("Removing the incomplete last record of {}.", output);
+                channel.truncate(size - length + end + 1);
+            }
+            int start = end - 1;
+            while (start >= 0 && bytes[start] != '\n') start--;
+            if (start < 0 && length < size) throw new IOException("The last record of " + output + " is longer than " + MAX_RECORD + " bytes");
+            String record = new String(bytes, start + 1, end - start - 1, StandardCharsets.UTF_8).strip();
+            try {
+                return format.offsetOf(record);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * A record which is being validated.
+     */
+    private static final class Pending {
+        private final long offset;
+        private final ValidationRequest request;
+        private final CompletableFuture<ValidationResult> result;
+        private final boolean malformed;
+
+        Pending(long offset, ValidationRequest request, CompletableFuture<ValidationResult> result, boolean malformed) {
+            this.offset = offset;
+            this.request = request;
+            this.result = result;
+            this.malformed = malformed;
+        }
+    }
+
+    /**
+     * The outcome of a bulk validation: the number of records by status and the throughput.
+     */
+    public static final class Summary {
+        private final long startOffset;
+        private final long start = System.nanoTime();
+        private final Map<ValidationResult.Status, Long> counts = new EnumMap<>(ValidationResult.Status.class);
+        private long malformed;
+        private long endOffset;
+        private Duration elapsed;
+
+        Summary(long startOffset) {
+            this.startOffset = startOffset;
+            for (ValidationResult.Status status : ValidationResult.Status.values()) counts.put(status, 0L);
+        }
+
+        void count(ValidationResult.Status status, boolean malformed) {
+            counts.merge(status, 1L, Long::sum);
+            if (malformed) this.malformed++;
+        }
+
+        void finish(long endOffset) {
+            this.endOffset = endOffset;
+            this.elapsed = Duration.ofNanos(System.nanoTime() - start);
+        }
+
+        /**
+         * @return the number of records which have been validated.
+         */
+        public long getRecords() {
+            long records = 0;
+            for (long count : counts.values()) records += count;
+            return records;
+        }
+
+        /**
+         * @param status of the results
+         * @return the number of records with the status.
+         */
+        public long getCount(ValidationResult.Status status) {
+            return counts.get(status);
+        }
+
+        /**
+         * @return the number of malformed records, which are counted as errors, too.
+         */
+        public long getMalformed() {
+            return malformed;
+        }
+
+        /**
+         * @return the offset at which the validation started.
+         */
+        public long getStartOffset() {
+            return startOffset;
+        }
+
+        /**
+         * @return the offset after the last record which has been validated.
+         */
+        public long getEndOffset() {
+            return endOffset;
+        }
+
+        public Duration getElapsed() {
+            return elapsed;
+        }
+
+        /**
+         * @return the number of records validated per second.
+         */
+        public double getRecordsPerSecond() {
+            return getRecords() / seconds();
+        }
+
+        /**
+         * @return the number of input megabytes (10^6 bytes) read per second.
+         */
+        public double getMegabytesPerSecond() {
+            return (endOffset - startOffset) / 1e6 / seconds();
+        }
+
+        private double seconds() {
+            return Math.max(1e-9, elapsed.toNanos() / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "Validated %d records (bytes %d to %d) in %.1f s: %d valid, %d warnings, %d errors (%d malformed). " +
+                            "Throughput: %.0f records/s, %.1f MB/s",
+                    getRecords(), startOffset, endOffset, seconds(), getCount(ValidationResult.Status.VALID), getCount(ValidationResult.Status.WARNING),
+                    getCount(ValidationResult.Status.ERROR), malformed, getRecordsPerSecond(), getMegabytesPerSecond());
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.cli;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * This class reads the lines of a UTF-8 file in large blocks and tracks the byte offset of every line,
+ * so reading can be resumed at the start of any line without scanning the file from the beginning.
+ * Lines end with \n or \r\n. The last line may end without a line break.
+ *
+ * @author maximilianiKIT
+ */
+final class LineReader implements Closeable {
+
+    private static final int BLOCK_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+    private byte[] line = new byte[1024];
+    private long position;
+
+    /**
+     * @param path   of the file
+     * @param offset byte offset of the first line which is read. It must be the start of a line.
+     * @throws IOException if the file can't be opened.
+     */
+    LineReader(Path path, long offset) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        if (offset < 0 || offset > channel.size()) {
+            channel.close();
+            throw new IllegalArgumentException("Offset " + offset + " is outside of " + path);
+        }
+        channel.position(offset);
+        this.position = offset;
+        block.flip();
+    }
+
+    /**
+     * @return the next line without its line break or null at the end of the file.
+     * @throws IOException if the file can't be read.
+     */
+    String readLine() throws IOException {
+        int length = 0;
+        boolean read = false;
+        while (true) {
+            if (!block.hasRemaining()) {
+                block.clear();
+                int count = channel.read(block);
+                block.flip();
+                if (count <= 0) {
+                    if (!read) return null;
+                    break;
+                }
+            }
+            read = true;
+            byte[] bytes = block.array();
+            int start = block.position();
+            int end = start;
+            int limit = block.limit();
+            while (end < limit && bytes[end] != '\n') end++;
+            int chunk = end - start;
+            if (length + chunk > line.length) line = Arrays.copyOf(line, Math.max(line.length * 2, length + chunk));
+            System.arraycopy(bytes, start, line, length, chunk);
+            length += chunk;
+            position += chunk;
+            if (end < limit) {
+                block.position(end + 1);
+                position++;
+                break;
+            }
+            block.position(end);
+        }
+        if (length > 0 && line[length - 1] == '\r') length--;
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the byte offset after the last line which has been read, i.e. the offset from which reading can be resumed.
+     */
+    long position() {
+        return position;
+    }
+
+    /**
+     * @return the size of the file in bytes.
+     * @throws IOException if the size can't be read.
+     */
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
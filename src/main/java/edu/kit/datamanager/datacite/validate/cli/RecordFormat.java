@@ -0,0 +1,228 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.cli;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import edu.kit.datamanager.datacite.validate.ValidationLevel;
+import edu.kit.datamanager.datacite.validate.ValidationRequest;
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * This enum describes the formats of the files of the bulk validation. Every line of a file is one record.
+ * <ul>
+ *     <li>CSV: an input record is type,input[,level]. If a record has only one column, it is the input and the default type is used.
+ *     Fields may be quoted with double quotes. A first line starting with the column "type" is a header and skipped.</li>
+ *     <li>NDJSON: an input record is a JSON object {"type": ..., "input": ..., "level": ...}. Type and level are optional.</li>
+ * </ul>
+ * An output record contains the offset, type, input, status, achieved level and message of a validation.
+ * The offset is the byte offset in the input file after the record, from which the validation can be resumed.
+ *
+ * @author maximilianiKIT
+ */
+public enum RecordFormat {
+    CSV {
+        @Override
+        public ValidationRequest parse(String line, String defaultType, ValidationLevel defaultLevel) {
+            List<String> fields = splitCsv(line);
+            if (fields.size() == 1) return request(defaultType, fields.get(0), null, defaultLevel);
+            if (fields.size() > 3) throw new IllegalArgumentException("Expected type,input[,level] but found " + fields.size() + " columns");
+            return request(fields.get(0), fields.get(1), fields.size() == 3 ? fields.get(2) : null, defaultLevel);
+        }
+
+        @Override
+        public boolean isHeader(String line) {
+            return line.regionMatches(true, 0, "type", 0, 4) && (line.length() == 4 || line.charAt(4) == ',');
+        }
+
+        @Override
+        String header() {
+            return "offset,type,input,status,level,message";
+        }
+
+        @Override
+        String format(long offset, ValidationRequest request, ValidationResult result) {
+            StringBuilder builder = new StringBuilder(64 + request.getInput().length());
+            builder.append(offset).append(',');
+            appendCsv(builder, request.getType()).append(',');
+            appendCsv(builder, request.getInput()).append(',');
+            builder.append(result.getStatus()).append(',');
+            if (result.getLevel() != null) builder.append(result.getLevel());
+            builder.append(',');
+            return appendCsv(builder, result.getMessage()).toString();
+        }
+
+        @Override
+        long offsetOf(String record) {
+            int comma = record.indexOf(',');
+            return Long.parseLong(comma < 0 ? record : record.substring(0, comma));
+        }
+    },
+    NDJSON {
+        @Override
+        public ValidationRequest parse(String line, String defaultType, ValidationLevel defaultLevel) {
+            JsonNode node;
+            try {
+                node = MAPPER.readTree(line);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Invalid JSON: " + e.getOriginalMessage());
+            }
+            if (node == null || !node.isObject()) throw new IllegalArgumentException("Expected a JSON object");
+            JsonNode input = node.get("input");
+            if (input == null || !input.isTextual()) throw new IllegalArgumentException("Missing input");
+            return request(text(node, "type", defaultType), input.asText(), text(node, "level", null), defaultLevel);
+        }
+
+        @Override
+        public boolean isHeader(String line) {
+            return false;
+        }
+
+        @Override
+        String header() {
+            return null;
+        }
+
+        @Override
+        String format(long offset, ValidationRequest request, ValidationResult result) {
+            ObjectNode node = MAPPER.createObjectNode();
+            node.put("offset", offset);
+            node.put("type", request.getType());
+            node.put("input", request.getInput());
+            node.put("status", result.getStatus().toString());
+            if (result.getLevel() != null) node.put("level", result.getLevel().toString());
+            node.put("message", result.getMessage());
+            return node.toString();
+        }
+
+        @Override
+        long offsetOf(String record) {
+            try {
+                JsonNode offset = MAPPER.readTree(record).get("offset");
+                if (offset == null || !offset.canConvertToLong()) throw new NumberFormatException("No offset in " + record);
+                return offset.asLong();
+            } catch (JsonProcessingException e) {
+                throw new NumberFormatException("No offset in " + record);
+            }
+        }
+    };
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Parses an input record.
+     *
+     * @param line         of the input file
+     * @param defaultType  type of records without type
+     * @param defaultLevel level of records without level
+     * @return the request of the record.
+     * @throws IllegalArgumentException if the record is malformed.
+     */
+    public abstract ValidationRequest parse(String line, String defaultType, ValidationLevel defaultLevel);
+
+    /**
+     * @param line first line of an input file
+     * @return true if the line is a header and no record.
+     */
+    public abstract boolean isHeader(String line);
+
+    /**
+     * @return the header of an output file or null if the format has none.
+     */
+    abstract String header();
+
+    /**
+     * @param offset  byte offset in the input file after the record
+     * @param request of the record
+     * @param result  of the validation
+     * @return the output record without line break.
+     */
+    abstract String format(long offset, ValidationRequest request, ValidationResult result);
+
+    /**
+     * @param record of an output file
+     * @return the offset of the output record.
+     * @throws NumberFormatException if the line has no offset (e.g. it is the header).
+     */
+    abstract long offsetOf(String record);
+
+    /**
+     * @param path of a file
+     * @return CSV if the name of the file ends with .csv, else NDJSON.
+     */
+    public static RecordFormat of(Path path) {
+        Path name = path.getFileName();
+        return name != null && name.toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : NDJSON;
+    }
+
+    private static ValidationRequest request(String type, String input, String level, ValidationLevel defaultLevel) {
+        if (type == null || type.isBlank()) throw new IllegalArgumentException("Missing type");
+        if (input.isBlank()) throw new IllegalArgumentException("Missing input");
+        ValidationLevel parsed = level == null || level.isBlank() ? defaultLevel : ValidationLevel.of(level);
+        if (parsed == null) throw new IllegalArgumentException("Unknown level " + level);
+        return new ValidationRequest(type.trim(), input.trim(), parsed);
+    }
+
+    private static String text(JsonNode node, String field, String defaultValue) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? defaultValue : value.asText();
+    }
+
+    /**
+     * Splits a CSV line into its fields. Quoted fields may contain commas and doubled quotes.
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') field.append(c);
+                else if (i + 1 < line.length() && line.charAt(i + 1) == '"') field.append(line.charAt(++i));
+                else quoted = false;
+            } else if (c == '"') quoted = true;
+            else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else field.append(c);
+        }
+        if (quoted) throw new IllegalArgumentException("Unterminated quote");
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static StringBuilder appendCsv(StringBuilder builder, String value) {
+        if (value == null) return builder;
+        // a record must stay on one line, so the output file can be resumed line by line
+        if (value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) value = value.replace('\n', ' ').replace('\r', ' ');
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) return builder.append(value);
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') builder.append('"');
+            builder.append(c);
+        }
+        return builder.append('"');
+    }
+}
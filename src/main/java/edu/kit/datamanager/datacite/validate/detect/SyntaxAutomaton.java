@@ -0,0 +1,374 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.detect;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * This class is a deterministic finite automaton which classifies an input by the syntax signatures of several labels at once.
+ * All signatures are compiled into one automaton, so an input is read exactly once, no matter how many signatures there are.
+ * The result is the list of labels whose signature matches the complete input.
+ * <p>
+ * The characters are grouped into classes which no signature distinguishes, so the transition table only has one column per class.
+ * States which can't reach any match are removed, so the scan stops at the first character which rules out every signature.
+ * Instances are immutable and thread safe. Classifying an input doesn't allocate anything.
+ * The supported syntax of the signatures is described in SyntaxPattern.
+ *
+ * @param <T> type of the labels (e.g. RelatedIdentifierType)
+ * @author maximilianiKIT
+ */
+public final class SyntaxAutomaton<T> {
+
+    /**
+     * Upper bound of the number of states, so signatures which are too complex are rejected instead of exhausting the memory.
+     */
+    static final int MAX_STATES = 10000;
+
+    private static final int DEAD = -1;
+
+    private final List<T> labels;
+    private final int[] classStarts;
+    private final int[] asciiClasses;
+    private final int[][] transitions;
+    private final List<List<T>> matches;
+
+    private SyntaxAutomaton(List<T> labels, int[] classStarts, int[][] transitions, List<List<T>> matches) {
+        this.labels = labels;
+        this.classStarts = classStarts;
+        this.transitions = transitions;
+        this.matches = matches;
+        this.asciiClasses = new int[128];
+        for (char c = 0; c < 128; c++) asciiClasses[c] = classOf(classStarts, c);
+    }
+
+    /**
+     * @return a builder for a new automaton
+     */
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Classifies an input in a single pass.
+     *
+     * @param input to classify
+     * @return an unmodifiable list of the labels whose signature matches the complete input in the order the labels were added.
+     * The list is empty if no signature matches.
+     */
+    public List<T> classify(CharSequence input) {
+        if (input == null || transitions.length == 0) return Collections.emptyList();
+        int state = 0;
+        for (int i = 0, length = input.length(); i < length; i++) {
+            char c = input.charAt(i);
+            state = transitions[state][c < 128 ? asciiClasses[c] : classOf(classStarts, c)];
+            if (state == DEAD) return Collections.emptyList();
+        }
+        return matches.get(state);
+    }
+
+    /**
+     * @return the labels which have a signature in the order they were added.
+     */
+    public List<T> getLabels() {
+        return labels;
+    }
+
+    /**
+     * @return the number of states of the automaton.
+     */
+    public int size() {
+        return transitions.length;
+    }
+
+    private static int classOf(int[] classStarts, char c) {
+        int index = Arrays.binarySearch(classStarts, c);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * This class collects the signatures of an automaton.
+     *
+     * @param <T> type of the labels
+     */
+    public static final class Builder<T> {
+
+        private final Map<T, List<SyntaxPattern.Node>> signatures = new LinkedHashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a signature. A label can have several signatures; it matches if any of them matches.
+         *
+         * @param label   which is returned if the signature matches
+         * @param pattern the signature
+         * @return this builder
+         * @throws IllegalArgumentException if the signature is not supported. The builder is not changed in this case.
+         */
+        public Builder<T> add(T label, String pattern) {
+            if (label == null) throw new IllegalArgumentException("Missing label of syntax pattern " + pattern);
+            SyntaxPattern.Node node = SyntaxPattern.parse(pattern);
+            signatures.computeIfAbsent(label, key -> new ArrayList<>()).add(node);
+            return this;
+        }
+
+        /**
+         * @return a new automaton with all signatures which were added
+         * @throws IllegalArgumentException if the automaton would have more than MAX_STATES states.
+         */
+        public SyntaxAutomaton<T> build() {
+            Nfa nfa = new Nfa();
+            int start = nfa.newState();
+            List<T> labels = new ArrayList<>(signatures.keySet());
+            for (int label = 0; label < labels.size(); label++) {
+                for (SyntaxPattern.Node node : signatures.get(labels.get(label))) {
+                    int patternStart = nfa.newState();
+                    nfa.epsilon(start, patternStart);
+                    nfa.accept(nfa.build(node, patternStart), label);
+                }
+            }
+            int[] classStarts = nfa.classStarts();
+            return new Dfa(nfa, classStarts).compile(start, Collections.unmodifiableList(labels));
+        }
+    }
+
+    /**
+     * A nondeterministic automaton with epsilon transitions, built from the signatures by Thompson's construction.
+     */
+    private static final class Nfa {
+        private final List<List<int[]>> edges = new ArrayList<>();
+        private final List<List<Integer>> epsilons = new ArrayList<>();
+        private final Map<Integer, BitSet> accepting = new HashMap<>();
+
+        int newState() {
+            edges.add(new ArrayList<>());
+            epsilons.add(new ArrayList<>());
+            if (edges.size() > MAX_STATES * 10) throw new IllegalArgumentException("Syntax patterns are too complex");
+            return edges.size() - 1;
+        }
+
+        int size() {
+            return edges.size();
+        }
+
+        void epsilon(int from, int to) {
+            epsilons.get(from).add(to);
+        }
+
+        void accept(int state, int label) {
+            accepting.computeIfAbsent(state, key -> new BitSet()).set(label);
+        }
+
+        /**
+         * Adds the states of a node behind the state from.
+         *
+         * @return the state which is reached after the node matched
+         */
+        int build(SyntaxPattern.Node node, int from) {
+            if (node instanceof SyntaxPattern.Chars) {
+                int[] ranges = ((SyntaxPattern.Chars) node).ranges;
+                int to = newState();
+                for (int i = 0; i < ranges.length; i += 2) edges.get(from).add(new int[]{ranges[i], ranges[i + 1], to});
+                return to;
+            }
+            if (node instanceof SyntaxPattern.Sequence) {
+                int current = from;
+                for (SyntaxPattern.Node item : ((SyntaxPattern.Sequence) node).items) current = build(item, current);
+                return current;
+            }
+            if (node instanceof SyntaxPattern.Alternatives) {
+                int to = newState();
+                for (SyntaxPattern.Node option : ((SyntaxPattern.Alternatives) node).options) {
+                    int optionStart = newState();
+                    epsilon(from, optionStart);
+                    epsilon(build(option, optionStart), to);
+                }
+                return to;
+            }
+            SyntaxPattern.Repetition repetition = (SyntaxPattern.Repetition) node;
+            int current = from;
+            for (int i = 0; i < repetition.min; i++) current = build(repetition.node, current);
+            if (repetition.max == -1) {
+                int loop = newState();
+                epsilon(current, loop);
+                epsilon(build(repetition.node, loop), loop);
+                return loop;
+            }
+            int to = newState();
+            epsilon(current, to);
+            for (int i = repetition.min; i < repetition.max; i++) {
+                current = build(repetition.node, current);
+                epsilon(current, to);
+            }
+            return to;
+        }
+
+        /**
+         * @return the sorted first characters of the character classes. No edge of the automaton splits a class.
+         */
+        int[] classStarts() {
+            TreeSet<Integer> starts = new TreeSet<>();
+            starts.add(0);
+            for (List<int[]> stateEdges : edges) {
+                for (int[] edge : stateEdges) {
+                    starts.add(edge[0]);
+                    if (edge[1] < SyntaxPattern.MAX_CHAR) starts.add(edge[1] + 1);
+                }
+            }
+            return starts.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * Converts the Nfa into a deterministic automaton by the subset construction.
+     */
+    private static final class Dfa {
+        private final Nfa nfa;
+        private final int[] classStarts;
+        private final List<BitSet> sets = new ArrayList<>();
+        private final Map<BitSet, Integer> ids = new HashMap<>();
+        private final List<int[]> transitions = new ArrayList<>();
+
+        Dfa(Nfa nfa, int[] classStarts) {
+            this.nfa = nfa;
+            this.classStarts = classStarts;
+        }
+
+        <T> SyntaxAutomaton<T> compile(int start, List<T> labels) {
+            BitSet initial = new BitSet(nfa.size());
+            initial.set(start);
+            ArrayDeque<Integer> pending = new ArrayDeque<>();
+            pending.add(stateOf(closure(initial)));
+            while (!pending.isEmpty()) {
+                int state = pending.poll();
+                BitSet set = sets.get(state);
+                int[] row = new int[classStarts.length];
+                for (int charClass = 0; charClass < classStarts.length; charClass++) {
+                    BitSet next = move(set, classStarts[charClass]);
+                    if (next.isEmpty()) {
+                        row[charClass] = DEAD;
+                        continue;
+                    }
+                    int known = sets.size();
+                    row[charClass] = stateOf(closure(next));
+                    if (row[charClass] == known) pending.add(known);
+                }
+                transitions.set(state, row);
+            }
+            return prune(labels);
+        }
+
+        private int stateOf(BitSet set) {
+            Integer id = ids.get(set);
+            if (id != null) return id;
+            if (sets.size() >= MAX_STATES) throw new IllegalArgumentException("Syntax patterns are too complex");
+            sets.add(set);
+            transitions.add(null);
+            ids.put(set, sets.size() - 1);
+            return sets.size() - 1;
+        }
+
+        private BitSet closure(BitSet states) {
+            BitSet result = (BitSet) states.clone();
+            ArrayDeque<Integer> pending = new ArrayDeque<>();
+            states.stream().forEach(pending::add);
+            while (!pending.isEmpty()) {
+                for (int next : nfa.epsilons.get(pending.poll())) {
+                    if (!result.get(next)) {
+                        result.set(next);
+                        pending.add(next);
+                    }
+                }
+            }
+            return result;
+        }
+
+        private BitSet move(BitSet states, int c) {
+            BitSet result = new BitSet(nfa.size());
+            for (int state = states.nextSetBit(0); state >= 0; state = states.nextSetBit(state + 1)) {
+                for (int[] edge : nfa.edges.get(state)) {
+                    if (edge[0] <= c && c <= edge[1]) result.set(edge[2]);
+                }
+            }
+            return result;
+        }
+
+        private BitSet labelsOf(int state) {
+            BitSet result = new BitSet();
+            BitSet set = sets.get(state);
+            for (Map.Entry<Integer, BitSet> entry : nfa.accepting.entrySet()) {
+                if (set.get(entry.getKey())) result.or(entry.getValue());
+            }
+            return result;
+        }
+
+        /**
+         * Removes the states which can't reach a match and renumbers the others, so the start state stays 0.
+         */
+        private <T> SyntaxAutomaton<T> prune(List<T> labels) {
+            int count = sets.size();
+            List<BitSet> matching = new ArrayList<>(count);
+            BitSet alive = new BitSet(count);
+            for (int state = 0; state < count; state++) {
+                matching.add(labelsOf(state));
+                if (!matching.get(state).isEmpty()) alive.set(state);
+            }
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int state = 0; state < count; state++) {
+                    if (alive.get(state)) continue;
+                    for (int target : transitions.get(state)) {
+                        if (target != DEAD && alive.get(target)) {
+                            alive.set(state);
+                            changed = true;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (!alive.get(0)) return new SyntaxAutomaton<>(labels, classStarts, new int[0][], Collections.emptyList());
+
+            int[] renumbered = new int[count];
+            int size = 0;
+            for (int state = 0; state < count; state++) renumbered[state] = alive.get(state) ? size++ : DEAD;
+            int[][] table = new int[size][];
+            List<List<T>> matches = new ArrayList<>(size);
+            Map<BitSet, List<T>> sharedMatches = new HashMap<>();
+            for (int state = 0; state < count; state++) {
+                if (!alive.get(state)) continue;
+                int[] row = transitions.get(state).clone();
+                for (int i = 0; i < row.length; i++) row[i] = row[i] == DEAD ? DEAD : renumbered[row[i]];
+                table[renumbered[state]] = row;
+                matches.add(sharedMatches.computeIfAbsent(matching.get(state), set -> {
+                    List<T> result = new ArrayList<>(set.cardinality());
+                    set.stream().forEach(label -> result.add(labels.get(label)));
+                    return Collections.unmodifiableList(result);
+                }));
+            }
+            return new SyntaxAutomaton<>(labels, classStarts, table, matches);
+        }
+    }
+}
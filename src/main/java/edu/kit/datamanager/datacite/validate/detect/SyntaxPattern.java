@@ -0,0 +1,311 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.detect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class parses a syntax signature into a tree, which the SyntaxAutomaton compiles into its states.
+ * The signatures use a subset of the regular expressions of java.util.regex which can be matched by a finite automaton:
+ * <ul>
+ *     <li>literals and escaped literals (e.g. "\." or "\/")</li>
+ *     <li>"." (any character except line breaks) and character classes like "[A-Za-z0-9.]" or "[^/\s]"</li>
+ *     <li>the predefined classes \d, \D, \w, \W, \s and \S and the escapes \t, \n and \r</li>
+ *     <li>groups "(...)" and "(?:...)", alternatives "a|b" and the quantifiers "*", "+", "?", "{n}", "{n,}" and "{n,m}"</li>
+ * </ul>
+ * A signature always has to match the complete input. Anchors, back references and lookarounds are not supported.
+ *
+ * @author maximilianiKIT
+ */
+final class SyntaxPattern {
+
+    static final int MAX_CHAR = Character.MAX_VALUE;
+
+    /**
+     * Upper bound of the counted quantifiers, so a signature can't blow up the automaton.
+     */
+    private static final int MAX_REPETITIONS = 100;
+
+    private static final int[] DIGIT = {'0', '9'};
+    private static final int[] WORD = {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+    private static final int[] SPACE = {'\t', '\r', ' ', ' '};
+    private static final int[] LINE_BREAK = {'\n', '\n', '\r', '\r'};
+
+    private final String pattern;
+    private int position;
+
+    private SyntaxPattern(String pattern) {
+        this.pattern = pattern;
+    }
+
+    /**
+     * @param pattern the signature
+     * @return the tree of the signature
+     * @throws IllegalArgumentException if the signature is not supported.
+     */
+    static Node parse(String pattern) {
+        if (pattern == null || pattern.isEmpty()) throw new IllegalArgumentException("Empty syntax pattern");
+        SyntaxPattern parser = new SyntaxPattern(pattern);
+        Node result = parser.alternatives();
+        if (parser.position < pattern.length()) throw parser.error("Unexpected '" + pattern.charAt(parser.position) + "'");
+        return result;
+    }
+
+    private Node alternatives() {
+        List<Node> options = new ArrayList<>();
+        options.add(sequence());
+        while (peek('|')) {
+            position++;
+            options.add(sequence());
+        }
+        return options.size() == 1 ? options.get(0) : new Alternatives(options);
+    }
+
+    private Node sequence() {
+        List<Node> items = new ArrayList<>();
+        while (position < pattern.length() && !peek('|') && !peek(')')) items.add(repetition());
+        return items.size() == 1 ? items.get(0) : new Sequence(items);
+    }
+
+    private Node repetition() {
+        Node node = atom();
+        while (position < pattern.length()) {
+            char c = pattern.charAt(position);
+            if (c == '*') node = new Repetition(node, 0, -1);
+            else if (c == '+') node = new Repetition(node, 1, -1);
+            else if (c == '?') node = new Repetition(node, 0, 1);
+            else if (c == '{') {
+                node = counted(node);
+                continue;
+            } else break;
+            position++;
+            if (peek('?') || peek('+')) throw error("Lazy and possessive quantifiers are not supported");
+        }
+        return node;
+    }
+
+    private Node counted(Node node) {
+        position++;
+        int min = number();
+        int max = min;
+        if (peek(',')) {
+            position++;
+            max = peek('}') ? -1 : number();
+        }
+        expect('}');
+        if (max != -1 && max < min) throw error("Invalid repetition");
+        if (min > MAX_REPETITIONS || max > MAX_REPETITIONS) throw error("More than " + MAX_REPETITIONS + " repetitions");
+        return new Repetition(node, min, max);
+    }
+
+    private int number() {
+        int start = position;
+        while (position < pattern.length() && Character.isDigit(pattern.charAt(position))) position++;
+        if (start == position || position - start > 4) throw error("Invalid repetition");
+        return Integer.parseInt(pattern.substring(start, position));
+    }
+
+    private Node atom() {
+        char c = pattern.charAt(position++);
+        switch (c) {
+            case '(':
+                if (pattern.startsWith("?:", position)) position += 2;
+                else if (peek('?')) throw error("Only non-capturing groups are supported");
+                Node group = alternatives();
+                expect(')');
+                return group;
+            case '[':
+                return new Chars(characterClass());
+            case '.':
+                return new Chars(complement(LINE_BREAK));
+            case '\\':
+                return new Chars(escape());
+            case '^':
+            case '$':
+                throw error("Anchors are not supported. A syntax pattern always matches the complete input");
+            case ')':
+            case '*':
+            case '+':
+            case '?':
+            case '{':
+                throw error("Unexpected '" + c + "'");
+            default:
+                return new Chars(new int[]{c, c});
+        }
+    }
+
+    private int[] characterClass() {
+        boolean negated = peek('^');
+        if (negated) position++;
+        List<int[]> parts = new ArrayList<>();
+        boolean first = true;
+        while (position < pattern.length() && (first || !peek(']'))) {
+            first = false;
+            char c = pattern.charAt(position++);
+            if (c == '[') throw error("Nested character classes are not supported");
+            int[] part;
+            if (c == '\\') part = escape();
+            else part = new int[]{c, c};
+            if (part.length == 2 && part[0] == part[1] && peek('-') && position + 1 < pattern.length() && pattern.charAt(position + 1) != ']') {
+                position++;
+                char next = pattern.charAt(position++);
+                int[] end = next == '\\' ? escape() : new int[]{next, next};
+                if (end.length != 2 || end[0] != end[1] || end[0] < part[0]) throw error("Invalid range");
+                part = new int[]{part[0], end[0]};
+            }
+            parts.add(part);
+        }
+        expect(']');
+        int[] ranges = union(parts);
+        return negated ? complement(ranges) : ranges;
+    }
+
+    private int[] escape() {
+        if (position >= pattern.length()) throw error("Incomplete escape");
+        char c = pattern.charAt(position++);
+        switch (c) {
+            case 'd':
+                return DIGIT;
+            case 'D':
+                return complement(DIGIT);
+            case 'w':
+                return WORD;
+            case 'W':
+                return complement(WORD);
+            case 's':
+                return SPACE;
+            case 'S':
+                return complement(SPACE);
+            case 't':
+                return new int[]{'\t', '\t'};
+            case 'n':
+                return new int[]{'\n', '\n'};
+            case 'r':
+                return new int[]{'\r', '\r'};
+            default:
+                if (Character.isLetterOrDigit(c)) throw error("Unsupported escape \\" + c);
+                return new int[]{c, c};
+        }
+    }
+
+    private boolean peek(char c) {
+        return position < pattern.length() && pattern.charAt(position) == c;
+    }
+
+    private void expect(char c) {
+        if (!peek(c)) throw error("Missing '" + c + "'");
+        position++;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at index " + position + " of syntax pattern " + pattern);
+    }
+
+    /**
+     * @param parts lists of inclusive ranges (lo, hi, lo, hi, ...)
+     * @return the sorted, merged union of the ranges
+     */
+    static int[] union(List<int[]> parts) {
+        List<int[]> ranges = new ArrayList<>();
+        for (int[] part : parts) {
+            for (int i = 0; i < part.length; i += 2) ranges.add(new int[]{part[i], part[i + 1]});
+        }
+        ranges.sort((a, b) -> Integer.compare(a[0], b[0]));
+        int[] result = new int[ranges.size() * 2];
+        int size = 0;
+        for (int[] range : ranges) {
+            if (size > 0 && range[0] <= result[size - 1] + 1) {
+                result[size - 1] = Math.max(result[size - 1], range[1]);
+            } else {
+                result[size++] = range[0];
+                result[size++] = range[1];
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * @param ranges sorted, merged ranges
+     * @return all characters which are not in the ranges
+     */
+    static int[] complement(int[] ranges) {
+        int[] result = new int[ranges.length + 2];
+        int size = 0;
+        int next = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (ranges[i] > next) {
+                result[size++] = next;
+                result[size++] = ranges[i] - 1;
+            }
+            next = ranges[i + 1] + 1;
+        }
+        if (next <= MAX_CHAR) {
+            result[size++] = next;
+            result[size++] = MAX_CHAR;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * A node of the parsed signature.
+     */
+    abstract static class Node {
+    }
+
+    /**
+     * Matches one character of the sorted, merged ranges (lo, hi, lo, hi, ...).
+     */
+    static final class Chars extends Node {
+        final int[] ranges;
+
+        Chars(int[] ranges) {
+            this.ranges = ranges;
+        }
+    }
+
+    static final class Sequence extends Node {
+        final List<Node> items;
+
+        Sequence(List<Node> items) {
+            this.items = items;
+        }
+    }
+
+    static final class Alternatives extends Node {
+        final List<Node> options;
+
+        Alternatives(List<Node> options) {
+            this.options = options;
+        }
+    }
+
+    /**
+     * Matches the node at least min and at most max times. A max of -1 means unbounded.
+     */
+    static final class Repetition extends Node {
+        final Node node;
+        final int min;
+        final int max;
+
+        Repetition(Node node, int min, int max) {
+            this.node = node;
+            this.min = min;
+            this.max = max;
+        }
+    }
+}
@@ -44,4 +44,16 @@ public class ValidationWarning extends Exception {
         super(errorMessage);
     }
 
+    /**
+     * This constructor can create an exception without stack trace.
+     * Filling in the stack trace is the most expensive part of an exception, and it's not needed for expected results like an invalid input.
+     *
+     * @param errorMessage       is a description about what happened.
+     * @param err                is a Throwable from former errors or null.
+     * @param writableStackTrace false to create the exception without stack trace.
+     */
+    public ValidationWarning(String errorMessage, Throwable err, boolean writableStackTrace) {
+        super(errorMessage, err, true, writableStackTrace);
+    }
+
 }
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.handle;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class encodes and decodes the messages of the Handle protocol (RFC 3652) which are needed to resolve a handle.
+ * A message consists of
+ * <ul>
+ *     <li>the envelope (20 bytes): version, flags, session id, request id, sequence number and length of the rest of the message,</li>
+ *     <li>the header (24 bytes): operation code, response code, operation flags, site info serial number, recursion count, expiration time and body length,</li>
+ *     <li>the body, which depends on the operation, and the credential (a length of 0 for unsigned messages).</li>
+ * </ul>
+ * All integers are big-endian. The decoding methods read the message at the position of the buffer without changing it.
+ *
+ * @author maximilianiKIT
+ */
+public final class HandleMessage {
+
+    /**
+     * Length of the message envelope.
+     */
+    public static final int ENVELOPE_LENGTH = 20;
+
+    /**
+     * Length of the message header.
+     */
+    public static final int HEADER_LENGTH = 24;
+
+    /**
+     * The maximum size of a request sent over UDP.
+     */
+    public static final int MAX_UDP_REQUEST = 512;
+
+    public static final int OC_RESOLUTION = 1;
+
+    public static final int RC_SUCCESS = 1;
+    public static final int RC_ERROR = 2;
+    public static final int RC_SERVER_TOO_BUSY = 3;
+    public static final int RC_PROTOCOL_ERROR = 4;
+    public static final int RC_OPERATION_NOT_SUPPORTED = 5;
+    public static final int RC_RECURSION_COUNT_TOO_HIGH = 6;
+    public static final int RC_HANDLE_NOT_FOUND = 100;
+    public static final int RC_INVALID_HANDLE = 102;
+    public static final int RC_VALUES_NOT_FOUND = 200;
+    public static final int RC_SERVICE_REFERRAL = 500;
+    public static final int RC_PREFIX_REFERRAL = 501;
+
+    private static final byte MAJOR_VERSION = 2;
+    private static final byte MINOR_VERSION = 1;
+
+    private static final int FLAG_TRUNCATED = 0x2000;
+
+    private static final int OPFLAG_RECURSIVE = 0x10000000;
+    private static final int OPFLAG_KEEP_CONNECTION = 0x02000000;
+    private static final int OPFLAG_PUBLIC_ONLY = 0x01000000;
+
+    private static final int CREDENTIAL_LENGTH = 4;
+
+    private HandleMessage() {
+    }
+
+    /**
+     * Creates a request which resolves all public values of a handle. The server is asked to resolve the handle recursively,
+     * so a local handle server can resolve handles of other sites.
+     *
+     * @param requestId      which identifies the response
+     * @param handle         to resolve (e.g. "10.1038/nphys1170")
+     * @param keepConnection true if the request is sent over a TCP connection which should stay open for further requests
+     * @return a buffer with the request, ready to be written.
+     */
+    public static ByteBuffer resolutionRequest(int requestId, String handle, boolean keepConnection) {
+        byte[] name = handle.getBytes(StandardCharsets.UTF_8);
+        // handle, empty index list and empty type list
+        int bodyLength = 4 + name.length + 4 + 4;
+        int flags = OPFLAG_RECURSIVE | OPFLAG_PUBLIC_ONLY | (keepConnection ? OPFLAG_KEEP_CONNECTION : 0);
+        ByteBuffer message = allocate(requestId, 0, OC_RESOLUTION, 0, flags, bodyLength);
+        message.putInt(name.length).put(name);
+        message.putInt(0);
+        message.putInt(0);
+        message.putInt(0);
+        return message.flip();
+    }
+
+    /**
+     * Creates the response of a resolution without handle values, as a handle server would send it.
+     *
+     * @param requestId    of the request
+     * @param responseCode e.g. RC_SUCCESS or RC_HANDLE_NOT_FOUND
+     * @param handle       which has been resolved. It is only included in successful responses.
+     * @param truncated    true to set the flag which tells the client to repeat the request over TCP
+     * @return a buffer with the response, ready to be written.
+     */
+    public static ByteBuffer resolutionResponse(int requestId, int responseCode, String handle, boolean truncated) {
+        byte[] name = responseCode == RC_SUCCESS ? handle.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        // handle and empty value list
+        int bodyLength = responseCode == RC_SUCCESS ? 4 + name.length + 4 : 0;
+        ByteBuffer message = allocate(requestId, truncated ? FLAG_TRUNCATED : 0, OC_RESOLUTION, responseCode, 0, bodyLength);
+        if (responseCode == RC_SUCCESS) {
+            message.putInt(name.length).put(name);
+            message.putInt(0);
+        }
+        message.putInt(0);
+        return message.flip();
+    }
+
+    private static ByteBuffer allocate(int requestId, int messageFlags, int opCode, int responseCode, int opFlags, int bodyLength) {
+        int messageLength = HEADER_LENGTH + bodyLength + CREDENTIAL_LENGTH;
+        ByteBuffer message = ByteBuffer.allocate(ENVELOPE_LENGTH + messageLength);
+        message.put(MAJOR_VERSION).put(MINOR_VERSION).putShort((short) messageFlags);
+        message.putInt(0);
+        message.putInt(requestId);
+        message.putInt(0);
+        message.putInt(messageLength);
+        message.putInt(opCode);
+        message.putInt(responseCode);
+        message.putInt(opFlags);
+        message.putShort((short) 0);
+        message.put((byte) 0).put((byte) 0);
+        message.putInt(0);
+        message.putInt(bodyLength);
+        return message;
+    }
+
+    /**
+     * @param message at least the envelope of a message
+     * @return the request id of the message.
+     */
+    public static int requestId(ByteBuffer message) {
+        return message.getInt(message.position() + 8);
+    }
+
+    /**
+     * @param message at least the envelope of a message
+     * @return the sequence number of the message. Only the first packet of a message, with the sequence number 0, contains the header.
+     */
+    public static int sequenceNumber(ByteBuffer message) {
+        return message.getInt(message.position() + 12);
+    }
+
+    /**
+     * @param message at least the envelope of a message
+     * @return the length of the message after the envelope.
+     */
+    public static int messageLength(ByteBuffer message) {
+        return message.getInt(message.position() + 16);
+    }
+
+    /**
+     * @param message at least the envelope of a message
+     * @return true if the response didn't fit into a UDP packet and the request has to be repeated over TCP.
+     */
+    public static boolean isTruncated(ByteBuffer message) {
+        return (message.getShort(message.position() + 2) & FLAG_TRUNCATED) != 0;
+    }
+
+    /**
+     * @param message at least the envelope and header of a message
+     * @return the operation code of the message.
+     */
+    public static int opCode(ByteBuffer message) {
+        return message.getInt(message.position() + ENVELOPE_LENGTH);
+    }
+
+    /**
+     * @param message at least the envelope and header of a message
+     * @return the response code of the message, 0 for requests.
+     */
+    public static int responseCode(ByteBuffer message) {
+        return message.getInt(message.position() + ENVELOPE_LENGTH + 4);
+    }
+
+    /**
+     * @param message a complete resolution request or successful resolution response
+     * @return the handle at the start of the body.
+     * @throws IllegalArgumentException if the message is too short.
+     */
+    public static String handle(ByteBuffer message) {
+        int start = message.position() + ENVELOPE_LENGTH + HEADER_LENGTH;
+        if (message.limit() < start + 4 || message.getInt(start - 4) < 4) throw new IllegalArgumentException("Message without body");
+        int length = message.getInt(start);
+        if (length < 0 || length > message.getInt(start - 4) - 4 || message.limit() < start + 4 + length)
+            throw new IllegalArgumentException("Invalid length of the handle: " + length);
+        byte[] name = new byte[length];
+        message.get(start + 4, name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param responseCode of a response
+     * @return the name of the response code (e.g. "HANDLE_NOT_FOUND") or its number if it is unknown.
+     */
+    public static String responseName(int responseCode) {
+        switch (responseCode) {
+            case RC_SUCCESS:
+                return "SUCCESS";
+            case RC_ERROR:
+                return "ERROR";
+            case RC_SERVER_TOO_BUSY:
+                return "SERVER_TOO_BUSY";
+            case RC_PROTOCOL_ERROR:
+                return "PROTOCOL_ERROR";
+            case RC_OPERATION_NOT_SUPPORTED:
+                return "OPERATION_NOT_SUPPORTED";
+            case RC_RECURSION_COUNT_TOO_HIGH:
+                return "RECURSION_COUNT_TOO_HIGH";
+            case RC_HANDLE_NOT_FOUND:
+                return "HANDLE_NOT_FOUND";
+            case RC_INVALID_HANDLE:
+                return "INVALID_HANDLE";
+            case RC_VALUES_NOT_FOUND:
+                return "VALUES_NOT_FOUND";
+            case RC_SERVICE_REFERRAL:
+                return "SERVICE_REFERRAL";
+            case RC_PREFIX_REFERRAL:
+                return "PREFIX_REFERRAL";
+            default:
+                return String.valueOf(responseCode);
+        }
+    }
+}
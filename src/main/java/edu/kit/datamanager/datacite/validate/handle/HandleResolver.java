@@ -0,0 +1,479 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.handle;
+
+import edu.kit.datamanager.datacite.validate.ValidatorSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class resolves handles with the native Handle protocol (RFC 3652) instead of the HTTP proxy of handle.net.
+ * <p>
+ * All queries are multiplexed over a few non-blocking UDP sockets and one TCP connection, which are served by a single selector thread.
+ * The responses are matched to the queries by their request id, so any number of queries can be outstanding at the same time.
+ * A query is sent over UDP first and repeated if no response arrives within the UDP timeout. If all UDP attempts are lost
+ * or the server marks the response as truncated, the query is sent over TCP. A query which has no response within its timeout fails.
+ * <p>
+ * The queries ask the server for recursive resolution, so the configured server has to resolve handles of other sites on behalf of the client
+ * (e.g. a local caching handle server). The shared resolver is configured with the system properties
+ * validator.handle.native.server (host:port, the port defaults to 2641), validator.handle.native.udpChannels (default 2),
+ * validator.handle.native.udpTimeout (default PT0.5S), validator.handle.native.udpRetries (default 2) and validator.handle.native.timeout (default 10s).
+ *
+ * @author maximilianiKIT
+ */
+public final class HandleResolver implements Closeable {
+
+    static Logger LOG = LoggerFactory.getLogger(HandleResolver.class);
+
+    /**
+     * The default port of handle servers.
+     */
+    public static final int DEFAULT_PORT = 2641;
+
+    private static final int MAX_MESSAGE = 1 << 20;
+
+    private static final ScheduledThreadPoolExecutor timers = createTimerExecutor();
+
+    private static volatile HandleResolver shared;
+
+    private final InetSocketAddress server;
+    private final Duration udpTimeout;
+    private final int udpRetries;
+    private final Duration timeout;
+    private final Selector selector;
+    private final DatagramChannel[] udp;
+    private final Thread thread;
+    private final ConcurrentHashMap<Integer, Query> pending = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requestIds = new AtomicInteger(ThreadLocalRandom.current().nextInt());
+    private final LongAdder udpRequests = new LongAdder();
+    private final LongAdder tcpRequests = new LongAdder();
+    private final LongAdder retransmissions = new LongAdder();
+    private final ByteBuffer datagram = ByteBuffer.allocate(65536);
+
+    private TcpConnection tcp;
+    private volatile boolean closed;
+
+    /**
+     * Opens the sockets and starts the selector thread.
+     *
+     * @param server      address of the handle server
+     * @param udpChannels number of UDP sockets over which the queries are spread
+     * @param udpTimeout  time after which a query without response is sent again
+     * @param udpRetries  how often a query is sent again over UDP before TCP is used
+     * @param timeout     time after which a query without response fails
+     * @throws IOException if the sockets can't be opened.
+     */
+    public HandleResolver(InetSocketAddress server, int udpChannels, Duration udpTimeout, int udpRetries, Duration timeout) throws IOException {
+        this.server = server;
+        this.udpTimeout = udpTimeout;
+        this.udpRetries = Math.max(0, udpRetries);
+        this.timeout = timeout;
+        this.selector = Selector.open();
+        this.udp = new DatagramChannel[Math.max(1, udpChannels)];
+        try {
+            for (int i = 0; i < udp.length; i++) {
+                udp[i] = DatagramChannel.open();
+                udp[i].configureBlocking(false);
+                udp[i].connect(server);
+                udp[i].register(selector, SelectionKey.OP_READ);
+            }
+        } catch (IOException e) {
+            closeChannels();
+            throw e;
+        }
+        this.thread = new Thread(this::run, "handle-resolver-" + server.getPort());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return the resolver of the system properties, created on first use, or null if no server is configured in validator.handle.native.server.
+     */
+    public static HandleResolver shared() {
+        HandleResolver resolver = shared;
+        if (resolver != null) return resolver;
+        String address = ValidatorSettings.getString("validator.handle.native.server", null);
+        if (address == null || address.isBlank()) return null;
+        synchronized (HandleResolver.class) {
+            if (shared != null) return shared;
+            try {
+                shared = new HandleResolver(parseAddress(address),
+                        ValidatorSettings.getInt("validator.handle.native.udpChannels", 2),
+                        ValidatorSettings.getDuration("validator.handle.native.udpTimeout", Duration.ofMillis(500)),
+                        ValidatorSettings.getInt("validator.handle.native.udpRetries", 2),
+                        ValidatorSettings.getDuration("validator.handle.native.timeout", Duration.ofSeconds(10)));
+                LOG.info("Resolving handles with the native handle protocol at {}.", shared.server);
+            } catch (IOException | IllegalArgumentException e) {
+                LOG.warn("Can't use the handle server " + address + ". Handles are resolved over HTTP.", e);
+                return null;
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * @param address host and optionally port (e.g. "127.0.0.1:2641")
+     * @return the socket address. The port defaults to 2641.
+     * @throws IllegalArgumentException if the address is invalid.
+     */
+    static InetSocketAddress parseAddress(String address) {
+        URI uri = URI.create("hdl://" + address.trim());
+        if (uri.getHost() == null) throw new IllegalArgumentException("Invalid address of a handle server: " + address);
+        return new InetSocketAddress(uri.getHost(), uri.getPort() < 0 ? DEFAULT_PORT : uri.getPort());
+    }
+
+    /**
+     * Resolves a handle without blocking.
+     *
+     * @param handle to resolve (e.g. "10.1038/nphys1170" or "0.NA/10.1038")
+     * @return a future which completes with the response code of the server (see HandleMessage),
+     * or exceptionally with an IOException if the server doesn't answer within the timeout.
+     */
+    public CompletableFuture<Integer> resolve(String handle) {
+        if (closed) return CompletableFuture.failedFuture(new ClosedChannelException());
+        int requestId = requestIds.incrementAndGet();
+        Query query = new Query(requestId, HandleMessage.resolutionRequest(requestId, handle, false), handle);
+        if (query.request.remaining() > HandleMessage.MAX_UDP_REQUEST) query.attempts = udpRetries + 1;
+        pending.put(requestId, query);
+        query.result.whenComplete((code, exception) -> {
+            pending.remove(requestId, query);
+            query.cancelTimers();
+        });
+        query.deadline = timers.schedule(() -> query.result.completeExceptionally(
+                new SocketTimeoutException("No response of " + server + " for " + handle + " within " + timeout.toMillis() + " ms")), timeout.toNanos(), TimeUnit.NANOSECONDS);
+        if (query.attempts > udpRetries) execute(() -> sendTcp(query));
+        else sendUdp(query);
+        return query.result;
+    }
+
+    /**
+     * @return the number of queries without a response.
+     */
+    public int getPending() {
+        return pending.size();
+    }
+
+    /**
+     * @return the number of requests sent over UDP, including retransmissions.
+     */
+    public long getUdpRequests() {
+        return udpRequests.sum();
+    }
+
+    /**
+     * @return the number of requests sent over TCP.
+     */
+    public long getTcpRequests() {
+        return tcpRequests.sum();
+    }
+
+    /**
+     * @return the number of requests which have been sent again because no UDP response arrived in time.
+     */
+    public long getRetransmissions() {
+        return retransmissions.sum();
+    }
+
+    public InetSocketAddress getServer() {
+        return server;
+    }
+
+    /**
+     * Closes the sockets. Outstanding queries fail.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sendUdp(Query query) {
+        execute(() -> {
+            if (query.result.isDone()) return;
+            DatagramChannel channel = udp[Math.floorMod(query.requestId, udp.length)];
+            try {
+                channel.write(query.request.duplicate());
+                udpRequests.increment();
+            } catch (IOException e) {
+                // the retransmission or the TCP fallback will take care of the query
+                LOG.debug("Can't send a UDP request to {}: {}", server, e.toString());
+            }
+        });
+        query.retransmit = timers.schedule(() -> retransmit(query), udpTimeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void retransmit(Query query) {
+        if (query.result.isDone()) return;
+        if (++query.attempts <= udpRetries) {
+            retransmissions.increment();
+            sendUdp(query);
+        } else execute(() -> sendTcp(query));
+    }
+
+    private void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    private void run() {
+        while (!closed) {
+            try {
+                selector.select();
+                Runnable task;
+                while ((task = tasks.poll()) != null) task.run();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) continue;
+                    if (key.channel() instanceof DatagramChannel) receive((DatagramChannel) key.channel());
+                    else ((TcpConnection) key.attachment()).handle(key);
+                }
+                selector.selectedKeys().clear();
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Error in the handle resolver of " + server, e);
+            }
+        }
+        if (tcp != null) tcp.close(new ClosedChannelException());
+        closeChannels();
+        for (Query query : pending.values()) query.result.completeExceptionally(new ClosedChannelException());
+    }
+
+    private void closeChannels() {
+        for (DatagramChannel channel : udp) {
+            if (channel == null) continue;
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // nothing to do
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException ignored) {
+            // nothing to do
+        }
+    }
+
+    private void receive(DatagramChannel channel) {
+        while (true) {
+            datagram.clear();
+            try {
+                if (channel.receive(datagram) == null) return;
+            } catch (IOException e) {
+                // e.g. the port of the server is unreachable; the query is repeated or fails with its timeout
+                LOG.debug("Can't receive from {}: {}", server, e.toString());
+                return;
+            }
+            datagram.flip();
+            if (datagram.remaining() < HandleMessage.ENVELOPE_LENGTH + HandleMessage.HEADER_LENGTH || HandleMessage.sequenceNumber(datagram) != 0) continue;
+            Query query = pending.get(HandleMessage.requestId(datagram));
+            if (query == null || query.overTcp) continue;
+            if (HandleMessage.isTruncated(datagram)) sendTcp(query);
+            else complete(query, HandleMessage.responseCode(datagram));
+        }
+    }
+
+    private static void complete(Query query, int responseCode) {
+        // the dependent stages must not run on the selector thread
+        query.result.completeAsync(() -> responseCode);
+    }
+
+    /**
+     * Sends a query over the TCP connection. Runs on the selector thread.
+     */
+    private void sendTcp(Query query) {
+        if (query.result.isDone() || query.overTcp) return;
+        query.overTcp = true;
+        if (query.retransmit != null) query.retransmit.cancel(false);
+        if (tcp == null || tcp.closed) {
+            try {
+                tcp = new TcpConnection();
+            } catch (IOException e) {
+                query.result.completeExceptionally(e);
+                return;
+            }
+        }
+        tcpRequests.increment();
+        tcp.send(query);
+    }
+
+    /**
+     * A connection to the server which carries many queries. Used by the selector thread only.
+     */
+    private final class TcpConnection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+        private final Set<Query> queries = new HashSet<>();
+        private ByteBuffer input = ByteBuffer.allocate(4096);
+        private boolean closed;
+
+        TcpConnection() throws IOException {
+            channel = SocketChannel.open();
+            try {
+                channel.configureBlocking(false);
+                boolean connected = channel.connect(server);
+                key = channel.register(selector, connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, this);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        void send(Query query) {
+            queries.add(query);
+            query.result.whenComplete((code, exception) -> execute(() -> queries.remove(query)));
+            output.add(HandleMessage.resolutionRequest(query.requestId, query.handle, true));
+            if (channel.isConnected()) write();
+        }
+
+        void handle(SelectionKey key) {
+            try {
+                if (key.isConnectable()) {
+                    channel.finishConnect();
+                    key.interestOps(SelectionKey.OP_READ);
+                    write();
+                }
+                if (key.isValid() && key.isWritable()) write();
+                if (key.isValid() && key.isReadable()) read();
+            } catch (IOException e) {
+                close(e);
+            }
+        }
+
+        private void write() {
+            try {
+                while (!output.isEmpty()) {
+                    ByteBuffer next = output.peek();
+                    channel.write(next);
+                    if (next.hasRemaining()) break;
+                    output.poll();
+                }
+                key.interestOps(output.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            } catch (IOException e) {
+                close(e);
+            }
+        }
+
+        private void read() throws IOException {
+            if (channel.read(input) < 0) {
+                close(new IOException("The handle server " + server + " closed the connection"));
+                return;
+            }
+            input.flip();
+            while (input.remaining() >= HandleMessage.ENVELOPE_LENGTH) {
+                int length = HandleMessage.messageLength(input);
+                if (length < 0 || length > MAX_MESSAGE) throw new IOException("Invalid message length " + length + " from " + server);
+                int total = HandleMessage.ENVELOPE_LENGTH + length;
+                if (input.remaining() < total) {
+                    if (input.capacity() < total) {
+                        ByteBuffer larger = ByteBuffer.allocate(total);
+                        larger.put(input);
+                        input = larger;
+                        return;
+                    }
+                    break;
+                }
+                ByteBuffer message = input.slice(input.position(), total);
+                input.position(input.position() + total);
+                if (length >= HandleMessage.HEADER_LENGTH) {
+                    Query query = pending.get(HandleMessage.requestId(message));
+                    if (query != null) complete(query, HandleMessage.responseCode(message));
+                }
+            }
+            input.compact();
+        }
+
+        void close(IOException cause) {
+            if (closed) return;
+            closed = true;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // nothing to do
+            }
+            for (Query query : queries) query.result.completeExceptionally(cause);
+            queries.clear();
+        }
+    }
+
+    /**
+     * An outstanding query.
+     */
+    private static final class Query {
+        private final int requestId;
+        private final ByteBuffer request;
+        private final String handle;
+        private final CompletableFuture<Integer> result = new CompletableFuture<>();
+        private volatile int attempts;
+        private volatile boolean overTcp;
+        private volatile ScheduledFuture<?> retransmit;
+        private volatile ScheduledFuture<?> deadline;
+
+        Query(int requestId, ByteBuffer request, String handle) {
+            this.requestId = requestId;
+            this.request = request;
+            this.handle = handle;
+        }
+
+        void cancelTimers() {
+            ScheduledFuture<?> timer = retransmit;
+            if (timer != null) timer.cancel(false);
+            timer = deadline;
+            if (timer != null) timer.cancel(false);
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor createTimerExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "handle-resolver-timers");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * This class stops requests to a host which doesn't answer, so validations fail fast instead of waiting for the timeout of every request.
+ * <ul>
+ *     <li>CLOSED: requests are sent. After failureThreshold consecutive failures (e.g. connection refused or timeout), the breaker opens.</li>
+ *     <li>OPEN: requests are rejected without contacting the host. After openDuration, the breaker becomes half-open.</li>
+ *     <li>HALF_OPEN: up to halfOpenProbes requests are sent to probe the host. A success closes the breaker, a failure opens it again.</li>
+ * </ul>
+ * Only failures of the transport count. Any HTTP response, even an error status, proves that the host is reachable.
+ * In the closed state, acquiring a permit is a single volatile read.
+ *
+ * @author maximilianiKIT
+ */
+public final class CircuitBreaker {
+
+    static Logger LOG = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    /**
+     * The states of a circuit breaker.
+     */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final int halfOpenProbes;
+    private final LongSupplier clock;
+
+    private volatile State state = State.CLOSED;
+    private volatile long openedAt;
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger probes = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+
+    /**
+     * @param name             of the breaker (e.g. the host)
+     * @param failureThreshold number of consecutive failures which open the breaker
+     * @param openDuration     how long the breaker stays open before it probes the host again
+     * @param halfOpenProbes   number of requests which are sent in the half-open state
+     */
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration, int halfOpenProbes) {
+        this(name, failureThreshold, openDuration, halfOpenProbes, System::nanoTime);
+    }
+
+    CircuitBreaker(String name, int failureThreshold, Duration openDuration, int halfOpenProbes, LongSupplier clock) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+        this.clock = clock;
+    }
+
+    /**
+     * This method must be called before a request. If it returns true, the outcome of the request must be reported with onSuccess, onFailure or onIgnored.
+     *
+     * @return true if the request may be sent, false if the breaker is open.
+     */
+    public boolean tryAcquire() {
+        State current = state;
+        if (current == State.CLOSED) return true;
+        if (current == State.OPEN) {
+            if (clock.getAsLong() - openedAt < openNanos || !halfOpen()) {
+                rejected.incrementAndGet();
+                return false;
+            }
+        }
+        // a rejected request doesn't take a probe, so every probe which is given back by onIgnored can be taken again
+        int taken;
+        do {
+            taken = probes.get();
+            if (taken >= halfOpenProbes) {
+                rejected.incrementAndGet();
+                return false;
+            }
+        } while (!probes.compareAndSet(taken, taken + 1));
+        return true;
+    }
+
+    /**
+     * Reports that the host answered.
+     */
+    public void onSuccess() {
+        if (state == State.CLOSED) {
+            if (failures.get() != 0) failures.set(0);
+            return;
+        }
+        close();
+    }
+
+    /**
+     * Reports that a request ended without telling anything about the host (e.g. it was cancelled).
+     * A probe of the half-open state is given back, so another request can probe the host.
+     */
+    public void onIgnored() {
+        if (state == State.HALF_OPEN) probes.getAndUpdate(taken -> Math.max(0, taken - 1));
+    }
+
+    /**
+     * Reports that the host didn't answer.
+     */
+    public void onFailure() {
+        State current = state;
+        if (current == State.CLOSED) {
+            if (failures.incrementAndGet() >= failureThreshold) open(State.CLOSED);
+        } else if (current == State.HALF_OPEN) open(State.HALF_OPEN);
+    }
+
+    private synchronized boolean halfOpen() {
+        if (state == State.HALF_OPEN) return true;
+        if (state != State.OPEN || clock.getAsLong() - openedAt < openNanos) return false;
+        probes.set(0);
+        state = State.HALF_OPEN;
+        LOG.info("Circuit breaker {} is half-open. Probing the host.", name);
+        return true;
+    }
+
+    private synchronized void open(State from) {
+        if (state != from) return;
+        openedAt = clock.getAsLong();
+        state = State.OPEN;
+        opened.incrementAndGet();
+        LOG.warn("Circuit breaker {} opened after {} failures. Requests are rejected for {} ms.", name, failures.get(), openNanos / 1_000_000);
+    }
+
+    private synchronized void close() {
+        if (state == State.CLOSED) return;
+        failures.set(0);
+        state = State.CLOSED;
+        LOG.info("Circuit breaker {} closed. The host answers again.", name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return the number of consecutive failures in the closed state.
+     */
+    public int getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return the number of requests which have been rejected.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return how often the breaker has opened.
+     */
+    public long getOpened() {
+        return opened.get();
+    }
+}
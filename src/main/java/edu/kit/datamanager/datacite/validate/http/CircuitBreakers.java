@@ -0,0 +1,118 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.http;
+
+import edu.kit.datamanager.datacite.validate.ValidatorSettings;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class holds one circuit breaker per host.
+ * The number of breakers is limited: if the limit is reached, breakers of healthy hosts are removed, and hosts beyond the limit are not protected.
+ *
+ * @author maximilianiKIT
+ */
+public final class CircuitBreakers {
+
+    private final ConcurrentHashMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final int halfOpenProbes;
+    private final int maxHosts;
+
+    /**
+     * @param enabled          false disables all breakers
+     * @param failureThreshold number of consecutive failures which open the breaker of a host
+     * @param openDuration     how long a breaker stays open before it probes the host again
+     * @param halfOpenProbes   number of requests which are sent in the half-open state
+     * @param maxHosts         maximum number of breakers
+     */
+    public CircuitBreakers(boolean enabled, int failureThreshold, Duration openDuration, int halfOpenProbes, int maxHosts) {
+        this.enabled = enabled;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.halfOpenProbes = halfOpenProbes;
+        this.maxHosts = maxHosts;
+    }
+
+    /**
+     * Reads the settings from the system properties validator.breaker.enabled (default true), validator.breaker.failureThreshold (default 5),
+     * validator.breaker.openDuration (default 30s), validator.breaker.halfOpenProbes (default 1) and validator.breaker.maxHosts (default 10000).
+     *
+     * @return circuit breakers with the settings of the system properties
+     */
+    public static CircuitBreakers fromSystemProperties() {
+        return new CircuitBreakers(
+                ValidatorSettings.getBoolean("validator.breaker.enabled", true),
+                ValidatorSettings.getInt("validator.breaker.failureThreshold", 5),
+                ValidatorSettings.getDuration("validator.breaker.openDuration", Duration.ofSeconds(30)),
+                ValidatorSettings.getInt("validator.breaker.halfOpenProbes", 1),
+                ValidatorSettings.getInt("validator.breaker.maxHosts", 10000));
+    }
+
+    /**
+     * @param host of a request, optionally with the port (e.g. example.org:8080)
+     * @return the breaker of the host or null if breakers are disabled or the limit of hosts is reached.
+     */
+    public CircuitBreaker forHost(String host) {
+        if (!enabled || host == null) return null;
+        String key = host.toLowerCase(Locale.ROOT);
+        CircuitBreaker breaker = breakers.get(key);
+        if (breaker != null) return breaker;
+        if (breakers.size() >= maxHosts) {
+            breakers.values().removeIf(existing -> existing.getState() == CircuitBreaker.State.CLOSED && existing.getFailures() == 0);
+            if (breakers.size() >= maxHosts) return null;
+        }
+        return breakers.computeIfAbsent(key, name -> new CircuitBreaker(name, failureThreshold, openDuration, halfOpenProbes));
+    }
+
+    /**
+     * @return all breakers
+     */
+    public Collection<CircuitBreaker> getBreakers() {
+        return breakers.values();
+    }
+
+    /**
+     * @param state of the breakers
+     * @return the breakers which are in the given state.
+     */
+    public List<CircuitBreaker> getBreakers(CircuitBreaker.State state) {
+        List<CircuitBreaker> result = new ArrayList<>();
+        for (CircuitBreaker breaker : breakers.values()) {
+            if (breaker.getState() == state) result.add(breaker);
+        }
+        return result;
+    }
+
+    /**
+     * @param state of the breakers
+     * @return the number of breakers in the given state.
+     */
+    public int count(CircuitBreaker.State state) {
+        int count = 0;
+        for (CircuitBreaker breaker : breakers.values()) {
+            if (breaker.getState() == state) count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.http;
+
+import java.io.IOException;
+
+/**
+ * This exception is thrown instead of sending a request if the circuit breaker of the host is open.
+ * It has no stack trace, because it is thrown for every rejected request.
+ *
+ * @author maximilianiKIT
+ */
+public class CircuitOpenException extends IOException {
+
+    private final String host;
+
+    /**
+     * @param host whose circuit breaker is open
+     */
+    public CircuitOpenException(String host) {
+        super("Circuit breaker for " + host + " is open. The host is not requested until it recovers.");
+        this.host = host;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.http;
+
+import edu.kit.datamanager.datacite.validate.metrics.ValidationMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * This class limits the requests to one host with a token bucket and a maximum number of concurrent requests.
+ * Requests over the limit are queued and started in their order as soon as a token and a slot are available, so a bulk validation
+ * doesn't flood a host, but no request is rejected.
+ * If the host asks to slow down (429 or 503 with Retry-After), the queue is paused for the requested time.
+ * <p>
+ * The time a request waits in the queue is recorded in the metric validator.http.wait, separately from the duration of the request.
+ *
+ * @author maximilianiKIT
+ */
+public final class HostLimiter {
+
+    static Logger LOG = LoggerFactory.getLogger(HostLimiter.class);
+
+    private static final ScheduledThreadPoolExecutor wakeUps = createWakeUpExecutor();
+
+    private final String name;
+    private final double tokensPerNano;
+    private final double burst;
+    private final int maxConcurrent;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService scheduler;
+    private final Timer waits;
+    private final Counter throttled;
+
+    private final ArrayDeque<CompletableFuture<Void>> queue = new ArrayDeque<>();
+    private double tokens;
+    private long refilledAt;
+    private long pausedUntil;
+    private int active;
+    private boolean wakeUpScheduled;
+
+    /**
+     * @param name          of the limiter (e.g. the host)
+     * @param ratePerSecond requests per second on average. 0 disables the rate limit.
+     * @param burst         number of requests which may be sent at once after a quiet period
+     * @param maxConcurrent maximum number of requests which are sent at the same time
+     */
+    public HostLimiter(String name, double ratePerSecond, int burst, int maxConcurrent) {
+        this(name, ratePerSecond, burst, maxConcurrent, System::nanoTime, wakeUps);
+    }
+
+    HostLimiter(String name, double ratePerSecond, int burst, int maxConcurrent, LongSupplier clock, ScheduledExecutorService scheduler) {
+        this.name = name;
+        this.tokensPerNano = ratePerSecond > 0 ? ratePerSecond / 1e9 : 0;
+        this.burst = Math.max(1, burst);
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.clock = clock;
+        this.scheduler = scheduler;
+        this.waits = ValidationMetrics.rateLimitWait(name);
+        this.throttled = ValidationMetrics.throttled(name);
+        this.tokens = this.burst;
+        this.refilledAt = clock.getAsLong();
+        this.pausedUntil = refilledAt;
+    }
+
+    /**
+     * Queues a request. If the future completes, the request may be sent and release must be called when it is finished.
+     * If the caller is no longer interested, it may cancel the future; a slot which has already been granted must be released.
+     *
+     * @return a future which completes when the request may be sent.
+     */
+    public CompletableFuture<Void> acquire() {
+        long start = System.nanoTime();
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        synchronized (this) {
+            queue.add(permit);
+        }
+        drain();
+        if (permit.isDone()) waits.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        else permit.thenRun(() -> waits.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        return permit;
+    }
+
+    /**
+     * Reports that a request which has been granted by acquire is finished.
+     */
+    public void release() {
+        synchronized (this) {
+            active--;
+        }
+        drain();
+    }
+
+    /**
+     * Pauses the queue because the host asked to slow down. Requests which are already running are not affected.
+     *
+     * @param duration of the pause (e.g. the value of the Retry-After header)
+     */
+    public void pause(Duration duration) {
+        throttled.increment();
+        synchronized (this) {
+            long until = clock.getAsLong() + duration.toNanos();
+            if (until - pausedUntil > 0) pausedUntil = until;
+        }
+        LOG.info("{} asked to slow down. Pausing its requests for {} ms.", name, duration.toMillis());
+        drain();
+    }
+
+    /**
+     * Starts as many queued requests as the limits allow and schedules a wake-up for the next token or the end of a pause.
+     * The futures are completed outside of the lock, because completing them sends the requests.
+     */
+    private void drain() {
+        List<CompletableFuture<Void>> ready = null;
+        synchronized (this) {
+            long now = clock.getAsLong();
+            refill(now);
+            while (!queue.isEmpty() && active < maxConcurrent && now - pausedUntil >= 0 && (tokensPerNano == 0 || tokens >= 1)) {
+                if (tokensPerNano != 0) tokens -= 1;
+                active++;
+                if (ready == null) ready = new ArrayList<>();
+                ready.add(queue.poll());
+            }
+            // a full concurrency limit is lifted by release, everything else needs a wake-up
+            if (!queue.isEmpty() && active < maxConcurrent && !wakeUpScheduled) {
+                long delay = Math.max(pausedUntil - now, tokens >= 1 || tokensPerNano == 0 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano));
+                wakeUpScheduled = true;
+                scheduler.schedule(this::wakeUp, delay, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (ready == null) return;
+        for (CompletableFuture<Void> permit : ready) {
+            // the caller has cancelled the request while it was queued
+            if (!permit.complete(null)) release();
+        }
+    }
+
+    private void wakeUp() {
+        synchronized (this) {
+            wakeUpScheduled = false;
+        }
+        drain();
+    }
+
+    private void refill(long now) {
+        if (tokensPerNano == 0) return;
+        tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the number of requests which wait in the queue.
+     */
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of requests which are running.
+     */
+    public synchronized int getActive() {
+        return active;
+    }
+
+    /**
+     * @return true if the queue is paused because the host asked to slow down.
+     */
+    public synchronized boolean isPaused() {
+        return clock.getAsLong() - pausedUntil < 0;
+    }
+
+    /**
+     * @return true if no request is queued or running and the queue is not paused.
+     */
+    synchronized boolean isIdle() {
+        return queue.isEmpty() && active == 0 && !isPaused();
+    }
+
+    private static ScheduledThreadPoolExecutor createWakeUpExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "http-politeness");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+}
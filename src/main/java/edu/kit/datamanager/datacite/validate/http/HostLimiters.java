@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.http;
+
+import edu.kit.datamanager.datacite.validate.ValidatorSettings;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class holds one limiter per host.
+ * The number of limiters is limited: if the limit is reached, idle limiters are removed, and hosts beyond the limit are not limited.
+ *
+ * @author maximilianiKIT
+ */
+public final class HostLimiters {
+
+    private static final String PREFIX = "validator.http.limit.";
+
+    private final ConcurrentHashMap<String, HostLimiter> limiters = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final double rate;
+    private final int burst;
+    private final int maxConcurrent;
+    private final int maxHosts;
+    private final boolean perHostSettings;
+
+    /**
+     * @param enabled       false disables all limits
+     * @param rate          requests per second per host. 0 disables the rate limit.
+     * @param burst         number of requests which may be sent to a host at once after a quiet period
+     * @param maxConcurrent maximum number of concurrent requests per host
+     * @param maxHosts      maximum number of limiters
+     */
+    public HostLimiters(boolean enabled, double rate, int burst, int maxConcurrent, int maxHosts) {
+        this(enabled, rate, burst, maxConcurrent, maxHosts, false);
+    }
+
+    private HostLimiters(boolean enabled, double rate, int burst, int maxConcurrent, int maxHosts, boolean perHostSettings) {
+        this.enabled = enabled;
+        this.rate = rate;
+        this.burst = burst;
+        this.maxConcurrent = maxConcurrent;
+        this.maxHosts = maxHosts;
+        this.perHostSettings = perHostSettings;
+    }
+
+    /**
+     * Reads the settings from the system properties validator.http.limit.enabled (default true), validator.http.limit.rate (default 20 per second),
+     * validator.http.limit.burst (default 40), validator.http.limit.maxConcurrent (default 8) and validator.http.limit.maxHosts (default 10000).
+     * The rate, burst and maxConcurrent can be set per host, e.g. validator.http.limit.doi.org.rate=5.
+     *
+     * @return limiters with the settings of the system properties
+     */
+    public static HostLimiters fromSystemProperties() {
+        return new HostLimiters(
+                ValidatorSettings.getBoolean(PREFIX + "enabled", true),
+                ValidatorSettings.getDouble(PREFIX + "rate", 20),
+                ValidatorSettings.getInt(PREFIX + "burst", 40),
+                ValidatorSettings.getInt(PREFIX + "maxConcurrent", 8),
+                ValidatorSettings.getInt(PREFIX + "maxHosts", 10000),
+                true);
+    }
+
+    /**
+     * @param host of a request, optionally with the port (e.g. example.org:8080)
+     * @return the limiter of the host or null if limits are disabled or the limit of hosts is reached.
+     */
+    public HostLimiter forHost(String host) {
+        if (!enabled || host == null) return null;
+        String key = host.toLowerCase(Locale.ROOT);
+        HostLimiter limiter = limiters.get(key);
+        if (limiter != null) return limiter;
+        if (limiters.size() >= maxHosts) {
+            limiters.values().removeIf(HostLimiter::isIdle);
+            if (limiters.size() >= maxHosts) return null;
+        }
+        return limiters.computeIfAbsent(key, this::create);
+    }
+
+    private HostLimiter create(String host) {
+        if (!perHostSettings) return new HostLimiter(host, rate, burst, maxConcurrent);
+        String base = PREFIX + host + ".";
+        return new HostLimiter(host,
+                ValidatorSettings.getDouble(base + "rate", rate),
+                ValidatorSettings.getInt(base + "burst", burst),
+                ValidatorSettings.getInt(base + "maxConcurrent", maxConcurrent));
+    }
+
+    /**
+     * @return all limiters
+     */
+    public Collection<HostLimiter> getLimiters() {
+        return limiters.values();
+    }
+
+    /**
+     * @return the number of requests which wait in the queues of all hosts.
+     */
+    public int queued() {
+        int queued = 0;
+        for (HostLimiter limiter : limiters.values()) queued += limiter.getQueued();
+        return queued;
+    }
+}
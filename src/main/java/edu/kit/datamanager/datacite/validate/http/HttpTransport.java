@@ -0,0 +1,369 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.http;
+
+import edu.kit.datamanager.datacite.validate.Execution;
+import edu.kit.datamanager.datacite.validate.ValidationFutures;
+import edu.kit.datamanager.datacite.validate.ValidatorSettings;
+import edu.kit.datamanager.datacite.validate.metrics.ValidationMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * This class checks the HTTP status of URLs with one shared java.net.http.HttpClient.
+ * The client keeps connections alive and reuses them (the pool size can be limited with the system property jdk.httpclient.connectionPoolSize)
+ * and uses HTTP/2 if the server supports it.
+ * <p>
+ * Every check sends a HEAD request first. Only if the server rejects HEAD (405 or 501), a GET request for the first byte is sent.
+ * Response bodies are always discarded, so connections are released immediately.
+ * <p>
+ * The settings are read from the system properties validator.http.connectTimeout, validator.http.readTimeout and validator.http.version (HTTP_2 or HTTP_1_1).
+ * In the execution mode VIRTUAL, the client runs its callbacks on virtual threads.
+ * The duration of every request is recorded in the metric validator.http.requests.
+ * <p>
+ * Every host (and port) has a circuit breaker (see CircuitBreaker). If a host doesn't answer several times in a row,
+ * further requests fail at once with a CircuitOpenException until the host answers a probe request again.
+ * <p>
+ * The requests to every host are limited by a HostLimiter: a token bucket and a maximum number of concurrent requests. Requests over the limit are queued.
+ * If a host answers 429 (or 503 with Retry-After), its queue is paused for the time of the Retry-After header (default validator.http.defaultRetryAfter, 1s)
+ * and the request is repeated up to validator.http.retries times (default 2). Hosts which ask for a pause longer than
+ * validator.http.maxRetryAfter (default 60s) are paused for that maximum and the status is returned without repeating the request.
+ *
+ * @author maximilianiKIT
+ */
+public class HttpTransport {
+
+    static Logger LOG = LoggerFactory.getLogger(HttpTransport.class);
+
+    private static final HttpTransport shared = new HttpTransport(
+            ValidatorSettings.getDuration("validator.http.connectTimeout", Duration.ofSeconds(10)),
+            ValidatorSettings.getDuration("validator.http.readTimeout", Duration.ofSeconds(30)),
+            version(ValidatorSettings.getString("validator.http.version", HttpClient.Version.HTTP_2.name())));
+
+    static {
+        ValidationMetrics.bindCircuitBreakers(shared.getCircuitBreakers());
+        ValidationMetrics.bindHostLimiters(shared.getHostLimiters());
+    }
+
+    private final HttpClient client;
+    private final Duration readTimeout;
+    private final CircuitBreakers breakers;
+    private final HostLimiters limiters;
+    private final int retries = ValidatorSettings.getInt("validator.http.retries", 2);
+    private final Duration defaultRetryAfter = ValidatorSettings.getDuration("validator.http.defaultRetryAfter", Duration.ofSeconds(1));
+    private final Duration maxRetryAfter = ValidatorSettings.getDuration("validator.http.maxRetryAfter", Duration.ofSeconds(60));
+
+    /**
+     * @param connectTimeout maximum time to establish a connection
+     * @param readTimeout    maximum time to wait for the response headers
+     * @param version        preferred HTTP version. HTTP/2 falls back to HTTP/1.1 if the server doesn't support it.
+     */
+    public HttpTransport(Duration connectTimeout, Duration readTimeout, HttpClient.Version version) {
+        this(connectTimeout, readTimeout, version, CircuitBreakers.fromSystemProperties(), HostLimiters.fromSystemProperties());
+    }
+
+    /**
+     * @param connectTimeout maximum time to establish a connection
+     * @param readTimeout    maximum time to wait for the response headers
+     * @param version        preferred HTTP version. HTTP/2 falls back to HTTP/1.1 if the server doesn't support it.
+     * @param breakers       the circuit breakers of the hosts
+     */
+    public HttpTransport(Duration connectTimeout, Duration readTimeout, HttpClient.Version version, CircuitBreakers breakers) {
+        this(connectTimeout, readTimeout, version, breakers, HostLimiters.fromSystemProperties());
+    }
+
+    /**
+     * @param connectTimeout maximum time to establish a connection
+     * @param readTimeout    maximum time to wait for the response headers
+     * @param version        preferred HTTP version. HTTP/2 falls back to HTTP/1.1 if the server doesn't support it.
+     * @param breakers       the circuit breakers of the hosts
+     * @param limiters       the rate limits of the hosts
+     */
+    public HttpTransport(Duration connectTimeout, Duration readTimeout, HttpClient.Version version, CircuitBreakers breakers, HostLimiters limiters) {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .version(version)
+                .followRedirects(HttpClient.Redirect.NORMAL);
+        if (Execution.virtualExecutor() != null) builder.executor(Execution.virtualExecutor());
+        this.client = builder.build();
+        this.readTimeout = readTimeout;
+        this.breakers = breakers;
+        this.limiters = limiters;
+    }
+
+    /**
+     * @return the transport which is shared by all built-in validators.
+     */
+    public static HttpTransport shared() {
+        return shared;
+    }
+
+    /**
+     * @return the circuit breakers of the hosts requested by this transport.
+     */
+    public CircuitBreakers getCircuitBreakers() {
+        return breakers;
+    }
+
+    /**
+     * @return the rate limits of the hosts requested by this transport.
+     */
+    public HostLimiters getHostLimiters() {
+        return limiters;
+    }
+
+    /**
+     * This method requests the HTTP status of an URL.
+     * A partial response (206) to the ranged fallback request is reported as 200.
+     *
+     * @param url to check
+     * @return the HTTP status code
+     * @throws IllegalArgumentException if the input is no valid http or https URL.
+     * @throws IOException              if the server is not reachable or doesn't answer in time.
+     *                                  A CircuitOpenException if the circuit breaker of the host is open.
+     * @throws InterruptedException     if the calling thread is interrupted.
+     */
+    public int status(String url) throws IOException, InterruptedException {
+        URI uri = URI.create(url);
+        HttpRequest head = head(uri);
+        CircuitBreaker breaker = acquire(uri);
+        HostLimiter limiter = limiters.forHost(hostKey(uri));
+        try {
+            int status = exchange(limiter, head);
+            if (isHeadRejected(status)) {
+                LOG.debug("HEAD rejected by {} ({}). Sending GET.", uri.getHost(), status);
+                status = normalize(exchange(limiter, rangedGet(uri)));
+            }
+            report(breaker, null);
+            return status;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            report(breaker, e);
+            throw e;
+        }
+    }
+
+    /**
+     * This method requests the HTTP status of an URL without blocking the calling thread.
+     * A partial response (206) to the ranged fallback request is reported as 200.
+     *
+     * @param url to check
+     * @return a future which completes with the HTTP status code or exceptionally with an IOException if the server is not reachable
+     * or a CircuitOpenException if the circuit breaker of the host is open.
+     * @throws IllegalArgumentException if the input is no valid http or https URL.
+     */
+    public CompletableFuture<Integer> statusAsync(String url) {
+        URI uri = URI.create(url);
+        HttpRequest head = head(uri);
+        CircuitBreaker breaker;
+        try {
+            breaker = acquire(uri);
+        } catch (CircuitOpenException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        HostLimiter limiter = limiters.forHost(hostKey(uri));
+        CompletableFuture<Integer> status = exchangeAsync(limiter, head, retries).thenCompose(code -> {
+            if (!isHeadRejected(code)) return CompletableFuture.completedFuture(code);
+            LOG.debug("HEAD rejected by {} ({}). Sending GET.", uri.getHost(), code);
+            return exchangeAsync(limiter, rangedGet(uri), retries).thenApply(HttpTransport::normalize);
+        });
+        if (breaker == null) return status;
+        return status.whenComplete((code, exception) -> report(breaker, exception));
+    }
+
+    /**
+     * @return the breaker of the host, which has to be informed about the outcome of the request, or null if the host has no breaker.
+     * @throws CircuitOpenException if the breaker of the host is open.
+     */
+    private CircuitBreaker acquire(URI uri) throws CircuitOpenException {
+        String host = hostKey(uri);
+        CircuitBreaker breaker = breakers.forHost(host);
+        if (breaker != null && !breaker.tryAcquire()) throw new CircuitOpenException(host);
+        return breaker;
+    }
+
+    /**
+     * Services on different ports of the same host fail and are limited independently.
+     */
+    private static String hostKey(URI uri) {
+        return uri.getHost() == null || uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+    }
+
+    /**
+     * Only transport failures count as failures of the host. Any HTTP status proves that the host answers.
+     */
+    private static void report(CircuitBreaker breaker, Throwable exception) {
+        if (breaker == null) return;
+        if (exception == null) breaker.onSuccess();
+        else if (ValidationFutures.unwrap(exception) instanceof IOException) breaker.onFailure();
+        else breaker.onIgnored();
+    }
+
+    /**
+     * Sends a request within the limits of the host. If the host asks to slow down, the request is repeated after the pause.
+     */
+    private int exchange(HostLimiter limiter, HttpRequest request) throws IOException, InterruptedException {
+        if (limiter == null) return send(request).statusCode();
+        for (int attempt = 0; ; attempt++) {
+            CompletableFuture<Void> permit = limiter.acquire();
+            try {
+                permit.get();
+            } catch (InterruptedException e) {
+                // the permit has been granted in the meantime
+                if (!permit.cancel(false)) limiter.release();
+                throw e;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+            HttpResponse<Void> response;
+            try {
+                response = send(request);
+            } finally {
+                limiter.release();
+            }
+            if (!throttle(limiter, response) || attempt >= retries) return response.statusCode();
+        }
+    }
+
+    private CompletableFuture<Integer> exchangeAsync(HostLimiter limiter, HttpRequest request, int retriesLeft) {
+        if (limiter == null) return sendAsync(request).thenApply(HttpResponse::statusCode);
+        return limiter.acquire().thenCompose(granted -> {
+            CompletableFuture<HttpResponse<Void>> response;
+            try {
+                response = sendAsync(request);
+            } catch (RuntimeException e) {
+                limiter.release();
+                throw e;
+            }
+            return response.whenComplete((result, exception) -> limiter.release());
+        }).thenCompose(response -> {
+            if (!throttle(limiter, response) || retriesLeft <= 0) return CompletableFuture.completedFuture(response.statusCode());
+            return exchangeAsync(limiter, request, retriesLeft - 1);
+        });
+    }
+
+    /**
+     * Pauses the queue of the host if the response asks to slow down: 429, or 503 with a Retry-After header.
+     *
+     * @return true if the request should be repeated after the pause, false if it was not throttled or the host asked for a longer pause than maxRetryAfter.
+     */
+    private boolean throttle(HostLimiter limiter, HttpResponse<Void> response) {
+        int status = response.statusCode();
+        if (status != 429 && status != 503) return false;
+        Optional<String> header = response.headers().firstValue("Retry-After");
+        // a 503 without Retry-After is an error of the server, not a request to slow down
+        if (status == 503 && header.isEmpty()) return false;
+        Duration pause = header.map(value -> parseRetryAfter(value, Instant.now())).orElse(defaultRetryAfter);
+        boolean retry = pause.compareTo(maxRetryAfter) <= 0;
+        limiter.pause(retry ? pause : maxRetryAfter);
+        return retry;
+    }
+
+    /**
+     * @param value of a Retry-After header: a number of seconds or an HTTP date
+     * @param now   the current time
+     * @return the time to wait or the default if the value is invalid.
+     */
+    Duration parseRetryAfter(String value, Instant now) {
+        String trimmed = value.trim();
+        try {
+            if (!trimmed.isEmpty() && trimmed.chars().allMatch(Character::isDigit)) return Duration.ofSeconds(Long.parseLong(trimmed));
+            Duration until = Duration.between(now, ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+            return until.isNegative() ? Duration.ZERO : until;
+        } catch (NumberFormatException | DateTimeParseException e) {
+            LOG.debug("Invalid Retry-After header: {}", value);
+            return defaultRetryAfter;
+        }
+    }
+
+    /**
+     * Sends a request and records its duration in the metric validator.http.requests.
+     */
+    private HttpResponse<Void> send(HttpRequest request) throws IOException, InterruptedException {
+        ValidationMetrics.Timers timers = ValidationMetrics.request(request.uri().getHost(), request.method());
+        long start = System.nanoTime();
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            timers.record(start, outcome(response.statusCode()));
+            return response;
+        } catch (IOException | InterruptedException e) {
+            timers.record(start, ValidationMetrics.Outcome.WARNING);
+            throw e;
+        }
+    }
+
+    private CompletableFuture<HttpResponse<Void>> sendAsync(HttpRequest request) {
+        ValidationMetrics.Timers timers = ValidationMetrics.request(request.uri().getHost(), request.method());
+        long start = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).handle((response, exception) -> {
+            if (exception != null) {
+                timers.record(start, ValidationMetrics.Outcome.WARNING);
+                throw ValidationFutures.wrap(ValidationFutures.unwrap(exception));
+            }
+            timers.record(start, outcome(response.statusCode()));
+            return response;
+        });
+    }
+
+    HttpRequest head(URI uri) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(readTimeout)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    HttpRequest rangedGet(URI uri) {
+        return HttpRequest.newBuilder(uri)
+                .timeout(readTimeout)
+                .header("Range", "bytes=0-0")
+                .GET()
+                .build();
+    }
+
+    private static HttpClient.Version version(String name) {
+        try {
+            return HttpClient.Version.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Unknown HTTP version {}. Using HTTP_2.", name);
+            return HttpClient.Version.HTTP_2;
+        }
+    }
+
+    static ValidationMetrics.Outcome outcome(int status) {
+        return status >= 200 && status < 300 ? ValidationMetrics.Outcome.VALID : ValidationMetrics.Outcome.ERROR;
+    }
+
+    static boolean isHeadRejected(int status) {
+        return status == 405 || status == 501;
+    }
+
+    static int normalize(int status) {
+        return status == 206 ? 200 : status;
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.impl;
+
+/**
+ * This class is a reusable, parsed view on a handle or DOI.
+ * It replaces the regular expressions formerly used by the HandleNetValidator with a single-pass scanner.
+ * The supported forms are "hdl://prefix/suffix", "doi:prefix/suffix", "http(s)://host/prefix/suffix" and "prefix/suffix".
+ * Prefix and suffix consist of the characters A-Z, a-z, 0-9 and '.'.
+ * <p>
+ * The parsed view only stores offsets into the original input.
+ * Parsing does not allocate anything, so one instance can be reused for any number of inputs.
+ * Instances are not thread safe.
+ *
+ * @author maximilianiKIT
+ */
+public final class HandleIdentifier {
+
+    /**
+     * The schemes which are recognized at the start of an input.
+     */
+    public enum Scheme {
+        NONE(""),
+        HDL("hdl://"),
+        DOI("doi:"),
+        HTTP("http://"),
+        HTTPS("https://");
+
+        private final String token;
+
+        Scheme(String token) {
+            this.token = token;
+        }
+
+        /**
+         * @return the literal which introduces this scheme (e.g. "https://").
+         */
+        public String token() {
+            return token;
+        }
+
+        /**
+         * @return true if this scheme is an URL scheme which contains a host.
+         */
+        public boolean isHTTP() {
+            return this == HTTP || this == HTTPS;
+        }
+    }
+
+    private CharSequence input;
+    private Scheme scheme = Scheme.NONE;
+    private int hostStart = -1;
+    private int hostEnd = -1;
+    private int prefixStart = -1;
+    private int prefixEnd = -1;
+    private int suffixStart = -1;
+    private int suffixEnd = -1;
+
+    /**
+     * This method parses an input and stores the result in this instance.
+     * All results of a former call are overwritten.
+     *
+     * @param input to parse
+     * @return true if the input contains a prefix and a suffix, false otherwise.
+     */
+    public boolean parse(CharSequence input) {
+        reset();
+        if (input == null) return false;
+        this.input = input;
+        scheme = scanScheme(input);
+        int start = scheme.token().length();
+        if (scheme == Scheme.NONE) return scanHandle(input, start, input.length());
+
+        // a scheme is followed by the rest of the line
+        int end = lineEnd(input, start);
+        if (end == start) {
+            scheme = Scheme.NONE;
+            return scanHandle(input, 0, input.length());
+        }
+        if (scheme.isHTTP()) return scanHTTPURL(input, start, end);
+        return scanHandle(input, start, end);
+    }
+
+    /**
+     * Clears the result of the last call to parse.
+     */
+    public void reset() {
+        input = null;
+        scheme = Scheme.NONE;
+        hostStart = hostEnd = prefixStart = prefixEnd = suffixStart = suffixEnd = -1;
+    }
+
+    /**
+     * @return the scheme of the last parsed input.
+     */
+    public Scheme scheme() {
+        return scheme;
+    }
+
+    public int hostStart() {
+        return hostStart;
+    }
+
+    public int hostEnd() {
+        return hostEnd;
+    }
+
+    public int prefixStart() {
+        return prefixStart;
+    }
+
+    public int prefixEnd() {
+        return prefixEnd;
+    }
+
+    public int suffixStart() {
+        return suffixStart;
+    }
+
+    public int suffixEnd() {
+        return suffixEnd;
+    }
+
+    /**
+     * @return the scheme and host of a parsed http(s) URL (e.g. "https://hdl.handle.net/api/handles") or null for all other schemes.
+     */
+    public String serverAddress() {
+        if (!scheme.isHTTP() || hostStart < 0) return null;
+        return scheme.token() + input.subSequence(hostStart, hostEnd);
+    }
+
+    /**
+     * @return the handle prefix or null if nothing was parsed.
+     */
+    public String prefix() {
+        if (prefixStart < 0) return null;
+        return input.subSequence(prefixStart, prefixEnd).toString();
+    }
+
+    /**
+     * @return the handle suffix or null if nothing was parsed.
+     */
+    public String suffix() {
+        if (suffixStart < 0) return null;
+        return input.subSequence(suffixStart, suffixEnd).toString();
+    }
+
+    @Override
+    public String toString() {
+        return "HandleIdentifier{" +
+                "scheme=" + scheme +
+                ", serverAddress='" + serverAddress() + '\'' +
+                ", prefix='" + prefix() + '\'' +
+                ", suffix='" + suffix() + '\'' +
+                '}';
+    }
+
+    private static Scheme scanScheme(CharSequence input) {
+        if (startsWith(input, Scheme.HDL.token)) return Scheme.HDL;
+        if (startsWith(input, Scheme.HTTP.token)) return Scheme.HTTP;
+        if (startsWith(input, Scheme.HTTPS.token)) return Scheme.HTTPS;
+        if (startsWith(input, Scheme.DOI.token)) return Scheme.DOI;
+        return Scheme.NONE;
+    }
+
+    private static boolean startsWith(CharSequence input, String token) {
+        if (input.length() < token.length()) return false;
+        for (int i = 0; i < token.length(); i++) {
+            if (input.charAt(i) != token.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Finds the first "prefix/suffix" in the range and stores its offsets.
+     * The prefix is the complete run of allowed characters in front of the slash, the suffix the complete run behind it.
+     */
+    private boolean scanHandle(CharSequence input, int from, int to) {
+        int runStart = from;
+        for (int i = from; i < to; i++) {
+            char c = input.charAt(i);
+            if (isHandleChar(c)) continue;
+            if (c == '/' && i > runStart && i + 1 < to && isHandleChar(input.charAt(i + 1))) {
+                prefixStart = runStart;
+                prefixEnd = i;
+                suffixStart = i + 1;
+                suffixEnd = runEnd(input, suffixStart, to);
+                return true;
+            }
+            runStart = i + 1;
+        }
+        return false;
+    }
+
+    /**
+     * Finds the last "/prefix/suffix" in the range which is preceded by a non-empty host and stores its offsets.
+     * Everything between the scheme and the prefix is treated as host (e.g. "hdl.handle.net/api/handles").
+     */
+    private boolean scanHTTPURL(CharSequence input, int from, int to) {
+        int lastSlash = -1;
+        boolean cleanSegment = false;
+        int candidate = -1;
+        for (int i = from; i < to; i++) {
+            char c = input.charAt(i);
+            if (c == '/') {
+                // the segment between the last two slashes is a valid prefix if it is non-empty and clean
+                if (lastSlash > from && cleanSegment && i > lastSlash + 1 && i + 1 < to && isHandleChar(input.charAt(i + 1)))
+                    candidate = lastSlash;
+                lastSlash = i;
+                cleanSegment = true;
+            } else if (!isHandleChar(c)) {
+                cleanSegment = false;
+            }
+        }
+        if (candidate < 0) return false;
+        hostStart = from;
+        hostEnd = candidate;
+        prefixStart = candidate + 1;
+        prefixEnd = runEnd(input, prefixStart, to);
+        suffixStart = prefixEnd + 1;
+        suffixEnd = runEnd(input, suffixStart, to);
+        return true;
+    }
+
+    private static int runEnd(CharSequence input, int from, int to) {
+        int i = from;
+        while (i < to && isHandleChar(input.charAt(i))) i++;
+        return i;
+    }
+
+    private static int lineEnd(CharSequence input, int from) {
+        int i = from;
+        while (i < input.length() && !isLineTerminator(input.charAt(i))) i++;
+        return i;
+    }
+
+    private static boolean isHandleChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.';
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
@@ -15,16 +15,27 @@
 
 package edu.kit.datamanager.datacite.validate.impl;
 
+import edu.kit.datamanager.datacite.validate.ValidationFutures;
+import edu.kit.datamanager.datacite.validate.ValidationLevel;
+import edu.kit.datamanager.datacite.validate.ValidationResult;
 import edu.kit.datamanager.datacite.validate.ValidatorInterface;
+import edu.kit.datamanager.datacite.validate.ValidatorSettings;
+import edu.kit.datamanager.datacite.validate.cache.ResultCache;
 import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
 import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+import edu.kit.datamanager.datacite.validate.handle.HandleMessage;
+import edu.kit.datamanager.datacite.validate.handle.HandleResolver;
+import edu.kit.datamanager.datacite.validate.http.HttpTransport;
+import edu.kit.datamanager.datacite.validate.index.PrefixIndex;
+import edu.kit.datamanager.datacite.validate.metrics.ValidationMetrics;
 import org.datacite.schema.kernel_4.RelatedIdentifierType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * This class validates Handles with help of handle.net.
@@ -33,6 +44,129 @@ public class HandleNetValidator implements ValidatorInterface {
 
     Logger log = LoggerFactory.getLogger(HandleNetValidator.class);
 
+    /**
+     * One parsed view per thread, so parsing an input does not allocate anything.
+     */
+    private static final ThreadLocal<HandleIdentifier> PARSED_IDENTIFIER = ThreadLocal.withInitial(HandleIdentifier::new);
+
+    /**
+     * Syntax signature of handles: "prefix/suffix", "hdl://prefix/suffix" or an URL of a handle server (e.g. https://hdl.handle.net/prefix/suffix).
+     */
+    static final String HANDLE_SIGNATURE = "(hdl://)?[A-Za-z0-9.]+/[A-Za-z0-9.]\\S*"
+            + "|https?://[^/\\s]*(hdl|handle)[^/\\s]*/(\\S*/)?[A-Za-z0-9.]+/[A-Za-z0-9.]\\S*";
+
+    /**
+     * Syntax signature of DOIs: handles with a prefix starting with "10.", optionally as "doi:" or on a DOI server (e.g. https://doi.org/10.1/x).
+     */
+    static final String DOI_SIGNATURE = "(doi:|hdl://)?10\\.[0-9]+(\\.[0-9]+)*/[A-Za-z0-9.]\\S*"
+            + "|https?://[^/\\s]*doi[^/\\s]*/(\\S*/)?10\\.[0-9]+(\\.[0-9]+)*/[A-Za-z0-9.]\\S*";
+
+    /**
+     * Results without a cause are shared, so rejecting an input doesn't allocate a new result.
+     */
+    private static final ValidationResult ILLEGAL_TYPE = ValidationResult.warning(ValidationResult.Stage.TYPE, "Illegal type of Validator.");
+    private static final ValidationResult INVALID_INPUT = ValidationResult.error(ValidationResult.Stage.SYNTAX, "Invalid input");
+    private static final ValidationResult INVALID_SUFFIX = ValidationResult.warning(ValidationResult.Stage.RESOLVE, "Prefix valid, but suffix not");
+    private static final ValidationResult INVALID_PREFIX = ValidationResult.error(ValidationResult.Stage.PREFIX, "Prefix not provable on handle.net");
+
+    /**
+     * Results of the prefix check on handle.net (0.NA/prefix). Shared by all instances.
+     */
+    private static final ResultCache<String, Boolean> PREFIX_CACHE = ResultCache.fromSystemProperties("prefix", 1000, Duration.ofHours(24), Duration.ofHours(1));
+
+    static {
+        ValidationMetrics.bindCache(PREFIX_CACHE);
+    }
+
+    /**
+     * @return the cache which contains the results of the prefix checks on handle.net.
+     */
+    public static ResultCache<String, Boolean> getPrefixCache() {
+        return PREFIX_CACHE;
+    }
+
+    /**
+     * Local index of registered prefixes. It is read from the file in the system property validator.prefixIndex.
+     */
+    private static volatile PrefixIndex prefixIndex = openPrefixIndex(ValidatorSettings.getString("validator.prefixIndex", null));
+
+    /**
+     * @return the local prefix index or null if no index is used.
+     */
+    public static PrefixIndex getPrefixIndex() {
+        return prefixIndex;
+    }
+
+    /**
+     * Replaces the local prefix index.
+     *
+     * @param index the new index or null to disable the local prefix check.
+     */
+    public static void setPrefixIndex(PrefixIndex index) {
+        prefixIndex = index;
+    }
+
+    private static PrefixIndex openPrefixIndex(String path) {
+        if (path == null) return null;
+        try {
+            PrefixIndex index = PrefixIndex.open(Path.of(path));
+            LOG.info("Loaded prefix index {} with {} prefixes.", path, index.size());
+            return index;
+        } catch (IOException e) {
+            LOG.warn("Can't load prefix index " + path, e);
+            return null;
+        }
+    }
+
+    private final ValidatorInterface urlValidator;
+    private final String resolver;
+    private final String prefixResolver;
+    private final HandleResolver nativeResolver;
+
+    /**
+     * Creates a validator which uses the shared HTTP transport.
+     */
+    public HandleNetValidator() {
+        this(HttpTransport.shared());
+    }
+
+    /**
+     * Creates a validator which resolves handles with the servers in the system properties
+     * validator.handle.resolver (default: http://hdl.handle.net/api/handles) and
+     * validator.handle.prefixResolver (default: https://hdl.handle.net/0.NA).
+     * If a handle server is configured in validator.handle.native.server, handles without a server address are resolved with the native Handle protocol instead.
+     *
+     * @param transport used to request handle.net
+     */
+    public HandleNetValidator(HttpTransport transport) {
+        this(transport,
+                ValidatorSettings.getString("validator.handle.resolver", "http://hdl.handle.net/api/handles"),
+                ValidatorSettings.getString("validator.handle.prefixResolver", "https://hdl.handle.net/0.NA"),
+                HandleResolver.shared());
+    }
+
+    /**
+     * @param transport      used to request the resolvers
+     * @param resolver       base address of the server which resolves handles without a server address (e.g. http://hdl.handle.net/api/handles)
+     * @param prefixResolver base address of the server which resolves prefix handles (e.g. https://hdl.handle.net/0.NA)
+     */
+    public HandleNetValidator(HttpTransport transport, String resolver, String prefixResolver) {
+        this(transport, resolver, prefixResolver, null);
+    }
+
+    /**
+     * @param transport      used to request the resolvers and handle URLs
+     * @param resolver       base address of the server which resolves handles without a server address (e.g. http://hdl.handle.net/api/handles)
+     * @param prefixResolver base address of the server which resolves prefix handles (e.g. https://hdl.handle.net/0.NA)
+     * @param nativeResolver resolves handles without a server address and prefix handles with the native Handle protocol instead of the HTTP resolvers, or null
+     */
+    public HandleNetValidator(HttpTransport transport, String resolver, String prefixResolver, HandleResolver nativeResolver) {
+        this.urlValidator = new URLValidator(transport);
+        this.resolver = resolver;
+        this.prefixResolver = prefixResolver;
+        this.nativeResolver = nativeResolver;
+    }
+
     /**
      * This method returns the type of the validator implementation.
      *
@@ -43,6 +177,19 @@ public class HandleNetValidator implements ValidatorInterface {
         return RelatedIdentifierType.HANDLE;
     }
 
+    /**
+     * This method returns the syntax signature of handles or DOIs.
+     *
+     * @param type of the input
+     * @return the signature of the type or null if the type is neither HANDLE nor DOI.
+     */
+    @Override
+    public String syntaxSignature(RelatedIdentifierType type) {
+        if (type == RelatedIdentifierType.HANDLE) return HANDLE_SIGNATURE;
+        if (type == RelatedIdentifierType.DOI) return DOI_SIGNATURE;
+        return null;
+    }
+
     /**
      * This method must be implemented by any implementation.
      * It validates an input and either returns true or throws an exception.
@@ -55,108 +202,165 @@ public class HandleNetValidator implements ValidatorInterface {
      */
     @Override
     public boolean isValid(String input, RelatedIdentifierType type) throws ValidationError, ValidationWarning {
+        return ValidationFutures.awaitResult(validate(input, type)).toBoolean();
+    }
+
+    /**
+     * This method validates a handle with non-blocking requests to handle.net.
+     *
+     * @param input to validate
+     * @param type  of the input
+     * @return a future which completes with true or exceptionally with a ValidationError or ValidationWarning.
+     */
+    @Override
+    public CompletableFuture<Boolean> validateAsync(String input, RelatedIdentifierType type) {
+        return ValidationResult.toFuture(validate(input, type));
+    }
+
+    /**
+     * This method validates a handle with non-blocking requests to handle.net without creating exceptions.
+     *
+     * @param input to validate
+     * @param type  of the input
+     * @return a future which completes with the result of the validation.
+     */
+    @Override
+    public CompletableFuture<ValidationResult> validate(String input, RelatedIdentifierType type) {
+        return validate(input, type, ValidationLevel.RESOLVE);
+    }
+
+    /**
+     * This method validates a handle up to a level without creating exceptions.
+     * SYNTAX only parses the handle. PREFIX additionally checks the prefix with the local prefix index, the prefix cache or handle.net.
+     * RESOLVE additionally resolves the handle.
+     *
+     * @param input to validate
+     * @param type  of the input
+     * @param level up to which the handle is validated
+     * @return a future which completes with the result of the validation.
+     */
+    @Override
+    public CompletableFuture<ValidationResult> validate(String input, RelatedIdentifierType type, ValidationLevel level) {
         if (type != supportedType()) {
             LOG.warn("Illegal type of validator");
-            throw new ValidationWarning("Illegal type of Validator.");
+            return CompletableFuture.completedFuture(ILLEGAL_TYPE);
         }
 
-        String regex = "^(hdl://|http://|https://|doi:)(.+)";
-        Pattern pattern = Pattern.compile(regex, Pattern.MULTILINE);
-        Matcher matcher = pattern.matcher(input);
-        if (matcher.find()) {
-            if (matcher.group(1).equals("https://") || matcher.group(1).equals("http://"))
-                return isValidHTTPURL(matcher.group(0));
-            else return isValidHandle(matcher.group(2));
-        } else return isValidHandle(input);
+        HandleIdentifier identifier = PARSED_IDENTIFIER.get();
+        try {
+            if (!identifier.parse(input)) return CompletableFuture.completedFuture(INVALID_INPUT);
+            if (level == ValidationLevel.SYNTAX) return CompletableFuture.completedFuture(ValidationResult.valid(ValidationLevel.SYNTAX));
+            if (level == ValidationLevel.PREFIX)
+                return isValidPrefix(identifier.prefix()).thenApply(result -> result.isValid() ? ValidationResult.valid(ValidationLevel.PREFIX) : result);
+            if (identifier.scheme().isHTTP())
+                return isDownloadable(identifier.serverAddress(), identifier.prefix(), identifier.suffix());
+            else return isDownloadable(identifier.prefix(), identifier.suffix());
+        } finally {
+            identifier.reset();
+        }
     }
 
     /**
      * This method checks if the given prefix and suffix is downloadable.
      * If there is some invalid input, it will validate the prefix with help of the RESTful API by handle.net.
+     * The duration of the request for the handle is recorded in the metric validator.stage with stage=resolve.
      *
      * @param serverAddress from the server which should be uses for the validation.
      * @param prefix        the handle prefix
      * @param suffix        the handle suffix
-     * @return true if the record is downloadable
-     * @throws ValidationWarning if an error occurs (e.g. no internet connection, invalid prefix or suffix). For further information read the error message or the log.
+     * @return a future which completes with a valid result if the record is downloadable.
+     * Otherwise, it completes with a warning if an error occurs (e.g. no internet connection, invalid suffix) or with an error if the prefix is invalid.
      */
-    private boolean isDownloadable(String serverAddress, String prefix, String suffix) throws ValidationWarning, ValidationError {
-        ValidatorInterface urlValidator = new URLValidator();
-        AtomicBoolean fullValid = new AtomicBoolean(false);
+    private CompletableFuture<ValidationResult> isDownloadable(String serverAddress, String prefix, String suffix) {
         log.debug("Server address: {}", serverAddress);
         log.debug("Prefix: {}", prefix);
         log.debug("Suffix: {}", suffix);
-        ignoringExc(() -> {
-            try {
-                fullValid.set(urlValidator.isValid(serverAddress + "/" + prefix + "/" + suffix));
-            } catch (ValidationError | ValidationWarning ignored) {
+        return checkPrefixIfInvalid(prefix, ValidationMetrics.stage("resolve").recordPending(System.nanoTime(), urlValidator.validate(serverAddress + "/" + prefix + "/" + suffix)));
+    }
+
+    /**
+     * This method passes a valid result of the resolution on. Otherwise, it checks the prefix to tell an invalid suffix from an invalid prefix.
+     *
+     * @param prefix     the handle prefix
+     * @param resolution the result of the resolution of the handle
+     * @return a future which completes with the result of the validation.
+     */
+    private CompletableFuture<ValidationResult> checkPrefixIfInvalid(String prefix, CompletableFuture<ValidationResult> resolution) {
+        return resolution.thenCompose(result -> {
+            if (result.isValid()) {
+                LOG.info("The handle is valid!");
+                return CompletableFuture.completedFuture(result);
             }
+            log.warn("Either the suffix or the prefix might be invalid. Proving if prefix is valid...");
+            return isValidPrefix(prefix).thenApply(prefixResult -> {
+                if (prefixResult.isValid()) {
+                    log.info("The prefix {} is valid!", prefix);
+                    // the resolver was busy or unreachable, so nothing is known about the suffix
+                    return result.getStatus() == ValidationResult.Status.WARNING ? result : INVALID_SUFFIX;
+                }
+                if (prefixResult.getStatus() == ValidationResult.Status.ERROR) log.error("The entered prefix is invalid!");
+                return prefixResult;
+            });
         });
-        if (fullValid.get()) {
-            LOG.info("The handle is valid!");
-            return true;
-        }
-        log.warn("Either the suffix or the prefix might be invalid. Proving if prefix is valid...");
-        if (urlValidator.isValid("https://hdl.handle.net/0.NA/" + prefix)) {
-            log.info("The prefix {} is valid!", prefix);
-            throw new ValidationWarning("Prefix valid, but suffix not");
-        }
-        log.error("The entered prefix is invalid!");
-        throw new ValidationError("Prefix not provable on handle.net");
     }
 
     /**
-     * Uses the other isDownloadable method with the handle.net server as serverAddress
+     * This method checks if the prefix is registered on handle.net.
+     * Prefixes contained in the local prefix index are accepted without a remote call.
+     * Otherwise, the result of the remote check is cached and its duration is recorded in the metric validator.stage with stage=prefix. If handle.net is not reachable, the warning is passed on and nothing is cached.
      *
      * @param prefix the handle prefix
-     * @param suffix the handle suffix
-     * @return true if the record is downloadable
-     * @throws ValidationWarning if an error occurs (e.g. no internet connection, invalid prefix or suffix). For further information read the error message or the log.
+     * @return a future which completes with a valid result if the prefix is registered, an error if it is not or a warning if handle.net is not reachable.
      */
-    private boolean isDownloadable(String prefix, String suffix) throws ValidationWarning, ValidationError {
-        return isDownloadable("http://hdl.handle.net/api/handles", prefix, suffix);
+    private CompletableFuture<ValidationResult> isValidPrefix(String prefix) {
+        PrefixIndex index = prefixIndex;
+        if (index != null && index.contains(prefix)) return CompletableFuture.completedFuture(ValidationResult.valid());
+        Boolean cached = PREFIX_CACHE.get(prefix);
+        if (cached != null) return CompletableFuture.completedFuture(cached ? ValidationResult.valid() : INVALID_PREFIX);
+        CompletableFuture<ValidationResult> request = nativeResolver != null
+                ? resolveNative("0.NA/" + prefix)
+                : urlValidator.validate(prefixResolver + "/" + prefix);
+        return ValidationMetrics.stage("prefix").recordPending(System.nanoTime(), request).thenApply(result -> {
+            if (result.getStatus() == ValidationResult.Status.WARNING) return result;
+            PREFIX_CACHE.put(prefix, result.isValid(), result.isValid());
+            return result.isValid() ? result : INVALID_PREFIX;
+        });
     }
 
     /**
-     * This method uses regex to get the prefix, suffix and the server address out of a http or https URL.
-     * After this it uses the isDownloadable method to check whether the input is downloadable.
+     * Uses the other isDownloadable method with the configured resolver as serverAddress.
+     * If a native resolver is configured, the handle is resolved with the native Handle protocol instead.
      *
-     * @param url to validate
-     * @return true if the input is valid and downloadable.
-     * @throws ValidationWarning from isDownloadable. Contains further information in the message or in the log.
-     * @throws ValidationError   if the input is invalid.
+     * @param prefix the handle prefix
+     * @param suffix the handle suffix
+     * @return a future which completes with the result of the validation
      */
-    private boolean isValidHTTPURL(String url) throws ValidationWarning, ValidationError {
-        String regex = "(http|https)://(.+)/([A-Za-z0-9.]+)/([A-Za-z0-9.]+)";
-        Pattern pattern = Pattern.compile(regex, Pattern.MULTILINE);
-        Matcher matcher = pattern.matcher(url);
-        if (matcher.find()) {
-            return isDownloadable((matcher.group(1) + "://" + matcher.group(2)), matcher.group(3), matcher.group(4));
-        } else throw new ValidationError("Invalid input");
+    private CompletableFuture<ValidationResult> isDownloadable(String prefix, String suffix) {
+        if (nativeResolver == null) return isDownloadable(resolver, prefix, suffix);
+        return checkPrefixIfInvalid(prefix, ValidationMetrics.stage("resolve").recordPending(System.nanoTime(), resolveNative(prefix + "/" + suffix)));
     }
 
     /**
-     * This method uses regex to check whether unallowed characters are used and to extract the prefix and suffix.
-     * After this it uses the isDownloadable method to check whether the input is downloadable.
+     * This method resolves a handle with the native resolver.
+     * A handle which exists is valid, even if it has no public values. A handle which doesn't exist is an error.
+     * Every other response and an unreachable server are warnings, because nothing is known about the handle.
      *
-     * @param handle to validate
-     * @return true if the input is valid and downloadable.
-     * @throws ValidationWarning from isDownloadable. Contains further information in the message or in the log.
-     * @throws ValidationError   if the input is invalid.
+     * @param handle to resolve (e.g. "10.1038/nphys1170" or "0.NA/10.1038")
+     * @return a future which completes with the result of the resolution.
      */
-    private boolean isValidHandle(String handle) throws ValidationWarning, ValidationError {
-        String regex = "([A-Za-z0-9.]+)/([A-Za-z0-9.]+)";
-        Pattern pattern = Pattern.compile(regex, Pattern.MULTILINE);
-        Matcher matcher = pattern.matcher(handle);
-        if (matcher.find()) {
-            return isDownloadable(matcher.group(1), matcher.group(2));
-        } else throw new ValidationError("Invalid input");
-    }
-
-    private static void ignoringExc(Runnable r) {
-        try {
-            r.run();
-        } catch (Exception ignored) {
-        }
+    private CompletableFuture<ValidationResult> resolveNative(String handle) {
+        return nativeResolver.resolve(handle).handle((code, exception) -> {
+            if (exception != null)
+                return ValidationResult.warning(ValidationResult.Stage.RESOLVE, "Handle server " + nativeResolver.getServer() + " not reachable", exception);
+            switch (code) {
+                case HandleMessage.RC_SUCCESS:
+                case HandleMessage.RC_VALUES_NOT_FOUND:
+                    return ValidationResult.valid();
+                case HandleMessage.RC_HANDLE_NOT_FOUND:
+                    return ValidationResult.error(ValidationResult.Stage.RESOLVE, "Handle " + handle + " not found");
+                default:
+                    return ValidationResult.warning(ValidationResult.Stage.RESOLVE, "Handle server answered " + HandleMessage.responseName(code) + " for " + handle);
+            }
+        });
     }
 }
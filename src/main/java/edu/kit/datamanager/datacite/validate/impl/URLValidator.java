@@ -15,23 +15,118 @@
 
 package edu.kit.datamanager.datacite.validate.impl;
 
+import edu.kit.datamanager.datacite.validate.ValidationFutures;
+import edu.kit.datamanager.datacite.validate.ValidationLevel;
+import edu.kit.datamanager.datacite.validate.ValidationResult;
 import edu.kit.datamanager.datacite.validate.ValidatorInterface;
+import edu.kit.datamanager.datacite.validate.ValidatorSettings;
+import edu.kit.datamanager.datacite.validate.cache.ResultCache;
+import edu.kit.datamanager.datacite.validate.cache.SingleFlight;
 import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
 import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+import edu.kit.datamanager.datacite.validate.http.CircuitOpenException;
+import edu.kit.datamanager.datacite.validate.http.HttpTransport;
+import edu.kit.datamanager.datacite.validate.metrics.ValidationMetrics;
 import org.datacite.schema.kernel_4.RelatedIdentifierType;
 
 import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.ProtocolException;
-import java.net.URL;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Pattern;
 
 public class URLValidator implements ValidatorInterface {
+
+    /**
+     * Syntax signature of http(s) URLs.
+     */
+    static final String URL_SIGNATURE = "https?://[^/?#\\s]+([/?#]\\S*)?";
+    private static final Pattern URL_PATTERN = Pattern.compile(URL_SIGNATURE);
+
+    /**
+     * Results without a cause are shared, so rejecting an input doesn't allocate a new result.
+     */
+    private static final ValidationResult ILLEGAL_TYPE = ValidationResult.warning(ValidationResult.Stage.TYPE, "Illegal type of Validator.");
+    private static final ValidationResult INVALID_URL = ValidationResult.error(ValidationResult.Stage.SYNTAX, "Invalid URL");
+    private static final ValidationResult UNREACHABLE_URL = ValidationResult.error(ValidationResult.Stage.RESOLVE, "Invalid URL!");
+    private static final ValidationResult THROTTLED = ValidationResult.warning(ValidationResult.Stage.RESOLVE, "The server is busy and asked to slow down. Please try again later.");
+
+    /**
+     * HTTP status codes of already checked URLs. Shared by all instances.
+     */
+    private static final ResultCache<String, Integer> STATUS_CACHE = ResultCache.fromSystemProperties("url", 10000, Duration.ofHours(1), Duration.ofMinutes(5));
+
+    /**
+     * Concurrent checks of the same URL share one HTTP request. Shared by all instances.
+     */
+    private static final SingleFlight<String, Integer> STATUS_FLIGHTS = new SingleFlight<>("url");
+
+    static {
+        ValidationMetrics.bindCache(STATUS_CACHE);
+        ValidationMetrics.bindSingleFlight(STATUS_FLIGHTS);
+    }
+
+    /**
+     * If true, URLs of hosts whose circuit breaker is open are accepted after the syntax check instead of returning a warning.
+     * It is read from the system property validator.breaker.fallback (value "syntax"). Default: a warning.
+     */
+    private static volatile boolean syntaxFallback = "syntax".equalsIgnoreCase(ValidatorSettings.getString("validator.breaker.fallback", "warning"));
+
+    /**
+     * @return true if URLs of unavailable hosts are only checked for their syntax.
+     */
+    public static boolean isSyntaxFallback() {
+        return syntaxFallback;
+    }
+
+    /**
+     * Selects what happens if the circuit breaker of a host is open.
+     *
+     * @param fallback true to accept URLs of unavailable hosts after the syntax check, false to return a warning.
+     */
+    public static void setSyntaxFallback(boolean fallback) {
+        syntaxFallback = fallback;
+    }
+
+    /**
+     * @return the cache which contains the HTTP status codes of already checked URLs.
+     */
+    public static ResultCache<String, Integer> getStatusCache() {
+        return STATUS_CACHE;
+    }
+
+    private final HttpTransport transport;
+
+    /**
+     * Creates a validator which uses the shared HTTP transport.
+     */
+    public URLValidator() {
+        this(HttpTransport.shared());
+    }
+
+    /**
+     * @param transport used to request the URLs
+     */
+    public URLValidator(HttpTransport transport) {
+        this.transport = transport;
+    }
+
     @Override
     public RelatedIdentifierType supportedType() {
         return RelatedIdentifierType.URL;
     }
 
+    /**
+     * This method returns the syntax signature of http(s) URLs.
+     *
+     * @param type of the input
+     * @return the signature of URLs or null if the type is not URL.
+     */
+    @Override
+    public String syntaxSignature(RelatedIdentifierType type) {
+        return type == RelatedIdentifierType.URL ? URL_SIGNATURE : null;
+    }
+
     /**
      * This method must be implemented by any implementation.
      * It validates an input and either returns true or throws an exception.
@@ -44,35 +139,126 @@ public class URLValidator implements ValidatorInterface {
      */
     @Override
     public boolean isValid(String input, RelatedIdentifierType type) throws ValidationError, ValidationWarning {
+        return ValidationFutures.awaitResult(validate(input, type)).toBoolean();
+    }
+
+    /**
+     * This method validates an URL with a non-blocking HTTP request.
+     * Concurrent validations of the same URL share one request.
+     *
+     * @param input to validate
+     * @param type  of the input
+     * @return a future which completes with true or exceptionally with a ValidationError or ValidationWarning.
+     */
+    @Override
+    public CompletableFuture<Boolean> validateAsync(String input, RelatedIdentifierType type) {
+        return ValidationResult.toFuture(validate(input, type));
+    }
+
+    /**
+     * This method validates an URL with a non-blocking HTTP request without creating exceptions.
+     * Concurrent validations of the same URL share one request.
+     *
+     * @param input to validate
+     * @param type  of the input
+     * @return a future which completes with the result of the validation.
+     */
+    @Override
+    public CompletableFuture<ValidationResult> validate(String input, RelatedIdentifierType type) {
+        return validate(input, type, ValidationLevel.RESOLVE);
+    }
+
+    /**
+     * This method validates an URL up to a level without creating exceptions.
+     * URLs have no prefix, so SYNTAX and PREFIX only check the syntax without a request. RESOLVE requests the URL.
+     *
+     * @param input to validate
+     * @param type  of the input
+     * @param level up to which the URL is validated
+     * @return a future which completes with the result of the validation.
+     */
+    @Override
+    public CompletableFuture<ValidationResult> validate(String input, RelatedIdentifierType type, ValidationLevel level) {
         if (type != supportedType()) {
             LOG.warn("Illegal type of validator");
-            throw new ValidationWarning("Illegal type of Validator.");
+            return CompletableFuture.completedFuture(ILLEGAL_TYPE);
         }
 
-        URL urlHandler = null;
-        HttpURLConnection con = null;
         LOG.debug("URL: {}", input);
-        int status;
-        try {
-            urlHandler = new URL(input);
-            con = (HttpURLConnection) urlHandler.openConnection();
-            con.setRequestMethod("GET");
-            status = con.getResponseCode();
-            LOG.debug("HTTP status: {}", status);
-            if (status != 200) {
-                LOG.error("Invalid URL");
-                throw new ValidationError("Invalid URL!");
+        if (input == null) return CompletableFuture.completedFuture(INVALID_URL);
+        if (level != ValidationLevel.RESOLVE)
+            return CompletableFuture.completedFuture(hasValidSyntax(input) ? ValidationResult.valid(ValidationLevel.SYNTAX) : INVALID_URL);
+        Integer cached = STATUS_CACHE.get(input);
+        if (cached != null) return CompletableFuture.completedFuture(checkStatus(cached));
+        // the result is cached inside of the flight, so callers arriving after it has completed find it in the cache
+        return STATUS_FLIGHTS.execute(input, () -> transport.statusAsync(input).thenApply(code -> {
+            // a busy server says nothing about the URL
+            if (!isThrottled(code)) STATUS_CACHE.put(input, code, code == 200);
+            return code;
+        })).handle((code, exception) -> {
+            if (exception == null) return checkStatus(code);
+            Throwable cause = ValidationFutures.unwrap(exception);
+            if (cause instanceof IllegalArgumentException) {
+                LOG.warn("Invalid URL");
+                return ValidationResult.error(ValidationResult.Stage.SYNTAX, "Invalid URL", cause);
             }
+            if (cause instanceof CircuitOpenException) return degraded(input, (CircuitOpenException) cause);
+            return toWarning(cause);
+        });
+    }
+
+    /**
+     * The host is known to be unavailable, so the URL was not requested.
+     * Depending on the fallback, the URL is accepted after the syntax check or a warning is returned.
+     */
+    private static ValidationResult degraded(String input, CircuitOpenException exception) {
+        if (syntaxFallback && hasValidSyntax(input)) {
+            LOG.debug("Host {} is unavailable. Only the syntax of the URL has been checked.", exception.getHost());
+            return ValidationResult.valid(ValidationResult.Stage.SYNTAX, "Valid syntax. The URL has not been resolved, because " + exception.getHost() + " is unavailable.");
+        }
+        LOG.debug("Host {} is unavailable. The URL has not been requested.", exception.getHost());
+        return ValidationResult.warning(ValidationResult.Stage.RESOLVE, "Host " + exception.getHost() + " is unavailable. Please try again later.", exception);
+    }
+
+    private static ValidationResult checkStatus(int status) {
+        LOG.debug("HTTP status: {}", status);
+        if (isThrottled(status)) {
+            LOG.warn("The server is busy (HTTP status {})", status);
+            return THROTTLED;
+        }
+        if (status != 200) {
+            LOG.error("Invalid URL");
+            return UNREACHABLE_URL;
+        }
+        return ValidationResult.valid();
+    }
+
+    /**
+     * @return true if the input matches the signature of http(s) URLs and is a valid URI.
+     */
+    private static boolean hasValidSyntax(String input) {
+        if (!URL_PATTERN.matcher(input).matches()) return false;
+        try {
+            URI.create(input);
             return true;
-        } catch (ProtocolException e) {
-            LOG.warn("Error while setting request method");
-            throw new ValidationWarning("Error setting request method", e);
-        } catch (MalformedURLException e) {
-            LOG.warn("Invalid URL");
-            throw new ValidationError("Invalid URL", e);
-        } catch (IOException e) {
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The HttpTransport has already waited and repeated the request, so a remaining 429 or 503 means that the server is still busy.
+     */
+    private static boolean isThrottled(int status) {
+        return status == 429 || status == 503;
+    }
+
+    private static ValidationResult toWarning(Throwable exception) {
+        if (exception instanceof IOException) {
             LOG.warn("No connection to the server possible. Do you have an internet connection?");
-            throw new ValidationWarning("No connection to the server possible. Do you have an internet connection?", e);
+            return ValidationResult.warning(ValidationResult.Stage.RESOLVE, "No connection to the server possible. Do you have an internet connection?", exception);
         }
+        LOG.warn("Error while requesting the URL", exception);
+        return ValidationResult.warning(ValidationResult.Stage.RESOLVE, "Error while requesting the URL", exception);
     }
 }
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * This class is a compact on-disk index of registered handle prefixes.
+ * The index file is memory-mapped and searched in place with a binary search, so no prefix is copied to the heap.
+ * Prefixes are compared case-insensitively.
+ * <p>
+ * File format (big endian):
+ * <pre>
+ * int    magic ("HPX1")
+ * int    number of prefixes n
+ * int[n+1] offsets of the prefixes relative to the start of the data section
+ * byte[] data: the sorted, lower case prefixes in ASCII without separators
+ * </pre>
+ *
+ * @author maximilianiKIT
+ */
+public final class PrefixIndex {
+
+    static Logger LOG = LoggerFactory.getLogger(PrefixIndex.class);
+
+    static final int MAGIC = 0x48505831;
+    private static final String PREFIX_HANDLE = "0.na/";
+
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final int dataStart;
+
+    private PrefixIndex(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < 8 || buffer.getInt(0) != MAGIC) throw new IOException("Not a prefix index.");
+        this.count = buffer.getInt(4);
+        this.dataStart = 8 + (count + 1) * 4;
+        if (count < 0 || dataStart > buffer.capacity() || dataStart + buffer.getInt(8 + count * 4) > buffer.capacity())
+            throw new IOException("Corrupt prefix index.");
+    }
+
+    /**
+     * Maps an index file which was created by the build method.
+     *
+     * @param indexFile to open
+     * @return the index
+     * @throws IOException if the file can't be read or is no prefix index.
+     */
+    public static PrefixIndex open(Path indexFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            return new PrefixIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Creates an index file from an exported prefix list.
+     * The list contains one prefix per line, either plain (e.g. "10.1038") or as prefix handle (e.g. "0.NA/10.1038").
+     * Empty lines and lines starting with '#' are ignored, lines with other characters than A-Z, a-z, 0-9 and '.' are skipped.
+     *
+     * @param prefixList exported list of prefixes
+     * @param indexFile  which is created or overwritten
+     * @return the number of prefixes in the index
+     * @throws IOException if a file can't be read or written.
+     */
+    public static int build(Path prefixList, Path indexFile) throws IOException {
+        SortedSet<String> prefixes = new TreeSet<>();
+        try (BufferedReader reader = Files.newBufferedReader(prefixList, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String prefix = line.trim().toLowerCase(Locale.ROOT);
+                if (prefix.isEmpty() || prefix.startsWith("#")) continue;
+                if (prefix.startsWith(PREFIX_HANDLE)) prefix = prefix.substring(PREFIX_HANDLE.length());
+                if (!isPrefix(prefix)) {
+                    LOG.warn("Skipping invalid prefix: {}", line);
+                    continue;
+                }
+                prefixes.add(prefix);
+            }
+        }
+        try (OutputStream file = Files.newOutputStream(indexFile); DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeInt(prefixes.size());
+            int offset = 0;
+            for (String prefix : prefixes) {
+                out.writeInt(offset);
+                offset += prefix.length();
+            }
+            out.writeInt(offset);
+            for (String prefix : prefixes) out.writeBytes(prefix);
+        }
+        LOG.info("Wrote {} prefixes to {}", prefixes.size(), indexFile);
+        return prefixes.size();
+    }
+
+    /**
+     * @param prefix to look up (e.g. "10.1038")
+     * @return true if the prefix is contained in the index.
+     */
+    public boolean contains(CharSequence prefix) {
+        if (prefix == null || prefix.length() == 0) return false;
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(mid, prefix);
+            if (cmp < 0) low = mid + 1;
+            else if (cmp > 0) high = mid - 1;
+            else return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of prefixes in the index.
+     */
+    public int size() {
+        return count;
+    }
+
+    private int compare(int index, CharSequence prefix) {
+        int start = dataStart + buffer.getInt(8 + index * 4);
+        int length = buffer.getInt(12 + index * 4) - buffer.getInt(8 + index * 4);
+        int n = Math.min(length, prefix.length());
+        for (int i = 0; i < n; i++) {
+            int a = buffer.get(start + i) & 0xff;
+            int b = toLowerCase(prefix.charAt(i));
+            if (a != b) return a - b;
+        }
+        return length - prefix.length();
+    }
+
+    private static int toLowerCase(char c) {
+        return (c >= 'A' && c <= 'Z') ? c + ('a' - 'A') : c;
+    }
+
+    private static boolean isPrefix(String prefix) {
+        if (prefix.isEmpty()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '.')) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Builds an index file from the command line.
+     *
+     * @param args the exported prefix list and the index file
+     * @throws IOException if a file can't be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: PrefixIndex <prefix list> <index file>");
+            return;
+        }
+        System.out.println(build(Path.of(args[0]), Path.of(args[1])) + " prefixes written to " + args[1]);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.metadata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class turns a dump of concatenated UTF-8 XML documents into one well-formed document, so it can be read by a single XML stream reader.
+ * The documents are wrapped into a synthetic root element, and their XML declarations and byte order marks are removed.
+ * A single document passes through unchanged apart from the wrapping.
+ *
+ * @author maximilianiKIT
+ */
+final class ConcatenatedXmlInputStream extends InputStream {
+
+    /**
+     * The local name of the synthetic root element.
+     */
+    static final String ROOT = "concatenated-documents";
+
+    private static final byte[] PREFIX = ("<" + ROOT + ">").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SUFFIX = ("</" + ROOT + ">").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DECLARATION = "<?xml".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[1 << 16];
+    private int position;
+    private int limit;
+    private boolean eof;
+    private int prefixPosition;
+    private int suffixPosition = -1;
+
+    /**
+     * @param in the concatenated documents
+     */
+    ConcatenatedXmlInputStream(InputStream in) {
+        this.in = in;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (prefixPosition < PREFIX.length) return copy(PREFIX, prefixPosition, b, off, len, true);
+        if (suffixPosition >= 0) return suffixPosition < SUFFIX.length ? copy(SUFFIX, suffixPosition, b, off, len, false) : -1;
+        while (true) {
+            if (!ensure(1)) {
+                suffixPosition = 0;
+                return copy(SUFFIX, 0, b, off, len, false);
+            }
+            if (startsWith(BOM)) {
+                position += BOM.length;
+                continue;
+            }
+            if (startsWith(DECLARATION) && ensure(DECLARATION.length + 1) && isWhitespace(buffer[position + DECLARATION.length])) {
+                position += DECLARATION.length + 1;
+                skipDeclaration();
+                continue;
+            }
+            // copy everything up to the next byte which might start a declaration or byte order mark
+            int end = position + 1;
+            int max = Math.min(limit, position + len);
+            while (end < max && buffer[end] != '<' && buffer[end] != BOM[0]) end++;
+            int count = end - position;
+            System.arraycopy(buffer, position, b, off, count);
+            position = end;
+            return count;
+        }
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int copy(byte[] source, int from, byte[] b, int off, int len, boolean prefix) {
+        int count = Math.min(len, source.length - from);
+        System.arraycopy(source, from, b, off, count);
+        if (prefix) prefixPosition += count;
+        else suffixPosition += count;
+        return count;
+    }
+
+    /**
+     * Reads from the stream until the buffer holds at least count bytes after the position.
+     *
+     * @return false if the stream ended before.
+     */
+    private boolean ensure(int count) throws IOException {
+        if (limit - position >= count) return true;
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        while (!eof && limit < count) {
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) eof = true;
+            else limit += read;
+        }
+        return limit - position >= count;
+    }
+
+    /**
+     * @return true if the buffer starts with the bytes at the position. The buffer is filled as far as needed.
+     */
+    private boolean startsWith(byte[] expected) throws IOException {
+        if (buffer[position] != expected[0] || !ensure(expected.length)) return false;
+        for (int i = 1; i < expected.length; i++) {
+            if (buffer[position + i] != expected[i]) return false;
+        }
+        return true;
+    }
+
+    private void skipDeclaration() throws IOException {
+        while (ensure(2)) {
+            if (buffer[position] == '?' && buffer[position + 1] == '>') {
+                position += 2;
+                return;
+            }
+            position++;
+        }
+        position = limit;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+}
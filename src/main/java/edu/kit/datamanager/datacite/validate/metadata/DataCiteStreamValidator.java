@@ -0,0 +1,215 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.metadata;
+
+import edu.kit.datamanager.datacite.validate.GenericValidator;
+import edu.kit.datamanager.datacite.validate.ValidationLevel;
+import edu.kit.datamanager.datacite.validate.ValidationRequest;
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * This class validates the related identifiers of DataCite metadata while the XML is parsed.
+ * The input is either a single DataCite document, a document which contains many resource elements (e.g. an OAI-PMH response),
+ * or a dump of concatenated documents. Every resource element is a record.
+ * <p>
+ * Each relatedIdentifier is validated with the validator of its relatedIdentifierType as soon as its element has been read, and parsing continues.
+ * At most parallelism validations are in flight; if the limit is reached, parsing waits. The reports are passed to the consumer in the order of the records,
+ * so the memory used depends on the parallelism and the size of a record, but not on the size of the input.
+ * Document type declarations are rejected, so no external entities are loaded.
+ *
+ * @author maximilianiKIT
+ */
+public final class DataCiteStreamValidator {
+
+    static Logger LOG = LoggerFactory.getLogger(DataCiteStreamValidator.class);
+
+    private static final String RESOURCE = "resource";
+    private static final String IDENTIFIER = "identifier";
+    private static final String RELATED_IDENTIFIER = "relatedIdentifier";
+
+    private static final ValidationResult MISSING_TYPE = ValidationResult.error(ValidationResult.Stage.TYPE, "The relatedIdentifier has no relatedIdentifierType.");
+    private static final ValidationResult EMPTY = ValidationResult.error(ValidationResult.Stage.SYNTAX, "The relatedIdentifier is empty.");
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private final Function<ValidationRequest, CompletableFuture<ValidationResult>> validator;
+    private final ValidationLevel level;
+    private final int parallelism;
+
+    /**
+     * Creates a validator which uses the validators of the GenericValidator.
+     *
+     * @param level       up to which the related identifiers are validated
+     * @param parallelism maximum number of validations in flight
+     * @return a new validator
+     */
+    public static DataCiteStreamValidator of(ValidationLevel level, int parallelism) {
+        GenericValidator validator = GenericValidator.soleInstance();
+        return new DataCiteStreamValidator(request -> validator.validate(request.getInput(), request.getType(), request.getLevel()), level, parallelism);
+    }
+
+    /**
+     * @param validator   function which starts the validation of a request
+     * @param level       up to which the related identifiers are validated
+     * @param parallelism maximum number of validations in flight
+     */
+    public DataCiteStreamValidator(Function<ValidationRequest, CompletableFuture<ValidationResult>> validator, ValidationLevel level, int parallelism) {
+        this.validator = validator;
+        this.level = level == null ? ValidationLevel.RESOLVE : level;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Parses the XML and validates all related identifiers. This method blocks until the report of the last record has been passed to the consumer.
+     * The reports are passed on the calling thread.
+     *
+     * @param xml     UTF-8 encoded DataCite metadata. The stream is not closed.
+     * @param reports consumer of the report of every record
+     * @return the number of records.
+     * @throws XMLStreamException if the XML is not well-formed. The reports of the records before the error have been passed to the consumer.
+     */
+    public long validate(InputStream xml, Consumer<RecordReport> reports) throws XMLStreamException {
+        XMLStreamReader reader = FACTORY.createXMLStreamReader(new ConcatenatedXmlInputStream(xml), "UTF-8");
+        Semaphore permits = new Semaphore(parallelism);
+        ArrayDeque<PendingRecord> window = new ArrayDeque<>();
+        long records = 0;
+        PendingRecord current = null;
+        int depth = 0;
+        int resourceDepth = -1;
+        try {
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (current == null && RESOURCE.equals(name)) {
+                        current = new PendingRecord(records++);
+                        resourceDepth = depth;
+                    } else if (current != null && depth == resourceDepth + 1 && IDENTIFIER.equals(name)) {
+                        current.identifierType = reader.getAttributeValue(null, "identifierType");
+                        current.identifier = reader.getElementText().trim();
+                        continue;
+                    } else if (current != null && RELATED_IDENTIFIER.equals(name)) {
+                        String type = reader.getAttributeValue(null, "relatedIdentifierType");
+                        String relationType = reader.getAttributeValue(null, "relationType");
+                        String value = reader.getElementText().trim();
+                        current.add(value, type, relationType, start(value, type, permits));
+                        continue;
+                    }
+                    depth++;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                    if (current != null && depth == resourceDepth) {
+                        window.add(current);
+                        current = null;
+                        while (!window.isEmpty() && window.peek().isDone()) reports.accept(window.poll().toReport());
+                        if (window.size() >= parallelism) reports.accept(window.poll().toReport());
+                    }
+                }
+            }
+            while (!window.isEmpty()) reports.accept(window.poll().toReport());
+        } catch (XMLStreamException e) {
+            // the records which have been read completely are still reported
+            while (!window.isEmpty()) reports.accept(window.poll().toReport());
+            throw e;
+        } finally {
+            reader.close();
+        }
+        return records;
+    }
+
+    private CompletableFuture<ValidationResult> start(String value, String type, Semaphore permits) {
+        if (type == null || type.isBlank()) return CompletableFuture.completedFuture(MISSING_TYPE);
+        if (value.isEmpty()) return CompletableFuture.completedFuture(EMPTY);
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.completedFuture(ValidationResult.warning(ValidationResult.Stage.EXECUTION, "Validation interrupted", e));
+        }
+        CompletableFuture<ValidationResult> result;
+        try {
+            result = validator.apply(new ValidationRequest(type, value, level));
+        } catch (RuntimeException e) {
+            permits.release();
+            return CompletableFuture.completedFuture(ValidationResult.of(e));
+        }
+        result.whenComplete((valid, exception) -> permits.release());
+        return result;
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        // metadata from outside must not load external entities or expand entities of a DTD
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    /**
+     * A record whose related identifiers are being validated.
+     */
+    private static final class PendingRecord {
+        private final long record;
+        private String identifier;
+        private String identifierType;
+        private final List<String[]> attributes = new ArrayList<>();
+        private final List<CompletableFuture<ValidationResult>> results = new ArrayList<>();
+
+        PendingRecord(long record) {
+            this.record = record;
+        }
+
+        void add(String value, String type, String relationType, CompletableFuture<ValidationResult> result) {
+            attributes.add(new String[]{value, type, relationType});
+            results.add(result);
+        }
+
+        boolean isDone() {
+            for (CompletableFuture<ValidationResult> result : results) {
+                if (!result.isDone()) return false;
+            }
+            return true;
+        }
+
+        RecordReport toReport() {
+            List<RecordReport.Entry> entries = new ArrayList<>(results.size());
+            for (int i = 0; i < results.size(); i++) {
+                ValidationResult result = results.get(i).handle((value, exception) -> exception == null ? value : ValidationResult.of(exception)).join();
+                String[] attribute = attributes.get(i);
+                entries.add(new RecordReport.Entry(attribute[0], attribute[1], attribute[2], result));
+            }
+            if (LOG.isDebugEnabled()) LOG.debug("Validated {} related identifiers of record {} ({}).", entries.size(), record, identifier);
+            return new RecordReport(record, identifier, identifierType, entries);
+        }
+    }
+}
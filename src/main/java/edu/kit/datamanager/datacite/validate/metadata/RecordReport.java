@@ -0,0 +1,171 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.metadata;
+
+import edu.kit.datamanager.datacite.validate.ValidationLevel;
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class is the report of one DataCite record: its identifier and the results of the validations of its related identifiers.
+ *
+ * @author maximilianiKIT
+ */
+public final class RecordReport {
+
+    private final long record;
+    private final String identifier;
+    private final String identifierType;
+    private final List<Entry> relatedIdentifiers;
+
+    RecordReport(long record, String identifier, String identifierType, List<Entry> relatedIdentifiers) {
+        this.record = record;
+        this.identifier = identifier;
+        this.identifierType = identifierType;
+        this.relatedIdentifiers = Collections.unmodifiableList(relatedIdentifiers);
+    }
+
+    /**
+     * @return the position of the record in the input, starting with 0.
+     */
+    public long getRecord() {
+        return record;
+    }
+
+    /**
+     * @return the identifier of the record (e.g. its DOI) or null if the record has none.
+     */
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * @return the identifierType of the identifier or null.
+     */
+    public String getIdentifierType() {
+        return identifierType;
+    }
+
+    /**
+     * @return the results of the related identifiers in the order of the record.
+     */
+    public List<Entry> getRelatedIdentifiers() {
+        return relatedIdentifiers;
+    }
+
+    /**
+     * @return true if all related identifiers are valid.
+     */
+    public boolean isValid() {
+        for (Entry entry : relatedIdentifiers) {
+            if (entry.status != ValidationResult.Status.VALID) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param status of the results
+     * @return the number of related identifiers with the status.
+     */
+    public int count(ValidationResult.Status status) {
+        int count = 0;
+        for (Entry entry : relatedIdentifiers) {
+            if (entry.status == status) count++;
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "RecordReport{" +
+                "record=" + record +
+                ", identifier='" + identifier + '\'' +
+                ", identifierType='" + identifierType + '\'' +
+                ", relatedIdentifiers=" + relatedIdentifiers +
+                '}';
+    }
+
+    /**
+     * The result of the validation of one relatedIdentifier element.
+     */
+    public static final class Entry {
+        private final String relatedIdentifier;
+        private final String relatedIdentifierType;
+        private final String relationType;
+        private final ValidationResult.Status status;
+        private final ValidationLevel level;
+        private final String message;
+
+        Entry(String relatedIdentifier, String relatedIdentifierType, String relationType, ValidationResult result) {
+            this.relatedIdentifier = relatedIdentifier;
+            this.relatedIdentifierType = relatedIdentifierType;
+            this.relationType = relationType;
+            this.status = result.getStatus();
+            this.level = result.getLevel();
+            this.message = result.getMessage();
+        }
+
+        /**
+         * @return the value of the element.
+         */
+        public String getRelatedIdentifier() {
+            return relatedIdentifier;
+        }
+
+        /**
+         * @return the attribute relatedIdentifierType, which selects the validator.
+         */
+        public String getRelatedIdentifierType() {
+            return relatedIdentifierType;
+        }
+
+        /**
+         * @return the attribute relationType or null.
+         */
+        public String getRelationType() {
+            return relationType;
+        }
+
+        public ValidationResult.Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return the level up to which a valid identifier has been validated or null if it is not valid.
+         */
+        public ValidationLevel getLevel() {
+            return level;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" +
+                    "relatedIdentifier='" + relatedIdentifier + '\'' +
+                    ", relatedIdentifierType='" + relatedIdentifierType + '\'' +
+                    ", relationType='" + relationType + '\'' +
+                    ", status=" + status +
+                    ", level=" + level +
+                    ", message='" + message + '\'' +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.metrics;
+
+import edu.kit.datamanager.datacite.validate.ValidationFutures;
+import edu.kit.datamanager.datacite.validate.ValidationLevel;
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import edu.kit.datamanager.datacite.validate.ValidatorSettings;
+import edu.kit.datamanager.datacite.validate.cache.ResultCache;
+import edu.kit.datamanager.datacite.validate.cache.SingleFlight;
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
+import edu.kit.datamanager.datacite.validate.http.CircuitBreaker;
+import edu.kit.datamanager.datacite.validate.http.CircuitBreakers;
+import edu.kit.datamanager.datacite.validate.http.HostLimiters;
+import edu.kit.datamanager.datacite.validate.store.ResultStore;
+import edu.kit.datamanager.datacite.validate.store.RevalidationScheduler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class records the metrics of the validators with Micrometer.
+ * The meters are registered in the global registry, which Spring Boot connects to the actuator endpoint /actuator/prometheus.
+ * Without Spring, the meters are no-ops until a registry is added to Metrics.globalRegistry.
+ * <p>
+ * The following meters are recorded:
+ * <ul>
+ *     <li>validator.validation: timer for every validation, tagged with type, validator (implementation class), level and outcome.</li>
+ *     <li>validator.stage: timer for the remote stages of the HandleNetValidator (resolve and prefix), tagged with stage and outcome.
+ *     Stages answered from a cache are not recorded.</li>
+ *     <li>validator.http.requests: timer for every outbound HTTP request, tagged with host, method and outcome.</li>
+ *     <li>validator.http.wait: timer for the time a request waited for the rate limit of its host, tagged with host.
+ *     validator.http.throttled: responses which asked to slow down (429 or 503 with Retry-After), tagged with host.
+ *     validator.http.queued: requests which wait for the rate limits of the shared HTTP transport.</li>
+ *     <li>validator.cache.*: size, hits, misses and evictions of the result caches, tagged with cache.</li>
+ *     <li>validator.singleflight.*: operations in flight, started and coalesced, tagged with name.</li>
+ *     <li>validator.breakers: number of circuit breakers of the shared HTTP transport, tagged with state (closed, open or half_open).
+ *     validator.breaker.rejected: requests rejected by an open breaker.</li>
+ *     <li>validator.plugin.load: timer for loading and instantiating a plugin, tagged with plugin (class) and discovery.</li>
+ *     <li>validator.plugin.calls: timer for every call of a plugin, tagged with plugin and outcome. Calls which exceeded their time budget are warnings.</li>
+ *     <li>validator.plugin.rejected and validator.plugin.timeouts: calls of a plugin which were rejected because all of its permits were in use
+ *     or which exceeded their time budget, tagged with plugin.</li>
+ * </ul>
+ * All timers are created once per tag combination and cached, so recording a value doesn't allocate anything on the hot path.
+ * The number of hosts is limited by the system property validator.metrics.maxHosts (default 200); further hosts are tagged as "other".
+ *
+ * @author maximilianiKIT
+ */
+public final class ValidationMetrics {
+
+    /**
+     * The outcome of a validation or a remote request.
+     */
+    public enum Outcome {
+        VALID,
+        WARNING,
+        ERROR;
+
+        private final String tag = name().toLowerCase(Locale.ROOT);
+
+        /**
+         * @return the value of the outcome tag.
+         */
+        public String tag() {
+            return tag;
+        }
+
+        /**
+         * @param exception the exception a validation completed with or null
+         * @return VALID for null, ERROR for a ValidationError and WARNING for every other exception.
+         */
+        public static Outcome of(Throwable exception) {
+            if (exception == null) return VALID;
+            return ValidationFutures.unwrap(exception) instanceof ValidationError ? ERROR : WARNING;
+        }
+
+        /**
+         * @param result of a validation
+         * @return the outcome which corresponds to the status of the result.
+         */
+        public static Outcome forResult(ValidationResult result) {
+            switch (result.getStatus()) {
+                case VALID:
+                    return VALID;
+                case ERROR:
+                    return ERROR;
+                default:
+                    return WARNING;
+            }
+        }
+
+        /**
+         * @param value     the value an operation completed with or null
+         * @param exception the exception an operation completed with or null
+         * @return the outcome of the value if it is a ValidationResult, otherwise the outcome of the exception.
+         */
+        public static Outcome of(Object value, Throwable exception) {
+            if (exception == null && value instanceof ValidationResult) return forResult((ValidationResult) value);
+            return of(exception);
+        }
+    }
+
+    private static final MeterRegistry registry = Metrics.globalRegistry;
+    private static final int maxHosts = ValidatorSettings.getInt("validator.metrics.maxHosts", 200);
+
+    private static final ConcurrentHashMap<String, ConcurrentHashMap<String, Timers>> validations = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Timers> stages = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, ConcurrentHashMap<String, Timers>> requests = new ConcurrentHashMap<>();
+
+    private ValidationMetrics() {
+        // only static methods
+    }
+
+    /**
+     * @param type      the identifier type (e.g. "DOI")
+     * @param validator the class of the validator implementation
+     * @return the timers of all outcomes of complete validations of this type with this validator.
+     */
+    public static Timers validation(String type, Class<?> validator) {
+        return validation(type, validator, ValidationLevel.RESOLVE);
+    }
+
+    /**
+     * @param type      the identifier type (e.g. "DOI")
+     * @param validator the class of the validator implementation
+     * @param level     the requested validation level
+     * @return the timers of all outcomes of validations of this type with this validator up to this level.
+     */
+    public static Timers validation(String type, Class<?> validator, ValidationLevel level) {
+        ConcurrentHashMap<String, Timers> byValidator = validations.get(type);
+        if (byValidator == null) byValidator = validations.computeIfAbsent(type, key -> new ConcurrentHashMap<>());
+        String key = validator.getName() + "#" + level;
+        Timers timers = byValidator.get(key);
+        if (timers != null) return timers;
+        return byValidator.computeIfAbsent(key, name -> new Timers("validator.validation", "Duration of validations",
+                "type", type, "validator", validator.getSimpleName(), "level", level.name().toLowerCase(Locale.ROOT)));
+    }
+
+    /**
+     * @param stage name of the stage (e.g. "resolve" or "prefix")
+     * @return the timers of all outcomes of this stage.
+     */
+    public static Timers stage(String stage) {
+        Timers timers = stages.get(stage);
+        if (timers != null) return timers;
+        return stages.computeIfAbsent(stage, key -> new Timers("validator.stage", "Duration of remote validation stages", "stage", stage));
+    }
+
+    /**
+     * @param host   the remote host
+     * @param method the HTTP method
+     * @return the timers of all outcomes of requests with this method to this host.
+     */
+    public static Timers request(String host, String method) {
+        String tag = host == null ? "unknown" : host;
+        ConcurrentHashMap<String, Timers> byMethod = requests.get(tag);
+        if (byMethod == null) {
+            if (requests.size() >= maxHosts) tag = "other";
+            byMethod = requests.computeIfAbsent(tag, key -> new ConcurrentHashMap<>());
+        }
+        Timers timers = byMethod.get(method);
+        if (timers != null) return timers;
+        String hostTag = tag;
+        return byMethod.computeIfAbsent(method, key -> new Timers("validator.http.requests", "Duration of outbound HTTP requests",
+                "host", hostTag, "method", method));
+    }
+
+    /**
+     * @param host the remote host
+     * @return the timer of the time requests to this host waited for its rate limit.
+     */
+    public static Timer rateLimitWait(String host) {
+        return Timer.builder("validator.http.wait").description("Time outbound HTTP requests waited for the rate limit of their host")
+                .tag("host", hostTag(host)).register(registry);
+    }
+
+    /**
+     * @param host the remote host
+     * @return the counter of responses of this host which asked to slow down.
+     */
+    public static Counter throttled(String host) {
+        return Counter.builder("validator.http.throttled").description("Responses which asked to slow down")
+                .tag("host", hostTag(host)).register(registry);
+    }
+
+    /**
+     * Registers the number of queued requests of host limiters. The value is read when the metrics are scraped.
+     *
+     * @param limiters to observe
+     */
+    public static void bindHostLimiters(HostLimiters limiters) {
+        Gauge.builder("validator.http.queued", limiters, HostLimiters::queued)
+                .description("Outbound HTTP requests waiting for the rate limit of their host")
+                .register(registry);
+    }
+
+    /**
+     * The host tags are limited like the tags of validator.http.requests.
+     */
+    private static String hostTag(String host) {
+        if (host == null) return "unknown";
+        return requests.containsKey(host) || requests.size() < maxHosts ? host : "other";
+    }
+
+    /**
+     * Records how long loading a plugin took. Plugins are only loaded at startup and when the plugin directory changes.
+     *
+     * @param plugin    simple name of the validator class
+     * @param discovery how the plugin has been found (e.g. "services" or "scan")
+     * @param duration  of loading and instantiating the plugin
+     */
+    public static void pluginLoad(String plugin, String discovery, Duration duration) {
+        Timer.builder("validator.plugin.load")
+                .description("Duration of loading a plugin")
+                .tag("plugin", plugin)
+                .tag("discovery", discovery)
+                .register(registry)
+                .record(duration);
+    }
+
+    /**
+     * @param plugin simple name of the validator class
+     * @return the timers of all outcomes of calls of this plugin.
+     */
+    public static Timers pluginCalls(String plugin) {
+        return new Timers("validator.plugin.calls", "Duration of plugin calls", "plugin", plugin);
+    }
+
+    /**
+     * @param plugin simple name of the validator class
+     * @return the counter of calls of this plugin which were rejected because the plugin was busy.
+     */
+    public static Counter pluginRejected(String plugin) {
+        return Counter.builder("validator.plugin.rejected").description("Plugin calls rejected by the bulkhead").tag("plugin", plugin).register(registry);
+    }
+
+    /**
+     * @param plugin simple name of the validator class
+     * @return the counter of calls of this plugin which exceeded their time budget.
+     */
+    public static Counter pluginTimeouts(String plugin) {
+        return Counter.builder("validator.plugin.timeouts").description("Plugin calls cancelled after their time budget").tag("plugin", plugin).register(registry);
+    }
+
+    /**
+     * Registers the statistics of a result cache. The values are read when the metrics are scraped.
+     *
+     * @param cache to observe
+     */
+    public static void bindCache(ResultCache<?, ?> cache) {
+        Gauge.builder("validator.cache.size", cache, ResultCache::size).tag("cache", cache.getName()).register(registry);
+        FunctionCounter.builder("validator.cache.hits", cache, ResultCache::getHits).tag("cache", cache.getName()).register(registry);
+        FunctionCounter.builder("validator.cache.misses", cache, ResultCache::getMisses).tag("cache", cache.getName()).register(registry);
+        FunctionCounter.builder("validator.cache.evictions", cache, ResultCache::getEvictions).tag("cache", cache.getName()).register(registry);
+    }
+
+    /**
+     * Registers the statistics of a result store and of the cache in front of it. The values are read when the metrics are scraped.
+     *
+     * @param store to observe
+     */
+    public static void bindResultStore(ResultStore store) {
+        bindCache(store.getCache());
+        Gauge.builder("validator.store.pending", store, ResultStore::getPending).description("Results which wait to be written").register(registry);
+        FunctionCounter.builder("validator.store.loaded", store, ResultStore::getLoaded).description("Results read from the database").register(registry);
+        FunctionCounter.builder("validator.store.written", store, ResultStore::getWritten).description("Results written to the database").register(registry);
+        FunctionCounter.builder("validator.store.dropped", store, ResultStore::getDropped).description("Results not written because too many were pending").register(registry);
+        FunctionCounter.builder("validator.store.failed", store, ResultStore::getFailed).description("Results not written because of a database error").register(registry);
+        FunctionCounter.builder("validator.store.changed", store, ResultStore::getChanged).description("Changes of the status of stored results").register(registry);
+    }
+
+    /**
+     * Registers the statistics of the background revalidation. The values are read when the metrics are scraped.
+     *
+     * @param scheduler to observe
+     */
+    public static void bindRevalidationScheduler(RevalidationScheduler scheduler) {
+        Gauge.builder("validator.revalidation.inflight", scheduler, RevalidationScheduler::getInFlight).description("Revalidations in progress").register(registry);
+        Gauge.builder("validator.revalidation.rate", scheduler, RevalidationScheduler::getRate).description("Revalidations per second").register(registry);
+        FunctionCounter.builder("validator.revalidation.checked", scheduler, RevalidationScheduler::getChecked).description("Completed revalidations").register(registry);
+        FunctionCounter.builder("validator.revalidation.failed", scheduler, RevalidationScheduler::getFailed).description("Revalidations which completed exceptionally").register(registry);
+    }
+
+    /**
+     * Registers the statistics of a single-flight group. The values are read when the metrics are scraped.
+     *
+     * @param flights to observe
+     */
+    public static void bindSingleFlight(SingleFlight<?, ?> flights) {
+        Gauge.builder("validator.singleflight.inflight", flights, SingleFlight::size).tag("name", flights.getName()).register(registry);
+        FunctionCounter.builder("validator.singleflight.started", flights, SingleFlight::getStarted).tag("name", flights.getName()).register(registry);
+        FunctionCounter.builder("validator.singleflight.coalesced", flights, SingleFlight::getCoalesced).tag("name", flights.getName()).register(registry);
+    }
+
+    /**
+     * Registers the states of circuit breakers. The values are read when the metrics are scraped.
+     *
+     * @param breakers to observe
+     */
+    public static void bindCircuitBreakers(CircuitBreakers breakers) {
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            Gauge.builder("validator.breakers", breakers, observed -> observed.count(state))
+                    .description("Circuit breakers of the hosts by state")
+                    .tag("state", state.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+        FunctionCounter.builder("validator.breaker.rejected", breakers, observed -> {
+            long rejected = 0;
+            for (CircuitBreaker breaker : observed.getBreakers()) rejected += breaker.getRejected();
+            return rejected;
+        }).description("Requests rejected by open circuit breakers").register(registry);
+    }
+
+    /**
+     * One timer per outcome for a fixed combination of tags.
+     */
+    public static final class Timers {
+        private final Timer[] timers = new Timer[Outcome.values().length];
+
+        private Timers(String name, String description, String... tags) {
+            for (Outcome outcome : Outcome.values()) {
+                timers[outcome.ordinal()] = Timer.builder(name)
+                        .description(description)
+                        .tags(tags)
+                        .tag("outcome", outcome.tag())
+                        .register(registry);
+            }
+        }
+
+        /**
+         * @param outcome of the measured operation
+         * @return the timer of the outcome
+         */
+        public Timer timer(Outcome outcome) {
+            return timers[outcome.ordinal()];
+        }
+
+        /**
+         * Records the time since start.
+         *
+         * @param startNanos value of System.nanoTime() at the start of the operation
+         * @param outcome    of the operation
+         */
+        public void record(long startNanos, Outcome outcome) {
+            timer(outcome).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Records the time since start.
+         *
+         * @param startNanos value of System.nanoTime() at the start of the operation
+         * @param exception  the exception the operation failed with or null
+         */
+        public void record(long startNanos, Throwable exception) {
+            record(startNanos, Outcome.of(exception));
+        }
+
+        /**
+         * Records the time until the future completes.
+         * The outcome of a future of a ValidationResult is the status of the result.
+         *
+         * @param startNanos value of System.nanoTime() at the start of the operation
+         * @param future     of the operation
+         * @return the same future
+         */
+        public <T> CompletableFuture<T> record(long startNanos, CompletableFuture<T> future) {
+            // completed futures (e.g. cache hits) are recorded directly to avoid an additional stage
+            if (future.isDone()) {
+                Throwable exception = exceptionNow(future);
+                record(startNanos, Outcome.of(exception == null ? future.getNow(null) : null, exception));
+            } else future.whenComplete((result, exception) -> record(startNanos, Outcome.of(result, exception)));
+            return future;
+        }
+
+        /**
+         * Records the time until the future completes, but only if it is not completed yet.
+         * Futures which are already completed (e.g. answered from a cache) didn't perform remote I/O, so they are not recorded.
+         *
+         * @param startNanos value of System.nanoTime() at the start of the operation
+         * @param future     of the operation
+         * @return the same future
+         */
+        public <T> CompletableFuture<T> recordPending(long startNanos, CompletableFuture<T> future) {
+            if (!future.isDone()) future.whenComplete((result, exception) -> record(startNanos, Outcome.of(result, exception)));
+            return future;
+        }
+
+        private static Throwable exceptionNow(CompletableFuture<?> future) {
+            if (!future.isCompletedExceptionally()) return null;
+            try {
+                future.join();
+                return null;
+            } catch (CompletionException | CancellationException e) {
+                return e;
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.plugin;
+
+import edu.kit.datamanager.datacite.validate.ValidationFutures;
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import edu.kit.datamanager.datacite.validate.ValidatorSettings;
+import edu.kit.datamanager.datacite.validate.metrics.ValidationMetrics;
+import io.micrometer.core.instrument.Counter;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * This class isolates the calls of one plugin, so a slow or hanging plugin can't use up the threads of the service.
+ * A plugin may only run a limited number of calls at the same time; further calls are rejected at once with a warning.
+ * A call which takes longer than the time budget of the plugin is cancelled and reported as a warning.
+ * Cancelling a legacy plugin interrupts the thread which runs its isValid method. The call keeps its permit until isValid has returned,
+ * even if the plugin ignores the interrupt.
+ * <p>
+ * The limits are read from the system properties validator.plugins.maxConcurrent (default 16) and validator.plugins.timeout (default 10s).
+ * They can be set per type, e.g. validator.plugins.ISBN.timeout=2s.
+ * The duration of the calls and the number of rejected and cancelled calls are recorded as metrics tagged with the plugin.
+ *
+ * @author maximilianiKIT
+ */
+final class PluginBulkhead {
+
+    private static final ScheduledThreadPoolExecutor deadlines = createDeadlineExecutor();
+
+    private final Semaphore permits;
+    private final Duration timeout;
+    private final ValidationResult busy;
+    private final ValidationResult timedOut;
+    private final ValidationMetrics.Timers calls;
+    private final Counter rejected;
+    private final Counter timeouts;
+
+    /**
+     * @param plugin        name of the plugin
+     * @param maxConcurrent how many calls may run at the same time
+     * @param timeout       time budget of a call
+     */
+    PluginBulkhead(String plugin, int maxConcurrent, Duration timeout) {
+        this.permits = new Semaphore(Math.max(1, maxConcurrent));
+        this.timeout = timeout;
+        this.busy = ValidationResult.warning(ValidationResult.Stage.EXECUTION, "Plugin " + plugin + " is busy. Please try again later.");
+        this.timedOut = ValidationResult.warning(ValidationResult.Stage.EXECUTION, "Plugin " + plugin + " exceeded its time budget of " + timeout.toMillis() + " ms");
+        this.calls = ValidationMetrics.pluginCalls(plugin);
+        this.rejected = ValidationMetrics.pluginRejected(plugin);
+        this.timeouts = ValidationMetrics.pluginTimeouts(plugin);
+    }
+
+    /**
+     * @param plugin name of the plugin
+     * @param type   the type of the plugin, which selects the settings of the plugin
+     * @return a bulkhead with the limits of the settings
+     */
+    static PluginBulkhead of(String plugin, String type) {
+        int maxConcurrent = ValidatorSettings.getInt("validator.plugins." + type + ".maxConcurrent", ValidatorSettings.getInt("validator.plugins.maxConcurrent", 16));
+        Duration timeout = ValidatorSettings.getDuration("validator.plugins." + type + ".timeout", ValidatorSettings.getDuration("validator.plugins.timeout", Duration.ofSeconds(10)));
+        return new PluginBulkhead(plugin, maxConcurrent, timeout);
+    }
+
+    /**
+     * Starts a call of the plugin if a permit is available. A call which exceeds the time budget is cancelled and reported as timed out at once,
+     * but the permit is only returned when the plugin has returned, so a plugin which ignores the interrupt can't occupy more threads than permits.
+     *
+     * @param call starts the validation of the plugin
+     * @return a future which completes with the result of the call, a warning if the plugin is busy or a warning if the call took too long.
+     */
+    CompletableFuture<ValidationResult> execute(Supplier<CompletableFuture<ValidationResult>> call) {
+        return execute(call, () -> {
+        });
+    }
+
+    /**
+     * Like execute(call), but runs returned when the plugin has returned, before the permit is given back and, unless the call timed out,
+     * before the result is reported. It is not run if the plugin is busy.
+     *
+     * @param call     starts the validation of the plugin
+     * @param returned runs when the plugin has returned
+     * @return a future which completes with the result of the call, a warning if the plugin is busy or a warning if the call took too long.
+     */
+    CompletableFuture<ValidationResult> execute(Supplier<CompletableFuture<ValidationResult>> call, Runnable returned) {
+        if (!permits.tryAcquire()) {
+            rejected.increment();
+            return CompletableFuture.completedFuture(busy);
+        }
+        long start = System.nanoTime();
+        ValidationFutures.Started<ValidationResult> started;
+        try {
+            started = ValidationFutures.start(call);
+        } catch (RuntimeException | Error e) {
+            returned.run();
+            permits.release();
+            throw e;
+        }
+        CompletableFuture<ValidationResult> running = started.future();
+        if (started.returned().isDone()) {
+            returned.run();
+            permits.release();
+            return calls.record(start, CompletableFuture.completedFuture(outcome(running)));
+        }
+        CompletableFuture<ValidationResult> result = new CompletableFuture<>();
+        ScheduledFuture<?> deadline = deadlines.schedule(() -> {
+            if (result.isDone()) return;
+            // the call is cancelled before the warning is reported, so callers never see a call running after its time budget;
+            // a call which completes in the meantime keeps its result and is no timeout
+            if (!running.cancel(true)) return;
+            timeouts.increment();
+            result.complete(timedOut);
+        }, timeout.toNanos(), TimeUnit.NANOSECONDS);
+        // the permit is returned before the result is reported, so a caller which got the result can start the next call
+        started.returned().whenComplete((ignored, exception) -> {
+            returned.run();
+            permits.release();
+            deadline.cancel(false);
+            result.complete(outcome(running));
+        });
+        return calls.record(start, result);
+    }
+
+    private ValidationResult outcome(CompletableFuture<ValidationResult> running) {
+        try {
+            return running.join();
+        } catch (CancellationException e) {
+            return timedOut;
+        } catch (CompletionException e) {
+            return ValidationResult.of(e);
+        }
+    }
+
+    /**
+     * @return the number of calls which could be started now.
+     */
+    int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    Duration getTimeout() {
+        return timeout;
+    }
+
+    private static ScheduledThreadPoolExecutor createDeadlineExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "plugin-deadlines");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+}
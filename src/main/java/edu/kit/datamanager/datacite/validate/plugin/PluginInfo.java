@@ -0,0 +1,105 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.plugin;
+
+import edu.kit.datamanager.datacite.validate.ValidatorInterface;
+import org.datacite.schema.kernel_4.RelatedIdentifierType;
+
+import java.time.Duration;
+
+/**
+ * This class describes a plugin which has been loaded by the PluginLoader: where it was found and how long loading it took.
+ *
+ * @author maximilianiKIT
+ */
+public final class PluginInfo {
+
+    /**
+     * How the validator classes of a JAR file have been found.
+     */
+    public enum Discovery {
+        /**
+         * The JAR file lists its validators in META-INF/services/edu.kit.datamanager.datacite.validate.ValidatorInterface.
+         */
+        SERVICES,
+        /**
+         * The JAR file lists its validators in the manifest attribute Validator-Classes.
+         */
+        MANIFEST,
+        /**
+         * The JAR file has no index, so all of its classes have been scanned.
+         */
+        SCAN
+    }
+
+    private final ValidatorInterface validator;
+    private final RelatedIdentifierType type;
+    private final String jar;
+    private final Discovery discovery;
+    private final Duration loadTime;
+
+    PluginInfo(ValidatorInterface validator, RelatedIdentifierType type, String jar, Discovery discovery, Duration loadTime) {
+        this.validator = validator;
+        this.type = type;
+        this.jar = jar;
+        this.discovery = discovery;
+        this.loadTime = loadTime;
+    }
+
+    ValidatorInterface getValidator() {
+        return validator;
+    }
+
+    /**
+     * @return the name of the validator class.
+     */
+    public String getClassName() {
+        return validator.getClass().getName();
+    }
+
+    /**
+     * @return the type the validator supports.
+     */
+    public RelatedIdentifierType getType() {
+        return type;
+    }
+
+    /**
+     * @return the name of the JAR file which contains the validator.
+     */
+    public String getJar() {
+        return jar;
+    }
+
+    /**
+     * @return how the validator class has been found.
+     */
+    public Discovery getDiscovery() {
+        return discovery;
+    }
+
+    /**
+     * @return how long loading the class and creating the validator took.
+     */
+    public Duration getLoadTime() {
+        return loadTime;
+    }
+
+    @Override
+    public String toString() {
+        return getClassName() + " (" + getType() + ") from " + jar + " found by " + discovery + " in " + loadTime.toMillis() + " ms";
+    }
+}
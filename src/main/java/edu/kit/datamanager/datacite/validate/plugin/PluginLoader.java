@@ -17,107 +17,286 @@ package edu.kit.datamanager.datacite.validate.plugin;
 
 import edu.kit.datamanager.datacite.validate.ValidatorInterface;
 import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+import edu.kit.datamanager.datacite.validate.metrics.ValidationMetrics;
 import org.datacite.schema.kernel_4.RelatedIdentifierType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.lang.reflect.InvocationTargetException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * This class loads the validators of plugin JAR files.
+ * A JAR file can list its validators in META-INF/services/edu.kit.datamanager.datacite.validate.ValidatorInterface
+ * (one class name per line, as for the ServiceLoader) or in the manifest attribute Validator-Classes (class names separated by spaces or commas).
+ * Then only these classes are loaded. JAR files without such an index are scanned: the class files are read without loading them,
+ * and only classes which implement ValidatorInterface directly are loaded.
+ * Every JAR file gets a class loader of its own, so plugins can't see or break each other's classes.
+ * The JAR files are read in parallel. A class which can't be loaded or instantiated is logged and skipped.
+ *
+ * @author maximilianiKIT
+ */
 public class PluginLoader {
 
     static Logger LOG = LoggerFactory.getLogger(PluginLoader.class);
 
+    /**
+     * Service file which lists the validators of a JAR file.
+     */
+    public static final String SERVICES_INDEX = "META-INF/services/" + ValidatorInterface.class.getName();
+
+    /**
+     * Manifest attribute which lists the validators of a JAR file.
+     */
+    public static final String MANIFEST_INDEX = "Validator-Classes";
+
+    private static final String VALIDATOR_INTERFACE = ValidatorInterface.class.getName().replace('.', '/');
+    private static final int ACC_INTERFACE = 0x0200;
+    private static final int ACC_ABSTRACT = 0x0400;
+
     public static Map<RelatedIdentifierType, ValidatorInterface> loadPlugins(File plugDir) throws IOException, ValidationWarning {
         if (plugDir == null || plugDir.getAbsolutePath().isBlank()) throw new ValidationWarning("Empty input!");
         File[] plugJars = plugDir.listFiles(new JARFileFilter());
         if (plugJars == null || plugJars.length < 1) throw new ValidationWarning("No plugins found.");
-        ClassLoader cl = new URLClassLoader(PluginLoader.fileArrayToURLArray(plugJars));
-        List<Class<ValidatorInterface>> plugClasses = PluginLoader.extractClassesFromJARs(plugJars, cl);
+        Map<File, ClassLoader> loaders = new HashMap<>();
+        for (File jar : plugJars) loaders.put(jar, classLoader(jar));
+        return toMap(discover(plugJars, loaders::get));
+    }
+
+    /**
+     * @param jar a plugin JAR file
+     * @return a new class loader for the JAR file. Its parent is the class loader of the application.
+     * @throws MalformedURLException if the path of the file can't be converted into a URL.
+     */
+    static URLClassLoader classLoader(File jar) throws MalformedURLException {
+        return new URLClassLoader(new URL[]{jar.toURI().toURL()}, ValidatorInterface.class.getClassLoader());
+    }
+
+    /**
+     * This method instantiates the validators of some JAR files, which are loaded by the given class loader.
+     *
+     * @param plugJars the JAR files
+     * @param cl       a class loader which can load the classes of the JAR files
+     * @return the validators by type
+     * @throws IOException if a JAR file can't be read.
+     */
+    static Map<RelatedIdentifierType, ValidatorInterface> loadPlugins(File[] plugJars, ClassLoader cl) throws IOException {
+        return toMap(discover(plugJars, jar -> cl));
+    }
 
-        List<ValidatorInterface> validatorInterfaceList = PluginLoader.createPluggableObjects(plugClasses);
-        Map<RelatedIdentifierType, ValidatorInterface> result = new HashMap<RelatedIdentifierType, ValidatorInterface>();
-        for (ValidatorInterface i : validatorInterfaceList) {
-            result.put(i.supportedType(), i);
+    /**
+     * This method finds and instantiates the validators of some JAR files. The JAR files are read in parallel.
+     * The PluginRegistry uses it to load every version of the plugin directory with new class loaders.
+     *
+     * @param plugJars     the JAR files
+     * @param classLoaders returns the class loader which loads the classes of a JAR file
+     * @return the loaded plugins in the order of the JAR files
+     * @throws IOException if a JAR file can't be read.
+     */
+    static List<PluginInfo> discover(File[] plugJars, Function<File, ClassLoader> classLoaders) throws IOException {
+        try {
+            return Arrays.stream(plugJars).parallel()
+                    .map(jar -> discover(jar, classLoaders.apply(jar)))
+                    .flatMap(List::stream)
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
+    }
 
+    /**
+     * @param plugins the loaded plugins
+     * @return the validators by type. If several validators support the same type, the last one is used.
+     */
+    static Map<RelatedIdentifierType, ValidatorInterface> toMap(List<PluginInfo> plugins) {
+        Map<RelatedIdentifierType, ValidatorInterface> result = new HashMap<>();
+        for (PluginInfo plugin : plugins) result.put(plugin.getType(), plugin.getValidator());
         return result;
     }
 
-    private static URL[] fileArrayToURLArray(File[] files) throws MalformedURLException {
-
-        URL[] urls = new URL[files.length];
-        for (int i = 0; i < files.length; i++) {
-            urls[i] = files[i].toURI().toURL();
+    private static List<PluginInfo> discover(File jar, ClassLoader cl) {
+        long start = System.nanoTime();
+        List<String> classNames;
+        PluginInfo.Discovery discovery;
+        try (JarFile jarFile = new JarFile(jar)) {
+            classNames = readServicesIndex(jarFile);
+            discovery = PluginInfo.Discovery.SERVICES;
+            if (classNames.isEmpty()) {
+                classNames = readManifestIndex(jarFile);
+                discovery = PluginInfo.Discovery.MANIFEST;
+            }
+            if (classNames.isEmpty()) {
+                classNames = scan(jarFile);
+                discovery = PluginInfo.Discovery.SCAN;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't read plugin " + jar.getName(), e);
+        }
+        LOG.debug("Found {} validators in {} by {} in {} ms.", classNames.size(), jar.getName(), discovery, (System.nanoTime() - start) / 1_000_000);
+        List<PluginInfo> plugins = new ArrayList<>(classNames.size());
+        for (String className : classNames) {
+            PluginInfo plugin = instantiate(className, cl, jar.getName(), discovery);
+            if (plugin != null) plugins.add(plugin);
         }
-        return urls;
+        return plugins;
     }
 
-    private static List<Class<ValidatorInterface>> extractClassesFromJARs(File[] jars, ClassLoader cl) throws IOException, ValidationWarning {
+    private static List<String> readServicesIndex(JarFile jarFile) throws IOException {
+        List<String> classNames = new ArrayList<>();
+        JarEntry entry = jarFile.getJarEntry(SERVICES_INDEX);
+        if (entry == null) return classNames;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(jarFile.getInputStream(entry), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+                String className = (comment < 0 ? line : line.substring(0, comment)).trim();
+                if (!className.isEmpty()) classNames.add(className);
+            }
+        }
+        return classNames;
+    }
 
-        List<Class<ValidatorInterface>> classes = new ArrayList<Class<ValidatorInterface>>();
-        for (File jar : jars) {
-            classes.addAll(PluginLoader.extractClassesFromJAR(jar, cl));
+    private static List<String> readManifestIndex(JarFile jarFile) throws IOException {
+        List<String> classNames = new ArrayList<>();
+        Manifest manifest = jarFile.getManifest();
+        String value = manifest == null ? null : manifest.getMainAttributes().getValue(MANIFEST_INDEX);
+        if (value == null) return classNames;
+        for (String className : value.split("[\\s,]+")) {
+            if (!className.isEmpty()) classNames.add(className);
         }
-        return classes;
+        return classNames;
     }
 
-    private static List<Class<ValidatorInterface>> extractClassesFromJAR(File jar, ClassLoader cl) throws IOException, ValidationWarning {
-
-        List<Class<ValidatorInterface>> classes = new ArrayList<Class<ValidatorInterface>>();
-        JarInputStream jaris = new JarInputStream(new FileInputStream(jar));
-        JarEntry ent = null;
-        while ((ent = jaris.getNextJarEntry()) != null) {
-            if (ent.getName().toLowerCase().endsWith(".class")) {
-                try {
-                    Class<?> cls = cl.loadClass(ent.getName().substring(0, ent.getName().length() - 6).replace('/', '.'));
-                    if (PluginLoader.isPluggableClass(cls)) {
-                        classes.add((Class<ValidatorInterface>) cls);
-                    }
-                } catch (ClassNotFoundException e) {
-                    LOG.info("Can't load Class " + ent.getName());
-                    throw new ValidationWarning("Can't load Class " + ent.getName(), e);
-                }
+    /**
+     * Finds the classes of a JAR file which implement ValidatorInterface directly, without loading any class.
+     */
+    private static List<String> scan(JarFile jarFile) throws IOException {
+        List<String> classNames = new ArrayList<>();
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            String name = entry.getName();
+            if (!name.endsWith(".class") || name.startsWith("META-INF/") || name.endsWith("module-info.class")) continue;
+            try (InputStream in = jarFile.getInputStream(entry)) {
+                if (isPluggableClass(in)) classNames.add(name.substring(0, name.length() - 6).replace('/', '.'));
             }
         }
-        jaris.close();
-        return classes;
+        return classNames;
     }
 
-    private static boolean isPluggableClass(Class<?> cls) {
-
-        for (Class<?> i : cls.getInterfaces()) {
-            if (i.equals(ValidatorInterface.class)) {
-                return true;
+    /**
+     * Reads the header of a class file up to its interfaces.
+     *
+     * @param classFile the content of the class file
+     * @return true if the class is neither abstract nor an interface and implements ValidatorInterface directly.
+     */
+    static boolean isPluggableClass(InputStream classFile) throws IOException {
+        DataInputStream in = new DataInputStream(classFile);
+        if (in.readInt() != 0xCAFEBABE) return false;
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+        int constants = in.readUnsignedShort();
+        String[] utf8 = new String[constants];
+        int[] classNames = new int[constants];
+        for (int i = 1; i < constants; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1: // Utf8
+                    utf8[i] = in.readUTF();
+                    break;
+                case 7: // Class
+                    classNames[i] = in.readUnsignedShort();
+                    break;
+                case 8: // String
+                case 16: // MethodType
+                case 19: // Module
+                case 20: // Package
+                    in.skipNBytes(2);
+                    break;
+                case 15: // MethodHandle
+                    in.skipNBytes(3);
+                    break;
+                case 3: // Integer
+                case 4: // Float
+                case 9: // Fieldref
+                case 10: // Methodref
+                case 11: // InterfaceMethodref
+                case 12: // NameAndType
+                case 17: // Dynamic
+                case 18: // InvokeDynamic
+                    in.skipNBytes(4);
+                    break;
+                case 5: // Long
+                case 6: // Double
+                    in.skipNBytes(8);
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Invalid constant pool tag " + tag);
             }
         }
+        int access = in.readUnsignedShort();
+        if ((access & (ACC_INTERFACE | ACC_ABSTRACT)) != 0) return false;
+        in.readUnsignedShort(); // this class
+        in.readUnsignedShort(); // super class
+        int interfaces = in.readUnsignedShort();
+        for (int i = 0; i < interfaces; i++) {
+            int index = in.readUnsignedShort();
+            if (index < constants && VALIDATOR_INTERFACE.equals(utf8[classNames[index]])) return true;
+        }
         return false;
     }
 
-    private static List<ValidatorInterface> createPluggableObjects(List<Class<ValidatorInterface>> pluggables) throws ValidationWarning {
-        List<ValidatorInterface> plugs = new ArrayList<ValidatorInterface>(pluggables.size());
-        for (Class<ValidatorInterface> plug : pluggables) {
-            try {
-                plugs.add(plug.getDeclaredConstructor().newInstance());
-            } catch (InstantiationException | NoSuchMethodException | InvocationTargetException e) {
-                LOG.info("Can't instantiate plugin: " + plug.getName());
-                throw new ValidationWarning("Can't instantiate plugin: " + plug.getName(), e);
-            } catch (IllegalAccessException e) {
-                LOG.info("IllegalAccess for plugin: " + plug.getName());
-                throw new ValidationWarning("IllegalAccess for plugin: " + plug.getName(), e);
+    /**
+     * Loads and instantiates a validator class. The time it takes is logged and recorded in the metric validator.plugin.load.
+     *
+     * @return the plugin or null if the class can't be loaded or instantiated.
+     */
+    private static PluginInfo instantiate(String className, ClassLoader cl, String jar, PluginInfo.Discovery discovery) {
+        long start = System.nanoTime();
+        try {
+            Class<?> cls = cl.loadClass(className);
+            if (!ValidatorInterface.class.isAssignableFrom(cls)) {
+                LOG.warn("Plugin {} in {} doesn't implement ValidatorInterface.", className, jar);
+                return null;
             }
+            ValidatorInterface validator = (ValidatorInterface) cls.getDeclaredConstructor().newInstance();
+            RelatedIdentifierType type = validator.supportedType();
+            Duration loadTime = Duration.ofNanos(System.nanoTime() - start);
+            PluginInfo plugin = new PluginInfo(validator, type, jar, discovery, loadTime);
+            ValidationMetrics.pluginLoad(cls.getSimpleName(), discovery.name().toLowerCase(Locale.ROOT), loadTime);
+            LOG.info("Loaded plugin {}.", plugin);
+            return plugin;
+        } catch (ClassNotFoundException | LinkageError e) {
+            LOG.warn("Can't load Class {} from {}.", className, jar, e);
+        } catch (InstantiationException | NoSuchMethodException | InvocationTargetException | RuntimeException e) {
+            LOG.warn("Can't instantiate plugin: {}", className, e);
+        } catch (IllegalAccessException e) {
+            LOG.warn("IllegalAccess for plugin: {}", className, e);
         }
-        return plugs;
+        return null;
     }
 }
@@ -0,0 +1,452 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.plugin;
+
+import edu.kit.datamanager.datacite.validate.ValidationFutures;
+import edu.kit.datamanager.datacite.validate.ValidationLevel;
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import edu.kit.datamanager.datacite.validate.ValidatorInterface;
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+import org.datacite.schema.kernel_4.RelatedIdentifierType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * This class keeps the validators of a plugin directory up to date while the application is running.
+ * Whenever a JAR file in the directory is added, changed or removed, all JAR files are loaded by PluginLoader, each with a fresh class loader of its own.
+ * The new validators are published as a new immutable map, so a validation either uses the former or the new validators, but never a mix.
+ * Loading happens on the thread which calls reload (or the watcher thread), so validations in progress are never blocked.
+ * <p>
+ * The class loaders of a former version are closed as soon as the last validation which uses one of its validators is finished.
+ * Therefore, the published validators count the validations in progress: a caller pins the version with acquire as soon as it has chosen a validator,
+ * and every call of a plugin pins it until the plugin has really returned, even if the call already timed out.
+ * Every call of a plugin runs in the PluginBulkhead of the plugin, which limits its concurrent calls and its time.
+ * If a directory can't be loaded (e.g. a JAR file is still being copied), the former validators stay in use.
+ * <p>
+ * The registry is warming until the directory has been loaded for the first time. Start loads it on a background thread,
+ * so the application doesn't wait for the plugins; ready tells when they are available.
+ *
+ * @author maximilianiKIT
+ */
+public class PluginRegistry implements Closeable {
+
+    static Logger LOG = LoggerFactory.getLogger(PluginRegistry.class);
+
+    private final File directory;
+    private final Duration quietPeriod;
+    private final Consumer<Map<RelatedIdentifierType, ValidatorInterface>> listener;
+
+    /**
+     * The current version of the plugin directory. It is only replaced by reload, which is synchronized.
+     */
+    private volatile Generation current = Generation.EMPTY;
+
+    /**
+     * Completes when the directory has been loaded for the first time, even if loading failed.
+     */
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+
+    private volatile WatchService watchService;
+    private volatile Thread watcher;
+
+    /**
+     * @param directory   the plugin directory
+     * @param quietPeriod how long the directory has to stay unchanged before the watcher reloads it, so a JAR file which is copied isn't loaded half-written
+     * @param listener    receives the new validators after every reload which changed them
+     */
+    public PluginRegistry(File directory, Duration quietPeriod, Consumer<Map<RelatedIdentifierType, ValidatorInterface>> listener) {
+        this.directory = directory;
+        this.quietPeriod = quietPeriod;
+        this.listener = listener;
+    }
+
+    /**
+     * This method loads the plugin directory if a JAR file was added, changed or removed since the last reload.
+     * The JAR files are compared by name, size and modification time.
+     *
+     * @return true if the validators have been replaced.
+     */
+    public synchronized boolean reload() {
+        try {
+            return load();
+        } finally {
+            ready.complete(null);
+        }
+    }
+
+    private boolean load() {
+        Map<String, String> fingerprint = fingerprint();
+        Generation former = current;
+        if (fingerprint.equals(former.fingerprint)) return false;
+        Generation loaded;
+        try {
+            loaded = load(fingerprint);
+        } catch (IOException | RuntimeException | LinkageError e) {
+            LOG.warn("Can't load plugins from {}. Keeping the former plugins.", directory, e);
+            return false;
+        }
+        current = loaded;
+        listener.accept(loaded.plugins);
+        former.retire();
+        LOG.info("Loaded plugins {} from {}.", loaded.plugins.keySet(), directory);
+        return true;
+    }
+
+    /**
+     * @return an unmodifiable map of the current plugin validators by type.
+     */
+    public Map<RelatedIdentifierType, ValidatorInterface> getPlugins() {
+        return current.plugins;
+    }
+
+    /**
+     * @return an unmodifiable list of the current plugins with the time it took to load them.
+     */
+    public List<PluginInfo> getPluginInfos() {
+        return current.infos;
+    }
+
+    /**
+     * @return true until the directory has been loaded for the first time.
+     */
+    public boolean isWarming() {
+        return !ready.isDone();
+    }
+
+    /**
+     * @return a future which completes when the directory has been loaded for the first time.
+     */
+    public CompletableFuture<Void> ready() {
+        return ready;
+    }
+
+    /**
+     * This method loads the directory on a daemon thread and afterwards watches it, if requested.
+     * The registry is warming until the first load is finished.
+     *
+     * @param watch true if the directory should be watched for changes
+     * @return a future which completes when the directory has been loaded for the first time.
+     */
+    public synchronized CompletableFuture<Void> start(boolean watch) {
+        if (watcher != null) return ready;
+        boolean watching = watch && register();
+        Thread thread = new Thread(() -> {
+            reload();
+            if (watching) watchLoop();
+        }, "plugin-registry");
+        thread.setDaemon(true);
+        watcher = thread;
+        thread.start();
+        return ready;
+    }
+
+    /**
+     * This method starts a daemon thread which reloads the plugin directory whenever it changes.
+     *
+     * @return true if the directory is watched, false if it doesn't exist or can't be watched.
+     */
+    public synchronized boolean watch() {
+        if (watcher != null) return watchService != null;
+        if (!register()) return false;
+        Thread thread = new Thread(this::watchLoop, "plugin-registry");
+        thread.setDaemon(true);
+        watcher = thread;
+        thread.start();
+        return true;
+    }
+
+    private boolean register() {
+        if (!directory.isDirectory()) {
+            LOG.info("Plugin directory {} doesn't exist. It isn't watched.", directory);
+            return false;
+        }
+        try {
+            WatchService service = FileSystems.getDefault().newWatchService();
+            directory.toPath().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watchService = service;
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Can't watch plugin directory {}.", directory, e);
+            return false;
+        }
+    }
+
+    private void watchLoop() {
+        WatchService service = watchService;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                reset(service.take());
+                // wait until the directory is quiet, so several events of one copy lead to one reload
+                WatchKey key;
+                while ((key = service.poll(quietPeriod.toMillis(), TimeUnit.MILLISECONDS)) != null) reset(key);
+                reload();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // the registry has been closed
+        }
+    }
+
+    private static void reset(WatchKey key) {
+        key.pollEvents();
+        key.reset();
+    }
+
+    /**
+     * This method stops watching the directory. The current validators stay usable.
+     */
+    @Override
+    public synchronized void close() {
+        Thread thread = watcher;
+        watcher = null;
+        if (thread != null) thread.interrupt();
+        WatchService service = watchService;
+        watchService = null;
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                LOG.debug("Can't close watch service of {}.", directory, e);
+            }
+        }
+    }
+
+    /**
+     * @return the size and modification time of every JAR file in the directory by its name.
+     */
+    private Map<String, String> fingerprint() {
+        File[] jars = directory.listFiles(new JARFileFilter());
+        if (jars == null) return Collections.emptyMap();
+        Map<String, String> result = new TreeMap<>();
+        for (File jar : jars) result.put(jar.getName(), jar.length() + "@" + jar.lastModified());
+        return result;
+    }
+
+    private Generation load(Map<String, String> fingerprint) throws IOException {
+        if (fingerprint.isEmpty()) return new Generation(fingerprint, Collections.emptyList(), Collections.emptyList());
+        Map<File, URLClassLoader> loaders = new HashMap<>();
+        try {
+            for (String name : fingerprint.keySet()) {
+                File jar = new File(directory, name);
+                loaders.put(jar, PluginLoader.classLoader(jar));
+            }
+            File[] jars = loaders.keySet().toArray(new File[0]);
+            return new Generation(fingerprint, new ArrayList<>(loaders.values()), PluginLoader.discover(jars, loaders::get));
+        } catch (IOException | RuntimeException | LinkageError e) {
+            for (URLClassLoader loader : loaders.values()) closeQuietly(loader);
+            throw e;
+        }
+    }
+
+    private static void closeQuietly(URLClassLoader loader) {
+        try {
+            loader.close();
+        } catch (IOException e) {
+            LOG.warn("Can't close class loader {}.", loader, e);
+        }
+    }
+
+    /**
+     * This method keeps the class loaders of a published validator open until the returned function is run,
+     * so a validation which has chosen the validator can't meet closed class loaders if the plugins are reloaded before it calls the plugin.
+     *
+     * @param validator a validator which might have been published by a registry
+     * @return a function which releases the validator (only its first run counts) or null if the class loaders of the validator are already closed,
+     * i.e. it has been replaced and must be looked up again.
+     */
+    public static Runnable acquire(ValidatorInterface validator) {
+        if (!(validator instanceof TrackedValidator)) return () -> {
+        };
+        Generation generation = ((TrackedValidator) validator).generation;
+        if (!generation.acquire()) return null;
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) generation.release();
+        };
+    }
+
+    /**
+     * @param validator a validator which might have been published by a registry
+     * @return the plugin validator itself, so its class can be used e.g. in metrics.
+     */
+    public static ValidatorInterface unwrap(ValidatorInterface validator) {
+        return validator instanceof TrackedValidator ? ((TrackedValidator) validator).delegate : validator;
+    }
+
+    /**
+     * One version of the plugin directory: its validators and the class loaders which loaded them.
+     */
+    static final class Generation {
+
+        static final Generation EMPTY = new Generation(Collections.emptyMap(), Collections.emptyList(), Collections.emptyList());
+
+        final Map<String, String> fingerprint;
+        final Map<RelatedIdentifierType, ValidatorInterface> plugins;
+        final List<PluginInfo> infos;
+        private final List<URLClassLoader> loaders;
+        /**
+         * The number of validations which use the generation or -1 after its class loaders have been closed.
+         */
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile boolean retired;
+
+        Generation(Map<String, String> fingerprint, List<URLClassLoader> loaders, List<PluginInfo> infos) {
+            this.fingerprint = fingerprint;
+            this.loaders = loaders;
+            this.infos = Collections.unmodifiableList(infos);
+            Map<RelatedIdentifierType, ValidatorInterface> plugins = new HashMap<>();
+            for (var entry : PluginLoader.toMap(infos).entrySet()) {
+                ValidatorInterface validator = entry.getValue();
+                PluginBulkhead bulkhead = PluginBulkhead.of(validator.getClass().getSimpleName(), entry.getKey().toString());
+                plugins.put(entry.getKey(), new TrackedValidator(validator, entry.getKey(), this, bulkhead));
+            }
+            this.plugins = Collections.unmodifiableMap(plugins);
+        }
+
+        /**
+         * @return true if the generation is pinned until release is called, false if its class loaders are already closed.
+         */
+        boolean acquire() {
+            int count;
+            do {
+                count = inFlight.get();
+                if (count < 0) return false;
+            } while (!inFlight.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        void release() {
+            if (inFlight.decrementAndGet() == 0 && retired) closeLoader();
+        }
+
+        /**
+         * Marks the generation as replaced. Its class loaders are closed as soon as no validation uses it anymore.
+         */
+        void retire() {
+            retired = true;
+            closeLoader();
+        }
+
+        boolean isClosed() {
+            return inFlight.get() < 0;
+        }
+
+        /**
+         * Closes the class loaders if no validation uses the generation. A validation which pins it at the same time wins, and its release closes them.
+         */
+        private void closeLoader() {
+            if (!inFlight.compareAndSet(0, -1)) return;
+            for (URLClassLoader loader : loaders) closeQuietly(loader);
+            LOG.debug("Closed class loaders of plugins {}.", plugins.keySet());
+        }
+    }
+
+    /**
+     * Forwards all calls to a plugin validator through the bulkhead of the plugin and counts the validations in progress of its generation.
+     * All methods use validate of the plugin, so every call has the same limits and time budget.
+     */
+    static final class TrackedValidator implements ValidatorInterface {
+
+        private static final ValidationResult REPLACED = ValidationResult.warning(ValidationResult.Stage.EXECUTION, "The plugin has been replaced. Please try again.");
+
+        private final ValidatorInterface delegate;
+        private final RelatedIdentifierType type;
+        private final Generation generation;
+        private final PluginBulkhead bulkhead;
+
+        TrackedValidator(ValidatorInterface delegate, RelatedIdentifierType type, Generation generation, PluginBulkhead bulkhead) {
+            this.delegate = delegate;
+            this.type = type;
+            this.generation = generation;
+            this.bulkhead = bulkhead;
+        }
+
+        @Override
+        public RelatedIdentifierType supportedType() {
+            return type;
+        }
+
+        @Override
+        public boolean isValid(String input, RelatedIdentifierType type) throws ValidationError, ValidationWarning {
+            return ValidationFutures.awaitResult(validate(input, type)).toBoolean();
+        }
+
+        @Override
+        public CompletableFuture<Boolean> validateAsync(String input, RelatedIdentifierType type) {
+            return ValidationResult.toFuture(validate(input, type));
+        }
+
+        @Override
+        public CompletableFuture<ValidationResult> validate(String input, RelatedIdentifierType type) {
+            return track(() -> delegate.validate(input, type));
+        }
+
+        @Override
+        public CompletableFuture<ValidationResult> validate(String input, RelatedIdentifierType type, ValidationLevel level) {
+            return track(() -> delegate.validate(input, type, level));
+        }
+
+        /**
+         * Runs a call in the bulkhead. The generation is pinned until the plugin has returned, so its class loaders stay open while
+         * a call which exceeded its time budget and ignores the interrupt still runs code of the plugin.
+         */
+        private CompletableFuture<ValidationResult> track(Supplier<CompletableFuture<ValidationResult>> call) {
+            AtomicBoolean pinned = new AtomicBoolean();
+            return bulkhead.execute(() -> {
+                if (!generation.acquire()) return CompletableFuture.completedFuture(REPLACED);
+                pinned.set(true);
+                return call.get();
+            }, () -> {
+                if (pinned.get()) generation.release();
+            });
+        }
+
+        @Override
+        public String syntaxSignature(RelatedIdentifierType type) {
+            return delegate.syntaxSignature(type);
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+}
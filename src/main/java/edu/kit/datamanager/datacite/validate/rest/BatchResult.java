@@ -0,0 +1,113 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.rest;
+
+import edu.kit.datamanager.datacite.validate.ValidationFutures;
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
+
+import java.io.Serializable;
+
+/**
+ * This class is the result of one item of a batch validation.
+ * The status is VALID, WARNING or ERROR and the message contains the same text as the response of /api/validate.
+ * The level is the level up to which a valid input has been validated (SYNTAX, PREFIX or RESOLVE) and null for invalid inputs.
+ */
+public class BatchResult implements Serializable {
+
+    public String type;
+    public String input;
+    public boolean valid;
+    public String status;
+    public String message;
+    public String level;
+
+    public BatchResult() {
+    }
+
+    public BatchResult(String type, String input, boolean valid, String status, String message) {
+        this.type = type;
+        this.input = input;
+        this.valid = valid;
+        this.status = status;
+        this.message = message;
+    }
+
+    /**
+     * Creates the result of a completed validation.
+     *
+     * @param type      of the input
+     * @param input     which was validated
+     * @param exception the exception of the validation or null if the input is valid
+     * @return the result
+     */
+    public static BatchResult of(String type, String input, Throwable exception) {
+        if (exception == null) return new BatchResult(type, input, true, "VALID", "Valid Input!");
+        Throwable cause = ValidationFutures.unwrap(exception);
+        String status = cause instanceof ValidationError ? "ERROR" : "WARNING";
+        return new BatchResult(type, input, false, status, cause.getMessage());
+    }
+
+    /**
+     * Creates the result of a completed validation.
+     *
+     * @param type   of the input
+     * @param input  which was validated
+     * @param result of the validation
+     * @return the result
+     */
+    public static BatchResult from(String type, String input, ValidationResult result) {
+        BatchResult batchResult = new BatchResult(type, input, result.isValid(), result.getStatus().name(), result.getMessage());
+        if (result.isValid()) batchResult.level = result.getLevel().name();
+        return batchResult;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getInput() {
+        return input;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getLevel() {
+        return level;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "type='" + type + '\'' +
+                ", input='" + input + '\'' +
+                ", valid=" + valid +
+                ", status='" + status + '\'' +
+                ", message='" + message + '\'' +
+                ", level='" + level + '\'' +
+                '}';
+    }
+}
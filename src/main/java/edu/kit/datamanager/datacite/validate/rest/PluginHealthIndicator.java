@@ -0,0 +1,46 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.rest;
+
+import edu.kit.datamanager.datacite.validate.GenericValidator;
+import edu.kit.datamanager.datacite.validate.plugin.PluginInfo;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class reports the state of the plugins in /actuator/health.
+ * While the plugins are still loading, the state is OUT_OF_SERVICE with the detail "warming".
+ * Afterwards it is UP and lists the load time of every plugin.
+ *
+ * @author maximilianiKIT
+ */
+@Component("plugins")
+public class PluginHealthIndicator implements HealthIndicator {
+
+    @Override
+    public Health health() {
+        GenericValidator validator = GenericValidator.soleInstance();
+        if (validator.isWarmingUp()) return Health.outOfService().withDetail("state", "warming").build();
+        Map<String, String> plugins = new LinkedHashMap<>();
+        for (PluginInfo plugin : validator.getPluginInfos())
+            plugins.put(plugin.getType().toString(), plugin.getClassName() + " (" + plugin.getDiscovery() + ", " + plugin.getLoadTime().toMillis() + " ms)");
+        return Health.up().withDetail("state", "ready").withDetail("plugins", plugins).build();
+    }
+}
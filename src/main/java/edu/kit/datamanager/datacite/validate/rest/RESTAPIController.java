@@ -15,35 +15,252 @@
 
 package edu.kit.datamanager.datacite.validate.rest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.kit.datamanager.datacite.validate.BatchValidator;
+import edu.kit.datamanager.datacite.validate.Execution;
 import edu.kit.datamanager.datacite.validate.GenericValidator;
-import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
-import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+import edu.kit.datamanager.datacite.validate.ValidationLevel;
+import edu.kit.datamanager.datacite.validate.ValidationRequest;
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import edu.kit.datamanager.datacite.validate.ValidatorSettings;
+import edu.kit.datamanager.datacite.validate.http.CircuitBreaker;
+import edu.kit.datamanager.datacite.validate.http.HttpTransport;
+import edu.kit.datamanager.datacite.validate.impl.HandleNetValidator;
+import edu.kit.datamanager.datacite.validate.impl.URLValidator;
+import edu.kit.datamanager.datacite.validate.metadata.DataCiteStreamValidator;
+import edu.kit.datamanager.datacite.validate.store.ResultStore;
+import edu.kit.datamanager.datacite.validate.store.StatusTransition;
+import org.datacite.schema.kernel_4.RelatedIdentifierType;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api")
 public class RESTAPIController {
 
+    private final BatchValidator<ValidationResult> batchValidator = BatchValidator.of(request -> Execution.isNonBlocking()
+            ? Execution.limit(() -> validateRequest(request))
+            : validateRequest(request), ValidatorSettings.getInt("validator.batch.parallelism", 32));
+    private final int maxBatchSize = ValidatorSettings.getInt("validator.batch.maxSize", 10000);
+    private final int dataCiteParallelism = ValidatorSettings.getInt("validator.datacite.parallelism", 32);
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    /**
+     * Message of an item of a batch without type or input.
+     */
+    static final String INCOMPLETE_REQUEST = "Missing type or input";
+
+    /**
+     * Response header which contains the detected type if a validation was requested with the type "auto".
+     */
+    static final String IDENTIFIER_TYPE_HEADER = "X-Identifier-Type";
+
+    /**
+     * Response header which contains the level up to which a valid input has been validated.
+     */
+    static final String VALIDATION_LEVEL_HEADER = "X-Validation-Level";
+
     @GetMapping("")
     public List<String> getAvailableValidators() {
         return GenericValidator.soleInstance().getListOfAvailableValidators();
     }
 
+    /**
+     * Validates an input up to the level SYNTAX, PREFIX or RESOLVE (default). A SYNTAX validation never touches the network.
+     * The level which has been achieved is returned in the header X-Validation-Level.
+     */
     @GetMapping("/validate")
     @ResponseBody
-    public ResponseEntity<String> isValid(@RequestParam(name = "type") String type, @RequestParam String input) {
+    public CompletableFuture<ResponseEntity<String>> isValid(@RequestParam(name = "type") String type, @RequestParam String input,
+                                                             @RequestParam(name = "level", required = false) String level) {
+        ValidationLevel validationLevel = ValidationLevel.of(level);
+        if (validationLevel == null) return CompletableFuture.completedFuture(new ResponseEntity<>("Unknown validation level " + level, HttpStatus.BAD_REQUEST));
+        if (GenericValidator.isAuto(type)) return detectAndValidate(input, validationLevel);
+        GenericValidator validator = GenericValidator.soleInstance();
+        CompletableFuture<ValidationResult> validation = Execution.isNonBlocking()
+                ? Execution.limit(() -> validator.validate(input, type, validationLevel))
+                : validator.validate(input, type, validationLevel);
+        CompletableFuture<ResponseEntity<String>> result = validation.handle((validationResult, exception) ->
+                toResponse(exception == null ? validationResult : ValidationResult.of(exception), null));
+        if (!Execution.isNonBlocking()) result.join();
+        return result;
+    }
+
+    private static ResponseEntity<String> toResponse(ValidationResult result, RelatedIdentifierType type) {
+        if (!result.isValid()) return new ResponseEntity<>(result.getMessage(), HttpStatus.BAD_REQUEST);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().header(VALIDATION_LEVEL_HEADER, result.getLevel().name());
+        if (type != null) response.header(IDENTIFIER_TYPE_HEADER, type.toString());
+        return response.body(result.getMessage());
+    }
+
+    /**
+     * Validates an input with the validators of its detected types. The type which was valid is returned in the header X-Identifier-Type.
+     */
+    private CompletableFuture<ResponseEntity<String>> detectAndValidate(String input, ValidationLevel level) {
+        GenericValidator validator = GenericValidator.soleInstance();
+        CompletableFuture<GenericValidator.Detection> detection = Execution.isNonBlocking()
+                ? Execution.limit(() -> validator.detectAndValidate(input, level))
+                : validator.detectAndValidate(input, level);
+        CompletableFuture<ResponseEntity<String>> result = detection.handle((detected, exception) -> {
+            if (exception != null) return toResponse(ValidationResult.of(exception), null);
+            return toResponse(detected.getResult(), detected.getType());
+        });
+        if (!Execution.isNonBlocking()) result.join();
+        return result;
+    }
+
+    @GetMapping("/detect")
+    public List<String> detect(@RequestParam String input) {
+        List<String> result = new ArrayList<>();
+        for (RelatedIdentifierType type : GenericValidator.soleInstance().detect(input)) result.add(type.toString());
+        return result;
+    }
+
+    /**
+     * Validates many inputs. Requests without a level are validated up to the level of the parameter level (default RESOLVE).
+     * Items without type or input (e.g. null) are reported as errors.
+     */
+    @PostMapping("/validate/batch")
+    @ResponseBody
+    public CompletableFuture<ResponseEntity<List<BatchResult>>> isValid(@RequestBody List<ValidationRequest> requests,
+                                                                        @RequestParam(name = "level", required = false) String level) {
+        if (requests.size() > maxBatchSize) return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.PAYLOAD_TOO_LARGE));
+        ValidationLevel validationLevel = ValidationLevel.of(level);
+        if (validationLevel == null) return CompletableFuture.completedFuture(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
+        List<ValidationRequest> complete = new ArrayList<>(requests.size());
+        for (ValidationRequest request : requests) {
+            if (!isComplete(request)) continue;
+            if (request.getLevel() == null) request.setLevel(validationLevel);
+            complete.add(request);
+        }
+        List<CompletableFuture<BatchResult>> futures = new ArrayList<>(requests.size());
+        List<CompletableFuture<ValidationResult>> validations = batchValidator.submit(complete);
+        int next = 0;
+        for (ValidationRequest request : requests) {
+            if (!isComplete(request)) {
+                futures.add(CompletableFuture.completedFuture(request == null ? new BatchResult(null, null, false, "ERROR", INCOMPLETE_REQUEST)
+                        : new BatchResult(request.getType(), request.getInput(), false, "ERROR", INCOMPLETE_REQUEST)));
+                continue;
+            }
+            futures.add(validations.get(next++).handle((result, exception) -> exception == null
+                    ? BatchResult.from(request.getType(), request.getInput(), result)
+                    : BatchResult.of(request.getType(), request.getInput(), exception)));
+        }
+        CompletableFuture<ResponseEntity<List<BatchResult>>> result = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApply(done -> {
+                    List<BatchResult> results = new ArrayList<>(futures.size());
+                    for (CompletableFuture<BatchResult> future : futures) results.add(future.join());
+                    return new ResponseEntity<>(results, HttpStatus.OK);
+                });
+        if (!Execution.isNonBlocking()) result.join();
+        return result;
+    }
+
+    private static CompletableFuture<ValidationResult> validateRequest(ValidationRequest request) {
+        return GenericValidator.soleInstance().validate(request.getInput(), request.getType(), request.getLevel());
+    }
+
+    private static boolean isComplete(ValidationRequest request) {
+        return request != null && request.getType() != null && request.getInput() != null;
+    }
+
+    /**
+     * Validates the related identifiers of DataCite XML metadata up to the level of the parameter level (default RESOLVE).
+     * The body is one DataCite document, a document with many resource elements or a dump of concatenated documents.
+     * The response streams one JSON report per resource element (NDJSON) while the body is still being parsed.
+     * If the XML is not well-formed, the last line is an object with the field error.
+     */
+    @PostMapping(value = "/validate/datacite", consumes = {MediaType.APPLICATION_XML_VALUE, MediaType.TEXT_XML_VALUE})
+    public ResponseEntity<StreamingResponseBody> validateDataCite(InputStream body, @RequestParam(name = "level", required = false) String level) {
+        ValidationLevel validationLevel = ValidationLevel.of(level);
+        if (validationLevel == null) return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN)
+                .body(out -> out.write(("Unknown validation level " + level).getBytes(StandardCharsets.UTF_8)));
+        DataCiteStreamValidator validator = DataCiteStreamValidator.of(validationLevel, dataCiteParallelism);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(out -> {
+            try {
+                validator.validate(body, report -> writeLine(out, report));
+            } catch (XMLStreamException e) {
+                writeLine(out, Map.of("error", "Invalid XML: " + e.getMessage()));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    private static void writeLine(OutputStream out, Object value) {
+        try {
+            out.write(JSON.writeValueAsBytes(value));
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @GetMapping("/cache")
+    public Map<String, Map<String, Long>> getCacheStatistics() {
+        Map<String, Map<String, Long>> result = new LinkedHashMap<>();
+        result.put(URLValidator.getStatusCache().getName(), URLValidator.getStatusCache().getStatistics());
+        result.put(HandleNetValidator.getPrefixCache().getName(), HandleNetValidator.getPrefixCache().getStatistics());
+        return result;
+    }
+
+    /**
+     * This method lists the changes of the status of stored results, e.g. identifiers which broke since they have been validated.
+     * The changes are detected by new validations and by the background revalidation.
+     *
+     * @param since earliest time of a change as ISO-8601 instant (e.g. 2021-11-01T00:00:00Z)
+     * @param limit maximum number of changes (default 1000)
+     * @return the changes oldest first, 400 if since isn't an instant, or 503 if the results aren't stored.
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<List<StatusTransition>> getChanges(@RequestParam String since, @RequestParam(name = "limit", defaultValue = "1000") int limit) {
+        ResultStore store = GenericValidator.getResultStore();
+        if (store == null) return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        Instant instant;
         try {
-            if (GenericValidator.soleInstance().isValid(input, type))
-                return new ResponseEntity<>("Valid Input!", HttpStatus.OK);
-        } catch (ValidationWarning e) {
-            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
-        } catch (ValidationError e) {
-            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+            instant = Instant.parse(since);
+        } catch (DateTimeParseException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return ResponseEntity.ok(store.changesSince(instant, Math.min(limit, maxBatchSize)));
+    }
+
+    /**
+     * This method lists the circuit breakers of the hosts which are not closed or have recent failures.
+     *
+     * @return the state, consecutive failures, rejected requests and number of openings per host.
+     */
+    @GetMapping("/breakers")
+    public Map<String, Map<String, Object>> getCircuitBreakers() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        for (CircuitBreaker breaker : HttpTransport.shared().getCircuitBreakers().getBreakers()) {
+            if (breaker.getState() == CircuitBreaker.State.CLOSED && breaker.getFailures() == 0 && breaker.getOpened() == 0) continue;
+            Map<String, Object> details = new LinkedHashMap<>();
+            details.put("state", breaker.getState());
+            details.put("failures", breaker.getFailures());
+            details.put("rejected", breaker.getRejected());
+            details.put("opened", breaker.getOpened());
+            result.put(breaker.getName(), details);
         }
-        return null;
+        return result;
     }
 }
@@ -0,0 +1,457 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.store;
+
+import edu.kit.datamanager.datacite.validate.ValidationLevel;
+import edu.kit.datamanager.datacite.validate.ValidationFutures;
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import edu.kit.datamanager.datacite.validate.ValidatorSettings;
+import edu.kit.datamanager.datacite.validate.cache.ResultCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * This class stores the results of complete validations in a database, so a restarted node doesn't validate every identifier again.
+ * <p>
+ * It has two tiers: a ResultCache in memory and the table of StoredResult behind it. A lookup which misses the cache reads the entry with its primary key
+ * on the executor for blocking validations and moves it into the cache for the rest of its time-to-live. Results are written to the cache immediately and to the database in the background:
+ * the writes are collected per key, so an identifier which is validated repeatedly is written once, and inserted or updated in batches
+ * of one transaction. A batch which fails is pending again and retried by the next flush. If the database can't keep up, writes beyond the pending limit
+ * are dropped; their results stay in the cache.
+ * <p>
+ * Only results which are worth a remote call are stored: valid results of the level RESOLVE and errors of the stages PREFIX and RESOLVE
+ * (or of validators which don't report a stage). Warnings are never stored, because the next attempt may succeed.
+ * <p>
+ * If the status of a stored identifier changes, a StatusTransition is recorded with the new result. Every entry is due for revalidation
+ * after its time-to-live divided by one plus its number of changes, so volatile identifiers are checked up to eight times as often (see RevalidationScheduler).
+ * Every entry keeps the input of its last validation next to the normalised identifier, so it is revalidated exactly as it was entered.
+ *
+ * @author maximilianiKIT
+ */
+public class ResultStore implements Closeable {
+
+    static Logger LOG = LoggerFactory.getLogger(ResultStore.class);
+
+    /**
+     * Volatile identifiers are revalidated at most this many times per time-to-live.
+     */
+    private static final int MAX_CHECKS_PER_TTL = 8;
+
+    /**
+     * A DOI without resolver: the prefix 10.registrant and the suffix.
+     */
+    private static final Pattern DOI = Pattern.compile("10\\.[^/\\s]+/\\S+");
+
+    private final StoredResultRepository repository;
+    private final StatusTransitionRepository transitions;
+    private final TransactionOperations transactions;
+    private final ResultCache<String, ValidationResult> cache;
+    private final Duration positiveTtl;
+    private final Duration negativeTtl;
+    private final int batchSize;
+    private final int maxPending;
+    private final Clock clock;
+
+    private final ConcurrentHashMap<String, StoredResult> pending = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+    private final ScheduledExecutorService writer;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private volatile boolean closed;
+
+    private final LongAdder loaded = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder changed = new LongAdder();
+
+    /**
+     * @param repository    of the stored results
+     * @param transitions   repository of the changes of the status
+     * @param transactions  in which a batch is written
+     * @param cacheSize     maximum number of results in memory
+     * @param positiveTtl   time after the check during which a valid result is used
+     * @param negativeTtl   time after the check during which an invalid result is used
+     * @param batchSize     maximum number of results written in one transaction
+     * @param flushInterval time between two writes of the pending results
+     * @param maxPending    maximum number of results which wait to be written
+     */
+    public ResultStore(StoredResultRepository repository, StatusTransitionRepository transitions, TransactionOperations transactions, int cacheSize,
+                       Duration positiveTtl, Duration negativeTtl, int batchSize, Duration flushInterval, int maxPending) {
+        this(repository, transitions, transactions, cacheSize, positiveTtl, negativeTtl, batchSize, flushInterval, maxPending, Clock.systemUTC());
+    }
+
+    ResultStore(StoredResultRepository repository, StatusTransitionRepository transitions, TransactionOperations transactions, int cacheSize,
+                Duration positiveTtl, Duration negativeTtl, int batchSize, Duration flushInterval, int maxPending, Clock clock) {
+        this.repository = repository;
+        this.transitions = transitions;
+        this.transactions = transactions;
+        this.cache = new ResultCache<>("store", cacheSize, positiveTtl, negativeTtl);
+        this.positiveTtl = positiveTtl;
+        this.negativeTtl = negativeTtl;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxPending = maxPending;
+        this.clock = clock;
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "result-store-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, flushInterval.toMillis());
+        writer.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a store which reads its settings from the system properties validator.store.cacheSize (default 100000),
+     * validator.store.positiveTtl (default P7D), validator.store.negativeTtl (default P1D), validator.store.batchSize (default 500),
+     * validator.store.flushInterval (default PT1S) and validator.store.maxPending (default 100000).
+     *
+     * @param repository   of the stored results
+     * @param transitions  repository of the changes of the status
+     * @param transactions in which a batch is written
+     * @return a new store
+     */
+    public static ResultStore fromSystemProperties(StoredResultRepository repository, StatusTransitionRepository transitions, TransactionOperations transactions) {
+        return new ResultStore(repository, transitions, transactions,
+                ValidatorSettings.getInt("validator.store.cacheSize", 100000),
+                ValidatorSettings.getDuration("validator.store.positiveTtl", Duration.ofDays(7)),
+                ValidatorSettings.getDuration("validator.store.negativeTtl", Duration.ofDays(1)),
+                ValidatorSettings.getInt("validator.store.batchSize", 500),
+                ValidatorSettings.getDuration("validator.store.flushInterval", Duration.ofSeconds(1)),
+                ValidatorSettings.getInt("validator.store.maxPending", 100000));
+    }
+
+    /**
+     * Normalises an identifier, so different spellings of the same identifier share one entry.
+     * Surrounding whitespace is removed, and a DOI of the form prefix/suffix is lower-cased because DOIs are case-insensitive.
+     * Everything else (e.g. handles or DOIs in the form of a URL, whose path may be case-sensitive) is kept as it is.
+     *
+     * @param type       name of the type (e.g. "DOI")
+     * @param identifier the input of the validation
+     * @return the normalised identifier.
+     */
+    public static String normalise(String type, String identifier) {
+        String trimmed = identifier.trim();
+        if (type.equalsIgnoreCase("DOI") && DOI.matcher(trimmed).matches()) return trimmed.toLowerCase(Locale.ROOT);
+        return trimmed;
+    }
+
+    /**
+     * @param type       name of the type (e.g. "DOI")
+     * @param identifier the input of the validation
+     * @return the primary key of the result of the identifier.
+     */
+    public static String key(String type, String identifier) {
+        return type + '|' + normalise(type, identifier);
+    }
+
+    /**
+     * @param result of a complete validation
+     * @return true if the result is stored.
+     */
+    static boolean isStored(ValidationResult result) {
+        if (result.getStatus() == ValidationResult.Status.VALID) return result.getLevel() == ValidationLevel.RESOLVE;
+        if (result.getStatus() != ValidationResult.Status.ERROR) return false;
+        ValidationResult.Stage stage = result.getStage();
+        return stage == null || stage == ValidationResult.Stage.PREFIX || stage == ValidationResult.Stage.RESOLVE;
+    }
+
+    /**
+     * Looks up the result of an identifier without blocking the calling thread. A result in memory is returned at once;
+     * otherwise the database is read on the executor for blocking validations (see ValidationFutures.blockingExecutor).
+     *
+     * @param type       name of the type (e.g. "DOI")
+     * @param identifier the input of the validation
+     * @return a future which completes with the result, or with null if there is none or it is older than its time-to-live. It never completes exceptionally.
+     */
+    public CompletableFuture<ValidationResult> lookUp(String type, String identifier) {
+        String key = key(type, identifier);
+        ValidationResult result = cache.get(key);
+        if (result != null) return CompletableFuture.completedFuture(result);
+        try {
+            return CompletableFuture.supplyAsync(() -> load(key), ValidationFutures.blockingExecutor());
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Looks up the result of an identifier. This method reads the database on the calling thread if the result is not in memory,
+     * which is a single primary key lookup. Validations use lookUp instead.
+     *
+     * @param type       name of the type (e.g. "DOI")
+     * @param identifier the input of the validation
+     * @return the result, or null if there is none or it is older than its time-to-live.
+     */
+    public ValidationResult get(String type, String identifier) {
+        String key = key(type, identifier);
+        ValidationResult result = cache.get(key);
+        return result != null ? result : load(key);
+    }
+
+    /**
+     * Reads a result from the database and moves it into memory for the rest of its time-to-live.
+     */
+    private ValidationResult load(String key) {
+        StoredResult stored;
+        try {
+            stored = repository.findById(key).orElse(null);
+        } catch (RuntimeException e) {
+            LOG.warn("Can't read the stored result of {}: {}", key, e.toString());
+            return null;
+        }
+        if (stored == null) return null;
+        ValidationResult result = stored.toResult();
+        Duration age = Duration.between(stored.getLastChecked(), clock.instant());
+        if (age.compareTo(result.isValid() ? positiveTtl : negativeTtl) >= 0) return null;
+        cache.put(key, result, result.isValid(), age);
+        loaded.increment();
+        return result;
+    }
+
+    /**
+     * Stores the result of a complete validation. It is available in memory at once and written to the database in the background.
+     * Results which are not worth storing (see class description) are ignored.
+     *
+     * @param type       name of the type (e.g. "DOI")
+     * @param identifier the input of the validation
+     * @param result     of the validation
+     */
+    public void put(String type, String identifier, ValidationResult result) {
+        if (!isStored(result)) return;
+        String key = key(type, identifier);
+        cache.put(key, result, result.isValid());
+        if (closed) return;
+        if (pending.size() >= maxPending && !pending.containsKey(key)) {
+            dropped.increment();
+            return;
+        }
+        pending.put(key, new StoredResult(key, type, normalise(type, identifier), identifier, result, clock.instant()));
+        if (pending.size() >= batchSize && flushRequested.compareAndSet(false, true)) writer.execute(this::flushQuietly);
+    }
+
+    /**
+     * Writes all pending results to the database on the calling thread.
+     * If a batch can't be written, its results are pending again and the flush stops, so the next flush retries them.
+     *
+     * @return the number of results which have been written.
+     */
+    public int flush() {
+        int count = 0;
+        synchronized (flushLock) {
+            flushRequested.set(false);
+            while (!pending.isEmpty()) {
+                List<StoredResult> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+                for (Map.Entry<String, StoredResult> entry : pending.entrySet()) {
+                    if (batch.size() >= batchSize) break;
+                    // a result which has been replaced in the meantime stays pending
+                    if (pending.remove(entry.getKey(), entry.getValue())) batch.add(entry.getValue());
+                }
+                if (batch.isEmpty()) break;
+                try {
+                    write(batch);
+                    written.add(batch.size());
+                    count += batch.size();
+                } catch (RuntimeException e) {
+                    failed.add(batch.size());
+                    LOG.warn("Can't write " + batch.size() + " results to the database.", e);
+                    requeue(batch);
+                    // the next flush retries the batch; retrying it now would only fail again
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Puts the entries of a failed batch back into the pending writes, unless a newer result of the identifier is pending already.
+     * Entries beyond the pending limit are dropped like new writes.
+     */
+    private void requeue(List<StoredResult> batch) {
+        for (StoredResult entry : batch) {
+            if (pending.size() >= maxPending && !pending.containsKey(entry.getId())) dropped.increment();
+            else pending.putIfAbsent(entry.getId(), entry);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOG.warn("Can't write the results to the database.", e);
+        }
+    }
+
+    /**
+     * Inserts or updates a batch in one transaction. The existing entries are read with one query and updated,
+     * so every entry is written without another lookup. Changes of the status are recorded in the same transaction.
+     */
+    private void write(List<StoredResult> batch) {
+        transactions.executeWithoutResult(status -> {
+            List<String> keys = new ArrayList<>(batch.size());
+            for (StoredResult entry : batch) keys.add(entry.getId());
+            Map<String, StoredResult> existing = new HashMap<>();
+            for (StoredResult stored : repository.findAllById(keys)) existing.put(stored.getId(), stored);
+            List<StoredResult> entries = new ArrayList<>(batch.size());
+            List<StatusTransition> changes = new ArrayList<>();
+            for (StoredResult entry : batch) {
+                StoredResult stored = existing.get(entry.getId());
+                if (stored == null) stored = entry;
+                else {
+                    if (stored.getStatus() != entry.getStatus()) changes.add(new StatusTransition(stored, entry));
+                    stored.update(entry);
+                }
+                stored.setNextCheck(nextCheck(stored));
+                entries.add(stored);
+            }
+            repository.saveAll(entries);
+            if (!changes.isEmpty()) transitions.saveAll(changes);
+            changed.add(changes.size());
+        });
+    }
+
+    /**
+     * @param entry which has been checked
+     * @return the time after which the entry is due for revalidation: its time-to-live divided by one plus its number of changes.
+     */
+    Instant nextCheck(StoredResult entry) {
+        Duration ttl = entry.getStatus() == ValidationResult.Status.VALID ? positiveTtl : negativeTtl;
+        return entry.getLastChecked().plus(ttl.dividedBy(1 + Math.min(entry.getChanges(), MAX_CHECKS_PER_TTL - 1)));
+    }
+
+    /**
+     * Takes the entries which are due for revalidation first. Their next check is postponed to the given time, so they are not taken again
+     * while they are revalidated; the new result of the revalidation reschedules them.
+     *
+     * @param horizon    latest time of the next check of an entry
+     * @param limit      maximum number of entries
+     * @param postponeTo new time of the next check of the entries
+     * @return the entries, the longest due first.
+     */
+    public List<StoredResult> claimDue(Instant horizon, int limit, Instant postponeTo) {
+        if (limit < 1) return List.of();
+        synchronized (flushLock) {
+            return transactions.execute(status -> {
+                List<StoredResult> due = repository.findDue(horizon, PageRequest.of(0, limit));
+                for (StoredResult entry : due) entry.setNextCheck(postponeTo);
+                repository.saveAll(due);
+                return due;
+            });
+        }
+    }
+
+    /**
+     * @param horizon latest time of the next check of an entry
+     * @return the number of entries which are due for revalidation before the horizon.
+     */
+    public long countDue(Instant horizon) {
+        return repository.countDue(horizon);
+    }
+
+    /**
+     * @param since earliest time of a change
+     * @param limit maximum number of changes
+     * @return the changes of the status at or after the given time, oldest first. Changes which have not been written yet are not included.
+     */
+    public List<StatusTransition> changesSince(Instant since, int limit) {
+        return transitions.findByChangedAtGreaterThanEqualOrderByChangedAtAscIdAsc(since, PageRequest.of(0, Math.max(1, limit)));
+    }
+
+    /**
+     * @return the cache in front of the database.
+     */
+    public ResultCache<String, ValidationResult> getCache() {
+        return cache;
+    }
+
+    /**
+     * @return the number of results which wait to be written.
+     */
+    public int getPending() {
+        return pending.size();
+    }
+
+    /**
+     * @return the number of results which have been read from the database.
+     */
+    public long getLoaded() {
+        return loaded.sum();
+    }
+
+    /**
+     * @return the number of results which have been written to the database.
+     */
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * @return the number of results which have not been written because too many results were pending.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return the number of results which could not be written because of an error of the database.
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return the number of changes of the status which have been recorded.
+     */
+    public long getChanged() {
+        return changed.sum();
+    }
+
+    /**
+     * Stops the background writes and writes the pending results. Results stored afterwards are only kept in memory.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
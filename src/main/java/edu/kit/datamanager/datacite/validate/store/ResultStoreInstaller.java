@@ -0,0 +1,73 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.store;
+
+import edu.kit.datamanager.datacite.validate.GenericValidator;
+import edu.kit.datamanager.datacite.validate.ValidatorSettings;
+import edu.kit.datamanager.datacite.validate.metrics.ValidationMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * This class installs the result store of the application's database in the GenericValidator when the application starts,
+ * and writes the pending results when it stops. The store is disabled with the system property validator.store.enabled=false.
+ * It also starts the RevalidationScheduler, which is disabled with validator.revalidation.enabled=false.
+ *
+ * @author maximilianiKIT
+ */
+@Component
+public class ResultStoreInstaller {
+
+    static Logger LOG = LoggerFactory.getLogger(ResultStoreInstaller.class);
+
+    private final ResultStore store;
+    private final RevalidationScheduler scheduler;
+
+    public ResultStoreInstaller(StoredResultRepository repository, StatusTransitionRepository transitions, PlatformTransactionManager transactionManager) {
+        this.store = ValidatorSettings.getBoolean("validator.store.enabled", true)
+                ? ResultStore.fromSystemProperties(repository, transitions, new TransactionTemplate(transactionManager))
+                : null;
+        this.scheduler = store != null && ValidatorSettings.getBoolean("validator.revalidation.enabled", true)
+                ? RevalidationScheduler.fromSystemProperties(store, (type, input) -> GenericValidator.soleInstance().revalidate(input, type))
+                : null;
+    }
+
+    @PostConstruct
+    void install() {
+        if (store == null) return;
+        ValidationMetrics.bindResultStore(store);
+        GenericValidator.setResultStore(store);
+        LOG.info("Validation results are stored in the database.");
+        if (scheduler == null) return;
+        ValidationMetrics.bindRevalidationScheduler(scheduler);
+        scheduler.start();
+        LOG.info("Stored validation results are revalidated in the background.");
+    }
+
+    @PreDestroy
+    void uninstall() {
+        if (store == null) return;
+        if (scheduler != null) scheduler.close();
+        if (GenericValidator.getResultStore() == store) GenericValidator.setResultStore(null);
+        store.close();
+    }
+}
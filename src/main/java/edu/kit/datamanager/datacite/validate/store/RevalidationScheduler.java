@@ -0,0 +1,213 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.store;
+
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import edu.kit.datamanager.datacite.validate.ValidatorSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * This class revalidates the stored identifiers in the background, so an identifier which breaks after it has been validated (link rot) is noticed.
+ * The new results replace the stored ones, and the ResultStore records every change of the status.
+ * <p>
+ * Once per second, the scheduler takes the entries which are due first (see ResultStore.claimDue), so the oldest and the most volatile identifiers come first.
+ * The pace is the number of entries which become due within the window divided by the window, so the checks are spread evenly instead of
+ * starting all at once when many entries become due at the same time; entries may be checked up to one window before they are due.
+ * The pace never exceeds the budget of checks per second, which caps the outbound requests of the revalidation, and the checks of one second
+ * are spread over that second. At most maxInFlight revalidations run at the same time.
+ * <p>
+ * The settings are read from the system properties validator.revalidation.budget (checks per second, default 1),
+ * validator.revalidation.window (default PT1H), validator.revalidation.retryInterval (default PT1H) and validator.revalidation.maxInFlight (default 32).
+ *
+ * @author maximilianiKIT
+ */
+public class RevalidationScheduler implements Closeable {
+
+    static Logger LOG = LoggerFactory.getLogger(RevalidationScheduler.class);
+
+    private static final Duration TICK = Duration.ofSeconds(1);
+    private static final Duration RATE_REFRESH = Duration.ofMinutes(1);
+
+    private final ResultStore store;
+    private final BiFunction<String, String, CompletableFuture<ValidationResult>> revalidation;
+    private final double budget;
+    private final Duration window;
+    private final Duration retryInterval;
+    private final int maxInFlight;
+    private final Clock clock;
+    private final ScheduledExecutorService executor;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private double rate;
+    private double credit;
+    private Instant rateRefreshed;
+
+    /**
+     * @param store         of the identifiers
+     * @param revalidation  function which revalidates an identifier (type, input as it was entered) and stores the result
+     * @param budget        maximum number of checks per second
+     * @param window        time over which the checks of the entries which become due are spread
+     * @param retryInterval time after which an entry is taken again if its revalidation didn't produce a stored result (e.g. a warning)
+     * @param maxInFlight   maximum number of revalidations at the same time
+     */
+    public RevalidationScheduler(ResultStore store, BiFunction<String, String, CompletableFuture<ValidationResult>> revalidation, double budget,
+                                 Duration window, Duration retryInterval, int maxInFlight) {
+        this(store, revalidation, budget, window, retryInterval, maxInFlight, Clock.systemUTC());
+    }
+
+    RevalidationScheduler(ResultStore store, BiFunction<String, String, CompletableFuture<ValidationResult>> revalidation, double budget,
+                          Duration window, Duration retryInterval, int maxInFlight, Clock clock) {
+        this.store = store;
+        this.revalidation = revalidation;
+        this.budget = budget;
+        this.window = window;
+        this.retryInterval = retryInterval;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.clock = clock;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "revalidation-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates a scheduler which reads its settings from the system properties (see class description).
+     *
+     * @param store        of the identifiers
+     * @param revalidation function which revalidates an identifier (type, input as it was entered) and stores the result
+     * @return a new scheduler, which has not been started yet
+     */
+    public static RevalidationScheduler fromSystemProperties(ResultStore store, BiFunction<String, String, CompletableFuture<ValidationResult>> revalidation) {
+        return new RevalidationScheduler(store, revalidation,
+                ValidatorSettings.getDouble("validator.revalidation.budget", 1),
+                ValidatorSettings.getDuration("validator.revalidation.window", Duration.ofHours(1)),
+                ValidatorSettings.getDuration("validator.revalidation.retryInterval", Duration.ofHours(1)),
+                ValidatorSettings.getInt("validator.revalidation.maxInFlight", 32));
+    }
+
+    /**
+     * Starts the revalidation in the background.
+     */
+    public void start() {
+        executor.scheduleAtFixedRate(this::tickQuietly, TICK.toMillis(), TICK.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void tickQuietly() {
+        try {
+            tick(clock.instant());
+        } catch (RuntimeException e) {
+            LOG.warn("Can't schedule revalidations.", e);
+        }
+    }
+
+    /**
+     * Takes the entries of one tick and starts their revalidation, spread over the tick. Runs on the scheduler thread.
+     *
+     * @param now current time
+     * @return the number of entries which have been taken.
+     */
+    int tick(Instant now) {
+        if (rateRefreshed == null || Duration.between(rateRefreshed, now).compareTo(RATE_REFRESH) >= 0) {
+            rate = Math.min(budget, store.countDue(now.plus(window)) / (double) Math.max(1, window.toSeconds()));
+            rateRefreshed = now;
+        }
+        // unused credit doesn't pile up, so a pause isn't followed by a burst
+        credit = Math.min(credit + rate * TICK.toSeconds(), Math.max(1, rate * TICK.toSeconds()));
+        int limit = Math.min((int) credit, maxInFlight - inFlight.get());
+        if (limit < 1) return 0;
+        List<StoredResult> due = store.claimDue(now.plus(window), limit, now.plus(retryInterval));
+        credit = due.size() < limit ? 0 : credit - due.size();
+        long spacing = TICK.toNanos() / Math.max(1, due.size());
+        for (int i = 0; i < due.size(); i++) {
+            StoredResult entry = due.get(i);
+            inFlight.incrementAndGet();
+            executor.schedule(() -> revalidate(entry), i * spacing, TimeUnit.NANOSECONDS);
+        }
+        if (!due.isEmpty()) LOG.debug("Revalidating {} identifiers ({} per second).", due.size(), rate);
+        return due.size();
+    }
+
+    private void revalidate(StoredResult entry) {
+        CompletableFuture<ValidationResult> result;
+        try {
+            result = revalidation.apply(entry.getType(), entry.getInput());
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((value, exception) -> {
+            inFlight.decrementAndGet();
+            checked.increment();
+            if (exception != null) {
+                failed.increment();
+                LOG.debug("Revalidation of {} failed: {}", entry.getIdentifier(), exception.toString());
+            }
+        });
+    }
+
+    /**
+     * @return the number of revalidations which are in progress.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the number of completed revalidations.
+     */
+    public long getChecked() {
+        return checked.sum();
+    }
+
+    /**
+     * @return the number of revalidations which completed exceptionally.
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return the current pace in checks per second.
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    /**
+     * Stops the revalidation. Revalidations in progress complete in the background.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
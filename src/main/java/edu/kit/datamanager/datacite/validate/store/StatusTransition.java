@@ -0,0 +1,133 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.store;
+
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * This class records that the status of a stored identifier has changed (e.g. a valid URL which is not found any more).
+ * The time of the change is indexed, so the changes since a given time are found without a table scan.
+ *
+ * @author maximilianiKIT
+ */
+@Entity
+@Table(name = "status_transition", indexes = @Index(name = "status_transition_changed_at", columnList = "changed_at"))
+public class StatusTransition {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    private Long id;
+
+    @Column(nullable = false, length = 64)
+    private String type;
+
+    @Column(nullable = false, length = StoredResult.MAX_KEY_LENGTH)
+    private String identifier;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private ValidationResult.Status previousStatus;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private ValidationResult.Status status;
+
+    @Column(length = StoredResult.MAX_MESSAGE_LENGTH)
+    private String message;
+
+    @Column(name = "changed_at", nullable = false)
+    private Instant changedAt;
+
+    protected StatusTransition() {
+        // for JPA
+    }
+
+    /**
+     * @param previous the stored entry before the change
+     * @param current  the entry with the new status
+     */
+    StatusTransition(StoredResult previous, StoredResult current) {
+        this.type = current.getType();
+        this.identifier = current.getIdentifier();
+        this.previousStatus = previous.getStatus();
+        this.status = current.getStatus();
+        this.message = current.getMessage();
+        this.changedAt = current.getLastChecked();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * @return the name of the type (e.g. "DOI").
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return the normalised identifier.
+     */
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    public ValidationResult.Status getPreviousStatus() {
+        return previousStatus;
+    }
+
+    public ValidationResult.Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the message of the new result.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return the time of the validation which detected the change.
+     */
+    public Instant getChangedAt() {
+        return changedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "StatusTransition{" +
+                "type='" + type + '\'' +
+                ", identifier='" + identifier + '\'' +
+                ", previousStatus=" + previousStatus +
+                ", status=" + status +
+                ", message='" + message + '\'' +
+                ", changedAt=" + changedAt +
+                '}';
+    }
+}
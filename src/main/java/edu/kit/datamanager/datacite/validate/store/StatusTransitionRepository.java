@@ -0,0 +1,37 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.store;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * This interface is the Spring Data repository of the recorded changes of the status of stored identifiers.
+ *
+ * @author maximilianiKIT
+ */
+public interface StatusTransitionRepository extends JpaRepository<StatusTransition, Long> {
+
+    /**
+     * @param since earliest time of a change
+     * @param page  which limits the number of changes
+     * @return the changes at or after the given time, oldest first.
+     */
+    List<StatusTransition> findByChangedAtGreaterThanEqualOrderByChangedAtAscIdAsc(Instant since, Pageable page);
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.store;
+
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+import java.time.Instant;
+
+/**
+ * This class is the persisted result of the validation of an identifier of a type.
+ * The primary key combines the type and the normalised identifier (see ResultStore.key), so a result is looked up with a single index access
+ * and a batch of results with a single query. The time of the next revalidation is indexed, so the due entries are found without a table scan.
+ *
+ * @author maximilianiKIT
+ */
+@Entity
+@Table(name = "validation_result", indexes = @Index(name = "validation_result_next_check", columnList = "next_check"))
+public class StoredResult implements Persistable<String> {
+
+    static final int MAX_KEY_LENGTH = 4096;
+    static final int MAX_MESSAGE_LENGTH = 1024;
+
+    @Id
+    @Column(name = "result_key", length = MAX_KEY_LENGTH)
+    private String key;
+
+    @Column(nullable = false, length = 64)
+    private String type;
+
+    @Column(nullable = false, length = MAX_KEY_LENGTH)
+    private String identifier;
+
+    /**
+     * The input of the last validation as it was entered, or null for entries which have been stored without it.
+     */
+    @Column(length = MAX_KEY_LENGTH)
+    private String input;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private ValidationResult.Status status;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private ValidationResult.Stage stage;
+
+    @Column(length = MAX_MESSAGE_LENGTH)
+    private String message;
+
+    @Column(nullable = false)
+    private Instant lastChecked;
+
+    /**
+     * Number of changes of the status, which makes an identifier more volatile.
+     */
+    @Column(nullable = false, columnDefinition = "integer default 0")
+    private int changes;
+
+    /**
+     * Time after which the identifier is due for revalidation, or null if it is due at once.
+     */
+    @Column(name = "next_check")
+    private Instant nextCheck;
+
+    /**
+     * False for entities which have been loaded or saved, so saving a new entity doesn't look it up first.
+     */
+    @Transient
+    private boolean isNew = true;
+
+    protected StoredResult() {
+        // for JPA
+    }
+
+    StoredResult(String key, String type, String identifier, String input, ValidationResult result, Instant lastChecked) {
+        this.key = key;
+        this.type = type;
+        this.identifier = identifier;
+        this.input = input;
+        update(result, lastChecked);
+    }
+
+    /**
+     * Replaces the outcome of this entry.
+     *
+     * @param result      of the validation
+     * @param lastChecked time of the validation
+     */
+    void update(ValidationResult result, Instant lastChecked) {
+        this.status = result.getStatus();
+        this.stage = result.getStage();
+        String text = result.getMessage();
+        this.message = text != null && text.length() > MAX_MESSAGE_LENGTH ? text.substring(0, MAX_MESSAGE_LENGTH) : text;
+        this.lastChecked = lastChecked;
+    }
+
+    /**
+     * Replaces the outcome of this entry with the outcome of a newer entry of the same key.
+     *
+     * @param newer entry
+     */
+    void update(StoredResult newer) {
+        if (status != newer.status) changes++;
+        this.input = newer.input;
+        this.status = newer.status;
+        this.stage = newer.stage;
+        this.message = newer.message;
+        this.lastChecked = newer.lastChecked;
+    }
+
+    /**
+     * @param nextCheck time after which the identifier is due for revalidation
+     */
+    void setNextCheck(Instant nextCheck) {
+        this.nextCheck = nextCheck;
+    }
+
+    /**
+     * @return the result which has been stored. Valid results without a stage are the shared result of ValidationResult.valid().
+     */
+    public ValidationResult toResult() {
+        if (status == ValidationResult.Status.VALID)
+            return stage == null && ValidationResult.valid().getMessage().equals(message) ? ValidationResult.valid() : ValidationResult.valid(stage, message);
+        if (status == ValidationResult.Status.ERROR) return ValidationResult.error(stage, message);
+        return ValidationResult.warning(stage, message);
+    }
+
+    @Override
+    public String getId() {
+        return key;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    /**
+     * @return the name of the type (e.g. "DOI").
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return the normalised identifier.
+     */
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    /**
+     * @return the input of the last validation as it was entered, or the normalised identifier if the entry has been stored without it.
+     */
+    public String getInput() {
+        return input != null ? input : identifier;
+    }
+
+    public ValidationResult.Status getStatus() {
+        return status;
+    }
+
+    public ValidationResult.Stage getStage() {
+        return stage;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return the time of the last validation.
+     */
+    public Instant getLastChecked() {
+        return lastChecked;
+    }
+
+    /**
+     * @return the number of changes of the status since the identifier has been stored for the first time.
+     */
+    public int getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return the time after which the identifier is due for revalidation or null if it is due at once.
+     */
+    public Instant getNextCheck() {
+        return nextCheck;
+    }
+
+    @Override
+    public String toString() {
+        return "StoredResult{" +
+                "type='" + type + '\'' +
+                ", identifier='" + identifier + '\'' +
+                ", status=" + status +
+                ", stage=" + stage +
+                ", message='" + message + '\'' +
+                ", lastChecked=" + lastChecked +
+                ", changes=" + changes +
+                ", nextCheck=" + nextCheck +
+                '}';
+    }
+}
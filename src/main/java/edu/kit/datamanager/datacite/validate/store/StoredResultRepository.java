@@ -0,0 +1,47 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.store;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * This interface is the Spring Data repository of the persisted validation results.
+ *
+ * @author maximilianiKIT
+ */
+public interface StoredResultRepository extends JpaRepository<StoredResult, String> {
+
+    /**
+     * @param horizon latest time of the next check
+     * @param page    which limits the number of entries
+     * @return the entries which are due for revalidation before the horizon, the longest due first.
+     */
+    @Query("select r from StoredResult r where r.nextCheck is null or r.nextCheck <= :horizon order by r.nextCheck")
+    List<StoredResult> findDue(@Param("horizon") Instant horizon, Pageable page);
+
+    /**
+     * @param horizon latest time of the next check
+     * @return the number of entries which are due for revalidation before the horizon.
+     */
+    @Query("select count(r) from StoredResult r where r.nextCheck is null or r.nextCheck <= :horizon")
+    long countDue(@Param("horizon") Instant horizon);
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.website;
+
+import edu.kit.datamanager.datacite.validate.GenericValidator;
+import edu.kit.datamanager.datacite.validate.ValidationLevel;
+import edu.kit.datamanager.datacite.validate.cli.RecordFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * This class serves the bulk upload page of the website. A list of identifiers is pasted or uploaded as file,
+ * and the page receives the results from /bulk/{id}/events while they are validated (see BulkUploads).
+ *
+ * @author maximilianiKIT
+ */
+@Controller
+public class BulkUploadController {
+
+    private final BulkUploads uploads = BulkUploads.fromSystemProperties();
+
+    @GetMapping("/bulk")
+    public String sendForm(Model model) {
+        model.addAttribute("types", GenericValidator.soleInstance().getListOfAvailableValidators());
+        return "bulk";
+    }
+
+    /**
+     * Accepts a list of identifiers from the text field or a file (one per line, CSV or NDJSON like the bulk validation of the command line)
+     * and renders the page which streams the results.
+     */
+    @PostMapping("/bulk")
+    public String upload(@RequestParam(name = "type", defaultValue = "auto") String type, @RequestParam(name = "level", required = false) String level,
+                         @RequestParam(name = "text", required = false) String text, @RequestParam(name = "file", required = false) MultipartFile file,
+                         Model model) {
+        model.addAttribute("types", GenericValidator.soleInstance().getListOfAvailableValidators());
+        ValidationLevel validationLevel = ValidationLevel.of(level);
+        if (validationLevel == null) return error(model, "Unknown validation level " + level);
+        boolean hasFile = file != null && !file.isEmpty();
+        RecordFormat format = hasFile && isNdjson(file.getOriginalFilename()) ? RecordFormat.NDJSON : RecordFormat.CSV;
+        // the pasted list is CSV, so it can be combined only with a CSV file
+        if (format == RecordFormat.NDJSON && text != null && !text.isBlank()) return error(model, "An NDJSON file can't be combined with a pasted list.");
+        List<String> lines = new ArrayList<>();
+        try {
+            if (text != null) readLines(new StringReader(text), RecordFormat.CSV, lines);
+            if (hasFile) readLines(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8), format, lines);
+            String id = uploads.create(lines, format, type, validationLevel);
+            model.addAttribute("upload", id);
+            model.addAttribute("items", lines.stream().filter(line -> !line.isBlank()).count());
+        } catch (IOException e) {
+            return error(model, "Can't read the file: " + e.getMessage());
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return error(model, e.getMessage());
+        }
+        return "bulk";
+    }
+
+    @GetMapping(path = "/bulk/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> events(@PathVariable String id) {
+        SseEmitter emitter = uploads.stream(id);
+        if (emitter == null) return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        return ResponseEntity.ok(emitter);
+    }
+
+    private static String error(Model model, String message) {
+        model.addAttribute("error", message);
+        return "bulk";
+    }
+
+    private static boolean isNdjson(String name) {
+        if (name == null) return false;
+        String lowerCase = name.toLowerCase(Locale.ROOT);
+        return lowerCase.endsWith(".ndjson") || lowerCase.endsWith(".jsonl");
+    }
+
+    /**
+     * Reads the lines until one more than the maximum number of items has been read, so a large file is not read completely before it is rejected.
+     * A header at the start is replaced by a blank line, so the numbers of the other lines don't change.
+     */
+    private void readLines(Reader reader, RecordFormat format, List<String> lines) throws IOException {
+        long items = lines.stream().filter(line -> !line.isBlank()).count();
+        boolean first = true;
+        try (BufferedReader buffered = new BufferedReader(reader)) {
+            String line;
+            while (items <= uploads.getMaxItems() && (line = buffered.readLine()) != null) {
+                if (first && !line.isBlank()) {
+                    first = false;
+                    if (format.isHeader(line)) line = "";
+                }
+                lines.add(line);
+                if (!line.isBlank()) items++;
+            }
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.website;
+
+import edu.kit.datamanager.datacite.validate.BatchValidator;
+import edu.kit.datamanager.datacite.validate.GenericValidator;
+import edu.kit.datamanager.datacite.validate.ValidationLevel;
+import edu.kit.datamanager.datacite.validate.ValidationRequest;
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import edu.kit.datamanager.datacite.validate.ValidatorSettings;
+import edu.kit.datamanager.datacite.validate.cli.RecordFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * This class validates the lists of identifiers which are uploaded on the website and streams the results with Server-Sent Events.
+ * An upload is kept until its event stream is opened, so the page which shows the results can be rendered first.
+ * When the stream is opened, the items are validated concurrently (at most parallelism at the same time) and every result is sent
+ * as an event "result" as soon as it is complete, so the results arrive in the order of their completion and carry their line number (starting at 1).
+ * The last event "done" contains the number of results by status.
+ * <p>
+ * Every line of an upload is one item in the format of the bulk validation (see RecordFormat): an identifier, type,input[,level] or a JSON object.
+ * Blank lines are skipped and malformed lines are reported as errors.
+ * If the client goes away, the items which have not been started yet are not validated any more.
+ * <p>
+ * The settings are read from the system properties validator.bulk.parallelism (default 16), validator.bulk.maxItems (default 10000),
+ * validator.bulk.maxUploads (default 16 uploads which are waiting or running), validator.bulk.expiry (default PT10M, time after which an
+ * upload without stream is removed) and validator.bulk.timeout (default PT1H, maximum duration of a stream).
+ *
+ * @author maximilianiKIT
+ */
+public class BulkUploads {
+
+    static Logger LOG = LoggerFactory.getLogger(BulkUploads.class);
+
+    private static final ValidationResult CANCELLED = ValidationResult.warning(null, "Upload cancelled");
+
+    private final Function<ValidationRequest, CompletableFuture<ValidationResult>> validator;
+    private final int parallelism;
+    private final int maxItems;
+    private final int maxUploads;
+    private final Duration expiry;
+    private final Duration timeout;
+    private final Clock clock;
+    private final ConcurrentHashMap<String, Upload> uploads = new ConcurrentHashMap<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "bulk-upload");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param validator   function which starts the validation of a request. The level of the request is never null.
+     * @param parallelism maximum number of concurrent validations of one upload
+     * @param maxItems    maximum number of items of one upload
+     * @param maxUploads  maximum number of uploads which are waiting or running
+     * @param expiry      time after which an upload whose stream has not been opened is removed
+     * @param timeout     maximum duration of a stream
+     */
+    public BulkUploads(Function<ValidationRequest, CompletableFuture<ValidationResult>> validator, int parallelism, int maxItems, int maxUploads,
+                       Duration expiry, Duration timeout) {
+        this(validator, parallelism, maxItems, maxUploads, expiry, timeout, Clock.systemUTC());
+    }
+
+    BulkUploads(Function<ValidationRequest, CompletableFuture<ValidationResult>> validator, int parallelism, int maxItems, int maxUploads,
+                Duration expiry, Duration timeout, Clock clock) {
+        this.validator = validator;
+        this.parallelism = Math.max(1, parallelism);
+        this.maxItems = maxItems;
+        this.maxUploads = maxUploads;
+        this.expiry = expiry;
+        this.timeout = timeout;
+        this.clock = clock;
+    }
+
+    /**
+     * Creates the uploads of the website, which use the validators of the GenericValidator and read their settings from the system properties
+     * (see class description).
+     *
+     * @return new uploads
+     */
+    public static BulkUploads fromSystemProperties() {
+        GenericValidator validator = GenericValidator.soleInstance();
+        return new BulkUploads(request -> validator.validate(request.getInput(), request.getType(), request.getLevel()),
+                ValidatorSettings.getInt("validator.bulk.parallelism", 16),
+                ValidatorSettings.getInt("validator.bulk.maxItems", 10000),
+                ValidatorSettings.getInt("validator.bulk.maxUploads", 16),
+                ValidatorSettings.getDuration("validator.bulk.expiry", Duration.ofMinutes(10)),
+                ValidatorSettings.getDuration("validator.bulk.timeout", Duration.ofHours(1)));
+    }
+
+    /**
+     * Keeps an upload until its stream is opened.
+     *
+     * @param lines  of the upload
+     * @param format of the lines
+     * @param type   of the lines without type
+     * @param level  of the lines without level
+     * @return the id of the upload.
+     * @throws IllegalArgumentException if the upload has no items or more than maxItems.
+     * @throws IllegalStateException    if there are too many uploads.
+     */
+    public String create(List<String> lines, RecordFormat format, String type, ValidationLevel level) {
+        long items = lines.stream().filter(line -> !line.isBlank()).count();
+        if (items == 0) throw new IllegalArgumentException("The upload contains no identifiers.");
+        if (items > maxItems) throw new IllegalArgumentException("The upload contains more than " + maxItems + " identifiers.");
+        Instant now = clock.instant();
+        uploads.values().removeIf(upload -> upload.created.plus(expiry).isBefore(now));
+        if (uploads.size() + running.get() >= maxUploads) throw new IllegalStateException("Too many uploads are being validated. Please try again later.");
+        String id = UUID.randomUUID().toString();
+        uploads.put(id, new Upload(lines, format, type, level, now));
+        return id;
+    }
+
+    /**
+     * Starts the validation of an upload. An upload can be streamed only once.
+     *
+     * @param id of the upload
+     * @return the stream of the results or null if there is no upload with this id.
+     */
+    public SseEmitter stream(String id) {
+        Upload upload = uploads.remove(id);
+        if (upload == null) return null;
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        AtomicBoolean closed = new AtomicBoolean();
+        emitter.onCompletion(() -> closed.set(true));
+        emitter.onTimeout(() -> closed.set(true));
+        emitter.onError(exception -> closed.set(true));
+        running.incrementAndGet();
+        try {
+            executor.execute(() -> validate(upload, emitter, closed));
+        } catch (RuntimeException e) {
+            running.decrementAndGet();
+            throw e;
+        }
+        return emitter;
+    }
+
+    /**
+     * Validates the items of an upload and sends their results. Runs on its own thread, so parsing a large upload doesn't delay the response which opens the stream.
+     */
+    private void validate(Upload upload, SseEmitter emitter, AtomicBoolean closed) {
+        Map<ValidationResult.Status, LongAdder> counts = new EnumMap<>(ValidationResult.Status.class);
+        for (ValidationResult.Status status : ValidationResult.Status.values()) counts.put(status, new LongAdder());
+        try {
+            List<ValidationRequest> requests = new ArrayList<>(upload.lines.size());
+            List<Integer> lineNumbers = new ArrayList<>(upload.lines.size());
+            for (int i = 0; i < upload.lines.size(); i++) {
+                String line = upload.lines.get(i);
+                if (line.isBlank()) continue;
+                try {
+                    requests.add(upload.format.parse(line, upload.type, upload.level));
+                    lineNumbers.add(i + 1);
+                } catch (IllegalArgumentException e) {
+                    send(emitter, closed, i + 1, new ValidationRequest(null, line), ValidationResult.error(null, "Malformed record: " + e.getMessage()), counts);
+                }
+            }
+            BatchValidator<ValidationResult> batch = BatchValidator.of(request -> closed.get() ? CompletableFuture.completedFuture(CANCELLED) : validator.apply(request), parallelism);
+            List<CompletableFuture<ValidationResult>> validations = batch.submit(requests);
+            CompletableFuture<?>[] sent = new CompletableFuture[validations.size()];
+            for (int i = 0; i < validations.size(); i++) {
+                ValidationRequest request = requests.get(i);
+                int lineNumber = lineNumbers.get(i);
+                sent[i] = validations.get(i)
+                        .handle((result, exception) -> exception == null ? result : ValidationResult.of(exception))
+                        .thenAccept(result -> send(emitter, closed, lineNumber, request, result, counts));
+            }
+            CompletableFuture.allOf(sent).whenComplete((done, exception) -> finish(emitter, closed, counts));
+        } catch (RuntimeException e) {
+            LOG.warn("Can't validate an upload.", e);
+            running.decrementAndGet();
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void send(SseEmitter emitter, AtomicBoolean closed, int line, ValidationRequest request, ValidationResult result, Map<ValidationResult.Status, LongAdder> counts) {
+        counts.get(result.getStatus()).increment();
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("line", line);
+        item.put("type", request.getType());
+        item.put("input", request.getInput());
+        item.put("status", result.getStatus());
+        item.put("level", result.isValid() ? result.getLevel() : null);
+        item.put("message", result.getMessage());
+        send(emitter, closed, SseEmitter.event().name("result").id(String.valueOf(line)).data(item, MediaType.APPLICATION_JSON));
+    }
+
+    private void finish(SseEmitter emitter, AtomicBoolean closed, Map<ValidationResult.Status, LongAdder> counts) {
+        running.decrementAndGet();
+        Map<String, Long> summary = new LinkedHashMap<>();
+        long total = 0;
+        for (Map.Entry<ValidationResult.Status, LongAdder> count : counts.entrySet()) {
+            summary.put(count.getKey().name().toLowerCase(Locale.ROOT), count.getValue().sum());
+            total += count.getValue().sum();
+        }
+        summary.put("total", total);
+        send(emitter, closed, SseEmitter.event().name("done").data(summary, MediaType.APPLICATION_JSON));
+        if (!closed.get()) emitter.complete();
+    }
+
+    private static void send(SseEmitter emitter, AtomicBoolean closed, SseEmitter.SseEventBuilder event) {
+        if (closed.get()) return;
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            // the client has gone away; the remaining items are not validated
+            closed.set(true);
+        }
+    }
+
+    /**
+     * @return the number of uploads whose stream has not been opened yet.
+     */
+    public int getWaiting() {
+        return uploads.size();
+    }
+
+    /**
+     * @return the number of uploads which are being validated.
+     */
+    public int getRunning() {
+        return running.get();
+    }
+
+    /**
+     * @return the maximum number of items of one upload.
+     */
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    /**
+     * An upload whose stream has not been opened yet.
+     */
+    private static final class Upload {
+        private final List<String> lines;
+        private final RecordFormat format;
+        private final String type;
+        private final ValidationLevel level;
+        private final Instant created;
+
+        Upload(List<String> lines, RecordFormat format, String type, ValidationLevel level, Instant created) {
+            this.lines = lines;
+            this.format = format;
+            this.type = type;
+            this.level = level;
+            this.created = created;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package edu.kit.datamanager.datacite.validate.website;
 
+import edu.kit.datamanager.datacite.validate.Execution;
 import edu.kit.datamanager.datacite.validate.GenericValidator;
+import edu.kit.datamanager.datacite.validate.ValidationFutures;
 import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
 import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
 import org.springframework.stereotype.Controller;
@@ -9,6 +11,8 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
 
+import java.util.concurrent.CompletableFuture;
+
 @Controller
 public class ValidatorInputController {
 
@@ -21,7 +25,20 @@ public class ValidatorInputController {
     }
 
     @PostMapping("/validate")
-    public String sendResult(@ModelAttribute ValidatorInput validatorInput) {
+    public CompletableFuture<String> sendResultAsync(@ModelAttribute ValidatorInput validatorInput) {
+        if (!Execution.isNonBlocking()) return CompletableFuture.completedFuture(sendResult(validatorInput));
+        return Execution.limit(() -> GenericValidator.soleInstance().validateAsync(validatorInput.input, validatorInput.type))
+                .handle((valid, exception) -> {
+                    validatorInput.valid = exception == null;
+                    if (exception != null) {
+                        Throwable cause = ValidationFutures.unwrap(exception);
+                        validatorInput.message = (cause instanceof ValidationError ? "ERROR:   " : "WARNING:   ") + cause.getMessage();
+                    }
+                    return "result";
+                });
+    }
+
+    public String sendResult(ValidatorInput validatorInput) {
         try {
             if (GenericValidator.soleInstance().isValid(validatorInput.input, validatorInput.type))
                 validatorInput.valid = true;
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate;
+
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchValidatorTest {
+
+    AtomicInteger calls = new AtomicInteger();
+    AtomicInteger inFlight = new AtomicInteger();
+    AtomicInteger maxInFlight = new AtomicInteger();
+
+    CompletableFuture<Boolean> validate(String input, String type) {
+        calls.incrementAndGet();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException ignored) {
+            }
+            inFlight.decrementAndGet();
+            if (input.startsWith("invalid")) throw ValidationFutures.wrap(new ValidationError("Invalid input"));
+            return true;
+        });
+    }
+
+    @Test
+    void orderAndResults() {
+        BatchValidator<Boolean> batch = new BatchValidator<>(this::validate, 4);
+        List<CompletableFuture<Boolean>> futures = batch.submit(List.of(
+                new ValidationRequest("DOI", "valid1"),
+                new ValidationRequest("DOI", "invalid1"),
+                new ValidationRequest("URL", "valid2")));
+        assertEquals(3, futures.size());
+        assertTrue(futures.get(0).join());
+        CompletionException exception = assertThrows(CompletionException.class, () -> futures.get(1).join());
+        assertTrue(exception.getCause() instanceof ValidationError);
+        assertTrue(futures.get(2).join());
+    }
+
+    @Test
+    void duplicatesOnlyOnce() {
+        BatchValidator<Boolean> batch = new BatchValidator<>(this::validate, 4);
+        List<CompletableFuture<Boolean>> futures = batch.submit(List.of(
+                new ValidationRequest("DOI", "valid"),
+                new ValidationRequest("URL", "valid"),
+                new ValidationRequest("DOI", "valid")));
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        assertEquals(2, calls.get());
+        assertSame(futures.get(0), futures.get(2));
+    }
+
+    @Test
+    void parallelismLimit() {
+        BatchValidator<Boolean> batch = new BatchValidator<>(this::validate, 3);
+        List<ValidationRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 30; i++) requests.add(new ValidationRequest("URL", "valid" + i));
+        List<CompletableFuture<Boolean>> futures = batch.submit(requests);
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        assertEquals(30, calls.get());
+        assertTrue(maxInFlight.get() <= 3);
+    }
+
+    @Test
+    void failingValidator() {
+        BatchValidator<Boolean> batch = new BatchValidator<>((input, type) -> {
+            throw new IllegalStateException("broken");
+        }, 1);
+        List<CompletableFuture<Boolean>> futures = batch.submit(List.of(new ValidationRequest("DOI", "a"), new ValidationRequest("DOI", "b")));
+        assertTrue(futures.get(1).isCompletedExceptionally());
+    }
+
+    @Test
+    void incompleteRequests() {
+        BatchValidator<Boolean> batch = new BatchValidator<>(this::validate, 2);
+        List<ValidationRequest> requests = new ArrayList<>();
+        requests.add(null);
+        requests.add(new ValidationRequest("DOI", null));
+        requests.add(new ValidationRequest("DOI", "valid"));
+        List<CompletableFuture<Boolean>> futures = batch.submit(requests);
+        CompletionException exception = assertThrows(CompletionException.class, () -> futures.get(0).join());
+        assertTrue(exception.getCause() instanceof ValidationError);
+        assertTrue(futures.get(1).isCompletedExceptionally());
+        assertTrue(futures.get(2).join());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void submitDoesNotBlock() {
+        List<CompletableFuture<Boolean>> pending = new ArrayList<>();
+        BatchValidator<Boolean> batch = new BatchValidator<>((input, type) -> {
+            CompletableFuture<Boolean> future = new CompletableFuture<>();
+            pending.add(future);
+            return future;
+        }, 2);
+        List<ValidationRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 5; i++) requests.add(new ValidationRequest("URL", "valid" + i));
+        List<CompletableFuture<Boolean>> futures = batch.submit(requests);
+        assertEquals(5, futures.size());
+        assertEquals(2, pending.size());
+        for (int i = 0; i < 5; i++) pending.get(i).complete(true);
+        assertTrue(CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(done -> futures.stream().allMatch(CompletableFuture::join)).join());
+    }
+}
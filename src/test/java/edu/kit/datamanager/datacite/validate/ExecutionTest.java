@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutionTest {
+
+    @Test
+    void parse() {
+        assertEquals(Execution.Mode.BLOCKING, Execution.parse("blocking"));
+        assertEquals(Execution.Mode.ASYNC, Execution.parse("Async"));
+        assertEquals(Execution.Mode.VIRTUAL, Execution.parse("VIRTUAL"));
+        assertEquals(Execution.Mode.BLOCKING, Execution.parse("unknown"));
+    }
+
+    @Test
+    void defaultMode() {
+        assertEquals(Execution.Mode.BLOCKING, Execution.mode());
+        assertFalse(Execution.isNonBlocking());
+        assertNull(Execution.virtualExecutor());
+    }
+
+    @Test
+    void limitReleasesPermit() {
+        int permits = Execution.availablePermits();
+        CompletableFuture<Boolean> pending = new CompletableFuture<>();
+        CompletableFuture<Boolean> result = Execution.limit(() -> pending);
+        assertEquals(permits - 1, Execution.availablePermits());
+        pending.complete(true);
+        assertTrue(result.join());
+        assertEquals(permits, Execution.availablePermits());
+    }
+
+    @Test
+    void limitReleasesPermitOnException() {
+        int permits = Execution.availablePermits();
+        CompletableFuture<Boolean> result = Execution.limit(() -> {
+            throw new IllegalStateException("test");
+        });
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(permits, Execution.availablePermits());
+    }
+}
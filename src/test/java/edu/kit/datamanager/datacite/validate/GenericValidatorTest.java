@@ -17,13 +17,36 @@ package edu.kit.datamanager.datacite.validate;
 
 import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
 import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+import edu.kit.datamanager.datacite.validate.store.ResultStore;
 import org.datacite.schema.kernel_4.RelatedIdentifierType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class GenericValidatorTest {
 
+    // an application started by another test installs its result store, which would answer the validations of the fake validators
+    ResultStore installedStore;
+
+    @BeforeEach
+    void detachResultStore() {
+        installedStore = GenericValidator.getResultStore();
+        GenericValidator.setResultStore(null);
+    }
+
+    @AfterEach
+    void restoreResultStore() {
+        GenericValidator.setResultStore(installedStore);
+    }
+
     @Test
     void valid() {
         try {
@@ -54,8 +77,126 @@ class GenericValidatorTest {
         }
     }
 
+    @Test
+    void typeNameIsCaseInsensitive() {
+        assertEquals("Invalid URL", assertThrows(ValidationError.class, () -> GenericValidator.soleInstance().isValid("test", "url")).getMessage());
+        assertEquals("Invalid Type!", assertThrows(ValidationError.class, () -> GenericValidator.soleInstance().isValid("test", "unknown")).getMessage());
+        ValidationError error = assertThrows(ValidationError.class, () -> GenericValidator.soleInstance().isValid("test", (String) null));
+        assertEquals("Invalid Type!", error.getMessage());
+    }
+
+    @Test
+    void detect() {
+        assertEquals(List.of(RelatedIdentifierType.URL), GenericValidator.soleInstance().detect("https://kit.edu"));
+        assertEquals(List.of(RelatedIdentifierType.DOI, RelatedIdentifierType.HANDLE), GenericValidator.soleInstance().detect("10.1038/nphys1170"));
+        assertEquals(List.of(), GenericValidator.soleInstance().detect("test"));
+    }
+
+    @Test
+    void autoWithUnknownInput() {
+        assertEquals("Unknown type of input", assertThrows(ValidationError.class, () -> GenericValidator.soleInstance().isValid("test", "auto")).getMessage());
+        assertEquals("Unknown type of input", assertThrows(ValidationError.class, () -> GenericValidator.soleInstance().isValid("test", "AUTO")).getMessage());
+    }
+
+    @Test
+    void autoValidatesOnlyCandidates() throws Exception {
+        Map<RelatedIdentifierType, ValidatorInterface> original = new EnumMap<>(GenericValidator.soleInstance().getValidators());
+        FakeValidator doi = new FakeValidator(RelatedIdentifierType.DOI, ".*10\\..*", new ValidationError("DOI not found"));
+        FakeValidator handle = new FakeValidator(RelatedIdentifierType.HANDLE, "[0-9.]+/.+", null);
+        FakeValidator url = new FakeValidator(RelatedIdentifierType.URL, "https?://.+", new ValidationWarning("Not reachable"));
+        try {
+            GenericValidator.replaceValidators(Map.of(RelatedIdentifierType.DOI, doi, RelatedIdentifierType.HANDLE, handle, RelatedIdentifierType.URL, url));
+            assertEquals(RelatedIdentifierType.HANDLE, GenericValidator.soleInstance().detectAndValidate("10.1/x").join());
+            assertTrue(GenericValidator.soleInstance().isValid("10.1/y", "auto"));
+            assertEquals(2, doi.calls.get());
+            assertEquals(2, handle.calls.get());
+            assertEquals(0, url.calls.get());
+
+            // a warning wins over an error, because the input might be valid
+            CompletionException exception = assertThrows(CompletionException.class, () -> GenericValidator.soleInstance().detectAndValidate("https://10.1").join());
+            assertEquals("Not reachable", exception.getCause().getMessage());
+            assertEquals(3, doi.calls.get());
+            assertEquals(2, handle.calls.get());
+        } finally {
+            GenericValidator.replaceValidators(original);
+        }
+    }
+
+    @Test
+    void levels() {
+        ValidationResult syntax = GenericValidator.soleInstance().validate("10.1038/nphys1170", "DOI", ValidationLevel.SYNTAX).join();
+        assertEquals(ValidationLevel.SYNTAX, syntax.getLevel());
+        assertEquals(ValidationLevel.SYNTAX, GenericValidator.soleInstance().validate("http://127.0.0.1:1/test", RelatedIdentifierType.URL, ValidationLevel.SYNTAX).join().getLevel());
+        GenericValidator.Detection detection = GenericValidator.soleInstance().detectAndValidate("https://kit.edu", ValidationLevel.SYNTAX).join();
+        assertEquals(RelatedIdentifierType.URL, detection.getType());
+        assertEquals(ValidationLevel.SYNTAX, detection.getResult().getLevel());
+    }
+
+    @Test
+    void results() throws Exception {
+        ValidationResult invalidType = GenericValidator.soleInstance().validate("test", "unknown").join();
+        assertEquals(ValidationResult.Status.ERROR, invalidType.getStatus());
+        assertEquals("Invalid Type!", invalidType.getMessage());
+        assertEquals(ValidationResult.Stage.TYPE, GenericValidator.soleInstance().validate("test", RelatedIdentifierType.ARK).join().getStage());
+        assertEquals(ValidationResult.Stage.SYNTAX, GenericValidator.soleInstance().validate("test", "URL").join().getStage());
+
+        Map<RelatedIdentifierType, ValidatorInterface> original = new EnumMap<>(GenericValidator.soleInstance().getValidators());
+        ValidatorInterface legacy = new ValidatorInterface() {
+            @Override
+            public RelatedIdentifierType supportedType() {
+                return RelatedIdentifierType.ISBN;
+            }
+
+            @Override
+            public boolean isValid(String input, RelatedIdentifierType type) throws ValidationError {
+                if (input.equals("error")) throw new ValidationError("Invalid ISBN");
+                return input.equals("valid");
+            }
+        };
+        try {
+            GenericValidator.replaceValidators(Map.of(RelatedIdentifierType.ISBN, legacy));
+            assertTrue(GenericValidator.soleInstance().validate("valid", RelatedIdentifierType.ISBN).join().isValid());
+            assertEquals("Invalid ISBN", GenericValidator.soleInstance().validate("error", "ISBN").join().getMessage());
+            assertEquals(ValidationResult.Status.ERROR, GenericValidator.soleInstance().validate("false", RelatedIdentifierType.ISBN).join().getStatus());
+            assertThrows(ValidationError.class, () -> GenericValidator.soleInstance().isValid("false", RelatedIdentifierType.ISBN));
+        } finally {
+            GenericValidator.replaceValidators(original);
+        }
+    }
+
     @Test
     void main() {
         GenericValidator.soleInstance().main(new String[] {});
     }
-}
\ No newline at end of file
+
+    private static final class FakeValidator implements ValidatorInterface {
+        private final RelatedIdentifierType type;
+        private final String signature;
+        private final Exception failure;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        FakeValidator(RelatedIdentifierType type, String signature, Exception failure) {
+            this.type = type;
+            this.signature = signature;
+            this.failure = failure;
+        }
+
+        @Override
+        public RelatedIdentifierType supportedType() {
+            return type;
+        }
+
+        @Override
+        public boolean isValid(String input, RelatedIdentifierType type) throws ValidationError, ValidationWarning {
+            calls.incrementAndGet();
+            if (failure instanceof ValidationError) throw (ValidationError) failure;
+            if (failure instanceof ValidationWarning) throw (ValidationWarning) failure;
+            return true;
+        }
+
+        @Override
+        public String syntaxSignature(RelatedIdentifierType type) {
+            return signature;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate;
+
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InFlightLimitTest {
+
+    @Test
+    void queuesWithoutBlocking() {
+        InFlightLimit limit = new InFlightLimit(1, 10, null);
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+        List<String> started = new ArrayList<>();
+        CompletableFuture<String> a = limit.submit(() -> {
+            started.add("a");
+            return first;
+        });
+        CompletableFuture<String> b = limit.submit(() -> {
+            started.add("b");
+            return second;
+        });
+        assertEquals(List.of("a"), started);
+        assertEquals(1, limit.queued());
+        assertEquals(0, limit.availablePermits());
+
+        first.complete("first");
+        assertEquals("first", a.join());
+        assertEquals(List.of("a", "b"), started);
+        assertFalse(b.isDone());
+        second.complete("second");
+        assertEquals("second", b.join());
+        assertEquals(1, limit.availablePermits());
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() {
+        InFlightLimit limit = new InFlightLimit(1, 1, null);
+        CompletableFuture<Boolean> pending = new CompletableFuture<>();
+        limit.submit(() -> pending);
+        CompletableFuture<Boolean> queued = limit.submit(() -> CompletableFuture.completedFuture(true));
+        CompletableFuture<Boolean> rejected = limit.submit(() -> CompletableFuture.completedFuture(true));
+        CompletionException exception = assertThrows(CompletionException.class, rejected::join);
+        assertTrue(exception.getCause() instanceof ValidationWarning);
+        pending.complete(true);
+        assertTrue(queued.join());
+    }
+
+    @Test
+    void queueTimeout() {
+        InFlightLimit limit = new InFlightLimit(1, 10, Duration.ofMillis(50));
+        CompletableFuture<Boolean> pending = new CompletableFuture<>();
+        limit.submit(() -> pending);
+        CompletableFuture<Boolean> queued = limit.submit(() -> CompletableFuture.completedFuture(true));
+        CompletionException exception = assertThrows(CompletionException.class, () -> queued.orTimeout(5, TimeUnit.SECONDS).join());
+        assertTrue(exception.getCause() instanceof ValidationWarning);
+        assertEquals(0, limit.queued());
+        pending.complete(true);
+        assertEquals(1, limit.availablePermits());
+    }
+
+    @Test
+    void longQueueOfCompletedOperations() {
+        InFlightLimit limit = new InFlightLimit(1, Integer.MAX_VALUE, null);
+        CompletableFuture<Integer> pending = new CompletableFuture<>();
+        limit.submit(() -> pending);
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 100000; i++) {
+            int value = i;
+            futures.add(limit.submit(() -> CompletableFuture.completedFuture(value)));
+        }
+        // all queued operations are started by one completion without nesting calls
+        pending.complete(-1);
+        assertEquals(99999, futures.get(99999).join());
+        assertEquals(1, limit.availablePermits());
+    }
+
+    @Test
+    void failingOperation() {
+        InFlightLimit limit = new InFlightLimit(1, 10, null);
+        CompletableFuture<Boolean> failed = limit.submit(() -> {
+            throw new IllegalStateException("broken");
+        });
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals(1, limit.availablePermits());
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate;
+
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValidationFuturesTest {
+
+    @Test
+    void awaitResult() throws ValidationError, ValidationWarning {
+        assertTrue(ValidationFutures.await(CompletableFuture.completedFuture(true)));
+    }
+
+    @Test
+    void awaitError() {
+        CompletableFuture<Boolean> future = CompletableFuture.supplyAsync(() -> {
+            throw ValidationFutures.wrap(new ValidationError("Invalid input"));
+        });
+        ValidationError error = assertThrows(ValidationError.class, () -> ValidationFutures.await(future));
+        assertEquals("Invalid input", error.getMessage());
+    }
+
+    @Test
+    void awaitWarning() {
+        assertThrows(ValidationWarning.class, () -> ValidationFutures.await(ValidationFutures.failed(new ValidationWarning("warning"))));
+    }
+
+    @Test
+    void awaitOtherException() {
+        ValidationWarning warning = assertThrows(ValidationWarning.class, () -> ValidationFutures.await(ValidationFutures.failed(new IllegalStateException("broken"))));
+        assertTrue(warning.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    void supplyBlocking() throws ValidationError, ValidationWarning {
+        assertTrue(ValidationFutures.await(ValidationFutures.supplyBlocking(() -> true)));
+        assertThrows(ValidationError.class, () -> ValidationFutures.await(ValidationFutures.supplyBlocking(() -> {
+            throw new ValidationError("Invalid input");
+        })));
+    }
+
+    @Test
+    void supplyNow() {
+        CompletableFuture<Boolean> future = ValidationFutures.supplyNow(() -> true);
+        assertTrue(future.isDone());
+        assertTrue(future.join());
+    }
+
+    @Test
+    void unwrap() {
+        ValidationError error = new ValidationError("error");
+        assertSame(error, ValidationFutures.unwrap(new CompletionException(new ExecutionException(error))));
+        assertSame(error, ValidationFutures.unwrap(error));
+        CompletionException wrapped = ValidationFutures.wrap(error);
+        assertSame(wrapped, ValidationFutures.wrap(wrapped));
+    }
+
+    @Test
+    void cancelInterruptsBlockingCall() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CompletableFuture<Boolean> future = ValidationFutures.supplyBlocking(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return true;
+        });
+        CompletableFuture<ValidationResult> result = ValidationFutures.toResult(future);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        result.cancel(true);
+        assertTrue(future.isCancelled());
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void startReturnsWhenBlockingCallReturns() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        ValidationFutures.Started<ValidationResult> call = ValidationFutures.start(() -> ValidationFutures.toResult(ValidationFutures.supplyBlocking(() -> {
+            started.countDown();
+            // ignores the interrupt of the cancellation
+            while (finish.getCount() > 0) Thread.onSpinWait();
+            return true;
+        })));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        call.future().cancel(true);
+        assertTrue(call.future().isDone());
+        assertFalse(call.returned().isDone());
+        finish.countDown();
+        call.returned().join();
+        assertTrue(ValidationFutures.start(() -> CompletableFuture.completedFuture(true)).returned().isDone());
+    }
+}
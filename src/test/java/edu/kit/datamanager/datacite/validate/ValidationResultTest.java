@@ -0,0 +1,101 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate;
+
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValidationResultTest {
+
+    @Test
+    void valid() throws Exception {
+        ValidationResult result = ValidationResult.valid();
+        assertSame(result, ValidationResult.valid());
+        assertTrue(result.isValid());
+        assertEquals(ValidationResult.Status.VALID, result.getStatus());
+        assertTrue(result.toBoolean());
+        assertNull(result.toException());
+    }
+
+    @Test
+    void levels() {
+        assertSame(ValidationResult.valid(), ValidationResult.valid(ValidationLevel.RESOLVE));
+        assertEquals(ValidationLevel.RESOLVE, ValidationResult.valid().getLevel());
+        assertEquals(ValidationLevel.SYNTAX, ValidationResult.valid(ValidationLevel.SYNTAX).getLevel());
+        assertEquals(ValidationLevel.PREFIX, ValidationResult.valid(ValidationLevel.PREFIX).getLevel());
+        assertEquals(ValidationLevel.SYNTAX, ValidationResult.valid(ValidationResult.Stage.SYNTAX, "Not resolved").getLevel());
+        assertNull(ValidationResult.error(ValidationResult.Stage.SYNTAX, "Invalid").getLevel());
+        assertEquals(ValidationLevel.PREFIX, ValidationLevel.of(" prefix "));
+        assertEquals(ValidationLevel.RESOLVE, ValidationLevel.of(null));
+        assertNull(ValidationLevel.of("deep"));
+        assertTrue(ValidationLevel.RESOLVE.includes(ValidationLevel.PREFIX));
+        assertFalse(ValidationLevel.SYNTAX.includes(ValidationLevel.PREFIX));
+    }
+
+    @Test
+    void error() {
+        IOException cause = new IOException("test");
+        ValidationResult result = ValidationResult.error(ValidationResult.Stage.RESOLVE, "Invalid URL!", cause);
+        assertFalse(result.isValid());
+        assertEquals(ValidationResult.Stage.RESOLVE, result.getStage());
+        ValidationError error = assertThrows(ValidationError.class, result::toBoolean);
+        assertEquals("Invalid URL!", error.getMessage());
+        assertSame(cause, error.getCause());
+        assertEquals(0, error.getStackTrace().length);
+    }
+
+    @Test
+    void warning() {
+        ValidationResult result = ValidationResult.warning(ValidationResult.Stage.PREFIX, "Not reachable");
+        assertEquals(ValidationResult.Status.WARNING, result.getStatus());
+        ValidationWarning warning = assertThrows(ValidationWarning.class, result::toBoolean);
+        assertEquals("Not reachable", warning.getMessage());
+        assertNull(warning.getCause());
+        assertEquals(0, warning.getStackTrace().length);
+    }
+
+    @Test
+    void ofLegacyOutcome() {
+        assertSame(ValidationResult.valid(), ValidationResult.of(true, null));
+        assertEquals(ValidationResult.Status.ERROR, ValidationResult.of(false, null).getStatus());
+
+        IOException cause = new IOException("test");
+        ValidationResult error = ValidationResult.of(null, new CompletionException(new ValidationError("Invalid input", cause)));
+        assertEquals(ValidationResult.Status.ERROR, error.getStatus());
+        assertEquals("Invalid input", error.getMessage());
+        assertSame(cause, error.getCause());
+        assertNull(error.getStage());
+
+        assertEquals(ValidationResult.Status.WARNING, ValidationResult.of(new ValidationWarning("test")).getStatus());
+        ValidationResult unexpected = ValidationResult.of(new IllegalStateException("broken"));
+        assertEquals(ValidationResult.Status.WARNING, unexpected.getStatus());
+        assertEquals("broken", unexpected.getMessage());
+    }
+
+    @Test
+    void toFuture() {
+        assertTrue(ValidationResult.toFuture(CompletableFuture.completedFuture(ValidationResult.valid())).join());
+        CompletableFuture<Boolean> future = ValidationResult.toFuture(CompletableFuture.completedFuture(ValidationResult.error(ValidationResult.Stage.SYNTAX, "Invalid input")));
+        CompletionException exception = assertThrows(CompletionException.class, future::join);
+        assertTrue(exception.getCause() instanceof ValidationError);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate;
+
+import edu.kit.datamanager.datacite.validate.impl.HandleNetValidator;
+import edu.kit.datamanager.datacite.validate.impl.URLValidator;
+import org.datacite.schema.kernel_4.RelatedIdentifierType;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValidatorIndexTest {
+
+    ValidatorInterface urlValidator = new URLValidator();
+    ValidatorIndex index = ValidatorIndex.of(Map.of(RelatedIdentifierType.URL, urlValidator));
+
+    @Test
+    void get() {
+        assertSame(urlValidator, index.get(RelatedIdentifierType.URL));
+        assertNull(index.get(RelatedIdentifierType.DOI));
+        assertNull(index.get(null));
+    }
+
+    @Test
+    void resolve() {
+        assertEquals(RelatedIdentifierType.URL, index.resolve("URL"));
+        assertEquals(RelatedIdentifierType.URL, index.resolve("url"));
+        assertEquals(RelatedIdentifierType.URL, index.resolve("Url"));
+        assertNull(index.resolve("DOI"));
+        assertNull(index.resolve("test"));
+        assertNull(index.resolve(null));
+    }
+
+    @Test
+    void copiesTheValidators() {
+        Map<RelatedIdentifierType, ValidatorInterface> validators = new HashMap<>();
+        validators.put(RelatedIdentifierType.URL, urlValidator);
+        ValidatorIndex copy = ValidatorIndex.of(validators);
+        validators.put(RelatedIdentifierType.DOI, urlValidator);
+        assertNull(copy.get(RelatedIdentifierType.DOI));
+        assertNull(copy.resolve("DOI"));
+        assertThrows(UnsupportedOperationException.class, () -> copy.asMap().put(RelatedIdentifierType.DOI, urlValidator));
+    }
+
+    @Test
+    void detect() {
+        ValidatorInterface handleValidator = new HandleNetValidator();
+        ValidatorIndex index = ValidatorIndex.of(Map.of(
+                RelatedIdentifierType.URL, urlValidator,
+                RelatedIdentifierType.DOI, handleValidator,
+                RelatedIdentifierType.HANDLE, handleValidator));
+        assertEquals(List.of(RelatedIdentifierType.DOI, RelatedIdentifierType.HANDLE, RelatedIdentifierType.URL), index.getDetectableTypes());
+        assertEquals(List.of(RelatedIdentifierType.DOI, RelatedIdentifierType.HANDLE), index.detect("10.1038/nphys1170"));
+        assertEquals(List.of(RelatedIdentifierType.DOI, RelatedIdentifierType.HANDLE), index.detect("hdl://10.1038/nphys1170"));
+        assertEquals(List.of(RelatedIdentifierType.DOI), index.detect("doi:10.1038/nphys1170"));
+        assertEquals(List.of(RelatedIdentifierType.DOI, RelatedIdentifierType.URL), index.detect("https://doi.org/10.1038/nphys1170"));
+        assertEquals(List.of(RelatedIdentifierType.HANDLE), index.detect("21.T11148/abc"));
+        assertEquals(List.of(RelatedIdentifierType.HANDLE, RelatedIdentifierType.URL), index.detect("https://hdl.handle.net/21.T11148/abc"));
+        assertEquals(List.of(RelatedIdentifierType.URL), index.detect("https://kit.edu/about/index.html"));
+        assertEquals(List.of(), index.detect("test"));
+        assertEquals(List.of(), index.detect("10.1038/a b"));
+        assertEquals(List.of(), index.detect(null));
+    }
+
+    @Test
+    void skipsFaultySignatures() {
+        ValidatorInterface faulty = new URLValidator() {
+            @Override
+            public String syntaxSignature(RelatedIdentifierType type) {
+                return "(unclosed";
+            }
+        };
+        ValidatorIndex index = ValidatorIndex.of(Map.of(RelatedIdentifierType.URL, urlValidator, RelatedIdentifierType.ARK, faulty));
+        assertEquals(List.of(RelatedIdentifierType.URL), index.getDetectableTypes());
+        assertEquals(List.of(RelatedIdentifierType.URL), index.detect("https://kit.edu"));
+        assertSame(faulty, index.get(RelatedIdentifierType.ARK));
+    }
+
+    @Test
+    void signaturePatternIsCompiledOnce() {
+        String signature = new URLValidator().syntaxSignature(RelatedIdentifierType.URL);
+        assertSame(ValidatorIndex.signaturePattern(signature), ValidatorIndex.signaturePattern(signature));
+        assertTrue(ValidatorIndex.signaturePattern("97[89][0-9]{10}").matcher("9783161484100").matches());
+    }
+}
@@ -18,9 +18,12 @@ package edu.kit.datamanager.datacite.validate;
 import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
 import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
 import edu.kit.datamanager.datacite.validate.impl.HandleNetValidator;
+import org.datacite.schema.kernel_4.RelatedIdentifierType;
 import org.junit.jupiter.api.Test;
 
-import static org.junit.jupiter.api.Assertions.fail;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 class ValidatorInterfaceTest {
 
@@ -35,6 +38,77 @@ class ValidatorInterfaceTest {
         }
     }
 
+    @Test
+    void defaultValidateAsync() {
+        ValidatorInterface blocking = new ValidatorInterface() {
+            @Override
+            public RelatedIdentifierType supportedType() {
+                return RelatedIdentifierType.ISBN;
+            }
 
+            @Override
+            public boolean isValid(String input, RelatedIdentifierType type) throws ValidationError {
+                if (input.equals("valid")) return true;
+                throw new ValidationError("Invalid input");
+            }
+        };
+        try {
+            assertTrue(ValidationFutures.await(blocking.validateAsync("valid")));
+        } catch (ValidationError | ValidationWarning e) {
+            fail(e);
+        }
+        assertThrows(ValidationError.class, () -> ValidationFutures.await(blocking.validateAsync("invalid")));
+    }
 
-}
\ No newline at end of file
+    @Test
+    void defaultLevels() {
+        AtomicInteger calls = new AtomicInteger();
+        ValidatorInterface plugin = new ValidatorInterface() {
+            @Override
+            public RelatedIdentifierType supportedType() {
+                return RelatedIdentifierType.ISBN;
+            }
+
+            @Override
+            public boolean isValid(String input, RelatedIdentifierType type) {
+                calls.incrementAndGet();
+                return true;
+            }
+
+            @Override
+            public String syntaxSignature(RelatedIdentifierType type) {
+                return "97[89][0-9]{10}";
+            }
+        };
+        assertEquals(ValidationLevel.SYNTAX, plugin.validate("9783161484100", RelatedIdentifierType.ISBN, ValidationLevel.SYNTAX).join().getLevel());
+        assertEquals(ValidationLevel.SYNTAX, plugin.validate("9783161484100", RelatedIdentifierType.ISBN, ValidationLevel.PREFIX).join().getLevel());
+        assertEquals(ValidationResult.Status.ERROR, plugin.validate("test", RelatedIdentifierType.ISBN, ValidationLevel.SYNTAX).join().getStatus());
+        assertEquals(0, calls.get(), "lower levels only check the signature");
+        assertEquals(ValidationLevel.RESOLVE, plugin.validate("9783161484100", RelatedIdentifierType.ISBN, ValidationLevel.RESOLVE).join().getLevel());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void lowerLevelsWithoutSignature() {
+        AtomicInteger calls = new AtomicInteger();
+        ValidatorInterface plugin = new ValidatorInterface() {
+            @Override
+            public RelatedIdentifierType supportedType() {
+                return RelatedIdentifierType.ISBN;
+            }
+
+            @Override
+            public boolean isValid(String input, RelatedIdentifierType type) {
+                calls.incrementAndGet();
+                return true;
+            }
+        };
+        ValidationResult syntax = plugin.validate("9783161484100", RelatedIdentifierType.ISBN, ValidationLevel.SYNTAX).join();
+        assertEquals(ValidationResult.Status.WARNING, syntax.getStatus());
+        assertEquals(ValidationResult.Stage.SYNTAX, syntax.getStage());
+        assertEquals(ValidationResult.Stage.PREFIX, plugin.validate("9783161484100", RelatedIdentifierType.ISBN, ValidationLevel.PREFIX).join().getStage());
+        assertEquals(0, calls.get(), "a plugin without signature is not resolved for lower levels");
+        assertTrue(plugin.validate("9783161484100", RelatedIdentifierType.ISBN, ValidationLevel.RESOLVE).join().isValid());
+        assertEquals(1, calls.get());
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValidatorSettingsTest {
+
+    @Test
+    void defaults() {
+        assertEquals(5, ValidatorSettings.getInt("validator.test.unset", 5));
+        assertTrue(ValidatorSettings.getBoolean("validator.test.unset", true));
+        assertEquals(Duration.ofMinutes(1), ValidatorSettings.getDuration("validator.test.unset", Duration.ofMinutes(1)));
+    }
+
+    @Test
+    void values() {
+        System.setProperty("validator.test.int", "42");
+        System.setProperty("validator.test.seconds", "30");
+        System.setProperty("validator.test.iso", "PT2M");
+        try {
+            assertEquals(42, ValidatorSettings.getInt("validator.test.int", 5));
+            assertEquals(Duration.ofSeconds(30), ValidatorSettings.getDuration("validator.test.seconds", Duration.ZERO));
+            assertEquals(Duration.ofMinutes(2), ValidatorSettings.getDuration("validator.test.iso", Duration.ZERO));
+        } finally {
+            System.clearProperty("validator.test.int");
+            System.clearProperty("validator.test.seconds");
+            System.clearProperty("validator.test.iso");
+        }
+    }
+
+    @Test
+    void durationsWithUnits() {
+        String[][] values = {{"500ms", "PT0.5S"}, {"2s", "PT2S"}, {"10m", "PT10M"}, {"1h", "PT1H"}, {"1d", "PT24H"}, {" 3 S ", "PT3S"}};
+        try {
+            for (String[] value : values) {
+                System.setProperty("validator.test.unit", value[0]);
+                assertEquals(Duration.parse(value[1]), ValidatorSettings.getDuration("validator.test.unit", Duration.ZERO), value[0]);
+            }
+            System.setProperty("validator.test.unit", "2w");
+            assertEquals(Duration.ZERO, ValidatorSettings.getDuration("validator.test.unit", Duration.ZERO));
+        } finally {
+            System.clearProperty("validator.test.unit");
+        }
+    }
+
+    @Test
+    void invalidValues() {
+        System.setProperty("validator.test.invalid", "abc");
+        try {
+            assertEquals(5, ValidatorSettings.getInt("validator.test.invalid", 5));
+            assertEquals(Duration.ofSeconds(1), ValidatorSettings.getDuration("validator.test.invalid", Duration.ofSeconds(1)));
+        } finally {
+            System.clearProperty("validator.test.invalid");
+        }
+    }
+}
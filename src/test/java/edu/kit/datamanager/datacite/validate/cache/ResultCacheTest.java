@@ -0,0 +1,133 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultCacheTest {
+
+    AtomicLong now = new AtomicLong();
+    ResultCache<String, Integer> cache = new ResultCache<>("test", 2, Duration.ofSeconds(10), Duration.ofSeconds(1), now::get);
+
+    @Test
+    void hitAndMiss() {
+        assertNull(cache.get("a"));
+        cache.put("a", 200, true);
+        assertEquals(200, cache.get("a"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void separateTtls() {
+        cache.put("valid", 200, true);
+        cache.put("invalid", 404, false);
+        now.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertEquals(200, cache.get("valid"));
+        assertNull(cache.get("invalid"));
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertNull(cache.get("valid"));
+    }
+
+    @Test
+    void ageShortensTtl() {
+        cache.put("old", 200, true, Duration.ofSeconds(8));
+        cache.put("expired", 200, true, Duration.ofSeconds(11));
+        assertNull(cache.get("expired"));
+        assertEquals(0, cache.getEvictions());
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertEquals(200, cache.get("old"));
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertNull(cache.get("old"));
+    }
+
+    @Test
+    void overwriteExpired() {
+        cache.put("a", 404, false);
+        now.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertNull(cache.get("a"));
+        cache.put("a", 200, true);
+        assertEquals(200, cache.get("a"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void sizeEviction() {
+        cache.put("a", 1, true);
+        cache.put("b", 2, true);
+        cache.put("c", 3, true);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.get("a"));
+        assertEquals(3, cache.get("c"));
+    }
+
+    @Test
+    void expiredEntryIsRemoved() {
+        cache.put("a", 404, false);
+        now.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getEvictions());
+    }
+
+    @Test
+    void overwriteKeepsPosition() {
+        cache.put("a", 1, true);
+        cache.put("b", 2, true);
+        cache.put("a", 10, true);
+        cache.put("c", 3, true);
+        assertNull(cache.get("a"), "the first inserted key is evicted first, even if it has been overwritten");
+        assertEquals(2, cache.get("b"));
+        assertEquals(3, cache.get("c"));
+    }
+
+    @Test
+    void reinsertedKeyIsInsertedAnew() {
+        cache.put("a", 404, false);
+        cache.put("b", 2, true);
+        now.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertNull(cache.get("a"));
+        cache.put("a", 200, true);
+        cache.put("c", 3, true);
+        assertEquals(200, cache.get("a"), "the position of the expired entry doesn't evict the new one");
+        assertNull(cache.get("b"));
+        assertEquals(3, cache.get("c"));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    void disabled() {
+        ResultCache<String, Integer> disabled = new ResultCache<>("disabled", 0, Duration.ofSeconds(10), Duration.ofSeconds(1));
+        disabled.put("a", 1, true);
+        assertNull(disabled.get("a"));
+    }
+
+    @Test
+    void statistics() {
+        cache.put("a", 1, true);
+        cache.get("a");
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0L, cache.getStatistics().get("size"));
+        assertEquals(1L, cache.getStatistics().get("hits"));
+    }
+}
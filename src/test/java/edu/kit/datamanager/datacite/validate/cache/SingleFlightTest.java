@@ -0,0 +1,99 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.cache;
+
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    SingleFlight<String, Boolean> flights = new SingleFlight<>("test");
+    AtomicInteger calls = new AtomicInteger();
+
+    CompletableFuture<Boolean> start(CompletableFuture<Boolean> operation) {
+        calls.incrementAndGet();
+        return operation;
+    }
+
+    @Test
+    void concurrentCallersShareOneOperation() {
+        CompletableFuture<Boolean> operation = new CompletableFuture<>();
+        CompletableFuture<Boolean> first = flights.execute("a", () -> start(operation));
+        CompletableFuture<Boolean> second = flights.execute("a", () -> start(operation));
+        assertEquals(1, calls.get());
+        assertEquals(1, flights.size());
+        operation.complete(true);
+        assertTrue(first.join());
+        assertTrue(second.join());
+        assertEquals(0, flights.size());
+        assertEquals(1, flights.getStarted());
+        assertEquals(1, flights.getCoalesced());
+    }
+
+    @Test
+    void differentKeys() {
+        CompletableFuture<Boolean> operation = new CompletableFuture<>();
+        flights.execute("a", () -> start(operation));
+        flights.execute("b", () -> start(operation));
+        assertEquals(2, calls.get());
+        assertEquals(0, flights.getCoalesced());
+    }
+
+    @Test
+    void keyIsReleasedAfterCompletion() {
+        assertTrue(flights.execute("a", () -> start(CompletableFuture.completedFuture(true))).join());
+        assertTrue(flights.execute("a", () -> start(CompletableFuture.completedFuture(true))).join());
+        assertEquals(2, calls.get());
+        assertEquals(0, flights.size());
+    }
+
+    @Test
+    void exceptionIsShared() {
+        CompletableFuture<Boolean> operation = new CompletableFuture<>();
+        CompletableFuture<Boolean> first = flights.execute("a", () -> start(operation));
+        CompletableFuture<Boolean> second = flights.execute("a", () -> start(operation));
+        operation.completeExceptionally(new ValidationError("test"));
+        CompletionException firstException = assertThrows(CompletionException.class, first::join);
+        CompletionException secondException = assertThrows(CompletionException.class, second::join);
+        assertTrue(firstException.getCause() instanceof ValidationError);
+        assertSame(firstException.getCause(), secondException.getCause());
+    }
+
+    @Test
+    void thrownException() {
+        CompletableFuture<Boolean> result = flights.execute("a", () -> {
+            throw new IllegalArgumentException("test");
+        });
+        assertTrue(assertThrows(CompletionException.class, result::join).getCause() instanceof IllegalArgumentException);
+        assertEquals(0, flights.size());
+    }
+
+    @Test
+    void cancellingOneCallerDoesNotCancelTheOperation() {
+        CompletableFuture<Boolean> operation = new CompletableFuture<>();
+        CompletableFuture<Boolean> first = flights.execute("a", () -> start(operation));
+        CompletableFuture<Boolean> second = flights.execute("a", () -> start(operation));
+        first.cancel(true);
+        assertFalse(operation.isCancelled());
+        operation.complete(true);
+        assertTrue(second.join());
+    }
+}
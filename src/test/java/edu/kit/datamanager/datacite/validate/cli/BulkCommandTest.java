@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.cli;
+
+import edu.kit.datamanager.datacite.validate.ValidationLevel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkCommandTest {
+
+    @TempDir
+    Path dir;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    private int run(String... args) {
+        return BulkCommand.run(new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(err, true, StandardCharsets.UTF_8), args);
+    }
+
+    @Test
+    void syntaxValidation() throws IOException {
+        Path input = Files.writeString(dir.resolve("ids.csv"), "https://example.org\nno url\n");
+        Path output = dir.resolve("results.ndjson");
+        assertEquals(BulkCommand.OK, run("--input", input.toString(), "--output", output.toString(), "--type", "URL", "--level", "syntax", "--progress", "0"));
+        String summary = out.toString(StandardCharsets.UTF_8);
+        assertTrue(summary.contains("Validated 2 records"), summary);
+        assertTrue(summary.contains("1 valid, 0 warnings, 1 errors"), summary);
+        List<String> lines = Files.readAllLines(output);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains("\"status\":\"VALID\",\"level\":\"SYNTAX\""), lines.get(0));
+    }
+
+    @Test
+    void usage() {
+        assertEquals(BulkCommand.USAGE, run("--input", "ids.csv"));
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("Missing --output"));
+        assertEquals(BulkCommand.USAGE, run("--input", "a", "--output", "b", "--level", "deep"));
+        assertEquals(BulkCommand.USAGE, run("--input", "a", "--output", "b", "--offset", "5", "--resume"));
+        assertEquals(BulkCommand.FAILED, run("--input", dir.resolve("missing.csv").toString(), "--output", dir.resolve("out.csv").toString()));
+    }
+
+    @Test
+    void options() {
+        BulkOptions options = BulkOptions.parse("--input", "ids.ndjson", "--output", "out.csv", "--format", "csv", "--level", "prefix",
+                "--parallelism", "4", "--offset", "5000000000");
+        assertEquals(RecordFormat.CSV, options.getInputFormat());
+        assertEquals(RecordFormat.CSV, options.getOutputFormat());
+        assertEquals(ValidationLevel.PREFIX, options.getLevel());
+        assertEquals(4, options.getParallelism());
+        assertEquals(5_000_000_000L, options.getOffset());
+        assertEquals("auto", options.getType());
+    }
+}
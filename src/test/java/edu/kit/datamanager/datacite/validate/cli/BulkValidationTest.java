@@ -0,0 +1,141 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.cli;
+
+import edu.kit.datamanager.datacite.validate.ValidationLevel;
+import edu.kit.datamanager.datacite.validate.ValidationRequest;
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkValidationTest {
+
+    @TempDir
+    Path dir;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    /**
+     * Completes after a random delay. Inputs starting with "bad" are errors, inputs starting with "slow" are warnings.
+     */
+    private final Function<ValidationRequest, CompletableFuture<ValidationResult>> validator = request -> {
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        return CompletableFuture.supplyAsync(() -> {
+            inFlight.decrementAndGet();
+            if (request.getInput().startsWith("bad")) return ValidationResult.error(ValidationResult.Stage.SYNTAX, "Invalid");
+            if (request.getInput().startsWith("slow")) return ValidationResult.warning(ValidationResult.Stage.RESOLVE, "Timeout");
+            return ValidationResult.valid(request.getLevel());
+        }, CompletableFuture.delayedExecutor(ThreadLocalRandom.current().nextInt(5), TimeUnit.MILLISECONDS));
+    };
+
+    @Test
+    void resultsInInputOrder() throws IOException {
+        String records = IntStream.range(0, 500).mapToObj(i -> "{\"type\":\"URL\",\"input\":\"" + (i % 10 == 0 ? "bad" : "id") + i + "\"}")
+                .collect(Collectors.joining("\n", "", "\n"));
+        Path input = Files.writeString(dir.resolve("ids.ndjson"), records + "\nnot json\n");
+        Path output = dir.resolve("results.ndjson");
+        BulkOptions options = new BulkOptions(input, output).setParallelism(8).setProgressInterval(Duration.ZERO);
+
+        BulkValidation.Summary summary = new BulkValidation(options, validator).run();
+        assertEquals(501, summary.getRecords());
+        assertEquals(450, summary.getCount(ValidationResult.Status.VALID));
+        assertEquals(51, summary.getCount(ValidationResult.Status.ERROR));
+        assertEquals(1, summary.getMalformed());
+        assertEquals(Files.size(input), summary.getEndOffset());
+        assertTrue(maxInFlight.get() <= 8, "at most parallelism validations are in flight");
+
+        List<String> lines = Files.readAllLines(output);
+        assertEquals(501, lines.size());
+        for (int i = 0; i < 500; i++) assertTrue(lines.get(i).contains("\"input\":\"" + (i % 10 == 0 ? "bad" : "id") + i + "\""), lines.get(i));
+        assertTrue(lines.get(500).contains("Malformed record"), lines.get(500));
+        assertEquals(Files.size(input), RecordFormat.NDJSON.offsetOf(lines.get(500)));
+    }
+
+    @Test
+    void csvWithHeaderAndDefaults() throws IOException {
+        Path input = Files.writeString(dir.resolve("ids.csv"), "type,input,level\nURL,id1\n,id2,syntax\nid3\nURL,slow4,prefix\n");
+        Path output = dir.resolve("results.csv");
+        BulkOptions options = new BulkOptions(input, output).setType("Handle").setLevel(ValidationLevel.PREFIX).setProgressInterval(Duration.ZERO);
+
+        BulkValidation.Summary summary = new BulkValidation(options, validator).run();
+        assertEquals(4, summary.getRecords());
+        assertEquals(1, summary.getCount(ValidationResult.Status.ERROR), "a record with an empty type is malformed");
+        assertEquals(1, summary.getCount(ValidationResult.Status.WARNING));
+
+        List<String> lines = Files.readAllLines(output);
+        assertEquals(RecordFormat.CSV.header(), lines.get(0));
+        assertTrue(lines.get(1).endsWith(",URL,id1,VALID,PREFIX,Valid prefix. The input has not been resolved."), lines.get(1));
+        assertTrue(lines.get(3).contains(",Handle,id3,VALID,PREFIX,"), lines.get(3));
+        assertTrue(lines.get(4).contains(",URL,slow4,WARNING,,Timeout"), lines.get(4));
+    }
+
+    @Test
+    void resumeAfterTheLastCompleteRecord() throws IOException {
+        Path input = Files.writeString(dir.resolve("ids.csv"), "URL,a\nURL,b\nURL,c\nURL,d\n");
+        Path output = dir.resolve("results.csv");
+        // an interrupted run has written two records and a part of the third
+        Files.writeString(output, RecordFormat.CSV.header() + "\n6,URL,a,VALID,RESOLVE,Valid Input!\n12,URL,b,VALID,RESOLVE,Valid Input!\n18,URL,c,VA");
+        assertEquals(12, BulkValidation.resumeOffset(output, RecordFormat.CSV));
+        assertFalse(Files.readString(output).contains(",c,"), "the incomplete record is removed");
+
+        BulkOptions options = new BulkOptions(input, output).setResume(true).setProgressInterval(Duration.ZERO);
+        BulkValidation.Summary summary = new BulkValidation(options, validator).run();
+        assertEquals(2, summary.getRecords());
+        assertEquals(12, summary.getStartOffset());
+        List<String> lines = Files.readAllLines(output);
+        assertEquals(5, lines.size());
+        assertTrue(lines.get(3).startsWith("18,URL,c,VALID"), lines.get(3));
+        assertTrue(lines.get(4).startsWith("24,URL,d,VALID"), lines.get(4));
+
+        assertEquals(24, BulkValidation.resumeOffset(output, RecordFormat.CSV));
+        assertEquals(0, new BulkValidation(options, validator).run().getRecords(), "a finished validation has nothing to resume");
+    }
+
+    @Test
+    void resumeWithoutOutput() throws IOException {
+        Path output = dir.resolve("missing.ndjson");
+        assertEquals(0, BulkValidation.resumeOffset(output, RecordFormat.NDJSON));
+        Files.writeString(output, "{\"offset\":");
+        assertEquals(0, BulkValidation.resumeOffset(output, RecordFormat.NDJSON));
+        assertEquals(0, Files.size(output));
+    }
+
+    @Test
+    void offsetAppendsToTheOutput() throws IOException {
+        Path input = Files.writeString(dir.resolve("ids.csv"), "URL,a\nURL,b\n");
+        Path output = Files.writeString(dir.resolve("results.csv"), "existing\n");
+        BulkOptions options = new BulkOptions(input, output).setOffset(6).setProgressInterval(Duration.ZERO);
+        new BulkValidation(options, validator).run();
+        List<String> lines = Files.readAllLines(output);
+        assertEquals(2, lines.size());
+        assertEquals("existing", lines.get(0));
+        assertTrue(lines.get(1).startsWith("12,URL,b,"));
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineReaderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void tracksOffsets() throws IOException {
+        Path file = Files.writeString(dir.resolve("lines.txt"), "first\r\nzweite Zeile ä\n\nlast");
+        try (LineReader reader = new LineReader(file, 0)) {
+            assertEquals("first", reader.readLine());
+            assertEquals(7, reader.position());
+            assertEquals("zweite Zeile ä", reader.readLine());
+            long second = reader.position();
+            assertEquals(7 + "zweite Zeile ä\n".getBytes(StandardCharsets.UTF_8).length, second);
+            assertEquals("", reader.readLine());
+            assertEquals("last", reader.readLine());
+            assertEquals(Files.size(file), reader.position());
+            assertNull(reader.readLine());
+        }
+        try (LineReader reader = new LineReader(file, 7)) {
+            assertEquals("zweite Zeile ä", reader.readLine());
+        }
+    }
+
+    @Test
+    void linesLongerThanABlock() throws IOException {
+        String longLine = "x".repeat(3_000_000);
+        Path file = Files.writeString(dir.resolve("long.txt"), "a\n" + longLine + "\nb\n");
+        try (LineReader reader = new LineReader(file, 0)) {
+            assertEquals("a", reader.readLine());
+            assertEquals(longLine, reader.readLine());
+            assertEquals("b", reader.readLine());
+            assertNull(reader.readLine());
+            assertEquals(Files.size(file), reader.position());
+        }
+    }
+
+    @Test
+    void invalidOffset() throws IOException {
+        Path file = Files.writeString(dir.resolve("short.txt"), "a\n");
+        assertThrows(IllegalArgumentException.class, () -> new LineReader(file, 3));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.cli;
+
+import edu.kit.datamanager.datacite.validate.ValidationLevel;
+import edu.kit.datamanager.datacite.validate.ValidationRequest;
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordFormatTest {
+
+    @Test
+    void csv() {
+        assertEquals(new ValidationRequest("DOI", "10.5445/a,b", ValidationLevel.SYNTAX),
+                RecordFormat.CSV.parse("DOI,\"10.5445/a,b\",syntax", "auto", ValidationLevel.RESOLVE));
+        assertEquals(new ValidationRequest("URL", "https://example.org", ValidationLevel.PREFIX),
+                RecordFormat.CSV.parse("https://example.org", "URL", ValidationLevel.PREFIX));
+        assertEquals(List.of("a\"b", "", "c"), RecordFormat.splitCsv("\"a\"\"b\",,c"));
+        assertThrows(IllegalArgumentException.class, () -> RecordFormat.CSV.parse("DOI,x,unknown", "auto", ValidationLevel.RESOLVE));
+        assertThrows(IllegalArgumentException.class, () -> RecordFormat.CSV.parse("\"open", "auto", ValidationLevel.RESOLVE));
+        assertTrue(RecordFormat.CSV.isHeader("Type,Input"));
+        assertFalse(RecordFormat.CSV.isHeader("types,x"));
+    }
+
+    @Test
+    void csvOutput() {
+        String record = RecordFormat.CSV.format(42, new ValidationRequest("URL", "https://example.org/a,b"),
+                ValidationResult.error(ValidationResult.Stage.RESOLVE, "Not \"found\"\nat all"));
+        assertEquals("42,URL,\"https://example.org/a,b\",ERROR,,\"Not \"\"found\"\" at all\"", record);
+        assertEquals(42, RecordFormat.CSV.offsetOf(record));
+        assertThrows(NumberFormatException.class, () -> RecordFormat.CSV.offsetOf(RecordFormat.CSV.header()));
+    }
+
+    @Test
+    void ndjson() {
+        assertEquals(new ValidationRequest("Handle", "21.T11148/abc", ValidationLevel.RESOLVE),
+                RecordFormat.NDJSON.parse("{\"type\":\"Handle\",\"input\":\"21.T11148/abc\"}", "auto", ValidationLevel.RESOLVE));
+        assertEquals(new ValidationRequest("auto", "x", ValidationLevel.SYNTAX),
+                RecordFormat.NDJSON.parse("{\"input\":\"x\",\"level\":\"SYNTAX\"}", "auto", ValidationLevel.RESOLVE));
+        assertThrows(IllegalArgumentException.class, () -> RecordFormat.NDJSON.parse("{\"type\":\"DOI\"}", "auto", ValidationLevel.RESOLVE));
+        assertThrows(IllegalArgumentException.class, () -> RecordFormat.NDJSON.parse("[1]", "auto", ValidationLevel.RESOLVE));
+        assertThrows(IllegalArgumentException.class, () -> RecordFormat.NDJSON.parse("{\"input\":", "auto", ValidationLevel.RESOLVE));
+
+        String record = RecordFormat.NDJSON.format(7, new ValidationRequest("URL", "https://example.org"), ValidationResult.valid(ValidationLevel.SYNTAX));
+        assertTrue(record.startsWith("{\"offset\":7,\"type\":\"URL\",\"input\":\"https://example.org\",\"status\":\"VALID\",\"level\":\"SYNTAX\""), record);
+        assertEquals(7, RecordFormat.NDJSON.offsetOf(record));
+    }
+
+    @Test
+    void formatOfFile() {
+        assertEquals(RecordFormat.CSV, RecordFormat.of(Path.of("export/ids.CSV")));
+        assertEquals(RecordFormat.NDJSON, RecordFormat.of(Path.of("ids.ndjson")));
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.detect;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyntaxAutomatonTest {
+
+    @Test
+    void classify() {
+        SyntaxAutomaton<String> automaton = SyntaxAutomaton.<String>builder()
+                .add("number", "-?\\d+")
+                .add("word", "\\w+")
+                .add("hex", "0x[0-9a-fA-F]{1,4}")
+                .build();
+        assertEquals(List.of("number", "word"), automaton.classify("42"));
+        assertEquals(List.of("word"), automaton.classify("abc_1"));
+        assertEquals(List.of("number"), automaton.classify("-7"));
+        assertEquals(List.of("word", "hex"), automaton.classify("0xBEEF"));
+        assertEquals(List.of("word"), automaton.classify("0xBEEF0"));
+        assertEquals(List.of(), automaton.classify(""));
+        assertEquals(List.of(), automaton.classify("a b"));
+        assertEquals(List.of(), automaton.classify(null));
+        assertEquals(List.of("number", "word", "hex"), automaton.getLabels());
+    }
+
+    @Test
+    void severalSignaturesOfOneLabel() {
+        SyntaxAutomaton<Integer> automaton = SyntaxAutomaton.<Integer>builder()
+                .add(1, "a+")
+                .add(1, "b+")
+                .add(2, "(?:ab)*")
+                .build();
+        assertEquals(List.of(1), automaton.classify("aaa"));
+        assertEquals(List.of(1), automaton.classify("bb"));
+        assertEquals(List.of(2), automaton.classify("abab"));
+        assertEquals(List.of(2), automaton.classify(""));
+        assertEquals(List.of(), automaton.classify("aab"));
+    }
+
+    @Test
+    void nonAsciiInput() {
+        SyntaxAutomaton<String> automaton = SyntaxAutomaton.<String>builder()
+                .add("any", ".*")
+                .add("umlaut", "[äöü]+")
+                .add("noSpace", "\\S+")
+                .build();
+        assertEquals(List.of("any", "umlaut", "noSpace"), automaton.classify("äöü"));
+        assertEquals(List.of("any", "noSpace"), automaton.classify("日本"));
+        assertEquals(List.of("any"), automaton.classify("a b"));
+        assertEquals(List.of(), automaton.classify("a\nb"));
+    }
+
+    @Test
+    void matchesLikeJavaRegex() {
+        String[] patterns = {
+                "(hdl://)?[A-Za-z0-9.]+/[A-Za-z0-9.]\\S*",
+                "https?://[^/?#\\s]+([/?#]\\S*)?",
+                "a{2,3}(b|cd?)*",
+                "[^a-c]x{0,2}",
+                "(a|ab)(c|bcd)(d*)",
+                "[\\-.]\\.[a-]"
+        };
+        String[] inputs = {"", "a", "aa", "aab", "aaacdcb", "aaaa", "dxx", "axx", "dxxx", "abcd", "acd", "abcdd",
+                "-.a", "..-", "x.b", "10.1/x", "hdl://21.T/a b", "hdl:///x", "https://kit.edu", "http://a/b?c", "https://"};
+        SyntaxAutomaton.Builder<Integer> builder = SyntaxAutomaton.builder();
+        for (int i = 0; i < patterns.length; i++) builder.add(i, patterns[i]);
+        SyntaxAutomaton<Integer> automaton = builder.build();
+        for (String input : inputs) {
+            List<Integer> result = automaton.classify(input);
+            for (int i = 0; i < patterns.length; i++) {
+                assertEquals(Pattern.matches(patterns[i], input), result.contains(i), patterns[i] + " on " + input);
+            }
+        }
+    }
+
+    @Test
+    void empty() {
+        SyntaxAutomaton<String> automaton = SyntaxAutomaton.<String>builder().build();
+        assertEquals(List.of(), automaton.classify("test"));
+        assertEquals(List.of(), automaton.classify(""));
+        assertEquals(0, automaton.size());
+    }
+
+    @Test
+    void unsupportedPatterns() {
+        SyntaxAutomaton.Builder<String> builder = SyntaxAutomaton.builder();
+        for (String pattern : new String[]{"", "^a", "a$", "(a", "a)", "[a", "*", "a{3,2}", "a{1000}", "(?=a)", "a+?", "\\b", "[z-a]", "\\"}) {
+            assertThrows(IllegalArgumentException.class, () -> builder.add("x", pattern), pattern);
+        }
+        assertThrows(IllegalArgumentException.class, () -> builder.add(null, "a"));
+        assertEquals(List.of(), builder.build().getLabels());
+    }
+
+    @Test
+    void tooComplex() {
+        SyntaxAutomaton.Builder<String> builder = SyntaxAutomaton.<String>builder().add("x", "[ab]*a[ab]{20}");
+        assertThrows(IllegalArgumentException.class, builder::build);
+    }
+}
@@ -17,6 +17,8 @@ package edu.kit.datamanager.datacite.validate.exceptions;
 
 import org.junit.jupiter.api.Test;
 
+import static org.junit.jupiter.api.Assertions.*;
+
 class ValidationErrorTest {
 
     @Test
@@ -29,4 +31,10 @@ class ValidationErrorTest {
         Exception exception = new ValidationError("test");
     }
 
-}
\ No newline at end of file
+    @Test
+    void stackless() {
+        Exception exception = new ValidationError("test", null, false);
+        assertEquals(0, exception.getStackTrace().length);
+        assertTrue(new ValidationError("test").getStackTrace().length > 0);
+    }
+}
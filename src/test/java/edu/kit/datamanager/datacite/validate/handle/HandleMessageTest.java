@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.handle;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HandleMessageTest {
+
+    @Test
+    void request() {
+        ByteBuffer request = HandleMessage.resolutionRequest(42, "10.1038/nphys1170", false);
+        assertEquals(0, request.position());
+        assertEquals(2, request.get(0), "major version");
+        assertEquals(1, request.get(1), "minor version");
+        assertEquals(42, HandleMessage.requestId(request));
+        assertEquals(0, HandleMessage.sequenceNumber(request));
+        assertEquals(request.remaining() - HandleMessage.ENVELOPE_LENGTH, HandleMessage.messageLength(request));
+        assertEquals(HandleMessage.OC_RESOLUTION, HandleMessage.opCode(request));
+        assertEquals(0, HandleMessage.responseCode(request));
+        assertEquals("10.1038/nphys1170", HandleMessage.handle(request));
+        assertFalse(HandleMessage.isTruncated(request));
+        assertTrue(request.remaining() <= HandleMessage.MAX_UDP_REQUEST);
+    }
+
+    @Test
+    void response() {
+        ByteBuffer found = HandleMessage.resolutionResponse(-7, HandleMessage.RC_SUCCESS, "0.NA/10.1038", false);
+        assertEquals(-7, HandleMessage.requestId(found));
+        assertEquals(HandleMessage.RC_SUCCESS, HandleMessage.responseCode(found));
+        assertEquals("0.NA/10.1038", HandleMessage.handle(found));
+        assertEquals(found.remaining() - HandleMessage.ENVELOPE_LENGTH, HandleMessage.messageLength(found));
+
+        ByteBuffer notFound = HandleMessage.resolutionResponse(8, HandleMessage.RC_HANDLE_NOT_FOUND, "10.1038/unknown", false);
+        assertEquals(HandleMessage.RC_HANDLE_NOT_FOUND, HandleMessage.responseCode(notFound));
+        assertEquals(HandleMessage.ENVELOPE_LENGTH + HandleMessage.HEADER_LENGTH + 4, notFound.remaining());
+        assertThrows(IllegalArgumentException.class, () -> HandleMessage.handle(notFound));
+
+        assertTrue(HandleMessage.isTruncated(HandleMessage.resolutionResponse(9, HandleMessage.RC_SUCCESS, "10.1038/x", true)));
+    }
+
+    @Test
+    void decodesAtPosition() {
+        ByteBuffer request = HandleMessage.resolutionRequest(5, "21.T11999/valid", true);
+        ByteBuffer shifted = ByteBuffer.allocate(request.remaining() + 3);
+        shifted.position(3);
+        shifted.put(request).position(3);
+        assertEquals(5, HandleMessage.requestId(shifted));
+        assertEquals("21.T11999/valid", HandleMessage.handle(shifted));
+        assertEquals(3, shifted.position());
+    }
+
+    @Test
+    void responseName() {
+        assertEquals("HANDLE_NOT_FOUND", HandleMessage.responseName(HandleMessage.RC_HANDLE_NOT_FOUND));
+        assertEquals("SERVER_TOO_BUSY", HandleMessage.responseName(HandleMessage.RC_SERVER_TOO_BUSY));
+        assertEquals("999", HandleMessage.responseName(999));
+    }
+}
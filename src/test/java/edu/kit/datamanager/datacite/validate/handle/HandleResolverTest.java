@@ -0,0 +1,140 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.handle;
+
+import edu.kit.datamanager.datacite.validate.stub.NativeHandleStubServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.channels.DatagramChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HandleResolverTest {
+
+    private static HandleResolver resolver(NativeHandleStubServer stub, Duration udpTimeout, int udpRetries, Duration timeout) throws IOException {
+        return new HandleResolver(stub.address(), 2, udpTimeout, udpRetries, timeout);
+    }
+
+    @Test
+    void resolve() throws IOException {
+        try (NativeHandleStubServer stub = new NativeHandleStubServer(Duration.ZERO).register("21.T11999", "valid");
+             HandleResolver resolver = resolver(stub, Duration.ofMillis(500), 2, Duration.ofSeconds(5))) {
+            assertEquals(HandleMessage.RC_SUCCESS, resolver.resolve("21.T11999/valid").join());
+            assertEquals(HandleMessage.RC_HANDLE_NOT_FOUND, resolver.resolve("21.T11999/unknown").join());
+            assertEquals(HandleMessage.RC_SUCCESS, resolver.resolve("0.NA/21.T11999").join());
+            assertEquals(HandleMessage.RC_HANDLE_NOT_FOUND, resolver.resolve("0.NA/21.T11998").join());
+            assertEquals(0, resolver.getPending());
+            assertEquals(0, resolver.getTcpRequests());
+            assertEquals(0, stub.getTcpRequestCount());
+        }
+    }
+
+    @Test
+    void manyOutstandingQueries() throws IOException {
+        String[] suffixes = new String[2000];
+        for (int i = 0; i < suffixes.length; i++) suffixes[i] = "record" + i;
+        try (NativeHandleStubServer stub = new NativeHandleStubServer(Duration.ofMillis(100)).register("21.T11997", suffixes);
+             HandleResolver resolver = resolver(stub, Duration.ofSeconds(2), 2, Duration.ofSeconds(10))) {
+            List<CompletableFuture<Integer>> results = new ArrayList<>();
+            for (String suffix : suffixes) results.add(resolver.resolve("21.T11997/" + suffix));
+            results.add(resolver.resolve("21.T11997/unknown"));
+            for (int i = 0; i < suffixes.length; i++) assertEquals(HandleMessage.RC_SUCCESS, results.get(i).join());
+            assertEquals(HandleMessage.RC_HANDLE_NOT_FOUND, results.get(suffixes.length).join());
+            assertEquals(0, resolver.getPending());
+        }
+    }
+
+    @Test
+    void retransmitsLostDatagrams() throws IOException {
+        try (NativeHandleStubServer stub = new NativeHandleStubServer(Duration.ZERO).register("21.T11996", "valid").dropUdp(1);
+             HandleResolver resolver = resolver(stub, Duration.ofMillis(100), 2, Duration.ofSeconds(5))) {
+            assertEquals(HandleMessage.RC_SUCCESS, resolver.resolve("21.T11996/valid").join());
+            assertEquals(1, resolver.getRetransmissions());
+            assertEquals(2, stub.getUdpRequestCount());
+            assertEquals(0, stub.getTcpRequestCount());
+        }
+    }
+
+    @Test
+    void fallsBackToTcpAfterRetries() throws IOException {
+        try (NativeHandleStubServer stub = new NativeHandleStubServer(Duration.ZERO).register("21.T11995", "valid").dropUdp(100);
+             HandleResolver resolver = resolver(stub, Duration.ofMillis(50), 1, Duration.ofSeconds(5))) {
+            assertEquals(HandleMessage.RC_SUCCESS, resolver.resolve("21.T11995/valid").join());
+            assertEquals(HandleMessage.RC_HANDLE_NOT_FOUND, resolver.resolve("21.T11995/unknown").join());
+            assertEquals(2, resolver.getTcpRequests());
+            assertEquals(2, stub.getTcpRequestCount());
+        }
+    }
+
+    @Test
+    void truncatedResponseIsRepeatedOverTcp() throws IOException {
+        try (NativeHandleStubServer stub = new NativeHandleStubServer(Duration.ZERO).register("21.T11994", "valid").truncateUdp(true);
+             HandleResolver resolver = resolver(stub, Duration.ofSeconds(2), 2, Duration.ofSeconds(5))) {
+            List<CompletableFuture<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) results.add(resolver.resolve(i % 2 == 0 ? "21.T11994/valid" : "21.T11994/unknown"));
+            for (int i = 0; i < results.size(); i++)
+                assertEquals(i % 2 == 0 ? HandleMessage.RC_SUCCESS : HandleMessage.RC_HANDLE_NOT_FOUND, results.get(i).join());
+            assertEquals(100, stub.getTcpRequestCount(), "all queries share one connection");
+            assertEquals(0, resolver.getRetransmissions());
+        }
+    }
+
+    @Test
+    void timeout() throws IOException {
+        try (NativeHandleStubServer stub = new NativeHandleStubServer(Duration.ofSeconds(5)).register("21.T11991", "valid");
+             HandleResolver resolver = resolver(stub, Duration.ofMillis(50), 1, Duration.ofMillis(300))) {
+            CompletionException exception = assertThrows(CompletionException.class, () -> resolver.resolve("21.T11991/valid").join());
+            assertTrue(exception.getCause() instanceof SocketTimeoutException, exception.getCause().toString());
+            assertEquals(0, resolver.getPending());
+        }
+    }
+
+    @Test
+    void serverNotReachable() throws IOException {
+        // a bound socket which never answers and no TCP server on its port
+        try (DatagramChannel silent = DatagramChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+             HandleResolver resolver = new HandleResolver((InetSocketAddress) silent.getLocalAddress(), 1, Duration.ofMillis(50), 1, Duration.ofMillis(300))) {
+            CompletionException exception = assertThrows(CompletionException.class, () -> resolver.resolve("21.T11993/valid").join());
+            assertTrue(exception.getCause() instanceof IOException, exception.getCause().toString());
+            assertEquals(0, resolver.getPending());
+        }
+    }
+
+    @Test
+    void closeFailsOutstandingQueries() throws IOException {
+        try (NativeHandleStubServer stub = new NativeHandleStubServer(Duration.ofSeconds(5)).register("21.T11992", "valid")) {
+            HandleResolver resolver = resolver(stub, Duration.ofSeconds(5), 0, Duration.ofSeconds(10));
+            CompletableFuture<Integer> result = resolver.resolve("21.T11992/valid");
+            resolver.close();
+            assertThrows(CompletionException.class, result::join);
+            assertThrows(CompletionException.class, () -> resolver.resolve("21.T11992/valid").join());
+        }
+    }
+
+    @Test
+    void parseAddress() {
+        assertEquals(new InetSocketAddress("127.0.0.1", 2641), HandleResolver.parseAddress("127.0.0.1"));
+        assertEquals(new InetSocketAddress("127.0.0.1", 8000), HandleResolver.parseAddress(" 127.0.0.1:8000 "));
+        assertThrows(IllegalArgumentException.class, () -> HandleResolver.parseAddress("not a host"));
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakersTest {
+
+    @Test
+    void oneBreakerPerHost() {
+        CircuitBreakers breakers = new CircuitBreakers(true, 1, Duration.ofMinutes(1), 1, 100);
+        assertSame(breakers.forHost("Example.org"), breakers.forHost("example.org"));
+        assertNotSame(breakers.forHost("example.org"), breakers.forHost("example.org:8080"));
+        breakers.forHost("example.org").onFailure();
+        assertEquals(1, breakers.count(CircuitBreaker.State.OPEN));
+        assertEquals(1, breakers.count(CircuitBreaker.State.CLOSED));
+        assertEquals("example.org", breakers.getBreakers(CircuitBreaker.State.OPEN).get(0).getName());
+    }
+
+    @Test
+    void disabled() {
+        CircuitBreakers breakers = new CircuitBreakers(false, 1, Duration.ofMinutes(1), 1, 100);
+        assertNull(breakers.forHost("example.org"));
+        assertTrue(breakers.getBreakers().isEmpty());
+    }
+
+    @Test
+    void limitKeepsUnhealthyHosts() {
+        CircuitBreakers breakers = new CircuitBreakers(true, 1, Duration.ofMinutes(1), 1, 2);
+        breakers.forHost("down.example.org").onFailure();
+        breakers.forHost("a.example.org");
+        assertNotNull(breakers.forHost("b.example.org"), "healthy breakers are removed");
+        assertNotNull(breakers.forHost("down.example.org"));
+        assertEquals(CircuitBreaker.State.OPEN, breakers.forHost("down.example.org").getState());
+        breakers.forHost("b.example.org").onFailure();
+        assertNull(breakers.forHost("c.example.org"), "hosts beyond the limit are not protected");
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostLimiterTest {
+
+    @Test
+    void concurrencyLimit() {
+        HostLimiter limiter = new HostLimiter("example.org", 0, 1, 2);
+        assertTrue(limiter.acquire().isDone());
+        assertTrue(limiter.acquire().isDone());
+        CompletableFuture<Void> queued = limiter.acquire();
+        assertFalse(queued.isDone(), "requests over the limit are queued, not rejected");
+        assertEquals(1, limiter.getQueued());
+        limiter.release();
+        assertTrue(queued.isDone());
+        assertEquals(2, limiter.getActive());
+    }
+
+    @Test
+    void rateLimit() throws Exception {
+        HostLimiter limiter = new HostLimiter("example.org", 10, 2, 100);
+        assertTrue(limiter.acquire().isDone());
+        assertTrue(limiter.acquire().isDone());
+        long start = System.nanoTime();
+        CompletableFuture<Void> queued = limiter.acquire();
+        assertFalse(queued.isDone());
+        queued.get(5, TimeUnit.SECONDS);
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(50).toNanos(), "one token is refilled every 100 ms");
+    }
+
+    @Test
+    void pause() throws Exception {
+        HostLimiter limiter = new HostLimiter("example.org", 0, 1, 100);
+        limiter.pause(Duration.ofMillis(200));
+        assertTrue(limiter.isPaused());
+        CompletableFuture<Void> queued = limiter.acquire();
+        assertFalse(queued.isDone());
+        queued.get(5, TimeUnit.SECONDS);
+        assertFalse(limiter.isPaused());
+    }
+
+    @Test
+    void cancelledRequestsGiveBackTheirSlot() {
+        HostLimiter limiter = new HostLimiter("example.org", 0, 1, 1);
+        assertTrue(limiter.acquire().isDone());
+        CompletableFuture<Void> cancelled = limiter.acquire();
+        CompletableFuture<Void> queued = limiter.acquire();
+        cancelled.cancel(false);
+        limiter.release();
+        assertTrue(queued.isDone());
+        assertEquals(1, limiter.getActive());
+        assertEquals(0, limiter.getQueued());
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.http;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostLimitersTest {
+
+    @Test
+    void oneLimiterPerHost() {
+        HostLimiters limiters = new HostLimiters(true, 10, 10, 2, 100);
+        assertSame(limiters.forHost("Example.org"), limiters.forHost("example.org"));
+        assertNotSame(limiters.forHost("example.org"), limiters.forHost("example.org:8080"));
+        limiters.forHost("example.org").acquire();
+        limiters.forHost("example.org").acquire();
+        limiters.forHost("example.org").acquire();
+        assertEquals(1, limiters.queued());
+    }
+
+    @Test
+    void disabled() {
+        HostLimiters limiters = new HostLimiters(false, 10, 10, 2, 100);
+        assertNull(limiters.forHost("example.org"));
+    }
+
+    @Test
+    void limitKeepsBusyHosts() {
+        HostLimiters limiters = new HostLimiters(true, 10, 10, 2, 2);
+        limiters.forHost("busy.example.org").acquire();
+        limiters.forHost("a.example.org");
+        assertNotNull(limiters.forHost("b.example.org"), "idle limiters are removed");
+        assertEquals(1, limiters.forHost("busy.example.org").getActive());
+        limiters.forHost("b.example.org").acquire();
+        assertNull(limiters.forHost("c.example.org"), "hosts beyond the limit are not limited");
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpTransportTest {
+
+    HttpServer server;
+    String base;
+    List<String> methods = new CopyOnWriteArrayList<>();
+    HttpTransport transport = new HttpTransport(Duration.ofSeconds(2), Duration.ofSeconds(2), HttpClient.Version.HTTP_1_1);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ok", exchange -> {
+            methods.add(exchange.getRequestMethod());
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.createContext("/nohead", exchange -> {
+            methods.add(exchange.getRequestMethod());
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(405, -1);
+            } else {
+                assertEquals("bytes=0-0", exchange.getRequestHeaders().getFirst("Range"));
+                exchange.sendResponseHeaders(206, 1);
+                exchange.getResponseBody().write('x');
+            }
+            exchange.close();
+        });
+        server.createContext("/missing", exchange -> {
+            methods.add(exchange.getRequestMethod());
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.createContext("/busy", exchange -> {
+            methods.add(exchange.getRequestMethod());
+            if (methods.size() == 1) {
+                exchange.getResponseHeaders().add("Retry-After", "0");
+                exchange.sendResponseHeaders(429, -1);
+            } else exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.createContext("/overloaded", exchange -> {
+            methods.add(exchange.getRequestMethod());
+            exchange.getResponseHeaders().add("Retry-After", "3600");
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void headFirst() throws Exception {
+        assertEquals(200, transport.status(base + "/ok"));
+        assertEquals(List.of("HEAD"), methods);
+    }
+
+    @Test
+    void getIfHeadIsRejected() throws Exception {
+        assertEquals(200, transport.status(base + "/nohead"));
+        assertEquals(List.of("HEAD", "GET"), methods);
+    }
+
+    @Test
+    void notFound() throws Exception {
+        assertEquals(404, transport.status(base + "/missing"));
+        assertEquals(List.of("HEAD"), methods);
+    }
+
+    @Test
+    void repeatedRequests() throws Exception {
+        for (int i = 0; i < 5; i++) assertEquals(200, transport.status(base + "/ok"));
+        assertEquals(5, methods.size());
+    }
+
+    @Test
+    void invalidURL() {
+        assertThrows(IllegalArgumentException.class, () -> transport.status("hdl.handle/10.1038/nphys1170"));
+        assertThrows(IllegalArgumentException.class, () -> transport.status("http://invalid url"));
+    }
+
+    @Test
+    void serverNotReachable() {
+        server.stop(0);
+        assertThrows(IOException.class, () -> transport.status(base + "/ok"));
+    }
+
+    @Test
+    void openBreakerFailsFast() throws Exception {
+        HttpTransport guarded = new HttpTransport(Duration.ofSeconds(2), Duration.ofSeconds(2), HttpClient.Version.HTTP_1_1,
+                new CircuitBreakers(true, 2, Duration.ofMinutes(1), 1, 100));
+        assertEquals(404, guarded.status(base + "/missing"), "HTTP errors don't open the breaker");
+        server.stop(0);
+        assertThrows(IOException.class, () -> guarded.status(base + "/ok"));
+        ExecutionException async = assertThrows(ExecutionException.class, () -> guarded.statusAsync(base + "/ok").get());
+        assertFalse(async.getCause() instanceof CircuitOpenException);
+        CircuitBreaker breaker = guarded.getCircuitBreakers().getBreakers().iterator().next();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals("127.0.0.1:" + server.getAddress().getPort(), breaker.getName());
+        assertThrows(CircuitOpenException.class, () -> guarded.status(base + "/ok"));
+        async = assertThrows(ExecutionException.class, () -> guarded.statusAsync(base + "/ok").get());
+        assertTrue(async.getCause() instanceof CircuitOpenException);
+        assertEquals(2, breaker.getRejected());
+    }
+
+    @Test
+    void retryAfterPausesTheHost() throws Exception {
+        assertEquals(200, transport.status(base + "/busy"));
+        assertEquals(List.of("HEAD", "HEAD"), methods);
+        methods.clear();
+        assertEquals(200, transport.statusAsync(base + "/busy").get());
+        assertEquals(List.of("HEAD", "HEAD"), methods);
+    }
+
+    @Test
+    void longRetryAfterIsNotAwaited() throws Exception {
+        assertEquals(503, transport.statusAsync(base + "/overloaded").get());
+        assertEquals(List.of("HEAD"), methods);
+        HostLimiter limiter = transport.getHostLimiters().forHost("127.0.0.1:" + server.getAddress().getPort());
+        assertTrue(limiter.isPaused());
+        assertFalse(transport.statusAsync(base + "/ok").isDone(), "requests to the host are queued during the pause");
+    }
+
+    @Test
+    void parseRetryAfter() {
+        Instant now = Instant.parse("2021-10-21T07:28:00Z");
+        assertEquals(Duration.ofSeconds(120), transport.parseRetryAfter("120", now));
+        assertEquals(Duration.ofSeconds(30), transport.parseRetryAfter("Thu, 21 Oct 2021 07:28:30 GMT", now));
+        assertEquals(Duration.ZERO, transport.parseRetryAfter("Thu, 21 Oct 2021 07:27:00 GMT", now));
+        assertEquals(Duration.ofSeconds(1), transport.parseRetryAfter("soon", now));
+    }
+
+    @Test
+    void sharedInstance() {
+        assertSame(HttpTransport.shared(), HttpTransport.shared());
+    }
+}
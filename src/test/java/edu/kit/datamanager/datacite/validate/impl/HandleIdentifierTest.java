@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HandleIdentifierTest {
+
+    HandleIdentifier identifier = new HandleIdentifier();
+
+    @Test
+    void hdlScheme() {
+        assertTrue(identifier.parse("hdl://10.1038/nphys1170"));
+        assertEquals(HandleIdentifier.Scheme.HDL, identifier.scheme());
+        assertEquals("10.1038", identifier.prefix());
+        assertEquals("nphys1170", identifier.suffix());
+        assertNull(identifier.serverAddress());
+    }
+
+    @Test
+    void doiScheme() {
+        assertTrue(identifier.parse("doi:10.1038/nphys1170"));
+        assertEquals(HandleIdentifier.Scheme.DOI, identifier.scheme());
+        assertEquals("10.1038", identifier.prefix());
+        assertEquals("nphys1170", identifier.suffix());
+    }
+
+    @Test
+    void noScheme() {
+        assertTrue(identifier.parse("10.1038/nphys1170"));
+        assertEquals(HandleIdentifier.Scheme.NONE, identifier.scheme());
+        assertEquals("10.1038", identifier.prefix());
+        assertEquals("nphys1170", identifier.suffix());
+    }
+
+    @Test
+    void httpsURL() {
+        assertTrue(identifier.parse("https://hdl.handle.net/api/handles/10.1038/nphys1170"));
+        assertEquals(HandleIdentifier.Scheme.HTTPS, identifier.scheme());
+        assertEquals("https://hdl.handle.net/api/handles", identifier.serverAddress());
+        assertEquals("10.1038", identifier.prefix());
+        assertEquals("nphys1170", identifier.suffix());
+    }
+
+    @Test
+    void httpURL() {
+        assertTrue(identifier.parse("http://hdl.handle.net/api/handles/10.1038/nphys1170"));
+        assertEquals(HandleIdentifier.Scheme.HTTP, identifier.scheme());
+        assertEquals("http://hdl.handle.net/api/handles", identifier.serverAddress());
+    }
+
+    @Test
+    void offsets() {
+        assertTrue(identifier.parse("https://a.b/10.1/xyz"));
+        assertEquals(8, identifier.hostStart());
+        assertEquals(11, identifier.hostEnd());
+        assertEquals(12, identifier.prefixStart());
+        assertEquals(16, identifier.prefixEnd());
+        assertEquals(17, identifier.suffixStart());
+        assertEquals(20, identifier.suffixEnd());
+    }
+
+    @Test
+    void suffixStopsAtInvalidCharacter() {
+        assertTrue(identifier.parse("http://example.org/10.1/abc-def"));
+        assertEquals("http://example.org", identifier.serverAddress());
+        assertEquals("10.1", identifier.prefix());
+        assertEquals("abc", identifier.suffix());
+    }
+
+    @Test
+    void prefixWithoutScheme() {
+        assertTrue(identifier.parse("hdl.handle/10.1038/nphys1170"));
+        assertEquals("hdl.handle", identifier.prefix());
+        assertEquals("10.1038", identifier.suffix());
+    }
+
+    @Test
+    void firstHandleIsUsed() {
+        assertTrue(identifier.parse("a-b/c d/e"));
+        assertEquals("b", identifier.prefix());
+        assertEquals("c", identifier.suffix());
+    }
+
+    @Test
+    void schemeOnlyReadsFirstLine() {
+        assertFalse(identifier.parse("hdl://test\n10.1038/nphys1170"));
+    }
+
+    @Test
+    void invalidInputs() {
+        assertFalse(identifier.parse("test"));
+        assertFalse(identifier.parse("https://google.com"));
+        assertFalse(identifier.parse("http://google.com/®¡“¢∂‚/®¡“¢∂‚"));
+        assertFalse(identifier.parse("http://"));
+        assertFalse(identifier.parse("10.1038/"));
+        assertFalse(identifier.parse("/nphys1170"));
+        assertFalse(identifier.parse("a//b"));
+        assertFalse(identifier.parse(""));
+        assertFalse(identifier.parse(null));
+    }
+
+    @Test
+    void reuse() {
+        assertTrue(identifier.parse("https://hdl.handle.net/api/handles/10.1038/nphys1170"));
+        assertFalse(identifier.parse("test"));
+        assertEquals(HandleIdentifier.Scheme.NONE, identifier.scheme());
+        assertNull(identifier.prefix());
+        assertNull(identifier.suffix());
+        assertNull(identifier.serverAddress());
+    }
+}
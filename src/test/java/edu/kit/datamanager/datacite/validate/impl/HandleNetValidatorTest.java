@@ -15,11 +15,22 @@
 
 package edu.kit.datamanager.datacite.validate.impl;
 
+import edu.kit.datamanager.datacite.validate.ValidationLevel;
+import edu.kit.datamanager.datacite.validate.ValidationResult;
 import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
 import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+import edu.kit.datamanager.datacite.validate.handle.HandleResolver;
+import edu.kit.datamanager.datacite.validate.http.HttpTransport;
+import edu.kit.datamanager.datacite.validate.stub.HandleStubServer;
+import edu.kit.datamanager.datacite.validate.stub.NativeHandleStubServer;
 import org.datacite.schema.kernel_4.RelatedIdentifierType;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class HandleNetValidatorTest {
@@ -161,4 +172,88 @@ class HandleNetValidatorTest {
         } catch (ValidationError ignored) {
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void localResolver() throws Exception {
+        try (HandleStubServer stub = new HandleStubServer(Duration.ZERO).register("21.T11999", "valid")) {
+            HandleNetValidator local = new HandleNetValidator(HttpTransport.shared(), stub.resolver(), stub.prefixResolver());
+            assertTrue(local.isValid("hdl://21.T11999/valid"));
+            assertTrue(local.isValid(stub.resolver() + "/21.T11999/valid"));
+            assertThrows(ValidationWarning.class, () -> local.isValid("21.T11999/unknown"));
+            assertThrows(ValidationError.class, () -> local.isValid("21.T11998/valid"));
+        }
+    }
+
+    @Test
+    void localResolverResults() throws Exception {
+        try (HandleStubServer stub = new HandleStubServer(Duration.ZERO).register("21.T11996", "valid")) {
+            HandleNetValidator local = new HandleNetValidator(HttpTransport.shared(), stub.resolver(), stub.prefixResolver());
+            assertSame(ValidationResult.valid(), local.validate("21.T11996/valid").join());
+            ValidationResult invalidSuffix = local.validate("21.T11996/unknown").join();
+            assertEquals(ValidationResult.Status.WARNING, invalidSuffix.getStatus());
+            assertEquals(ValidationResult.Stage.RESOLVE, invalidSuffix.getStage());
+            assertEquals("Prefix valid, but suffix not", invalidSuffix.getMessage());
+            ValidationResult invalidPrefix = local.validate("21.T11995/valid").join();
+            assertEquals(ValidationResult.Status.ERROR, invalidPrefix.getStatus());
+            assertEquals(ValidationResult.Stage.PREFIX, invalidPrefix.getStage());
+            assertEquals(ValidationResult.Stage.SYNTAX, local.validate("test").join().getStage());
+            assertEquals(ValidationResult.Stage.TYPE, local.validate("21.T11996/valid", RelatedIdentifierType.ARK).join().getStage());
+        }
+    }
+
+    @Test
+    void concurrentValidationsShareRequests() throws Exception {
+        try (HandleStubServer stub = new HandleStubServer(Duration.ofMillis(200)).register("21.T11997", "burst")) {
+            HandleNetValidator local = new HandleNetValidator(HttpTransport.shared(), stub.resolver(), stub.prefixResolver());
+            List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+            for (int i = 0; i < 50; i++) futures.add(local.validateAsync("21.T11997/burst"));
+            for (CompletableFuture<Boolean> future : futures) assertTrue(future.join());
+            assertEquals(1, stub.getRequestCount());
+        }
+    }
+
+    @Test
+    void levels() throws Exception {
+        try (HandleStubServer stub = new HandleStubServer(Duration.ZERO).register("21.T11993", "valid")) {
+            HandleNetValidator local = new HandleNetValidator(HttpTransport.shared(), stub.resolver(), stub.prefixResolver());
+            ValidationResult syntax = local.validate("21.T11993/unknown", RelatedIdentifierType.HANDLE, ValidationLevel.SYNTAX).join();
+            assertEquals(ValidationLevel.SYNTAX, syntax.getLevel());
+            assertEquals(0, stub.getRequestCount(), "a syntax check never touches the network");
+            assertEquals(ValidationResult.Stage.SYNTAX, local.validate("test", RelatedIdentifierType.HANDLE, ValidationLevel.SYNTAX).join().getStage());
+
+            ValidationResult prefix = local.validate("21.T11993/unknown", RelatedIdentifierType.HANDLE, ValidationLevel.PREFIX).join();
+            assertEquals(ValidationLevel.PREFIX, prefix.getLevel());
+            assertEquals(1, stub.getRequestCount(), "only the prefix is requested");
+            assertEquals(ValidationResult.Status.ERROR, local.validate("21.T11992/valid", RelatedIdentifierType.HANDLE, ValidationLevel.PREFIX).join().getStatus());
+
+            assertEquals(ValidationLevel.RESOLVE, local.validate("21.T11993/valid", RelatedIdentifierType.HANDLE, ValidationLevel.RESOLVE).join().getLevel());
+        }
+    }
+
+    @Test
+    void nativeResolver() throws Exception {
+        try (NativeHandleStubServer stub = new NativeHandleStubServer(Duration.ZERO).register("21.T11989", "valid");
+             HandleResolver resolver = new HandleResolver(stub.address(), 2, Duration.ofMillis(500), 2, Duration.ofSeconds(5))) {
+            HandleNetValidator local = new HandleNetValidator(HttpTransport.shared(), "http://127.0.0.1:1", "http://127.0.0.1:1", resolver);
+            assertSame(ValidationResult.valid(), local.validate("hdl://21.T11989/valid").join());
+            ValidationResult invalidSuffix = local.validate("21.T11989/unknown").join();
+            assertEquals(ValidationResult.Status.WARNING, invalidSuffix.getStatus());
+            assertEquals("Prefix valid, but suffix not", invalidSuffix.getMessage());
+            ValidationResult invalidPrefix = local.validate("21.T11988/valid").join();
+            assertEquals(ValidationResult.Status.ERROR, invalidPrefix.getStatus());
+            assertEquals(ValidationResult.Stage.PREFIX, invalidPrefix.getStage());
+            assertEquals(ValidationLevel.PREFIX, local.validate("21.T11989/unknown", RelatedIdentifierType.HANDLE, ValidationLevel.PREFIX).join().getLevel());
+            assertEquals(0, stub.getTcpRequestCount());
+        }
+    }
+
+    @Test
+    void nativeResolverNotReachable() throws Exception {
+        NativeHandleStubServer stub = new NativeHandleStubServer(Duration.ZERO);
+        stub.close();
+        try (HandleResolver resolver = new HandleResolver(stub.address(), 1, Duration.ofMillis(50), 0, Duration.ofMillis(500))) {
+            HandleNetValidator local = new HandleNetValidator(HttpTransport.shared(), "http://127.0.0.1:1", "http://127.0.0.1:1", resolver);
+            assertEquals(ValidationResult.Status.WARNING, local.validate("21.T11987/valid").join().getStatus());
+        }
+    }
+}
@@ -15,12 +15,25 @@
 
 package edu.kit.datamanager.datacite.validate.impl;
 
+import com.sun.net.httpserver.HttpServer;
+import edu.kit.datamanager.datacite.validate.ValidationLevel;
+import edu.kit.datamanager.datacite.validate.ValidationResult;
 import edu.kit.datamanager.datacite.validate.ValidatorInterface;
 import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
 import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+import edu.kit.datamanager.datacite.validate.http.CircuitBreakers;
+import edu.kit.datamanager.datacite.validate.http.CircuitOpenException;
+import edu.kit.datamanager.datacite.validate.http.HttpTransport;
+import edu.kit.datamanager.datacite.validate.stub.HandleStubServer;
 import org.datacite.schema.kernel_4.RelatedIdentifierType;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class URLValidatorTest {
@@ -86,4 +99,77 @@ class URLValidatorTest {
         } catch (ValidationError ignored) {
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void results() throws Exception {
+        try (HandleStubServer stub = new HandleStubServer(Duration.ZERO).register("21.T11994", "valid")) {
+            URLValidator local = new URLValidator(HttpTransport.shared());
+            assertSame(ValidationResult.valid(), local.validate(stub.resolver() + "/21.T11994/valid").join());
+            ValidationResult notFound = local.validate(stub.resolver() + "/21.T11994/unknown").join();
+            assertEquals(ValidationResult.Status.ERROR, notFound.getStatus());
+            assertEquals(ValidationResult.Stage.RESOLVE, notFound.getStage());
+            assertEquals("Invalid URL!", notFound.getMessage());
+        }
+        ValidationResult invalid = validator.validate("hdl.handle/10.1038/nphys1170").join();
+        assertEquals(ValidationResult.Status.ERROR, invalid.getStatus());
+        assertEquals(ValidationResult.Stage.SYNTAX, invalid.getStage());
+        ValidationResult unreachable = validator.validate("http://127.0.0.1:1/test").join();
+        assertEquals(ValidationResult.Status.WARNING, unreachable.getStatus());
+        assertTrue(unreachable.getCause() instanceof IOException);
+        assertEquals(ValidationResult.Stage.TYPE, validator.validate("https://kit.edu", RelatedIdentifierType.ARK).join().getStage());
+    }
+
+    @Test
+    void unavailableHost() throws Exception {
+        HttpTransport guarded = new HttpTransport(Duration.ofSeconds(2), Duration.ofSeconds(2), HttpClient.Version.HTTP_1_1,
+                new CircuitBreakers(true, 1, Duration.ofMinutes(1), 1, 100));
+        URLValidator local = new URLValidator(guarded);
+        assertEquals(ValidationResult.Status.WARNING, local.validate("http://127.0.0.1:1/first").join().getStatus());
+        ValidationResult failFast = local.validate("http://127.0.0.1:1/second").join();
+        assertEquals(ValidationResult.Status.WARNING, failFast.getStatus());
+        assertTrue(failFast.getCause() instanceof CircuitOpenException);
+        try {
+            URLValidator.setSyntaxFallback(true);
+            ValidationResult degraded = local.validate("http://127.0.0.1:1/third").join();
+            assertEquals(ValidationResult.Status.VALID, degraded.getStatus());
+            assertEquals(ValidationResult.Stage.SYNTAX, degraded.getStage());
+            assertNull(URLValidator.getStatusCache().get("http://127.0.0.1:1/third"), "degraded results are not cached");
+        } finally {
+            URLValidator.setSyntaxFallback(false);
+        }
+    }
+
+    @Test
+    void busyServer() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        AtomicInteger requests = new AtomicInteger();
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            exchange.getResponseHeaders().add("Retry-After", "0");
+            exchange.sendResponseHeaders(429, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/busy";
+            ValidationResult busy = new URLValidator(new HttpTransport(Duration.ofSeconds(2), Duration.ofSeconds(2), HttpClient.Version.HTTP_1_1)).validate(url).join();
+            assertEquals(ValidationResult.Status.WARNING, busy.getStatus());
+            assertEquals(ValidationResult.Stage.RESOLVE, busy.getStage());
+            assertEquals(3, requests.get(), "the request is repeated twice");
+            assertNull(URLValidator.getStatusCache().get(url), "busy servers are not cached");
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void syntaxLevel() {
+        URLValidator local = new URLValidator();
+        ValidationResult syntax = local.validate("http://127.0.0.1:1/never-requested", RelatedIdentifierType.URL, ValidationLevel.SYNTAX).join();
+        assertEquals(ValidationLevel.SYNTAX, syntax.getLevel());
+        assertEquals(ValidationLevel.SYNTAX, local.validate("http://127.0.0.1:1/never-requested", RelatedIdentifierType.URL, ValidationLevel.PREFIX).join().getLevel(),
+                "URLs have no prefix");
+        assertEquals(ValidationResult.Status.ERROR, local.validate("http://invalid url", RelatedIdentifierType.URL, ValidationLevel.SYNTAX).join().getStatus());
+        assertEquals(ValidationResult.Status.ERROR, local.validate("hdl.handle/10.1038/nphys1170", RelatedIdentifierType.URL, ValidationLevel.SYNTAX).join().getStatus());
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrefixIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    private PrefixIndex build(String... lines) throws IOException {
+        Path list = tempDir.resolve("prefixes.txt");
+        Path index = tempDir.resolve("prefixes.idx");
+        Files.write(list, List.of(lines));
+        PrefixIndex.build(list, index);
+        return PrefixIndex.open(index);
+    }
+
+    @Test
+    void contains() throws IOException {
+        PrefixIndex index = build("10.1038", "0.NA/10.5445", "# comment", "", "21.T11148", "10.1000");
+        assertEquals(4, index.size());
+        assertTrue(index.contains("10.1038"));
+        assertTrue(index.contains("10.5445"));
+        assertTrue(index.contains("21.t11148"));
+        assertTrue(index.contains("10.1000"));
+        assertFalse(index.contains("10.103"));
+        assertFalse(index.contains("10.10385"));
+        assertFalse(index.contains("0.NA/10.5445"));
+        assertFalse(index.contains(""));
+        assertFalse(index.contains(null));
+    }
+
+    @Test
+    void duplicatesAndInvalidLines() throws IOException {
+        PrefixIndex index = build("10.1038", "10.1038", "invalid prefix", "®¡“¢");
+        assertEquals(1, index.size());
+        assertTrue(index.contains("10.1038"));
+    }
+
+    @Test
+    void empty() throws IOException {
+        PrefixIndex index = build();
+        assertEquals(0, index.size());
+        assertFalse(index.contains("10.1038"));
+    }
+
+    @Test
+    void noIndexFile() throws IOException {
+        Path file = tempDir.resolve("other.idx");
+        Files.writeString(file, "no index");
+        assertThrows(IOException.class, () -> PrefixIndex.open(file));
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.metadata;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcatenatedXmlInputStreamTest {
+
+    private static String read(String input, int chunk) throws IOException {
+        InputStream in = new ConcatenatedXmlInputStream(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)));
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[chunk];
+        int count;
+        while ((count = in.read(buffer)) >= 0) result.write(buffer, 0, count);
+        return result.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void removesDeclarationsAndWraps() throws IOException {
+        String dump = "﻿<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<a>ä<?xml-stylesheet href=\"s\"?></a>\n<?xml version=\"1.0\"?><b/>";
+        String expected = "<" + ConcatenatedXmlInputStream.ROOT + ">\n<a>ä<?xml-stylesheet href=\"s\"?></a>\n<b/></" + ConcatenatedXmlInputStream.ROOT + ">";
+        assertEquals(expected, read(dump, 8192));
+        assertEquals(expected, read(dump, 1));
+        assertEquals(expected, read(dump, 3));
+    }
+
+    @Test
+    void truncatedInput() throws IOException {
+        assertEquals("<" + ConcatenatedXmlInputStream.ROOT + "><?x</" + ConcatenatedXmlInputStream.ROOT + ">", read("<?x", 16));
+        assertEquals("<" + ConcatenatedXmlInputStream.ROOT + "></" + ConcatenatedXmlInputStream.ROOT + ">", read("<?xml version=", 16));
+    }
+}
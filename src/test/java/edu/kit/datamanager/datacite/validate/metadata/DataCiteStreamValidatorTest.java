@@ -0,0 +1,152 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.metadata;
+
+import edu.kit.datamanager.datacite.validate.ValidationLevel;
+import edu.kit.datamanager.datacite.validate.ValidationRequest;
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import org.junit.jupiter.api.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataCiteStreamValidatorTest {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final List<ValidationRequest> requests = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Completes after a random delay. Inputs containing "bad" are errors.
+     */
+    private final Function<ValidationRequest, CompletableFuture<ValidationResult>> validator = request -> {
+        requests.add(request);
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        return CompletableFuture.supplyAsync(() -> {
+            inFlight.decrementAndGet();
+            if (request.getInput().contains("bad")) return ValidationResult.error(ValidationResult.Stage.SYNTAX, "Invalid");
+            return ValidationResult.valid(request.getLevel());
+        }, CompletableFuture.delayedExecutor(ThreadLocalRandom.current().nextInt(3), TimeUnit.MILLISECONDS));
+    };
+
+    private static String record(int number) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<resource xmlns=\"http://datacite.org/schema/kernel-4\">\n" +
+                "  <identifier identifierType=\"DOI\">10.5445/IR/" + number + "</identifier>\n" +
+                "  <titles><title>Record " + number + "</title></titles>\n" +
+                "  <relatedIdentifiers>\n" +
+                "    <relatedIdentifier relatedIdentifierType=\"URL\" relationType=\"IsSupplementTo\">https://example.org/" + number + "</relatedIdentifier>\n" +
+                "    <relatedIdentifier relatedIdentifierType=\"Handle\" relationType=\"References\">" + (number % 3 == 0 ? "bad" : "21.T11148/") + number + "</relatedIdentifier>\n" +
+                "  </relatedIdentifiers>\n" +
+                "</resource>\n";
+    }
+
+    private static InputStream dump(int records) {
+        Enumeration<InputStream> parts = new Enumeration<>() {
+            private int next;
+
+            @Override
+            public boolean hasMoreElements() {
+                return next < records;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                return new ByteArrayInputStream(record(next++).getBytes(StandardCharsets.UTF_8));
+            }
+        };
+        return new SequenceInputStream(parts);
+    }
+
+    @Test
+    void concatenatedDump() throws XMLStreamException {
+        List<RecordReport> reports = new ArrayList<>();
+        long records = new DataCiteStreamValidator(validator, ValidationLevel.PREFIX, 4).validate(dump(300), reports::add);
+        assertEquals(300, records);
+        assertEquals(300, reports.size());
+        assertTrue(maxInFlight.get() <= 4, "at most parallelism validations are in flight");
+        assertEquals(600, requests.size());
+        for (int i = 0; i < reports.size(); i++) {
+            RecordReport report = reports.get(i);
+            assertEquals(i, report.getRecord());
+            assertEquals("10.5445/IR/" + i, report.getIdentifier());
+            assertEquals("DOI", report.getIdentifierType());
+            assertEquals(2, report.getRelatedIdentifiers().size());
+            RecordReport.Entry url = report.getRelatedIdentifiers().get(0);
+            assertEquals("https://example.org/" + i, url.getRelatedIdentifier());
+            assertEquals("URL", url.getRelatedIdentifierType());
+            assertEquals("IsSupplementTo", url.getRelationType());
+            assertEquals(ValidationLevel.PREFIX, url.getLevel());
+            assertEquals(i % 3 != 0, report.isValid());
+            assertEquals(i % 3 == 0 ? 1 : 0, report.count(ValidationResult.Status.ERROR));
+        }
+        assertEquals(new ValidationRequest("Handle", "21.T11148/1", ValidationLevel.PREFIX),
+                requests.stream().filter(request -> request.getInput().equals("21.T11148/1")).findFirst().orElseThrow());
+    }
+
+    @Test
+    void recordsInsideAnEnvelope() throws XMLStreamException {
+        String xml = "<OAI-PMH><ListRecords>" +
+                "<record><metadata><resource><identifier identifierType=\"DOI\">10.1/a</identifier>" +
+                "<relatedIdentifiers><relatedIdentifier relatedIdentifierType=\"URL\"> https://example.org </relatedIdentifier>" +
+                "<relatedIdentifier relationType=\"Cites\">no type</relatedIdentifier>" +
+                "<relatedIdentifier relatedIdentifierType=\"DOI\"/></relatedIdentifiers></resource></metadata></record>" +
+                "<record><metadata><resource><identifier identifierType=\"DOI\">10.1/b</identifier></resource></metadata></record>" +
+                "</ListRecords></OAI-PMH>";
+        List<RecordReport> reports = new ArrayList<>();
+        new DataCiteStreamValidator(validator, null, 2).validate(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), reports::add);
+        assertEquals(2, reports.size());
+        List<RecordReport.Entry> entries = reports.get(0).getRelatedIdentifiers();
+        assertEquals(3, entries.size());
+        assertEquals("https://example.org", entries.get(0).getRelatedIdentifier());
+        assertEquals(ValidationLevel.RESOLVE, entries.get(0).getLevel());
+        assertEquals(ValidationResult.Status.ERROR, entries.get(1).getStatus());
+        assertEquals(ValidationResult.Status.ERROR, entries.get(2).getStatus());
+        assertEquals(1, requests.size(), "only identifiers with type and value are validated");
+        assertEquals("10.1/b", reports.get(1).getIdentifier());
+        assertTrue(reports.get(1).getRelatedIdentifiers().isEmpty());
+        assertTrue(reports.get(1).isValid());
+    }
+
+    @Test
+    void malformedXml() {
+        String xml = record(1) + "<resource><identifier>10.1/x</identifier><relatedIdentifiers></resource>";
+        List<RecordReport> reports = new ArrayList<>();
+        DataCiteStreamValidator streamValidator = new DataCiteStreamValidator(validator, ValidationLevel.SYNTAX, 2);
+        assertThrows(XMLStreamException.class, () -> streamValidator.validate(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), reports::add));
+        assertEquals(1, reports.size(), "the records before the error are reported");
+    }
+
+    @Test
+    void documentTypeDeclarationsAreRejected() {
+        String xml = "<!DOCTYPE resource [<!ENTITY secret SYSTEM \"file:///etc/passwd\">]><resource><identifier>&secret;</identifier></resource>";
+        DataCiteStreamValidator streamValidator = new DataCiteStreamValidator(validator, ValidationLevel.SYNTAX, 2);
+        assertThrows(XMLStreamException.class, () -> streamValidator.validate(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), report -> fail()));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.metrics;
+
+import edu.kit.datamanager.datacite.validate.cache.ResultCache;
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValidationMetricsTest {
+
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        Metrics.addRegistry(registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.removeRegistry(registry);
+    }
+
+    @Test
+    void outcome() {
+        assertEquals(ValidationMetrics.Outcome.VALID, ValidationMetrics.Outcome.of(null));
+        assertEquals(ValidationMetrics.Outcome.ERROR, ValidationMetrics.Outcome.of(new ValidationError("test")));
+        assertEquals(ValidationMetrics.Outcome.ERROR, ValidationMetrics.Outcome.of(new CompletionException(new ValidationError("test"))));
+        assertEquals(ValidationMetrics.Outcome.WARNING, ValidationMetrics.Outcome.of(new ValidationWarning("test")));
+        assertEquals(ValidationMetrics.Outcome.WARNING, ValidationMetrics.Outcome.of(new IllegalStateException()));
+        assertEquals(ValidationMetrics.Outcome.WARNING, ValidationMetrics.Outcome.of(ValidationResult.warning(ValidationResult.Stage.RESOLVE, "test"), null));
+        assertEquals(ValidationMetrics.Outcome.ERROR, ValidationMetrics.Outcome.of(ValidationResult.error(ValidationResult.Stage.SYNTAX, "test"), null));
+        assertEquals(ValidationMetrics.Outcome.VALID, ValidationMetrics.Outcome.of(ValidationResult.valid(), null));
+        assertEquals(ValidationMetrics.Outcome.VALID, ValidationMetrics.Outcome.of(true, null));
+    }
+
+    @Test
+    void validation() {
+        ValidationMetrics.Timers timers = ValidationMetrics.validation("TEST", ValidationMetricsTest.class);
+        assertSame(timers, ValidationMetrics.validation("TEST", ValidationMetricsTest.class));
+        timers.record(System.nanoTime(), (Throwable) null);
+        timers.record(System.nanoTime(), new ValidationError("test"));
+        timers.record(System.nanoTime(), new ValidationError("test"));
+        assertEquals(1, registry.get("validator.validation").tags("type", "TEST", "validator", "ValidationMetricsTest", "outcome", "valid").timer().count());
+        assertEquals(2, registry.get("validator.validation").tags("type", "TEST", "outcome", "error").timer().count());
+        assertEquals(0, registry.get("validator.validation").tags("type", "TEST", "outcome", "warning").timer().count());
+    }
+
+    @Test
+    void future() {
+        CompletableFuture<Boolean> pending = new CompletableFuture<>();
+        ValidationMetrics.Timers timers = ValidationMetrics.stage("test");
+        assertSame(pending, timers.record(System.nanoTime(), pending));
+        assertEquals(0, registry.get("validator.stage").tags("stage", "test", "outcome", "warning").timer().count());
+        pending.completeExceptionally(new ValidationWarning("test"));
+        assertEquals(1, registry.get("validator.stage").tags("stage", "test", "outcome", "warning").timer().count());
+    }
+
+    @Test
+    void hostsAreLimited() {
+        // the hosts are counted for the whole JVM, so only the timers of the method of this test are inspected
+        for (int i = 0; i < 250; i++)
+            ValidationMetrics.request("host" + i + ".example", "LIMITED").record(System.nanoTime(), ValidationMetrics.Outcome.VALID);
+        Set<String> hosts = registry.find("validator.http.requests").tag("method", "LIMITED").timers().stream()
+                .map(timer -> timer.getId().getTag("host")).collect(Collectors.toSet());
+        assertTrue(hosts.size() <= 201, hosts.size() + " hosts");
+        assertTrue(hosts.contains("other"));
+        assertTrue(registry.get("validator.http.requests").tags("host", "other", "method", "LIMITED", "outcome", "valid").timer().count() > 0);
+    }
+
+    @Test
+    void cache() {
+        ResultCache<String, Boolean> cache = new ResultCache<>("metricsTest", 10, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        ValidationMetrics.bindCache(cache);
+        cache.put("a", true, true);
+        cache.get("a");
+        cache.get("b");
+        assertEquals(1, registry.get("validator.cache.size").tag("cache", "metricsTest").gauge().value());
+        assertEquals(1, registry.get("validator.cache.hits").tag("cache", "metricsTest").functionCounter().count());
+        assertEquals(1, registry.get("validator.cache.misses").tag("cache", "metricsTest").functionCounter().count());
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.plugin;
+
+import edu.kit.datamanager.datacite.validate.ValidationFutures;
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import edu.kit.datamanager.datacite.validate.ValidatorInterface;
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+import org.datacite.schema.kernel_4.RelatedIdentifierType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PluginBulkheadTest {
+
+    @Test
+    void rejectsWhenBusy() {
+        PluginBulkhead bulkhead = new PluginBulkhead("BusyValidator", 1, Duration.ofSeconds(10));
+        CompletableFuture<ValidationResult> pending = new CompletableFuture<>();
+        CompletableFuture<ValidationResult> first = bulkhead.execute(() -> pending);
+        assertEquals(0, bulkhead.availablePermits());
+
+        ValidationResult rejected = bulkhead.execute(() -> CompletableFuture.completedFuture(ValidationResult.valid())).join();
+        assertEquals(ValidationResult.Status.WARNING, rejected.getStatus());
+        assertEquals(ValidationResult.Stage.EXECUTION, rejected.getStage());
+        assertTrue(rejected.getMessage().contains("busy"));
+
+        pending.complete(ValidationResult.valid());
+        assertTrue(first.join().isValid());
+        assertEquals(1, bulkhead.availablePermits());
+        assertTrue(bulkhead.execute(() -> CompletableFuture.completedFuture(ValidationResult.valid())).join().isValid());
+        assertEquals(1, bulkhead.availablePermits());
+    }
+
+    @Test
+    void cancelsSlowCalls() {
+        PluginBulkhead bulkhead = new PluginBulkhead("SlowValidator", 2, Duration.ofMillis(50));
+        CompletableFuture<ValidationResult> pending = new CompletableFuture<>();
+        ValidationResult result = bulkhead.execute(() -> pending).join();
+        assertEquals(ValidationResult.Status.WARNING, result.getStatus());
+        assertEquals("Plugin SlowValidator exceeded its time budget of 50 ms", result.getMessage());
+        assertTrue(pending.isCancelled());
+        assertEquals(2, bulkhead.availablePermits());
+    }
+
+    @Test
+    void interruptsHangingLegacyPlugin() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        ValidatorInterface hanging = new ValidatorInterface() {
+            @Override
+            public RelatedIdentifierType supportedType() {
+                return RelatedIdentifierType.ISBN;
+            }
+
+            @Override
+            public boolean isValid(String input, RelatedIdentifierType type) {
+                started.countDown();
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return true;
+            }
+        };
+        PluginBulkhead bulkhead = new PluginBulkhead("HangingValidator", 1, Duration.ofMillis(100));
+        PluginInfo plugin = new PluginInfo(hanging, RelatedIdentifierType.ISBN, "hanging.jar", PluginInfo.Discovery.SCAN, Duration.ZERO);
+        PluginRegistry.Generation generation = new PluginRegistry.Generation(Map.of(), List.of(), List.of(plugin));
+        ValidatorInterface tracked = new PluginRegistry.TrackedValidator(hanging, RelatedIdentifierType.ISBN, generation, bulkhead);
+
+        ValidationWarning warning = assertThrows(ValidationWarning.class, () -> ValidationFutures.await(tracked.validateAsync("9783104996790")));
+        assertTrue(warning.getMessage().contains("time budget"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        awaitPermits(bulkhead, 1);
+    }
+
+    @Test
+    void keepsPermitAndGenerationUntilPluginReturns() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        ValidatorInterface stubborn = new ValidatorInterface() {
+            @Override
+            public RelatedIdentifierType supportedType() {
+                return RelatedIdentifierType.ISBN;
+            }
+
+            @Override
+            public boolean isValid(String input, RelatedIdentifierType type) {
+                started.countDown();
+                boolean waiting = true;
+                while (waiting) {
+                    try {
+                        waiting = !finish.await(60, TimeUnit.SECONDS);
+                    } catch (InterruptedException ignored) {
+                        // this plugin ignores interrupts
+                    }
+                }
+                return true;
+            }
+        };
+        PluginBulkhead bulkhead = new PluginBulkhead("StubbornValidator", 1, Duration.ofMillis(100));
+        PluginInfo plugin = new PluginInfo(stubborn, RelatedIdentifierType.ISBN, "stubborn.jar", PluginInfo.Discovery.SCAN, Duration.ZERO);
+        PluginRegistry.Generation generation = new PluginRegistry.Generation(Map.of(), List.of(), List.of(plugin));
+        ValidatorInterface tracked = new PluginRegistry.TrackedValidator(stubborn, RelatedIdentifierType.ISBN, generation, bulkhead);
+
+        ValidationResult result = tracked.validate("9783104996790", RelatedIdentifierType.ISBN).join();
+        assertEquals("Plugin StubbornValidator exceeded its time budget of 100 ms", result.getMessage());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // the plugin still runs, so it keeps its permit and its class loaders
+        generation.retire();
+        assertEquals(0, bulkhead.availablePermits());
+        assertFalse(generation.isClosed());
+        assertTrue(tracked.validate("9783104996790", RelatedIdentifierType.ISBN).join().getMessage().contains("busy"));
+
+        finish.countDown();
+        awaitPermits(bulkhead, 1);
+        await(generation::isClosed);
+    }
+
+    @Test
+    void settings() {
+        System.setProperty("validator.plugins.ARK.timeout", "PT0.5S");
+        System.setProperty("validator.plugins.ISSN.timeout", "2s");
+        try {
+            assertEquals(Duration.ofMillis(500), PluginBulkhead.of("ArkValidator", "ARK").getTimeout());
+            assertEquals(Duration.ofSeconds(2), PluginBulkhead.of("IssnValidator", "ISSN").getTimeout());
+            assertEquals(Duration.ofSeconds(10), PluginBulkhead.of("IsbnValidator", "ISBN").getTimeout());
+        } finally {
+            System.clearProperty("validator.plugins.ARK.timeout");
+            System.clearProperty("validator.plugins.ISSN.timeout");
+        }
+    }
+
+    private static void awaitPermits(PluginBulkhead bulkhead, int permits) throws InterruptedException {
+        await(() -> bulkhead.availablePermits() == permits);
+        assertEquals(permits, bulkhead.availablePermits());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) Thread.sleep(10);
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -15,18 +15,33 @@
 
 package edu.kit.datamanager.datacite.validate.plugin;
 
+import edu.kit.datamanager.datacite.validate.GenericValidator;
 import edu.kit.datamanager.datacite.validate.ValidatorInterface;
 import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
 import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+import edu.kit.datamanager.datacite.validate.impl.URLValidator;
 import edu.kit.datamanager.datacite.validate.plugin.PluginLoader;
 import org.datacite.schema.kernel_4.RelatedIdentifierType;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
 
-import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assertions.*;
 
 class PluginLoaderTest {
 
@@ -91,4 +106,85 @@ class PluginLoaderTest {
         } catch (ValidationWarning validationWarning) {
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void servicesIndex(@TempDir Path directory) throws IOException {
+        File jar = pluginJar(directory, Map.of(PluginLoader.SERVICES_INDEX, ("# validators\nmissing.Validator\n" + ISBN_VALIDATOR + " # ISBN\n").getBytes(StandardCharsets.UTF_8)), null);
+        List<PluginInfo> plugins = PluginLoader.discover(new File[]{jar}, PluginLoaderTest::classLoader);
+        assertEquals(1, plugins.size());
+        assertEquals(PluginInfo.Discovery.SERVICES, plugins.get(0).getDiscovery());
+        assertEquals(RelatedIdentifierType.ISBN, plugins.get(0).getType());
+        assertEquals(ISBN_VALIDATOR, plugins.get(0).getClassName());
+        assertEquals(jar.getName(), plugins.get(0).getJar());
+        assertNotNull(plugins.get(0).getLoadTime());
+    }
+
+    @Test
+    void manifestIndex(@TempDir Path directory) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue(PluginLoader.MANIFEST_INDEX, ISBN_VALIDATOR + ", missing.Validator");
+        File jar = pluginJar(directory, Map.of(), manifest);
+        List<PluginInfo> plugins = PluginLoader.discover(new File[]{jar}, PluginLoaderTest::classLoader);
+        assertEquals(1, plugins.size());
+        assertEquals(PluginInfo.Discovery.MANIFEST, plugins.get(0).getDiscovery());
+    }
+
+    @Test
+    void scanSkipsOtherClasses(@TempDir Path directory) throws IOException {
+        File jar = pluginJar(directory, Map.of("broken/Broken.class", new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}), null);
+        Map<RelatedIdentifierType, ValidatorInterface> validators = PluginLoader.loadPlugins(new File[]{jar}, classLoader(jar));
+        assertEquals(Set.of(RelatedIdentifierType.ISBN), validators.keySet());
+        List<PluginInfo> plugins = PluginLoader.discover(new File[]{jar}, PluginLoaderTest::classLoader);
+        assertEquals(PluginInfo.Discovery.SCAN, plugins.get(0).getDiscovery());
+    }
+
+    @Test
+    void pluggableClass() throws IOException {
+        try (InputStream in = PluginLoaderTest.class.getResourceAsStream("/" + GenericValidator.class.getName().replace('.', '/') + ".class")) {
+            assertFalse(PluginLoader.isPluggableClass(in));
+        }
+        try (InputStream in = PluginLoaderTest.class.getResourceAsStream("/" + URLValidator.class.getName().replace('.', '/') + ".class")) {
+            assertTrue(PluginLoader.isPluggableClass(in));
+        }
+        try (InputStream in = PluginLoaderTest.class.getResourceAsStream("/" + ValidatorInterface.class.getName().replace('.', '/') + ".class")) {
+            assertFalse(PluginLoader.isPluggableClass(in));
+        }
+    }
+
+    @Test
+    void unreadableJAR(@TempDir Path directory) throws IOException {
+        File jar = Files.write(directory.resolve("broken.jar"), new byte[]{1, 2, 3}).toFile();
+        assertThrows(IOException.class, () -> PluginLoader.discover(new File[]{jar}, PluginLoaderTest::classLoader));
+    }
+
+    private static final String ISBN_VALIDATOR = "edu.kit.datamanager.datacite.validate.ISBN_validator.ISBNValidator";
+
+    /**
+     * Creates a JAR file with the ISBN validator of ./plugins and some additional entries.
+     */
+    private static File pluginJar(Path directory, Map<String, byte[]> entries, Manifest manifest) throws IOException {
+        Path jar = directory.resolve("plugin.jar");
+        String classFile = ISBN_VALIDATOR.replace('.', '/') + ".class";
+        try (JarFile source = new JarFile("plugins/ISBN_validator-1.0-SNAPSHOT.jar");
+             JarOutputStream out = manifest == null ? new JarOutputStream(Files.newOutputStream(jar)) : new JarOutputStream(Files.newOutputStream(jar), manifest)) {
+            out.putNextEntry(new JarEntry(classFile));
+            try (InputStream in = source.getInputStream(source.getJarEntry(classFile))) {
+                in.transferTo(out);
+            }
+            for (var entry : entries.entrySet()) {
+                out.putNextEntry(new JarEntry(entry.getKey()));
+                out.write(entry.getValue());
+            }
+        }
+        return jar.toFile();
+    }
+
+    private static ClassLoader classLoader(File jar) {
+        try {
+            return PluginLoader.classLoader(jar);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.plugin;
+
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import edu.kit.datamanager.datacite.validate.ValidatorInterface;
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+import org.datacite.schema.kernel_4.RelatedIdentifierType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PluginRegistryTest {
+
+    private static final Path PLUGIN = Path.of("plugins", "ISBN_validator-1.0-SNAPSHOT.jar");
+    private static final String PLUGIN_CLASS = "edu/kit/datamanager/datacite/validate/ISBN_validator/ISBNValidator.class";
+
+    @TempDir
+    Path directory;
+
+    private final List<Map<RelatedIdentifierType, ValidatorInterface>> published = new ArrayList<>();
+
+    private PluginRegistry registry() {
+        return new PluginRegistry(directory.toFile(), Duration.ofMillis(100), published::add);
+    }
+
+    private Path copyPlugin() throws IOException {
+        return Files.copy(PLUGIN, directory.resolve(PLUGIN.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static PluginInfo plugin(ValidatorInterface validator) {
+        return new PluginInfo(validator, validator.supportedType(), "test.jar", PluginInfo.Discovery.SCAN, Duration.ZERO);
+    }
+
+    private static boolean isClosed(ClassLoader loader) {
+        return ((URLClassLoader) loader).findResource(PLUGIN_CLASS) == null;
+    }
+
+    @Test
+    void loadsNewPlugins() throws IOException, ValidationError, ValidationWarning {
+        PluginRegistry registry = registry();
+        assertFalse(registry.reload());
+        assertTrue(registry.getPlugins().isEmpty());
+        assertTrue(published.isEmpty());
+
+        copyPlugin();
+        assertTrue(registry.reload());
+        assertEquals(1, published.size());
+        ValidatorInterface validator = registry.getPlugins().get(RelatedIdentifierType.ISBN);
+        assertNotNull(validator);
+        assertEquals(RelatedIdentifierType.ISBN, validator.supportedType());
+        assertTrue(validator.isValid("9783104996790"));
+        assertEquals("ISBNValidator", PluginRegistry.unwrap(validator).getClass().getSimpleName());
+        assertThrows(UnsupportedOperationException.class, () -> registry.getPlugins().put(RelatedIdentifierType.DOI, validator));
+    }
+
+    @Test
+    void unchangedDirectoryIsNotReloaded() throws IOException {
+        copyPlugin();
+        PluginRegistry registry = registry();
+        assertTrue(registry.reload());
+        assertFalse(registry.reload());
+        assertEquals(1, published.size());
+    }
+
+    @Test
+    void changedPluginGetsFreshClassLoader() throws IOException {
+        Path jar = copyPlugin();
+        PluginRegistry registry = registry();
+        registry.reload();
+        ValidatorInterface former = PluginRegistry.unwrap(registry.getPlugins().get(RelatedIdentifierType.ISBN));
+
+        assertTrue(jar.toFile().setLastModified(jar.toFile().lastModified() + 2000));
+        assertTrue(registry.reload());
+        ValidatorInterface loaded = PluginRegistry.unwrap(registry.getPlugins().get(RelatedIdentifierType.ISBN));
+        assertNotSame(former.getClass(), loaded.getClass());
+        assertTrue(isClosed(former.getClass().getClassLoader()));
+        assertFalse(isClosed(loaded.getClass().getClassLoader()));
+    }
+
+    @Test
+    void everyPluginHasItsOwnClassLoader() throws IOException {
+        copyPlugin();
+        Files.copy(PLUGIN, directory.resolve("copy.jar"));
+        PluginRegistry registry = registry();
+        registry.reload();
+        List<PluginInfo> plugins = registry.getPluginInfos();
+        assertEquals(2, plugins.size());
+        Class<?> first = plugins.get(0).getValidator().getClass();
+        Class<?> second = plugins.get(1).getValidator().getClass();
+        assertEquals(first.getName(), second.getName());
+        assertNotSame(first.getClassLoader(), second.getClassLoader());
+    }
+
+    @Test
+    void removedPluginIsUnloaded() throws IOException {
+        Path jar = copyPlugin();
+        PluginRegistry registry = registry();
+        registry.reload();
+        ClassLoader loader = PluginRegistry.unwrap(registry.getPlugins().get(RelatedIdentifierType.ISBN)).getClass().getClassLoader();
+
+        Files.delete(jar);
+        assertTrue(registry.reload());
+        assertTrue(registry.getPlugins().isEmpty());
+        assertTrue(published.get(1).isEmpty());
+        assertTrue(isClosed(loader));
+    }
+
+    @Test
+    void classLoaderIsClosedAfterValidationsDrained() throws IOException {
+        copyPlugin();
+        File[] jars = directory.toFile().listFiles(new JARFileFilter());
+        URLClassLoader loader = PluginLoader.classLoader(jars[0]);
+        CompletableFuture<ValidationResult> pending = new CompletableFuture<>();
+        ValidatorInterface validator = new ValidatorInterface() {
+            @Override
+            public RelatedIdentifierType supportedType() {
+                return RelatedIdentifierType.ISBN;
+            }
+
+            @Override
+            public boolean isValid(String input, RelatedIdentifierType type) {
+                return true;
+            }
+
+            @Override
+            public CompletableFuture<ValidationResult> validate(String input, RelatedIdentifierType type) {
+                return pending;
+            }
+        };
+        PluginRegistry.Generation generation = new PluginRegistry.Generation(Map.of(), List.of(loader), List.of(plugin(validator)));
+        CompletableFuture<ValidationResult> validation = generation.plugins.get(RelatedIdentifierType.ISBN).validate("9783104996790");
+        assertFalse(validation.isDone());
+
+        generation.retire();
+        assertFalse(generation.isClosed());
+        assertFalse(isClosed(loader));
+
+        pending.complete(ValidationResult.valid());
+        assertTrue(validation.join().isValid());
+        assertTrue(generation.isClosed());
+        assertTrue(isClosed(loader));
+    }
+
+    @Test
+    void acquirePinsGenerationUntilReleased() {
+        AtomicInteger calls = new AtomicInteger();
+        ValidatorInterface validator = new ValidatorInterface() {
+            @Override
+            public RelatedIdentifierType supportedType() {
+                return RelatedIdentifierType.ISBN;
+            }
+
+            @Override
+            public boolean isValid(String input, RelatedIdentifierType type) {
+                calls.incrementAndGet();
+                return true;
+            }
+        };
+        URLClassLoader loader = new URLClassLoader(new URL[0]);
+        PluginRegistry.Generation generation = new PluginRegistry.Generation(Map.of(), List.of(loader), List.of(plugin(validator)));
+        ValidatorInterface tracked = generation.plugins.get(RelatedIdentifierType.ISBN);
+        Runnable release = PluginRegistry.acquire(tracked);
+        assertNotNull(release);
+
+        generation.retire();
+        assertFalse(generation.isClosed(), "a chosen validator keeps its generation open before it is called");
+        assertTrue(tracked.validate("9783104996790").join().isValid());
+        assertFalse(generation.isClosed());
+        release.run();
+        assertTrue(generation.isClosed());
+        release.run();
+        assertTrue(generation.isClosed());
+
+        assertNull(PluginRegistry.acquire(tracked), "a closed generation can't be pinned again");
+        ValidationResult replaced = tracked.validate("9783104996790").join();
+        assertEquals(ValidationResult.Status.WARNING, replaced.getStatus());
+        assertEquals(1, calls.get(), "the plugin is not called after its class loaders are closed");
+        assertNotNull(PluginRegistry.acquire(validator));
+    }
+
+    @Test
+    void failingValidatorReleasesGeneration() {
+        ValidatorInterface validator = new ValidatorInterface() {
+            @Override
+            public RelatedIdentifierType supportedType() {
+                return RelatedIdentifierType.ISBN;
+            }
+
+            @Override
+            public boolean isValid(String input, RelatedIdentifierType type) {
+                throw new IllegalStateException("broken plugin");
+            }
+
+            @Override
+            public CompletableFuture<Boolean> validateAsync(String input, RelatedIdentifierType type) {
+                throw new IllegalStateException("broken plugin");
+            }
+        };
+        URLClassLoader loader = new URLClassLoader(new URL[0]);
+        PluginRegistry.Generation generation = new PluginRegistry.Generation(Map.of(), List.of(loader), List.of(plugin(validator)));
+        ValidatorInterface tracked = generation.plugins.get(RelatedIdentifierType.ISBN);
+        assertThrows(IllegalStateException.class, () -> tracked.isValid("x"));
+        assertThrows(IllegalStateException.class, () -> tracked.validateAsync("x"));
+        generation.retire();
+        assertTrue(generation.isClosed());
+    }
+
+    @Test
+    void watchReloadsChangedDirectory() throws IOException, InterruptedException {
+        PluginRegistry registry = registry();
+        try {
+            assertTrue(registry.watch());
+            copyPlugin();
+            long deadline = System.currentTimeMillis() + 10000;
+            while (registry.getPlugins().isEmpty() && System.currentTimeMillis() < deadline) Thread.sleep(50);
+            assertTrue(registry.getPlugins().containsKey(RelatedIdentifierType.ISBN));
+        } finally {
+            registry.close();
+        }
+    }
+
+    @Test
+    void startsWarming() throws IOException {
+        copyPlugin();
+        PluginRegistry registry = registry();
+        try {
+            assertTrue(registry.isWarming());
+            registry.start(false).join();
+            assertFalse(registry.isWarming());
+            assertTrue(registry.getPlugins().containsKey(RelatedIdentifierType.ISBN));
+            PluginInfo plugin = registry.getPluginInfos().get(0);
+            assertEquals(RelatedIdentifierType.ISBN, plugin.getType());
+            assertEquals(PluginInfo.Discovery.SCAN, plugin.getDiscovery());
+        } finally {
+            registry.close();
+        }
+    }
+
+    @Test
+    void missingDirectoryIsNotWatched() {
+        PluginRegistry registry = new PluginRegistry(directory.resolve("missing").toFile(), Duration.ofMillis(100), published::add);
+        assertFalse(registry.watch());
+        assertFalse(registry.reload());
+        assertTrue(registry.getPlugins().isEmpty());
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.rest;
+
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationError;
+import edu.kit.datamanager.datacite.validate.exceptions.ValidationWarning;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchResultTest {
+
+    @Test
+    void valid() {
+        BatchResult result = BatchResult.of("DOI", "10.1038/nphys1170", null);
+        assertTrue(result.isValid());
+        assertEquals("VALID", result.getStatus());
+        assertEquals("Valid Input!", result.getMessage());
+    }
+
+    @Test
+    void error() {
+        BatchResult result = BatchResult.of("DOI", "test", new CompletionException(new ValidationError("Invalid input")));
+        assertFalse(result.isValid());
+        assertEquals("ERROR", result.getStatus());
+        assertEquals("Invalid input", result.getMessage());
+    }
+
+    @Test
+    void warning() {
+        BatchResult result = BatchResult.of("DOI", "10.1038/test", new ValidationWarning("Prefix valid, but suffix not"));
+        assertFalse(result.isValid());
+        assertEquals("WARNING", result.getStatus());
+        assertEquals("DOI", result.getType());
+        assertEquals("10.1038/test", result.getInput());
+    }
+
+    @Test
+    void fromResult() {
+        BatchResult result = BatchResult.from("DOI", "10.1038/test", ValidationResult.warning(ValidationResult.Stage.RESOLVE, "Prefix valid, but suffix not"));
+        assertFalse(result.isValid());
+        assertEquals("WARNING", result.getStatus());
+        assertEquals("Prefix valid, but suffix not", result.getMessage());
+        assertTrue(BatchResult.from("DOI", "10.1038/nphys1170", ValidationResult.valid()).isValid());
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.rest;
+
+import edu.kit.datamanager.datacite.validate.GenericValidator;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PluginHealthIndicatorTest {
+
+    @Test
+    void readyAfterWarmup() throws InterruptedException {
+        GenericValidator validator = GenericValidator.soleInstance();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (validator.isWarmingUp() && System.currentTimeMillis() < deadline) Thread.sleep(20);
+        Health health = new PluginHealthIndicator().health();
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals("ready", health.getDetails().get("state"));
+        assertTrue(((Map<?, ?>) health.getDetails().get("plugins")).containsKey("ISBN"));
+    }
+}
@@ -16,6 +16,8 @@
 package edu.kit.datamanager.datacite.validate.rest;
 
 import edu.kit.datamanager.datacite.validate.ValidateApplication;
+import edu.kit.datamanager.datacite.validate.ValidationLevel;
+import edu.kit.datamanager.datacite.validate.ValidationRequest;
 import org.junit.Before;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.MethodOrderer;
@@ -23,10 +25,15 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
 import org.junit.runner.RunWith;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.util.List;
+
 @RunWith(SpringRunner.class)
 @TestMethodOrder(MethodOrderer.Alphanumeric.class)
 //@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.DEFINED_PORT)
@@ -51,6 +58,19 @@ class RESTAPIControllerTest {
         Assertions.assertEquals(productEntity.getBody(), output);
     }
 
+    @Test
+    void prometheus() {
+        TestRestTemplate restTemplate = new TestRestTemplate();
+        restTemplate.getForEntity("http://localhost:8080/api/validate?type=URL&input=test", String.class);
+
+        ResponseEntity<String> productEntity
+                = restTemplate.getForEntity("http://localhost:8080/actuator/prometheus", String.class);
+        Assertions.assertEquals(productEntity.getStatusCode(), HttpStatus.OK);
+        Assertions.assertNotNull(productEntity.getBody());
+        Assertions.assertTrue(productEntity.getBody().contains("validator_validation_seconds_count{level=\"resolve\",outcome=\"error\",type=\"URL\",validator=\"URLValidator\""));
+        Assertions.assertTrue(productEntity.getBody().contains("validator_cache_hits_total{cache=\"url\""));
+    }
+
     @Test
     void validatorsAvailable() {
         TestRestTemplate restTemplate = new TestRestTemplate();
@@ -101,6 +121,30 @@ class RESTAPIControllerTest {
         Assertions.assertEquals(productEntity.getBody(), output);
     }
 
+    @Test
+    void detect() {
+        TestRestTemplate restTemplate = new TestRestTemplate();
+        String url = "http://localhost:8080/api/detect?input=10.1038/nphys1170";
+        String output = "[\"DOI\",\"HANDLE\"]";
+
+        ResponseEntity<String> productEntity
+                = restTemplate.getForEntity(url, String.class);
+        Assertions.assertEquals(productEntity.getStatusCode(), HttpStatus.OK);
+        Assertions.assertEquals(productEntity.getBody(), output);
+    }
+
+    @Test
+    void autoTypeUnknownInput() {
+        TestRestTemplate restTemplate = new TestRestTemplate();
+        String url = "http://localhost:8080/api/validate?type=auto&input=test";
+        String output = "Unknown type of input";
+
+        ResponseEntity<String> productEntity
+                = restTemplate.getForEntity(url, String.class);
+        Assertions.assertEquals(productEntity.getStatusCode(), HttpStatus.BAD_REQUEST);
+        Assertions.assertEquals(productEntity.getBody(), output);
+    }
+
     @Test
     void noParams() {
         TestRestTemplate restTemplate = new TestRestTemplate();
@@ -133,4 +177,105 @@ class RESTAPIControllerTest {
         Assertions.assertEquals(productEntity.getStatusCode(), HttpStatus.BAD_REQUEST);
         Assertions.assertNotNull(productEntity.getBody());
     }
-}
\ No newline at end of file
+
+    @Test
+    void batch() {
+        TestRestTemplate restTemplate = new TestRestTemplate();
+        String url = "http://localhost:8080/api/validate/batch";
+        List<ValidationRequest> requests = List.of(
+                new ValidationRequest("DOI", "test"),
+                new ValidationRequest("test", "test"),
+                new ValidationRequest("DOI", "test"));
+
+        ResponseEntity<BatchResult[]> productEntity
+                = restTemplate.postForEntity(url, requests, BatchResult[].class);
+        Assertions.assertEquals(productEntity.getStatusCode(), HttpStatus.OK);
+        Assertions.assertNotNull(productEntity.getBody());
+        Assertions.assertEquals(3, productEntity.getBody().length);
+        Assertions.assertEquals("Invalid input", productEntity.getBody()[0].getMessage());
+        Assertions.assertEquals("Invalid Type!", productEntity.getBody()[1].getMessage());
+        Assertions.assertEquals("ERROR", productEntity.getBody()[2].getStatus());
+    }
+
+    @Test
+    void syntaxLevel() {
+        TestRestTemplate restTemplate = new TestRestTemplate();
+        ResponseEntity<String> syntax = restTemplate.getForEntity("http://localhost:8080/api/validate?type=DOI&input=10.1038/nphys1170&level=syntax", String.class);
+        Assertions.assertEquals(HttpStatus.OK, syntax.getStatusCode());
+        Assertions.assertEquals("SYNTAX", syntax.getHeaders().getFirst(RESTAPIController.VALIDATION_LEVEL_HEADER));
+
+        ResponseEntity<String> auto = restTemplate.getForEntity("http://localhost:8080/api/validate?type=auto&input=10.1038/nphys1170&level=SYNTAX", String.class);
+        Assertions.assertEquals(HttpStatus.OK, auto.getStatusCode());
+        Assertions.assertEquals("DOI", auto.getHeaders().getFirst(RESTAPIController.IDENTIFIER_TYPE_HEADER));
+
+        ResponseEntity<String> unknown = restTemplate.getForEntity("http://localhost:8080/api/validate?type=DOI&input=10.1038/nphys1170&level=deep", String.class);
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, unknown.getStatusCode());
+
+        List<ValidationRequest> requests = List.of(
+                new ValidationRequest("URL", "http://127.0.0.1:1/never-requested"),
+                new ValidationRequest("DOI", "test", ValidationLevel.SYNTAX));
+        ResponseEntity<BatchResult[]> batch = restTemplate.postForEntity("http://localhost:8080/api/validate/batch?level=syntax", requests, BatchResult[].class);
+        Assertions.assertEquals(HttpStatus.OK, batch.getStatusCode());
+        Assertions.assertEquals("SYNTAX", batch.getBody()[0].getLevel());
+        Assertions.assertEquals("ERROR", batch.getBody()[1].getStatus());
+    }
+
+    @Test
+    void dataCite() {
+        TestRestTemplate restTemplate = new TestRestTemplate();
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<resource xmlns=\"http://datacite.org/schema/kernel-4\"><identifier identifierType=\"DOI\">10.5445/IR/1</identifier>" +
+                "<relatedIdentifiers><relatedIdentifier relatedIdentifierType=\"URL\" relationType=\"Cites\">http://127.0.0.1:1/never-requested</relatedIdentifier>" +
+                "<relatedIdentifier relatedIdentifierType=\"Unknown\" relationType=\"Cites\">test</relatedIdentifier></relatedIdentifiers></resource>\n" +
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<resource xmlns=\"http://datacite.org/schema/kernel-4\"><identifier identifierType=\"DOI\">10.5445/IR/2</identifier></resource>";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_XML);
+
+        ResponseEntity<String> response = restTemplate.postForEntity("http://localhost:8080/api/validate/datacite?level=syntax", new HttpEntity<>(xml, headers), String.class);
+        Assertions.assertEquals(HttpStatus.OK, response.getStatusCode());
+        Assertions.assertNotNull(response.getBody());
+        String[] lines = response.getBody().split("\n");
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertTrue(lines[0].contains("\"identifier\":\"10.5445/IR/1\""), lines[0]);
+        Assertions.assertTrue(lines[0].contains("\"status\":\"VALID\",\"level\":\"SYNTAX\""), lines[0]);
+        Assertions.assertTrue(lines[0].contains("\"valid\":false"), lines[0]);
+        Assertions.assertTrue(lines[1].contains("\"identifier\":\"10.5445/IR/2\""), lines[1]);
+
+        ResponseEntity<String> malformed = restTemplate.postForEntity("http://localhost:8080/api/validate/datacite", new HttpEntity<>("<resource>", headers), String.class);
+        Assertions.assertTrue(malformed.getBody().contains("\"error\""), malformed.getBody());
+    }
+
+    @Test
+    void batchWithIncompleteItems() {
+        TestRestTemplate restTemplate = new TestRestTemplate();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        String body = "[null, {\"type\": \"DOI\"}, {\"type\": \"URL\", \"input\": \"test\"}]";
+
+        ResponseEntity<BatchResult[]> batch = restTemplate.postForEntity("http://localhost:8080/api/validate/batch?level=syntax",
+                new HttpEntity<>(body, headers), BatchResult[].class);
+        Assertions.assertEquals(HttpStatus.OK, batch.getStatusCode());
+        Assertions.assertNotNull(batch.getBody());
+        Assertions.assertEquals(3, batch.getBody().length);
+        Assertions.assertEquals("ERROR", batch.getBody()[0].getStatus());
+        Assertions.assertEquals(RESTAPIController.INCOMPLETE_REQUEST, batch.getBody()[0].getMessage());
+        Assertions.assertEquals("DOI", batch.getBody()[1].getType());
+        Assertions.assertEquals(RESTAPIController.INCOMPLETE_REQUEST, batch.getBody()[1].getMessage());
+        Assertions.assertEquals("test", batch.getBody()[2].getInput());
+        Assertions.assertEquals("ERROR", batch.getBody()[2].getStatus());
+    }
+
+    @Test
+    void changes() {
+        TestRestTemplate restTemplate = new TestRestTemplate();
+
+        ResponseEntity<String> changes = restTemplate.getForEntity("http://localhost:8080/api/changes?since=2021-11-01T00:00:00Z", String.class);
+        Assertions.assertEquals(HttpStatus.OK, changes.getStatusCode());
+        Assertions.assertNotNull(changes.getBody());
+        Assertions.assertTrue(changes.getBody().startsWith("["), changes.getBody());
+
+        ResponseEntity<String> invalid = restTemplate.getForEntity("http://localhost:8080/api/changes?since=yesterday", String.class);
+        Assertions.assertEquals(HttpStatus.BAD_REQUEST, invalid.getStatusCode());
+    }
+}
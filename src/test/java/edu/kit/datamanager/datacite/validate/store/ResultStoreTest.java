@@ -0,0 +1,327 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.store;
+
+import edu.kit.datamanager.datacite.validate.GenericValidator;
+import edu.kit.datamanager.datacite.validate.ValidationLevel;
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+// the store writes in its own transactions
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ResultStoreTest {
+
+    private static final Instant NOW = Instant.parse("2021-11-01T12:00:00Z");
+
+    @Autowired
+    StoredResultRepository repository;
+
+    @Autowired
+    StatusTransitionRepository transitions;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void clear() {
+        repository.deleteAll();
+        transitions.deleteAll();
+    }
+
+    private ResultStore store(Instant now, int batchSize, int maxPending) {
+        return new ResultStore(repository, transitions, new TransactionTemplate(transactionManager), 1000, Duration.ofDays(7), Duration.ofDays(1),
+                batchSize, Duration.ofHours(1), maxPending, Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    @Test
+    void writeBehindAndReload() {
+        try (ResultStore store = store(NOW, 500, 1000)) {
+            store.put("DOI", "10.1038/nphys1170", ValidationResult.valid());
+            store.put("Handle", "21.T11999/unknown", ValidationResult.error(ValidationResult.Stage.RESOLVE, "Handle not found"));
+            store.put("URL", "https://busy.example.org", ValidationResult.warning(ValidationResult.Stage.RESOLVE, "Server busy"));
+            store.put("URL", "test", ValidationResult.error(ValidationResult.Stage.SYNTAX, "Invalid input"));
+            store.put("DOI", "10.1038/syntax", ValidationResult.valid(ValidationLevel.SYNTAX));
+            assertEquals(2, store.getPending(), "only results of remote checks are stored");
+            assertEquals(0, repository.count(), "nothing is written before the flush");
+            assertSame(ValidationResult.valid(), store.get("DOI", "10.1038/nphys1170"), "the result is in memory at once");
+            assertEquals(2, store.flush());
+            assertEquals(0, store.getPending());
+            assertEquals(2, store.getWritten());
+        }
+        assertEquals(2, repository.count());
+
+        try (ResultStore restarted = store(NOW.plusSeconds(60), 500, 1000)) {
+            assertSame(ValidationResult.valid(), restarted.get("DOI", "10.1038/nphys1170"));
+            ValidationResult error = restarted.get("Handle", "21.T11999/unknown");
+            assertEquals(ValidationResult.Status.ERROR, error.getStatus());
+            assertEquals(ValidationResult.Stage.RESOLVE, error.getStage());
+            assertEquals("Handle not found", error.getMessage());
+            assertNull(restarted.get("URL", "https://busy.example.org"));
+            assertNull(restarted.get("URL", "test"));
+            assertEquals(2, restarted.getLoaded());
+            restarted.get("DOI", "10.1038/nphys1170");
+            assertEquals(2, restarted.getLoaded(), "the second lookup is answered from memory");
+        }
+    }
+
+    @Test
+    void normalisedKeys() {
+        try (ResultStore store = store(NOW, 500, 1000)) {
+            store.put("DOI", " 10.1038/NPHYS1170 ", ValidationResult.valid());
+            store.put("URL", "https://example.org/A", ValidationResult.valid());
+            store.put("DOI", "https://doi.org/10.1038/NPHYS1170", ValidationResult.valid());
+            store.put("Handle", "21.T11999/ABC", ValidationResult.valid());
+            store.flush();
+        }
+        try (ResultStore restarted = store(NOW, 500, 1000)) {
+            assertNotNull(restarted.get("DOI", "10.1038/nphys1170"));
+            assertNull(restarted.get("Handle", "10.1038/nphys1170"), "the type is part of the key");
+            assertNotNull(restarted.get("URL", "https://example.org/A"));
+            assertNull(restarted.get("URL", "https://example.org/a"), "URLs are case-sensitive");
+            assertNotNull(restarted.get("DOI", "https://doi.org/10.1038/NPHYS1170"));
+            assertNull(restarted.get("DOI", "https://doi.org/10.1038/nphys1170"), "only DOIs without resolver are lower-cased");
+            assertNull(restarted.get("Handle", "21.t11999/abc"), "handles are not lower-cased");
+        }
+        StoredResult stored = repository.findById(ResultStore.key("DOI", "10.1038/NPHYS1170")).orElseThrow();
+        assertEquals("10.1038/nphys1170", stored.getIdentifier());
+        assertEquals(" 10.1038/NPHYS1170 ", stored.getInput(), "the input is kept as it was entered");
+        assertEquals("DOI", stored.getType());
+        assertEquals(NOW, stored.getLastChecked());
+    }
+
+    @Test
+    void expiredResultsAreIgnored() {
+        try (ResultStore store = store(NOW, 500, 1000)) {
+            store.put("DOI", "10.1038/valid", ValidationResult.valid());
+            store.put("DOI", "10.1038/invalid", ValidationResult.error(ValidationResult.Stage.RESOLVE, "Not found"));
+            store.flush();
+        }
+        try (ResultStore later = store(NOW.plus(Duration.ofDays(2)), 500, 1000)) {
+            assertNotNull(later.get("DOI", "10.1038/valid"));
+            assertNull(later.get("DOI", "10.1038/invalid"), "negative results expire earlier");
+        }
+        try (ResultStore muchLater = store(NOW.plus(Duration.ofDays(8)), 500, 1000)) {
+            assertNull(muchLater.get("DOI", "10.1038/valid"));
+        }
+    }
+
+    @Test
+    void updatesExistingEntries() {
+        try (ResultStore store = store(NOW, 500, 1000)) {
+            store.put("URL", "https://example.org", ValidationResult.error(ValidationResult.Stage.RESOLVE, "Not found"));
+            store.flush();
+        }
+        try (ResultStore store = store(NOW.plusSeconds(3600), 500, 1000)) {
+            store.put("URL", "https://example.org", ValidationResult.valid());
+            store.put("URL", "https://example.org", ValidationResult.valid());
+            assertEquals(1, store.getPending(), "repeated writes of a key are coalesced");
+            store.flush();
+        }
+        assertEquals(1, repository.count());
+        StoredResult stored = repository.findById(ResultStore.key("URL", "https://example.org")).orElseThrow();
+        assertEquals(ValidationResult.Status.VALID, stored.getStatus());
+        assertEquals(NOW.plusSeconds(3600), stored.getLastChecked());
+    }
+
+    @Test
+    void batches() {
+        ResultStore store = store(NOW, 100, 100000);
+        for (int i = 0; i < 1050; i++) store.put("Handle", "21.T11999/" + i, ValidationResult.valid());
+        store.close();
+        assertEquals(1050, store.getWritten());
+        assertEquals(0, store.getFailed());
+        assertEquals(1050, repository.count());
+    }
+
+    @Test
+    void pendingLimit() {
+        try (ResultStore store = store(NOW, 500, 10)) {
+            for (int i = 0; i < 15; i++) store.put("Handle", "21.T11999/" + i, ValidationResult.valid());
+            assertEquals(10, store.getPending());
+            assertEquals(5, store.getDropped());
+            assertNotNull(store.get("Handle", "21.T11999/14"), "dropped results are still kept in memory");
+        }
+        assertEquals(10, repository.count());
+    }
+
+    @Test
+    void recordsTransitions() {
+        try (ResultStore store = store(NOW, 500, 1000)) {
+            store.put("URL", "https://example.org/record", ValidationResult.valid());
+            store.put("URL", "https://example.org/stable", ValidationResult.valid());
+            store.flush();
+        }
+        try (ResultStore store = store(NOW.plusSeconds(3600), 500, 1000)) {
+            store.put("URL", "https://example.org/record", ValidationResult.error(ValidationResult.Stage.RESOLVE, "Not found"));
+            store.put("URL", "https://example.org/stable", ValidationResult.valid());
+            store.flush();
+            assertEquals(1, store.getChanged(), "only a different status is a change");
+        }
+        try (ResultStore store = store(NOW.plusSeconds(7200), 500, 1000)) {
+            store.put("URL", "https://example.org/record", ValidationResult.valid());
+            store.flush();
+            List<StatusTransition> changes = store.changesSince(NOW, 10);
+            assertEquals(2, changes.size());
+            assertEquals(ValidationResult.Status.VALID, changes.get(0).getPreviousStatus());
+            assertEquals(ValidationResult.Status.ERROR, changes.get(0).getStatus());
+            assertEquals("Not found", changes.get(0).getMessage());
+            assertEquals(NOW.plusSeconds(3600), changes.get(0).getChangedAt());
+            assertEquals(ValidationResult.Status.VALID, changes.get(1).getStatus());
+            assertEquals("https://example.org/record", changes.get(1).getIdentifier());
+            assertEquals(1, store.changesSince(NOW.plusSeconds(3601), 10).size());
+            assertEquals(1, store.changesSince(NOW, 1).size());
+        }
+        assertEquals(2, repository.findById(ResultStore.key("URL", "https://example.org/record")).orElseThrow().getChanges());
+    }
+
+    @Test
+    void volatileEntriesAreDueEarlier() {
+        try (ResultStore store = store(NOW, 500, 1000)) {
+            store.put("URL", "https://example.org/volatile", ValidationResult.valid());
+            store.put("URL", "https://example.org/stable", ValidationResult.valid());
+            store.put("URL", "https://example.org/broken", ValidationResult.error(ValidationResult.Stage.RESOLVE, "Not found"));
+            store.flush();
+            store.put("URL", "https://example.org/volatile", ValidationResult.error(ValidationResult.Stage.RESOLVE, "Not found"));
+            store.flush();
+            store.put("URL", "https://example.org/volatile", ValidationResult.valid());
+            store.flush();
+        }
+        assertEquals(NOW.plus(Duration.ofDays(7)), repository.findById(ResultStore.key("URL", "https://example.org/stable")).orElseThrow().getNextCheck());
+        assertEquals(NOW.plus(Duration.ofDays(1)), repository.findById(ResultStore.key("URL", "https://example.org/broken")).orElseThrow().getNextCheck(),
+                "invalid results are rechecked after their shorter time-to-live");
+        assertEquals(NOW.plus(Duration.ofDays(7).dividedBy(3)), repository.findById(ResultStore.key("URL", "https://example.org/volatile")).orElseThrow().getNextCheck(),
+                "every change shortens the interval");
+    }
+
+    @Test
+    void claimDue() {
+        try (ResultStore store = store(NOW, 500, 1000)) {
+            store.put("URL", "https://example.org/valid", ValidationResult.valid());
+            store.put("URL", "https://example.org/broken", ValidationResult.error(ValidationResult.Stage.RESOLVE, "Not found"));
+            store.flush();
+            Instant later = NOW.plus(Duration.ofDays(2));
+            assertEquals(1, store.countDue(later));
+            assertEquals(2, store.countDue(NOW.plus(Duration.ofDays(7))));
+            List<StoredResult> due = store.claimDue(NOW.plus(Duration.ofDays(7)), 10, later);
+            assertEquals(2, due.size());
+            assertEquals("https://example.org/broken", due.get(0).getIdentifier(), "the longest due comes first");
+            assertEquals(0, store.countDue(later.minusSeconds(1)), "claimed entries are postponed");
+            assertEquals(2, store.countDue(later));
+
+            store.put("URL", "https://example.org/broken", ValidationResult.valid());
+            store.flush();
+            assertEquals(1, store.countDue(later), "the new result reschedules an entry");
+            assertEquals(1, store.claimDue(later, 1, later.plusSeconds(1)).size());
+            assertTrue(store.claimDue(NOW, 10, later).isEmpty());
+        }
+    }
+
+    @Test
+    void lookUpReadsDatabaseOffTheCallingThread() {
+        try (ResultStore store = store(NOW, 500, 1000)) {
+            store.put("DOI", "10.1038/nphys1170", ValidationResult.valid());
+            store.flush();
+        }
+        List<Thread> readers = new CopyOnWriteArrayList<>();
+        StoredResultRepository recording = (StoredResultRepository) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{StoredResultRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findById")) readers.add(Thread.currentThread());
+                    try {
+                        return method.invoke(repository, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        try (ResultStore restarted = new ResultStore(recording, transitions, new TransactionTemplate(transactionManager), 1000, Duration.ofDays(7), Duration.ofDays(1),
+                500, Duration.ofHours(1), 1000, Clock.fixed(NOW, ZoneOffset.UTC))) {
+            assertSame(ValidationResult.valid(), restarted.lookUp("DOI", "10.1038/nphys1170").join());
+            assertNull(restarted.lookUp("DOI", "10.1038/unknown").join());
+            assertEquals(2, readers.size());
+            assertFalse(readers.contains(Thread.currentThread()), "the database is read on the executor for blocking validations");
+
+            CompletableFuture<ValidationResult> cached = restarted.lookUp("DOI", "10.1038/nphys1170");
+            assertTrue(cached.isDone(), "a result in memory is returned at once");
+            assertEquals(2, readers.size());
+        }
+    }
+
+    @Test
+    void failedBatchIsRetried() {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        StoredResultRepository failingOnce = (StoredResultRepository) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{StoredResultRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("saveAll") && failing.getAndSet(false)) throw new IllegalStateException("database unavailable");
+                    try {
+                        return method.invoke(repository, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        try (ResultStore store = new ResultStore(failingOnce, transitions, new TransactionTemplate(transactionManager), 1000, Duration.ofDays(7), Duration.ofDays(1),
+                500, Duration.ofHours(1), 1000, Clock.fixed(NOW, ZoneOffset.UTC))) {
+            store.put("DOI", "10.1038/nphys1170", ValidationResult.valid());
+            store.put("DOI", "10.1038/nphys1171", ValidationResult.valid());
+            store.put("DOI", "10.1038/nphys1172", ValidationResult.valid());
+            assertEquals(0, store.flush());
+            assertEquals(3, store.getFailed());
+            assertEquals(3, store.getPending(), "the failed batch is pending again");
+            assertEquals(0, repository.count());
+
+            assertEquals(3, store.flush());
+            assertEquals(0, store.getPending());
+            assertEquals(3, repository.count());
+            assertEquals(0, store.getDropped());
+        }
+    }
+
+    @Test
+    void genericValidatorUsesStore() {
+        try (ResultStore store = store(Instant.now(), 500, 1000)) {
+            store.put("URL", "https://stored.invalid/record", ValidationResult.valid());
+            GenericValidator.setResultStore(store);
+            try {
+                assertSame(ValidationResult.valid(), GenericValidator.soleInstance().validate("https://stored.invalid/record", "URL").join());
+                assertEquals(ValidationLevel.SYNTAX,
+                        GenericValidator.soleInstance().validate("https://stored.invalid/record", "URL", ValidationLevel.SYNTAX).join().getLevel(),
+                        "only complete validations are answered from the store");
+                GenericValidator.soleInstance().validate("test", "URL").join();
+                assertEquals(1, store.getPending(), "a syntax error is not stored");
+            } finally {
+                GenericValidator.setResultStore(null);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.store;
+
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+// the store writes in its own transactions
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RevalidationSchedulerTest {
+
+    private static final Instant NOW = Instant.parse("2021-11-01T12:00:00Z");
+    private static final Instant DUE = NOW.plus(Duration.ofDays(7));
+
+    @Autowired
+    StoredResultRepository repository;
+
+    @Autowired
+    StatusTransitionRepository transitions;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void clear() {
+        repository.deleteAll();
+        transitions.deleteAll();
+    }
+
+    private ResultStore store(Instant now, int entries) {
+        ResultStore store = new ResultStore(repository, transitions, new TransactionTemplate(transactionManager), 1000, Duration.ofDays(7), Duration.ofDays(1),
+                500, Duration.ofHours(1), 100000, Clock.fixed(now, ZoneOffset.UTC));
+        for (int i = 0; i < entries; i++) store.put("URL", "https://example.org/" + i, ValidationResult.valid());
+        store.flush();
+        return store;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timeout");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void spreadsChecksOverWindow() {
+        try (ResultStore store = store(NOW, 100);
+             RevalidationScheduler scheduler = new RevalidationScheduler(store, (type, identifier) -> new CompletableFuture<>(),
+                     100, Duration.ofSeconds(400), Duration.ofHours(1), 100, Clock.systemUTC())) {
+            assertEquals(0, scheduler.tick(NOW), "nothing is due within the window");
+            int[] taken = new int[8];
+            for (int i = 0; i < taken.length; i++) taken[i] = scheduler.tick(DUE.minusSeconds(300).plusSeconds(i));
+            assertEquals(0.25, scheduler.getRate(), "100 entries due within 400 seconds");
+            assertArrayEquals(new int[]{0, 0, 0, 1, 0, 0, 0, 1}, taken);
+            assertEquals(2, scheduler.getInFlight());
+        }
+    }
+
+    @Test
+    void respectsBudget() {
+        try (ResultStore store = store(NOW, 100);
+             RevalidationScheduler scheduler = new RevalidationScheduler(store, (type, identifier) -> new CompletableFuture<>(),
+                     5, Duration.ofSeconds(10), Duration.ofHours(1), 100, Clock.systemUTC())) {
+            for (int i = 0; i < 4; i++) assertEquals(5, scheduler.tick(DUE.plusSeconds(i)));
+            assertEquals(5, scheduler.getRate());
+            assertEquals(80, store.countDue(DUE.plusSeconds(10)), "the taken entries are postponed");
+        }
+    }
+
+    @Test
+    void limitsRevalidationsInFlight() throws InterruptedException {
+        List<CompletableFuture<ValidationResult>> started = new CopyOnWriteArrayList<>();
+        try (ResultStore store = store(NOW, 10);
+             RevalidationScheduler scheduler = new RevalidationScheduler(store, (type, identifier) -> {
+                 CompletableFuture<ValidationResult> result = new CompletableFuture<>();
+                 started.add(result);
+                 return result;
+             }, 10, Duration.ofSeconds(1), Duration.ofHours(1), 3, Clock.systemUTC())) {
+            assertEquals(3, scheduler.tick(DUE));
+            assertEquals(0, scheduler.tick(DUE.plusSeconds(1)));
+            await(() -> started.size() == 3);
+            started.get(0).complete(ValidationResult.valid());
+            started.get(1).completeExceptionally(new IllegalStateException("failed"));
+            assertEquals(2, scheduler.getChecked());
+            assertEquals(1, scheduler.getFailed());
+            assertEquals(2, scheduler.tick(DUE.plusSeconds(2)));
+        }
+    }
+
+    @Test
+    void recordsChangesOfRevalidatedEntries() throws InterruptedException {
+        ResultStore store = store(NOW, 3);
+        store.put("DOI", " 10.1038/NPHYS1170", ValidationResult.valid());
+        store.close();
+        List<String> inputs = new CopyOnWriteArrayList<>();
+        ResultStore later = new ResultStore(repository, transitions, new TransactionTemplate(transactionManager), 1000, Duration.ofDays(7), Duration.ofDays(1),
+                500, Duration.ofHours(1), 100000, Clock.fixed(DUE, ZoneOffset.UTC));
+        try (later; RevalidationScheduler scheduler = new RevalidationScheduler(later, (type, input) -> {
+            inputs.add(input);
+            ValidationResult result = input.endsWith("/1") ? ValidationResult.error(ValidationResult.Stage.RESOLVE, "Not found") : ValidationResult.valid();
+            later.put(type, input, result);
+            return CompletableFuture.completedFuture(result);
+        }, 10, Duration.ofSeconds(1), Duration.ofHours(1), 10, Clock.systemUTC())) {
+            assertEquals(4, scheduler.tick(DUE));
+            await(() -> scheduler.getChecked() == 4);
+            assertTrue(inputs.contains(" 10.1038/NPHYS1170"), "the input is revalidated as it was entered, not normalised");
+            later.flush();
+            List<StatusTransition> changes = later.changesSince(NOW, 10);
+            assertEquals(1, changes.size());
+            assertEquals("https://example.org/1", changes.get(0).getIdentifier());
+            assertEquals(ValidationResult.Status.ERROR, changes.get(0).getStatus());
+            assertEquals(DUE, changes.get(0).getChangedAt());
+            assertEquals(0, later.countDue(DUE.plus(Duration.ofHours(11))), "the revalidated entries are rescheduled");
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package edu.kit.datamanager.datacite.validate.stub;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is an embedded HTTP server which mimics the parts of hdl.handle.net used by the HandleNetValidator:
+ * <ul>
+ *     <li>/api/handles/[prefix]/[suffix] answers 200 for registered handles and 404 otherwise.</li>
+ *     <li>/0.NA/[prefix] answers 200 for registered prefixes and 404 otherwise.</li>
+ * </ul>
+ * Every response is delayed by a configurable latency without blocking a thread, so tests and benchmarks run offline and reproducibly.
+ *
+ * @author maximilianiKIT
+ */
+public class HandleStubServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ScheduledExecutorService scheduler;
+    private final long latencyNanos;
+    private final ConcurrentHashMap<String, Set<String>> handles = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+
+    /**
+     * Starts a stub server on a free port of the loopback interface.
+     *
+     * @param latency delay of every response
+     * @throws IOException if the server can't be started.
+     */
+    public HandleStubServer(Duration latency) throws IOException {
+        this.latencyNanos = latency.toNanos();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "handle-stub-latency");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.createContext("/api/handles/", this::handle);
+        server.createContext("/0.NA/", this::prefix);
+        server.start();
+    }
+
+    /**
+     * Registers a prefix and the suffixes which are resolvable below it.
+     *
+     * @param prefix   the handle prefix (e.g. "10.1038")
+     * @param suffixes the resolvable suffixes (e.g. "nphys1170")
+     * @return this server
+     */
+    public HandleStubServer register(String prefix, String... suffixes) {
+        Set<String> known = handles.computeIfAbsent(prefix, key -> ConcurrentHashMap.newKeySet());
+        known.addAll(Set.of(suffixes));
+        return this;
+    }
+
+    /**
+     * @return the base address of the server (e.g. "http://127.0.0.1:12345").
+     */
+    public String address() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * @return the address which replaces http://hdl.handle.net/api/handles
+     */
+    public String resolver() {
+        return address() + "/api/handles";
+    }
+
+    /**
+     * @return the address which replaces https://hdl.handle.net/0.NA
+     */
+    public String prefixResolver() {
+        return address() + "/0.NA";
+    }
+
+    /**
+     * @return the number of requests received so far.
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        scheduler.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getPath().substring("/api/handles/".length());
+        int slash = path.indexOf('/');
+        Set<String> suffixes = slash > 0 ? handles.get(path.substring(0, slash)) : null;
+        if (suffixes != null && suffixes.contains(path.substring(slash + 1)))
+            respond(exchange, 200, "{\"responseCode\":1,\"handle\":\"" + path + "\"}");
+        else respond(exchange, 404, "{\"responseCode\":100,\"message\":\"Handle Not Found\"}");
+    }
+
+    private void prefix(HttpExchange exchange) {
+        String prefix = exchange.getRequestURI().getPath().substring("/0.NA/".length());
+        if (handles.containsKey(prefix)) respond(exchange, 200, "{\"responseCode\":1,\"handle\":\"0.NA/" + prefix + "\"}");
+        else respond(exchange, 404, "{\"responseCode\":100,\"message\":\"Handle Not Found\"}");
+    }
+
+    private void respond(HttpExchange exchange, int status, String body) {
+        requests.increment();
+        if (latencyNanos <= 0) send(exchange, status, body);
+        else scheduler.schedule(() -> send(exchange, status, body), latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) {
+        try (exchange) {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.sendResponseHeaders(status, -1);
+            } else {
+                exchange.sendResponseHeaders(status, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+        } catch (IOException ignored) {
+            // the client has gone away
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.stub;
+
+import edu.kit.datamanager.datacite.validate.handle.HandleMessage;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class is an embedded handle server which answers resolution requests of the native Handle protocol (RFC 3652) over UDP and TCP:
+ * <ul>
+ *     <li>[prefix]/[suffix] is answered with SUCCESS for registered handles and HANDLE_NOT_FOUND otherwise.</li>
+ *     <li>0.NA/[prefix] is answered with SUCCESS for registered prefixes and HANDLE_NOT_FOUND otherwise.</li>
+ * </ul>
+ * UDP requests can be dropped or answered as truncated, so the retransmission and the TCP fallback of a client can be tested.
+ * Every response is delayed by a configurable latency, so tests and benchmarks run offline and reproducibly.
+ *
+ * @author maximilianiKIT
+ */
+public class NativeHandleStubServer implements AutoCloseable {
+
+    private final DatagramChannel udp;
+    private final ServerSocketChannel tcp;
+    private final ScheduledExecutorService scheduler;
+    private final long latencyNanos;
+    private final int port;
+    private final ConcurrentHashMap<String, Set<String>> handles = new ConcurrentHashMap<>();
+    private final LongAdder udpRequests = new LongAdder();
+    private final LongAdder tcpRequests = new LongAdder();
+    private final AtomicInteger dropUdp = new AtomicInteger();
+    private volatile boolean truncateUdp;
+    private volatile boolean closed;
+
+    /**
+     * Starts a stub server on a free port of the loopback interface. UDP and TCP use the same port number.
+     *
+     * @param latency delay of every response
+     * @throws IOException if the server can't be started.
+     */
+    public NativeHandleStubServer(Duration latency) throws IOException {
+        this.latencyNanos = latency.toNanos();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "native-handle-stub-latency");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.tcp = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0), 128);
+        this.port = ((InetSocketAddress) tcp.getLocalAddress()).getPort();
+        this.udp = DatagramChannel.open().bind(new InetSocketAddress("127.0.0.1", port));
+        start("native-handle-stub-udp", this::serveUdp);
+        start("native-handle-stub-tcp", this::acceptTcp);
+    }
+
+    /**
+     * Registers a prefix and the suffixes which are resolvable below it.
+     *
+     * @param prefix   the handle prefix (e.g. "10.1038")
+     * @param suffixes the resolvable suffixes (e.g. "nphys1170")
+     * @return this server
+     */
+    public NativeHandleStubServer register(String prefix, String... suffixes) {
+        Set<String> known = handles.computeIfAbsent(prefix, key -> ConcurrentHashMap.newKeySet());
+        known.addAll(Set.of(suffixes));
+        return this;
+    }
+
+    /**
+     * @return the address of the server for UDP and TCP.
+     */
+    public InetSocketAddress address() {
+        return new InetSocketAddress("127.0.0.1", port);
+    }
+
+    /**
+     * @param requests number of the next UDP requests which are not answered
+     * @return this server
+     */
+    public NativeHandleStubServer dropUdp(int requests) {
+        dropUdp.set(requests);
+        return this;
+    }
+
+    /**
+     * @param truncate true if UDP requests are answered with the truncated flag, so the client has to repeat them over TCP
+     * @return this server
+     */
+    public NativeHandleStubServer truncateUdp(boolean truncate) {
+        this.truncateUdp = truncate;
+        return this;
+    }
+
+    /**
+     * @return the number of requests received over UDP so far, including dropped ones.
+     */
+    public long getUdpRequestCount() {
+        return udpRequests.sum();
+    }
+
+    /**
+     * @return the number of requests received over TCP so far.
+     */
+    public long getTcpRequestCount() {
+        return tcpRequests.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            udp.close();
+            tcp.close();
+        } catch (IOException ignored) {
+            // nothing to do
+        }
+        scheduler.shutdownNow();
+    }
+
+    private static void start(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private int responseCode(String handle) {
+        int slash = handle.indexOf('/');
+        if (slash < 0) return HandleMessage.RC_INVALID_HANDLE;
+        String prefix = handle.substring(0, slash);
+        if (prefix.equals("0.NA")) return handles.containsKey(handle.substring(slash + 1)) ? HandleMessage.RC_SUCCESS : HandleMessage.RC_HANDLE_NOT_FOUND;
+        Set<String> suffixes = handles.get(prefix);
+        return suffixes != null && suffixes.contains(handle.substring(slash + 1)) ? HandleMessage.RC_SUCCESS : HandleMessage.RC_HANDLE_NOT_FOUND;
+    }
+
+    private ByteBuffer respond(ByteBuffer request, boolean truncated) {
+        int requestId = HandleMessage.requestId(request);
+        if (HandleMessage.opCode(request) != HandleMessage.OC_RESOLUTION)
+            return HandleMessage.resolutionResponse(requestId, HandleMessage.RC_OPERATION_NOT_SUPPORTED, null, false);
+        String handle;
+        try {
+            handle = HandleMessage.handle(request);
+        } catch (IllegalArgumentException e) {
+            return HandleMessage.resolutionResponse(requestId, HandleMessage.RC_PROTOCOL_ERROR, null, false);
+        }
+        if (truncated) return HandleMessage.resolutionResponse(requestId, HandleMessage.RC_SUCCESS, handle, true);
+        return HandleMessage.resolutionResponse(requestId, responseCode(handle), handle, false);
+    }
+
+    private void later(Runnable task) {
+        if (latencyNanos <= 0) task.run();
+        else scheduler.schedule(task, latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void serveUdp() {
+        ByteBuffer buffer = ByteBuffer.allocate(HandleMessage.MAX_UDP_REQUEST);
+        while (!closed) {
+            try {
+                buffer.clear();
+                SocketAddress client = udp.receive(buffer);
+                buffer.flip();
+                udpRequests.increment();
+                if (buffer.remaining() < HandleMessage.ENVELOPE_LENGTH + HandleMessage.HEADER_LENGTH) continue;
+                if (dropUdp.getAndUpdate(count -> Math.max(0, count - 1)) > 0) continue;
+                ByteBuffer response = respond(buffer, truncateUdp);
+                later(() -> {
+                    try {
+                        udp.send(response, client);
+                    } catch (IOException ignored) {
+                        // the server has been closed
+                    }
+                });
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void acceptTcp() {
+        while (!closed) {
+            try {
+                SocketChannel connection = tcp.accept();
+                start("native-handle-stub-connection", () -> serveTcp(connection));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serveTcp(SocketChannel connection) {
+        try (connection) {
+            ByteBuffer envelope = ByteBuffer.allocate(HandleMessage.ENVELOPE_LENGTH);
+            while (!closed) {
+                envelope.clear();
+                if (!readFully(connection, envelope)) return;
+                envelope.flip();
+                ByteBuffer request = ByteBuffer.allocate(HandleMessage.ENVELOPE_LENGTH + HandleMessage.messageLength(envelope));
+                request.put(envelope);
+                if (!readFully(connection, request)) return;
+                request.flip();
+                tcpRequests.increment();
+                ByteBuffer response = respond(request, false);
+                later(() -> {
+                    synchronized (connection) {
+                        try {
+                            while (response.hasRemaining()) connection.write(response);
+                        } catch (IOException ignored) {
+                            // the client has gone away
+                        }
+                    }
+                });
+            }
+        } catch (IOException ignored) {
+            // the client has gone away
+        }
+    }
+
+    private static boolean readFully(SocketChannel connection, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (connection.read(buffer) < 0) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.website;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class BulkUploadControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    /**
+     * Opens the form, so the session has a CSRF token for the upload.
+     */
+    private CsrfToken form(MockHttpSession session) throws Exception {
+        MvcResult form = mockMvc.perform(get("/bulk").session(session))
+                .andExpect(status().isOk())
+                .andExpect(view().name("bulk"))
+                .andReturn();
+        return (CsrfToken) form.getRequest().getAttribute(CsrfToken.class.getName());
+    }
+
+    @Test
+    void uploadAndStream() throws Exception {
+        MockHttpSession session = new MockHttpSession();
+        CsrfToken token = form(session);
+        MockMultipartFile file = new MockMultipartFile("file", "identifiers.csv", "text/csv",
+                "type,input\nURL,https://example.org\n".getBytes(StandardCharsets.UTF_8));
+        MvcResult page = mockMvc.perform(multipart("/bulk").file(file).session(session)
+                        .param(token.getParameterName(), token.getToken())
+                        .param("type", "URL").param("level", "syntax").param("text", "test\n\nhttps://example.org/a"))
+                .andExpect(status().isOk())
+                .andExpect(view().name("bulk"))
+                .andExpect(model().attributeExists("upload"))
+                .andExpect(model().attribute("items", 3L))
+                .andReturn();
+        String id = (String) page.getModelAndView().getModel().get("upload");
+        assertTrue(page.getResponse().getContentAsString().contains("\\/bulk\\/" + id + "\\/events"), page.getResponse().getContentAsString());
+
+        MvcResult events = mockMvc.perform(get("/bulk/" + id + "/events"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        events.getAsyncResult(10000);
+        String content = events.getResponse().getContentAsString();
+        assertTrue(content.contains("\"input\":\"test\",\"status\":\"ERROR\""), content);
+        assertTrue(content.contains("\"input\":\"https://example.org/a\",\"status\":\"VALID\",\"level\":\"SYNTAX\""), content);
+        assertTrue(content.contains("\"line\":5,\"type\":\"URL\",\"input\":\"https://example.org\""), "the header of the file is skipped");
+        assertTrue(content.contains("\"total\":3"), content);
+
+        mockMvc.perform(get("/bulk/" + id + "/events")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void invalidUploads() throws Exception {
+        MockHttpSession session = new MockHttpSession();
+        CsrfToken token = form(session);
+        mockMvc.perform(multipart("/bulk").session(session).param(token.getParameterName(), token.getToken()).param("text", " \n"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("error", "The upload contains no identifiers."))
+                .andExpect(model().attributeDoesNotExist("upload"));
+        mockMvc.perform(multipart("/bulk").session(session).param(token.getParameterName(), token.getToken())
+                        .param("text", "10.1038/nphys1170").param("level", "everything"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("error", "Unknown validation level everything"));
+        MockMultipartFile ndjson = new MockMultipartFile("file", "identifiers.ndjson", "application/x-ndjson",
+                "{\"input\":\"10.1038/nphys1170\"}\n".getBytes(StandardCharsets.UTF_8));
+        mockMvc.perform(multipart("/bulk").file(ndjson).session(session).param(token.getParameterName(), token.getToken()).param("text", "10.1038/nphys1170"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("error", "An NDJSON file can't be combined with a pasted list."));
+    }
+
+    @Test
+    void uploadWithoutCsrfToken() throws Exception {
+        mockMvc.perform(multipart("/bulk").param("text", "10.1038/nphys1170")).andExpect(status().isForbidden());
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2021 Karlsruhe Institute of Technology.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.kit.datamanager.datacite.validate.website;
+
+import edu.kit.datamanager.datacite.validate.ValidationLevel;
+import edu.kit.datamanager.datacite.validate.ValidationRequest;
+import edu.kit.datamanager.datacite.validate.ValidationResult;
+import edu.kit.datamanager.datacite.validate.cli.RecordFormat;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+class BulkUploadsTest {
+
+    private static final Instant NOW = Instant.parse("2021-11-01T12:00:00Z");
+
+    /**
+     * Streams the results of an upload like the BulkUploadController. It is no stereotype, so the application doesn't pick it up.
+     */
+    @RequestMapping("/events")
+    static class StreamController {
+        private final BulkUploads uploads;
+
+        StreamController(BulkUploads uploads) {
+            this.uploads = uploads;
+        }
+
+        @GetMapping("/{id}")
+        public SseEmitter events(@PathVariable String id) {
+            return uploads.stream(id);
+        }
+    }
+
+    private static String stream(BulkUploads uploads, String id) throws Exception {
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new StreamController(uploads)).build();
+        MvcResult result = mockMvc.perform(get("/events/" + id)).andExpect(request().asyncStarted()).andReturn();
+        result.getAsyncResult(10000);
+        return result.getResponse().getContentAsString();
+    }
+
+    private static BulkUploads uploads(Function<ValidationRequest, CompletableFuture<ValidationResult>> validator, int parallelism, int maxUploads, Clock clock) {
+        return new BulkUploads(validator, parallelism, 5, maxUploads, Duration.ofMinutes(10), Duration.ofMinutes(1), clock);
+    }
+
+    @Test
+    void streamsResultsInOrderOfCompletion() throws Exception {
+        ScheduledExecutorService delays = Executors.newSingleThreadScheduledExecutor();
+        try {
+            // the first line takes longest, so its result is sent last
+            BulkUploads uploads = uploads(request -> {
+                CompletableFuture<ValidationResult> result = new CompletableFuture<>();
+                long delay = request.getInput().equals("10.1038/slow") ? 300 : 10;
+                ValidationResult value = request.getInput().startsWith("10.") ? ValidationResult.valid(request.getLevel())
+                        : ValidationResult.error(ValidationResult.Stage.SYNTAX, "Invalid input");
+                delays.schedule(() -> result.complete(value), delay, TimeUnit.MILLISECONDS);
+                return result;
+            }, 4, 16, Clock.systemUTC());
+            String id = uploads.create(List.of("10.1038/slow", "", "URL,test", "DOI,10.1038/fast,syntax", "a,b,c,d"), RecordFormat.CSV, "DOI", ValidationLevel.RESOLVE);
+            assertEquals(1, uploads.getWaiting());
+
+            String events = stream(uploads, id);
+            assertEquals(0, uploads.getWaiting());
+            assertEquals(0, uploads.getRunning());
+            assertTrue(events.indexOf("\"line\":1,") > events.indexOf("\"line\":4,"), events);
+            assertTrue(events.contains("{\"line\":1,\"type\":\"DOI\",\"input\":\"10.1038/slow\",\"status\":\"VALID\",\"level\":\"RESOLVE\""), events);
+            assertTrue(events.contains("{\"line\":3,\"type\":\"URL\",\"input\":\"test\",\"status\":\"ERROR\",\"level\":null,\"message\":\"Invalid input\"}"), events);
+            assertTrue(events.contains("\"level\":\"SYNTAX\""), events);
+            assertTrue(events.contains("\"line\":5,\"type\":null,\"input\":\"a,b,c,d\",\"status\":\"ERROR\""), events);
+            assertFalse(events.contains("\"line\":2,"), "blank lines are skipped");
+            assertTrue(events.trim().endsWith("event:done\ndata:{\"valid\":2,\"warning\":0,\"error\":2,\"total\":4}"), events);
+            assertNull(uploads.stream(id), "an upload is streamed only once");
+        } finally {
+            delays.shutdownNow();
+        }
+    }
+
+    @Test
+    void limitsParallelism() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maximum = new AtomicInteger();
+        ScheduledExecutorService delays = Executors.newScheduledThreadPool(4);
+        try {
+            BulkUploads uploads = uploads(request -> {
+                maximum.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                CompletableFuture<ValidationResult> result = new CompletableFuture<>();
+                delays.schedule(() -> {
+                    inFlight.decrementAndGet();
+                    result.complete(ValidationResult.valid());
+                }, 20, TimeUnit.MILLISECONDS);
+                return result;
+            }, 2, 16, Clock.systemUTC());
+            String events = stream(uploads, uploads.create(List.of("1", "2", "3", "4", "5"), RecordFormat.CSV, "Handle", ValidationLevel.RESOLVE));
+            assertTrue(events.contains("\"total\":5"), events);
+            assertEquals(2, maximum.get());
+        } finally {
+            delays.shutdownNow();
+        }
+    }
+
+    @Test
+    void ndjson() throws Exception {
+        Map<String, String> types = new ConcurrentHashMap<>();
+        BulkUploads uploads = uploads(request -> {
+            types.put(request.getInput(), request.getType());
+            return CompletableFuture.completedFuture(ValidationResult.valid());
+        }, 4, 16, Clock.systemUTC());
+        String events = stream(uploads, uploads.create(List.of("{\"type\":\"URL\",\"input\":\"https://example.org\"}", "{\"input\":\"10.1038/nphys1170\"}"),
+                RecordFormat.NDJSON, "DOI", ValidationLevel.RESOLVE));
+        assertTrue(events.contains("\"valid\":2"), events);
+        assertEquals(Map.of("https://example.org", "URL", "10.1038/nphys1170", "DOI"), types);
+    }
+
+    @Test
+    void limits() {
+        Clock clock = Clock.fixed(NOW, ZoneOffset.UTC);
+        BulkUploads uploads = uploads(request -> CompletableFuture.completedFuture(ValidationResult.valid()), 4, 2, clock);
+        assertThrows(IllegalArgumentException.class, () -> uploads.create(List.of("", " "), RecordFormat.CSV, "DOI", ValidationLevel.RESOLVE));
+        assertThrows(IllegalArgumentException.class, () -> uploads.create(List.of("1", "2", "3", "4", "5", "6"), RecordFormat.CSV, "DOI", ValidationLevel.RESOLVE));
+        uploads.create(List.of("1", "2", "3", "4", "5", ""), RecordFormat.CSV, "DOI", ValidationLevel.RESOLVE);
+        uploads.create(List.of("1"), RecordFormat.CSV, "DOI", ValidationLevel.RESOLVE);
+        assertThrows(IllegalStateException.class, () -> uploads.create(List.of("1"), RecordFormat.CSV, "DOI", ValidationLevel.RESOLVE));
+        assertNull(uploads.stream("unknown"));
+    }
+
+    @Test
+    void expiry() {
+        Instant[] now = {NOW};
+        Clock clock = new Clock() {
+            @Override
+            public ZoneOffset getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(java.time.ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return now[0];
+            }
+        };
+        BulkUploads uploads = uploads(request -> CompletableFuture.completedFuture(ValidationResult.valid()), 4, 1, clock);
+        String expired = uploads.create(List.of("1"), RecordFormat.CSV, "DOI", ValidationLevel.RESOLVE);
+        now[0] = NOW.plus(Duration.ofMinutes(11));
+        assertNotNull(uploads.create(List.of("1"), RecordFormat.CSV, "DOI", ValidationLevel.RESOLVE), "the expired upload is removed");
+        assertEquals(1, uploads.getWaiting());
+        assertNull(uploads.stream(expired));
+    }
+}